@@ -0,0 +1,137 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of committing changes of given amount of files (out of 1000 watched ones) with each {@link CommitMode}, the same way
+ * {@link FileSynchronizer} does it: WORKING_TREE copies changed files into repository (via {@link FileManager}), stages and commits
+ * them, other modes commit files straight from watched folder. Git installed on local machine is used as git backend
+ * and commits are pushed in background to local bare repository.
+ * Folders are created in java.io.tmpdir (run with -Djava.io.tmpdir=... to benchmark other file system).
+ *
+ * @author Paweł Gągała
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CommitModeBenchmark {
+
+    private static final int WATCHED_FILES = 1000;
+    private static final int KILOBYTE = 1024;
+    private static final GitBranch BRANCH = GitBranch.DEFAULT_BRANCH;
+
+    @Param({"WORKING_TREE", "FAST_IMPORT", "OBJECT_STORE"})
+    String commitMode;
+
+    @Param({"1", "100"})
+    int changedFiles;
+
+    @Param({"4", "1024"})
+    int fileSizeInKilobytes;
+
+    File watchedFolder;
+    File repository;
+    File remote;
+    List<File> files;
+    GitService gitService;
+    FileManager fileManager;
+    Random random;
+    int nextChangedFile;
+    FileChanges fileChanges;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        watchedFolder = Files.createTempDirectory("commitModeBenchmarkWatched").toFile();
+        repository = Files.createTempDirectory("commitModeBenchmarkRepository").toFile();
+        remote = Files.createTempDirectory("commitModeBenchmarkRemote").toFile();
+        Response remoteInit = new ProcessExecutor(remote).execute(List.of("git", "init", "--bare", "--quiet"), "git init --bare");
+        if (remoteInit.isFailure()) {
+            throw new IllegalStateException("Git has to be installed to run benchmark: " + remoteInit.result());
+        }
+        random = new Random(fileSizeInKilobytes);
+        files = new ArrayList<>(WATCHED_FILES);
+        byte[] content = new byte[fileSizeInKilobytes * KILOBYTE];
+        List<FileChange> createdFiles = new ArrayList<>(WATCHED_FILES);
+        for (int i = 0; i < WATCHED_FILES; i++) {
+            File file = new File(watchedFolder, "file-" + i);
+            random.nextBytes(content);
+            Files.write(file.toPath(), content);
+            files.add(file);
+            createdFiles.add(FileCreated.of(file));
+        }
+        gitService = new GitService(new GitServerRemote("file://" + remote.getAbsolutePath()), new GitRepositoryLocal(repository), BRANCH,
+            new LocalCommandLineGitBackend(repository), CommitMode.valueOf(commitMode));
+        fileManager = new FileManager(repository);
+        gitService.createRepository();
+        commit(new FileChanges(createdFiles));
+    }
+
+    /**
+     * Each commit changes next files (in place, so that their size stays the same).
+     */
+    @Setup(Level.Invocation)
+    public void changeFiles() throws IOException {
+        List<FileChange> changes = new ArrayList<>(changedFiles);
+        for (int i = 0; i < changedFiles; i++) {
+            File file = files.get(nextChangedFile);
+            nextChangedFile = (nextChangedFile + 1) % WATCHED_FILES;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.seek(random.nextInt(fileSizeInKilobytes * KILOBYTE - Long.BYTES));
+                randomAccessFile.writeLong(random.nextLong());
+            }
+            changes.add(FileModified.of(file));
+        }
+        fileChanges = new FileChanges(changes);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        gitService.stop();
+        FileUtils.deleteDirectory(watchedFolder);
+        FileUtils.deleteDirectory(repository);
+        FileUtils.deleteDirectory(remote);
+    }
+
+    @Benchmark
+    public Response commit() throws InterruptedException {
+        return commit(fileChanges);
+    }
+
+    private Response commit(FileChanges changes) throws InterruptedException {
+        if (!gitService.bypassesWorkingTree()) {
+            fileManager.copy(changes.newOrModifiedFilesByName());
+        }
+        Response response = gitService.commitChanges(changes);
+        if (response.isFailure()) {
+            throw new IllegalStateException("Unsuccessful commit: " + response.result());
+        }
+        return response;
+    }
+}
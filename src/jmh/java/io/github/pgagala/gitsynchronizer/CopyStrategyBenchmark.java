@@ -0,0 +1,86 @@
+package io.github.pgagala.gitsynchronizer;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of copying one file with each {@link CopyStrategy} (throughput in MB/s is file size divided by the score).
+ * Source file and target folder are created in java.io.tmpdir (run with -Djava.io.tmpdir=... to benchmark other file system).
+ * Strategy which isn't supported on the file system is replaced by its fallback, the same as in {@link FileManager}.
+ *
+ * @author Paweł Gągała
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CopyStrategyBenchmark {
+
+    private static final int MEGABYTE = 1024 * 1024;
+
+    @Param({"STREAM", "TRANSFER_TO", "REFLINK", "HARDLINK"})
+    String strategy;
+
+    @Param({"1", "64", "256"})
+    int sizeInMegabytes;
+
+    CopyStrategy copyStrategy;
+    File sourceFolder;
+    File targetFolder;
+    File source;
+    File target;
+
+    @Setup
+    public void setup() throws IOException {
+        copyStrategy = CopyStrategy.valueOf(strategy);
+        sourceFolder = Files.createTempDirectory("copyStrategyBenchmarkSource").toFile();
+        targetFolder = Files.createTempDirectory("copyStrategyBenchmarkTarget").toFile();
+        source = new File(sourceFolder, "file");
+        target = new File(targetFolder, "file");
+        byte[] chunk = new byte[MEGABYTE];
+        Random random = new Random(sizeInMegabytes);
+        try (OutputStream outputStream = Files.newOutputStream(source.toPath())) {
+            for (int i = 0; i < sizeInMegabytes; i++) {
+                random.nextBytes(chunk);
+                outputStream.write(chunk);
+            }
+        }
+        try {
+            copyStrategy.copyFile(source, target);
+        } catch (IOException exc) {
+            copyStrategy = copyStrategy.fallback().orElseThrow(() -> exc);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(sourceFolder);
+        FileUtils.deleteDirectory(targetFolder);
+    }
+
+    @Benchmark
+    public File copy() throws IOException {
+        copyStrategy.copyFile(source, target);
+        return target;
+    }
+}
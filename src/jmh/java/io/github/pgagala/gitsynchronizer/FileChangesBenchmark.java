@@ -0,0 +1,65 @@
+package io.github.pgagala.gitsynchronizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of selecting files from flattened file changes (as done for every commit) and of building commit message for them,
+ * for growing batches of file changes.
+ *
+ * @author Paweł Gągała
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileChangesBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    int size;
+
+    FileChanges fileChanges;
+
+    @Setup
+    public void setup() {
+        List<FileChange> changes = FileChangesFlattenerBenchmark.realisticFileChanges(size * 2, size, new Random(size));
+        fileChanges = new FileChanges(FileChangesFlattener.flatten(changes));
+    }
+
+    @Benchmark
+    public List<File> newOrModifiedFiles() {
+        return fileChanges.newOrModifiedFiles();
+    }
+
+    @Benchmark
+    public Map<String, File> newOrModifiedFilesByName() {
+        return fileChanges.newOrModifiedFilesByName();
+    }
+
+    @Benchmark
+    public List<File> deletedFiles() {
+        return fileChanges.deletedFiles();
+    }
+
+    @Benchmark
+    public String commitMessage() {
+        return GitService.getCommitMessage(fileChanges);
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.pgagala.gitsynchronizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flattening time of file changes for growing amount of file events. Time per event should stay flat across sizes.
+ *
+ * @author Paweł Gągała
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileChangesFlattenerBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    int size;
+
+    List<FileChange> fileChanges;
+
+    @Setup
+    public void setup() {
+        fileChanges = realisticFileChanges(size, Math.max(1, size / 10), new Random(size));
+    }
+
+    @Benchmark
+    public List<FileChange> flatten() {
+        return FileChangesFlattener.flatten(fileChanges);
+    }
+
+    /**
+     * Mix of file events similar to the ones produced by editors: mostly modifications of already existing files
+     * with some files created and deleted.
+     */
+    static List<FileChange> realisticFileChanges(int size, int distinctFiles, Random random) {
+        List<File> files = new ArrayList<>(distinctFiles);
+        for (int i = 0; i < distinctFiles; i++) {
+            files.add(new File("/watched/file-" + i));
+        }
+        List<FileChange> fileChanges = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            File file = files.get(random.nextInt(distinctFiles));
+            int kind = random.nextInt(10);
+            if (kind < 2) {
+                fileChanges.add(FileCreated.of(file));
+            } else if (kind < 8) {
+                fileChanges.add(FileModified.of(file));
+            } else {
+                fileChanges.add(FileDeleted.of(file));
+            }
+        }
+        return fileChanges;
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.pgagala.gitsynchronizer;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of copying 64 MB of files into repository by {@link FileManager} split into many small files or few large ones
+ * (with default copy strategy), on calling thread or on workers. Each measured copy goes into new empty repository, so that
+ * no file is skipped as unchanged.
+ *
+ * @author Paweł Gągała
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class FileManagerCopyBenchmark {
+
+    private static final int TOTAL_KILOBYTES = 64 * 1024;
+    private static final int KILOBYTE = 1024;
+
+    @Param({"4", "1024", "65536"})
+    int fileSizeInKilobytes;
+
+    @Param({"1", "4"})
+    int parallelism;
+
+    File sourceFolder;
+    List<File> files;
+    File repository;
+    FileManager fileManager;
+
+    @Setup
+    public void setup() throws IOException {
+        sourceFolder = Files.createTempDirectory("fileManagerCopyBenchmarkSource").toFile();
+        byte[] content = new byte[fileSizeInKilobytes * KILOBYTE];
+        Random random = new Random(fileSizeInKilobytes);
+        files = new ArrayList<>();
+        for (int i = 0; i < TOTAL_KILOBYTES / fileSizeInKilobytes; i++) {
+            File file = new File(sourceFolder, "file-" + i);
+            random.nextBytes(content);
+            try (OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+                outputStream.write(content);
+            }
+            files.add(file);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createRepository() throws IOException {
+        repository = Files.createTempDirectory("fileManagerCopyBenchmarkRepository").toFile();
+        fileManager = new FileManager(repository, CopyStrategy.STREAM, parallelism);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRepository() throws IOException {
+        FileUtils.deleteDirectory(repository);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(sourceFolder);
+    }
+
+    @Benchmark
+    public FileOperationsResult copy() throws InterruptedException {
+        return fileManager.copy(files);
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.pgagala.gitsynchronizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Time of deciding whether files are ignored, by every pattern evaluated one by one (as {@link IgnoredFiles} used to do)
+ * compared with compiled {@link IgnoredNameMatcher} with and without decisions cache. Names are either repeated (as when
+ * the same files are edited over and over) or unique (more of them than fits into decisions cache). Removing watch events
+ * of ignored files measures the same decisions as made by {@link FileWatcher} for each batch of watch events.
+ *
+ * @author Paweł Gągała
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IgnoredFilesBenchmark {
+
+    private static final int NAMES = 100_000;
+    private static final int REPEATED_NAMES = 500;
+
+    @Param({"2", "20", "100"})
+    int patterns;
+
+    @Param({"repeated", "unique"})
+    String names;
+
+    List<Pattern> ignoredFilePatterns;
+    IgnoredFiles cachedIgnoredFiles;
+    IgnoredFiles notCachedIgnoredFiles;
+    List<String> fileNames;
+    List<WatchEvent<?>> watchEvents;
+
+    @Setup
+    public void setup() {
+        ignoredFilePatterns = patterns(patterns);
+        cachedIgnoredFiles = IgnoredFiles.from(ignoredFilePatterns);
+        notCachedIgnoredFiles = cachedIgnoredFiles.withDecisionsCacheSize(0);
+        Random random = new Random(patterns);
+        int distinctNames = names.equals("unique") ? NAMES : REPEATED_NAMES;
+        fileNames = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++) {
+            fileNames.add(name(random.nextInt(distinctNames), random));
+        }
+        watchEvents = fileNames.stream()
+            .map(ModifyEvent::new)
+            .collect(Collectors.toUnmodifiableList());
+    }
+
+    @Benchmark
+    public int everyPattern() {
+        int ignored = 0;
+        for (String fileName : fileNames) {
+            if (ignoredFilePatterns.stream().anyMatch(p -> p.matcher(fileName).matches())) {
+                ignored++;
+            }
+        }
+        return ignored;
+    }
+
+    @Benchmark
+    public int compiled() {
+        return ignored(notCachedIgnoredFiles);
+    }
+
+    @Benchmark
+    public int compiledAndCached() {
+        return ignored(cachedIgnoredFiles);
+    }
+
+    @Benchmark
+    public List<WatchEvent<?>> removeEventsRefersToIgnoredFiles() {
+        return cachedIgnoredFiles.removeEventsRefersToIgnoredFiles(watchEvents);
+    }
+
+    private int ignored(IgnoredFiles ignoredFiles) {
+        int ignored = 0;
+        for (String fileName : fileNames) {
+            if (ignoredFiles.shouldBeIgnored(fileName)) {
+                ignored++;
+            }
+        }
+        return ignored;
+    }
+
+    /**
+     * Intermediate files patterns followed by patterns of extensions and prefixes (as e.g. ignored logs or build outputs)
+     * and by some patterns without literal prefix or suffix.
+     */
+    static List<Pattern> patterns(int amount) {
+        List<Pattern> patterns = new ArrayList<>(amount);
+        patterns.add(Pattern.compile(IgnoredFiles.INTERMEDIATE_FILES_PATTERN));
+        patterns.add(Pattern.compile(IgnoredFiles.VIM_INTERMEDIATE_FILES_PATTERN));
+        for (int i = 0; patterns.size() < amount; i++) {
+            switch (i % 3) {
+                case 0 -> patterns.add(Pattern.compile(".*\\.ext" + i));
+                case 1 -> patterns.add(Pattern.compile("^tmp" + i + "-.+$"));
+                default -> patterns.add(Pattern.compile("[a-f]+" + i + "[0-9]*"));
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * Mostly source files with some intermediate and ignored files.
+     */
+    private static String name(int id, Random random) {
+        return switch (random.nextInt(10)) {
+            case 0 -> "." + id + ".swp";
+            case 1 -> "file" + id + ".ext" + random.nextInt(100);
+            case 2 -> "tmp" + random.nextInt(100) + "-" + id;
+            default -> "Source" + id + ".java";
+        };
+    }
+
+    private static class ModifyEvent implements WatchEvent<Path> {
+        final Path fileName;
+
+        ModifyEvent(String fileName) {
+            this.fileName = Path.of(fileName);
+        }
+
+        @Override
+        public Kind<Path> kind() {
+            return StandardWatchEventKinds.ENTRY_MODIFY;
+        }
+
+        @Override
+        public int count() {
+            return 1;
+        }
+
+        @Override
+        public Path context() {
+            return fileName;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.processexecutor.InteractiveProcess;
+import io.github.pgagala.gitsynchronizer.processexecutor.OutputReader;
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link GitCommandLineBackend} running git installed on local machine.
+ *
+ * @author Paweł Gągała
+ */
+class LocalCommandLineGitBackend extends GitCommandLineBackend {
+
+    private final ProcessExecutor processExecutor;
+
+    LocalCommandLineGitBackend(File repository) {
+        this.processExecutor = new ProcessExecutor(repository);
+    }
+
+    @Override
+    Response git(List<String> gitArguments, String description, Optional<Duration> timeout) throws InterruptedException {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(gitArguments);
+        return timeout.isPresent() ?
+            processExecutor.execute(command, description, timeout.get()) :
+            processExecutor.execute(command, description);
+    }
+
+    @Override
+    Response git(List<String> gitArguments, String description, OutputReader outputReader) throws InterruptedException {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(gitArguments);
+        return processExecutor.execute(command, description, outputReader);
+    }
+
+    @Override
+    InteractiveProcess startGit(List<String> gitArguments, String description) throws IOException {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(gitArguments);
+        return processExecutor.start(command, description);
+    }
+}
@@ -0,0 +1,288 @@
+package io.github.pgagala.gitsynchronizer;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import io.github.pgagala.gitsynchronizer.metrics.LatencySnapshot;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.String.format;
+
+/**
+ * End-to-end benchmark of synchronization pipeline: real {@link FileWatcher}, {@link FileSynchronizer} and {@link GitService}
+ * synchronize watched folder into bare repository on local file system, for each combination of given git backends and commit modes.
+ * Files of watched folder are rewritten by synthetic churn at given rate, in bursts of given size (burst of one write is steady rate).
+ * When churn stops, pipeline is given time to commit and push remaining changes.
+ * <p>
+ * Latencies are taken from {@link Metrics}: from the time when the oldest event of committed (or pushed) file changes was noticed
+ * by file watcher till their commit (or push). So there is one latency per commit (or push) - the worst one of its events.
+ * Folders are created in java.io.tmpdir (run with -Djava.io.tmpdir=... to benchmark other file system).
+ * <p>
+ * Run via: {@code ./gradlew pipelineBenchmark -PpipelineBenchmarkArgs="--gitBackends LOCAL_GIT,JGIT --writesPerSecond 500"}
+ *
+ * @author Paweł Gągała
+ */
+public class PipelineBenchmark {
+
+    static final String LOCAL_GIT = "LOCAL_GIT";
+    private static final GitBranch BRANCH = GitBranch.DEFAULT_BRANCH;
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration DRAIN_POLL_INTERVAL = Duration.ofMillis(100);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(30);
+    private static final int KILOBYTE = 1024;
+    private static final int HISTOGRAM_BAR_WIDTH = 50;
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        JCommander cmd = JCommander.newBuilder()
+            .addObject(options)
+            .programName("pipelineBenchmark")
+            .build();
+        cmd.parse(args);
+        if (options.help) {
+            cmd.usage();
+            return;
+        }
+        for (String gitBackend : options.gitBackends) {
+            for (String commitMode : options.commitModes) {
+                if (CommitMode.valueOf(commitMode) == CommitMode.FAST_IMPORT && GitBackendType.JGIT.name().equals(gitBackend)) {
+                    System.out.printf("%s backend, %s commit mode: not supported%n%n", gitBackend, commitMode);
+                    continue;
+                }
+                System.out.println(new Scenario(options, gitBackend, CommitMode.valueOf(commitMode)).run());
+            }
+        }
+    }
+
+    static class Options {
+        @Parameter(names = "--help", help = true, description = "Displaying help description")
+        boolean help;
+
+        @Parameter(names = "--gitBackends", description = "Git backends (LOCAL_GIT - git installed on local machine, JGIT, DOCKER, DOCKER_EXEC)")
+        List<String> gitBackends = List.of(LOCAL_GIT, GitBackendType.JGIT.name());
+
+        @Parameter(names = "--commitModes", description = "Commit modes (WORKING_TREE, FAST_IMPORT, OBJECT_STORE)")
+        List<String> commitModes = List.of(CommitMode.WORKING_TREE.name(), CommitMode.FAST_IMPORT.name(), CommitMode.OBJECT_STORE.name());
+
+        @Parameter(names = "--files", description = "Amount of files in watched folder")
+        int files = 1000;
+
+        @Parameter(names = "--fileSizeInKilobytes", description = "Size of each file")
+        int fileSizeInKilobytes = 4;
+
+        @Parameter(names = "--writesPerSecond", description = "Rate of rewriting randomly chosen files")
+        int writesPerSecond = 100;
+
+        @Parameter(names = "--burstSize", description = "Amount of writes made at once (bursts are spread evenly, so that rate of writes is kept)")
+        int burstSize = 1;
+
+        @Parameter(names = "--durationInSeconds", description = "Duration of churn")
+        int durationInSeconds = 30;
+
+        @Parameter(names = "--quietPeriodInMillis", description = "Quiet period of coalescing window")
+        long quietPeriodInMillis = 0;
+
+        @Parameter(names = "--maxLatencyInMillis", description = "Max latency of coalescing window")
+        long maxLatencyInMillis = 0;
+
+        CoalescingWindow coalescingWindow() {
+            return new CoalescingWindow(Duration.ofMillis(quietPeriodInMillis), Duration.ofMillis(maxLatencyInMillis));
+        }
+    }
+
+    private static class Scenario {
+
+        private final Options options;
+        private final String gitBackend;
+        private final CommitMode commitMode;
+        private final Random random;
+
+        private Scenario(Options options, String gitBackend, CommitMode commitMode) {
+            this.options = options;
+            this.gitBackend = gitBackend;
+            this.commitMode = commitMode;
+            this.random = new Random(options.files);
+        }
+
+        private String run() throws IOException, InterruptedException {
+            File watchedFolder = Files.createTempDirectory("pipelineBenchmarkWatched").toFile();
+            File repository = Files.createTempDirectory("pipelineBenchmarkRepository").toFile();
+            File remote = Files.createTempDirectory("pipelineBenchmarkRemote").toFile();
+            try {
+                Response remoteInit = new ProcessExecutor(remote).execute(List.of("git", "init", "--bare", "--quiet"), "git init --bare");
+                if (remoteInit.isFailure()) {
+                    throw new IllegalStateException("Git has to be installed to run benchmark: " + remoteInit.result());
+                }
+                List<File> files = createFiles(watchedFolder);
+                GitServerRemote serverRemote = new GitServerRemote("file://" + remote.getAbsolutePath());
+                GitService gitService = new GitService(serverRemote, new GitRepositoryLocal(repository), BRANCH,
+                    gitBackend(repository, serverRemote), commitMode);
+                try {
+                    return run(gitService, new FileManager(repository), watchedFolder, files);
+                } finally {
+                    gitService.stop();
+                }
+            } finally {
+                FileUtils.deleteQuietly(watchedFolder);
+                FileUtils.deleteQuietly(repository);
+                FileUtils.deleteQuietly(remote);
+            }
+        }
+
+        private GitBackend gitBackend(File repository, GitServerRemote serverRemote) throws InterruptedException {
+            if (gitBackend.equals(LOCAL_GIT)) {
+                return new LocalCommandLineGitBackend(repository);
+            }
+            GitBackendType gitBackendType = GitBackendType.valueOf(gitBackend);
+            if (gitBackendType.requiresDocker()) {
+                Docker.pullDockerGitImageOrThrowException();
+            }
+            return gitBackendType.create(new GitRepositoryLocal(repository), serverRemote, Optional.empty());
+        }
+
+        /**
+         * Files of watched folder are synchronized before file watcher is started, so that only churn is measured.
+         */
+        private String run(GitService gitService, FileManager fileManager, File watchedFolder, List<File> files)
+            throws IOException, InterruptedException {
+            gitService.createRepository();
+            List<FileChange> createdFiles = new ArrayList<>(files.size());
+            files.forEach(file -> createdFiles.add(FileCreated.of(file)));
+            FileChanges initialFileChanges = new FileChanges(createdFiles);
+            if (!gitService.bypassesWorkingTree()) {
+                fileManager.copy(initialFileChanges.newOrModifiedFilesByName());
+            }
+            Response initialCommit = gitService.commitChanges(initialFileChanges);
+            if (initialCommit.isFailure() || !gitService.awaitPushed(DRAIN_TIMEOUT)) {
+                throw new IllegalStateException("Unsuccessful synchronization of initial files: " + initialCommit.result());
+            }
+
+            Metrics metrics = Metrics.enable();
+            FileWatcher fileWatcher = new FileWatcher(FileWatcher.defaultWatchShards(1), List.of(watchedFolder.toPath()),
+                IgnoredFiles.intermediateIgnoredFiles(), false);
+            FileSynchronizer fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager, options.coalescingWindow());
+            try {
+                fileWatcher.reconcileInitialFileChanges(fileManager::changedFiles,
+                    gitService.bypassesWorkingTree() ? FileWatcher.ChangedFilesSelector.ALL_FILES : fileManager::changedFiles);
+                fileWatcher.run();
+                fileSynchronizer.run();
+                long start = System.nanoTime();
+                long writes = churn(files, start);
+                long churnEnd = System.nanoTime();
+                long lastCommit = drain(metrics, gitService, churnEnd);
+                return report(metrics, writes, churnEnd - start, lastCommit - start);
+            } finally {
+                fileSynchronizer.stop(STOP_TIMEOUT);
+                fileWatcher.stop();
+                Metrics.disable();
+            }
+        }
+
+        private List<File> createFiles(File watchedFolder) throws IOException {
+            List<File> files = new ArrayList<>(options.files);
+            byte[] content = new byte[options.fileSizeInKilobytes * KILOBYTE];
+            for (int i = 0; i < options.files; i++) {
+                File file = new File(watchedFolder, "file-" + i);
+                random.nextBytes(content);
+                Files.write(file.toPath(), content);
+                files.add(file);
+            }
+            return files;
+        }
+
+        /**
+         * Bursts are started at fixed rate counted from start (not from the end of previous burst), so that slow writes
+         * don't lower rate of writes.
+         *
+         * @return amount of writes
+         */
+        private long churn(List<File> files, long start) throws IOException {
+            long burstInterval = TimeUnit.SECONDS.toNanos(1) * options.burstSize / options.writesPerSecond;
+            long end = start + TimeUnit.SECONDS.toNanos(options.durationInSeconds);
+            byte[] content = new byte[options.fileSizeInKilobytes * KILOBYTE];
+            long writes = 0;
+            for (long burstStart = start; burstStart < end; burstStart += burstInterval) {
+                LockSupport.parkNanos(burstStart - System.nanoTime());
+                for (int i = 0; i < options.burstSize; i++) {
+                    random.nextBytes(content);
+                    Files.write(files.get(random.nextInt(files.size())).toPath(), content);
+                    writes++;
+                }
+            }
+            return writes;
+        }
+
+        /**
+         * Changes are treated as synchronized once queue of file watcher is empty, amount of commits doesn't grow longer than
+         * max latency of coalescing window (plus one second) and all commits are pushed.
+         *
+         * @return time when the last commit was noticed
+         */
+        private long drain(Metrics metrics, GitService gitService, long churnEnd) throws InterruptedException {
+            long stablePeriod = options.coalescingWindow().getMaxLatency().plusSeconds(1).toNanos();
+            long deadline = churnEnd + DRAIN_TIMEOUT.toNanos();
+            long commits = metrics.getEventToCommitLatency().getCount();
+            long lastCommit = churnEnd;
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(DRAIN_POLL_INTERVAL.toMillis());
+                long now = System.nanoTime();
+                long currentCommits = metrics.getEventToCommitLatency().getCount();
+                if (currentCommits != commits) {
+                    commits = currentCommits;
+                    lastCommit = now;
+                } else if (metrics.getQueueDepth() == 0 && now - lastCommit >= stablePeriod && gitService.awaitPushed(DRAIN_TIMEOUT)) {
+                    return lastCommit;
+                }
+            }
+            throw new IllegalStateException(format("Changes weren't synchronized within %d s after churn", DRAIN_TIMEOUT.toSeconds()));
+        }
+
+        private String report(Metrics metrics, long writes, long churnNanos, long synchronizationNanos) {
+            LatencySnapshot commitLatency = metrics.getEventToCommitLatency();
+            LatencySnapshot pushLatency = metrics.getEventToPushLatency();
+            StringBuilder report = new StringBuilder();
+            report.append(format("%s backend, %s commit mode%n", gitBackend, commitMode));
+            report.append(format("  churn: %d writes of %d KB files (out of %d) in %.1f s (%.1f/s) in bursts of %d%n",
+                writes, options.fileSizeInKilobytes, options.files, seconds(churnNanos), writes / seconds(churnNanos), options.burstSize));
+            report.append(format("  synchronized: %d watch events, %d commits (%.1f/s), %d pushes (%.1f/s) in %.1f s%n",
+                metrics.getEventCounts().values().stream().mapToLong(Long::longValue).sum(),
+                commitLatency.getCount(), commitLatency.getCount() / seconds(synchronizationNanos),
+                pushLatency.getCount(), pushLatency.getCount() / seconds(synchronizationNanos), seconds(synchronizationNanos)));
+            appendLatency(report, "event to commit", commitLatency, metrics.eventToCommitDistribution());
+            appendLatency(report, "event to push", pushLatency, metrics.eventToPushDistribution());
+            if (!metrics.getCommands().isEmpty()) {
+                report.append(format("  commands:%n"));
+            }
+            metrics.getCommands().forEach((description, command) -> report.append(format(
+                "    %-30s executions: %6d, failures: %d, p50: %8.2f ms, p99: %8.2f ms%n", description, command.getExecutions(),
+                command.getFailures(), command.getDurations().getP50Millis(), command.getDurations().getP99Millis())));
+            return report.toString();
+        }
+
+        private static void appendLatency(StringBuilder report, String name, LatencySnapshot latency, SortedMap<Double, Long> distribution) {
+            report.append(format("  %s latency: mean: %.2f ms, p50: %.2f ms, p90: %.2f ms, p99: %.2f ms, max: %.2f ms%n",
+                name, latency.getMeanMillis(), latency.getP50Millis(), latency.getP90Millis(), latency.getP99Millis(), latency.getMaxMillis()));
+            long maxCount = distribution.values().stream().mapToLong(Long::longValue).max().orElse(1);
+            distribution.forEach((upperBoundMillis, count) -> report.append(format("    <= %10.2f ms %8d %s%n", upperBoundMillis, count,
+                "#".repeat((int) Math.max(1, count * HISTOGRAM_BAR_WIDTH / maxCount)))));
+        }
+
+        private static double seconds(long nanos) {
+            return (double) nanos / TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.DirectoryTreeWalker.DirectoryTree;
+import io.github.pgagala.gitsynchronizer.WatchShard.WatchedFolder;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recursive watching of tree with 100k files in 1000 folders (created in java.io.tmpdir):
+ * <ul>
+ *     <li>walking tree with given parallelism</li>
+ *     <li>subscribing tree to watch service (walking it, registering all its folders and collecting initialized files)</li>
+ *     <li>logging batch of 100 watch events from nested folder and taking them as file changes (it shouldn't depend on size of tree)</li>
+ * </ul>
+ *
+ * @author Paweł Gągała
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RecursiveWatchBenchmark {
+
+    private static final int TOP_FOLDERS = 100;
+    private static final int SUBFOLDERS = 10;
+    private static final int FILES_PER_FOLDER = 100;
+    private static final int EVENTS = 100;
+
+    @Param({"1", "4"})
+    int walkParallelism;
+
+    File root;
+    IgnoredFiles ignoredFiles = IgnoredFiles.from(List.of());
+    DirectoryTreeWalker directoryTreeWalker;
+    FileWatcher fileWatcher;
+    WatchService watchService;
+    WatchedFolder nestedFolder;
+    List<WatchEvent<?>> nestedFolderEvents;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("recursiveWatchBenchmark").toFile();
+        for (int i = 0; i < TOP_FOLDERS; i++) {
+            for (int j = 0; j < SUBFOLDERS; j++) {
+                File folder = new File(root, "folder" + i + "/subfolder" + j);
+                Files.createDirectories(folder.toPath());
+                for (int k = 0; k < FILES_PER_FOLDER; k++) {
+                    Files.writeString(new File(folder, "file" + k).toPath(), "content " + k);
+                }
+            }
+        }
+        directoryTreeWalker = new DirectoryTreeWalker(walkParallelism, ignoredFiles);
+        watchService = FileSystems.getDefault().newWatchService();
+        fileWatcher = new FileWatcher(List.of(watchService), List.of(), f -> List.of(), ignoredFiles, true);
+        nestedFolder = new WatchedFolder(new File(root, "folder0/subfolder0").toPath(), "folder0/subfolder0");
+        nestedFolderEvents = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            nestedFolderEvents.add(modification(Path.of("file" + (i % FILES_PER_FOLDER))));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        watchService.close();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public DirectoryTree walk() {
+        return directoryTreeWalker.walk(root.toPath(), "");
+    }
+
+    @Benchmark
+    public FileChanges subscribe() throws IOException, InterruptedException {
+        try (WatchService subscribingWatchService = FileSystems.getDefault().newWatchService()) {
+            return new FileWatcher(List.of(subscribingWatchService), List.of(root.toPath()), f -> List.of(), ignoredFiles, true)
+                .occurredFileChanges();
+        }
+    }
+
+    @Benchmark
+    public FileChanges nestedFolderEvents() throws InterruptedException {
+        fileWatcher.logFileEvents(nestedFolderEvents, nestedFolder, fileWatcher.watchShards().get(0), System.nanoTime());
+        return fileWatcher.occurredFileChanges();
+    }
+
+    private static WatchEvent<Path> modification(Path fileName) {
+        return new WatchEvent<>() {
+            @Override
+            public Kind<Path> kind() {
+                return StandardWatchEventKinds.ENTRY_MODIFY;
+            }
+
+            @Override
+            public int count() {
+                return 1;
+            }
+
+            @Override
+            public Path context() {
+                return fileName;
+            }
+        };
+    }
+}
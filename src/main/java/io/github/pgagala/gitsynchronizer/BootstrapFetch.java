@@ -0,0 +1,36 @@
+package io.github.pgagala.gitsynchronizer;
+
+import java.util.OptionalInt;
+
+/**
+ * Ways of fetching content of remote repository into newly created local repository. Synchronization needs only the latest
+ * commit of remote branch (new commits are made on top of it), so that the rest of backup history doesn't have to be fetched.
+ *
+ * @author Paweł Gągała
+ */
+enum BootstrapFetch {
+
+    /**
+     * Whole history of remote branch is fetched.
+     */
+    FULL(OptionalInt.empty()),
+
+    /**
+     * Only the latest commit of remote branch (with its tree) is fetched, so that bootstrap time doesn't depend on length
+     * of remote history. Local repository is shallow, which doesn't prevent pushing new commits.
+     */
+    SHALLOW(OptionalInt.of(1));
+
+    private final OptionalInt depth;
+
+    BootstrapFetch(OptionalInt depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * @return amount of the latest commits which are fetched or empty if whole history is fetched
+     */
+    OptionalInt depth() {
+        return depth;
+    }
+}
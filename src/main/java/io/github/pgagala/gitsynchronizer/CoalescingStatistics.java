@@ -0,0 +1,49 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of how many raw file events were absorbed by synchronized file changes.
+ *
+ * @author Paweł Gągała
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class CoalescingStatistics {
+
+    LongAdder synchronizations = new LongAdder();
+    LongAdder rawEvents = new LongAdder();
+    AtomicLong maxRawEventsPerSynchronization = new AtomicLong();
+
+    void record(FileChanges fileChanges) {
+        synchronizations.increment();
+        rawEvents.add(fileChanges.rawEventsCount());
+        maxRawEventsPerSynchronization.accumulateAndGet(fileChanges.rawEventsCount(), Math::max);
+    }
+
+    long synchronizations() {
+        return synchronizations.sum();
+    }
+
+    long rawEvents() {
+        return rawEvents.sum();
+    }
+
+    long maxRawEventsPerSynchronization() {
+        return maxRawEventsPerSynchronization.get();
+    }
+
+    double averageRawEventsPerSynchronization() {
+        long count = synchronizations();
+        return count == 0 ? 0 : (double) rawEvents() / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("synchronizations: %d, raw events: %d, average raw events per synchronization: %.2f, max raw events per synchronization: %d",
+            synchronizations(), rawEvents(), averageRawEventsPerSynchronization(), maxRawEventsPerSynchronization());
+    }
+}
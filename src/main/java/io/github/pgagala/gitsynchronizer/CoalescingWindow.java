@@ -0,0 +1,37 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Time window in which file changes are gathered into one commit. Window is extended as long as new file changes keep arriving
+ * within quiet period, but it never lasts longer than max latency counted from the first file change.
+ *
+ * @author Paweł Gągała
+ */
+@Value
+class CoalescingWindow {
+
+    /**
+     * File changes are committed as soon as they are noticed.
+     */
+    public static final CoalescingWindow NONE = new CoalescingWindow(Duration.ZERO, Duration.ZERO);
+    /**
+     * Unlike {@link #NONE}, which was how file changes were committed before coalescing was introduced, this delays each commit
+     * by at least quiet period.
+     */
+    public static final CoalescingWindow DEFAULT = new CoalescingWindow(Duration.ofMillis(300), Duration.ofSeconds(5));
+
+    Duration quietPeriod;
+    Duration maxLatency;
+
+    CoalescingWindow(Duration quietPeriod, Duration maxLatency) {
+        if (quietPeriod.isNegative() || maxLatency.compareTo(quietPeriod) < 0) {
+            throw new IllegalArgumentException(
+                String.format("Quiet period: %s can't be negative or longer than max latency: %s", quietPeriod, maxLatency));
+        }
+        this.quietPeriod = quietPeriod;
+        this.maxLatency = maxLatency;
+    }
+}
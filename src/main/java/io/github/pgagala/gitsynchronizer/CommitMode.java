@@ -0,0 +1,34 @@
+package io.github.pgagala.gitsynchronizer;
+
+/**
+ * Ways of committing file changes into local repository.
+ *
+ * @author Paweł Gągała
+ */
+enum CommitMode {
+
+    /**
+     * Changed files are copied into working tree of local repository (see {@link FileManager}), staged and committed.
+     */
+    WORKING_TREE,
+
+    /**
+     * Content of changed files is streamed from watched paths into one long-lived git fast-import process
+     * (see {@link FastImportCommitter}). Neither working tree nor index is updated until shutdown. Requires git command line backend.
+     */
+    FAST_IMPORT,
+
+    /**
+     * Blobs of changed files are written from watched paths straight into object database of local repository and commit is created
+     * from tree built in memory (see {@link ObjectStoreCommitter}). Neither working tree nor index is updated until shutdown.
+     * Works with every git backend.
+     */
+    OBJECT_STORE;
+
+    /**
+     * @return true if changed files are committed without copying them into working tree (see {@link DirectCommitter})
+     */
+    boolean bypassesWorkingTree() {
+        return this != WORKING_TREE;
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static java.lang.String.format;
+
+/**
+ * Ways of copying regular file into local repository. Each strategy except {@link #STREAM} has fallback strategy
+ * used if it isn't supported (e.g. file system doesn't support reflinks or source and repository are on different file systems),
+ * which is reported by {@link UnsupportedCopyStrategyException}. Other errors concern only copied file.
+ *
+ * @author Paweł Gągała
+ */
+enum CopyStrategy {
+
+    /**
+     * Copy via commons-io, which delegates to {@link Files#copy(java.nio.file.Path, java.nio.file.Path, java.nio.file.CopyOption...)}.
+     */
+    STREAM {
+        @Override
+        void copyFile(File source, File target) throws IOException {
+            FileUtils.copyFile(source, target, true);
+        }
+
+        @Override
+        Optional<CopyStrategy> fallback() {
+            return Optional.empty();
+        }
+    },
+
+    /**
+     * Kernel-side copy via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+     */
+    TRANSFER_TO {
+        @Override
+        void copyFile(File source, File target) throws IOException {
+            try (FileChannel sourceChannel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+                 FileChannel targetChannel = FileChannel.open(target.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long size = sourceChannel.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = sourceChannel.transferTo(position, size - position, targetChannel);
+                    if (transferred == 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+                if (position != sourceChannel.size()) {
+                    throw new IOException(format("File %s changed its size while copying (copied %d of %d bytes)",
+                        source.getAbsolutePath(), position, sourceChannel.size()));
+                }
+            } catch (UnsupportedOperationException exc) {
+                throw new UnsupportedCopyStrategyException("Transferring file channels isn't supported", exc);
+            }
+            Files.setLastModifiedTime(target.toPath(), Files.getLastModifiedTime(source.toPath()));
+        }
+
+        @Override
+        Optional<CopyStrategy> fallback() {
+            return Optional.of(STREAM);
+        }
+    },
+
+    /**
+     * Copy-on-write clone of file (btrfs, xfs, apfs and so on) made by cp tool. Data blocks are shared until any of files is modified.
+     * Lack of cp tool means that strategy isn't supported as well.
+     */
+    REFLINK {
+        @Override
+        void copyFile(File source, File target) throws IOException {
+            List<String> command = System.getProperty("os.name").startsWith("Mac") ?
+                List.of("cp", "-c", "-p", source.getAbsolutePath(), target.getAbsolutePath()) :
+                List.of("cp", "--reflink=always", "--preserve=timestamps", source.getAbsolutePath(), target.getAbsolutePath());
+            try {
+                Response response = new ProcessExecutor(target.getParentFile()).execute(command, "reflink copying");
+                if (response.isFailure()) {
+                    throw unsupportedReason(response.result()) || response.result().contains("Cannot run program") ?
+                        new UnsupportedCopyStrategyException("Reflink copying isn't supported: " + response.result()) :
+                        new IOException("Unsuccessful reflink copying: " + response.result());
+                }
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reflink copying interrupted");
+            }
+        }
+
+        @Override
+        Optional<CopyStrategy> fallback() {
+            return Optional.of(STREAM);
+        }
+    },
+
+    /**
+     * Hard link to source file. Possible only if source and repository are on the same file system.
+     * <p>
+     * Unsafe: file in repository shares inode with watched file, so that anything writing repository file in place
+     * (e.g. git checkout or reset) changes watched file as well.
+     */
+    HARDLINK {
+        @Override
+        void copyFile(File source, File target) throws IOException {
+            Files.deleteIfExists(target.toPath());
+            try {
+                Files.createLink(target.toPath(), source.toPath());
+            } catch (UnsupportedOperationException exc) {
+                throw new UnsupportedCopyStrategyException("Hard links aren't supported", exc);
+            } catch (FileSystemException exc) {
+                if (unsupportedReason(exc.getReason())) {
+                    throw new UnsupportedCopyStrategyException("Hard links aren't supported: " + exc.getReason(), exc);
+                }
+                throw exc;
+            }
+        }
+
+        @Override
+        Optional<CopyStrategy> fallback() {
+            return Optional.of(STREAM);
+        }
+    };
+
+    /**
+     * Copies source file to target file (replacing it if it exists) preserving modification time.
+     *
+     * @throws UnsupportedCopyStrategyException if strategy isn't supported for given source and target
+     * @throws IOException                       if copying failed
+     */
+    abstract void copyFile(File source, File target) throws IOException;
+
+    abstract Optional<CopyStrategy> fallback();
+
+    /**
+     * Errors meaning that operation can't succeed for any file: EOPNOTSUPP/ENOTSUP, ENOTTY (clone ioctl unknown to file system)
+     * or EXDEV (source and target on different file systems).
+     */
+    private static boolean unsupportedReason(String reason) {
+        if (reason == null) {
+            return false;
+        }
+        String lowerCaseReason = reason.toLowerCase(Locale.ROOT);
+        return lowerCaseReason.contains("not supported") ||
+            lowerCaseReason.contains("inappropriate ioctl") ||
+            lowerCaseReason.contains("cross-device");
+    }
+}
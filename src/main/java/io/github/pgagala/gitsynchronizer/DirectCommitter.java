@@ -0,0 +1,27 @@
+package io.github.pgagala.gitsynchronizer;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Commits file changes directly into object database of local repository. Content of changed files is read from watched paths,
+ * so that files aren't copied into working tree and index isn't scanned. Branch is moved to created commit, while working tree
+ * and index stay as they were (see {@link GitBackend#resetToHead()}).
+ *
+ * @author Paweł Gągała
+ */
+interface DirectCommitter {
+
+    /**
+     * Files which can't be read (e.g. they were deleted meanwhile) are skipped, they are committed with their next change.
+     *
+     * @return id of created commit or empty if tree of branch wouldn't change
+     */
+    Optional<String> commit(TreeChanges changes, String message, String authorName, String authorEmail) throws IOException,
+        InterruptedException;
+
+    /**
+     * Releases resources held by committer. All commits made till now are already in repository.
+     */
+    void close() throws InterruptedException;
+}
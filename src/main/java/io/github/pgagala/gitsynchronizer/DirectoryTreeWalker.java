@@ -0,0 +1,132 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Walks directory tree listing each directory in separate fork/join task, so that big trees are walked in parallel.
+ * Ignored files and directories (with whole their subtree) are skipped. Symbolic links to directories aren't followed.
+ * Each directory can be visited before it is listed (e.g. to start watching it, so that no file created during walk is missed).
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class DirectoryTreeWalker {
+
+    ForkJoinPool pool;
+    IgnoredFiles ignoredFiles;
+
+    DirectoryTreeWalker(int parallelism, IgnoredFiles ignoredFiles) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.ignoredFiles = ignoredFiles;
+    }
+
+    DirectoryTreeWalker(IgnoredFiles ignoredFiles) {
+        this(Runtime.getRuntime().availableProcessors(), ignoredFiles);
+    }
+
+    /**
+     * @param relativePath path of root directory in synchronized repository ('/' separated, empty for repository itself)
+     */
+    DirectoryTree walk(Path root, String relativePath) {
+        return walk(root, relativePath, directory -> {
+        });
+    }
+
+    /**
+     * @param beforeListing invoked (possibly concurrently) for each directory before it is listed. Runtime exception thrown
+     *                      by it stops the walk and is rethrown
+     */
+    DirectoryTree walk(Path root, String relativePath, Consumer<WalkedPath> beforeListing) {
+        Queue<WalkedPath> directories = new ConcurrentLinkedQueue<>();
+        Queue<WalkedPath> files = new ConcurrentLinkedQueue<>();
+        pool.invoke(new DirectoryWalk(root, relativePath, directories, files, beforeListing));
+        return new DirectoryTree(List.copyOf(directories), List.copyOf(files));
+    }
+
+    static String relativePath(String parentRelativePath, String name) {
+        return parentRelativePath.isEmpty() ? name : parentRelativePath + "/" + name;
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private class DirectoryWalk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        Path directory;
+        String relativePath;
+        Queue<WalkedPath> directories;
+        Queue<WalkedPath> files;
+        Consumer<WalkedPath> beforeListing;
+
+        DirectoryWalk(Path directory, String relativePath, Queue<WalkedPath> directories, Queue<WalkedPath> files,
+                      Consumer<WalkedPath> beforeListing) {
+            this.directory = directory;
+            this.relativePath = relativePath;
+            this.directories = directories;
+            this.files = files;
+            this.beforeListing = beforeListing;
+        }
+
+        @Override
+        protected void compute() {
+            WalkedPath walkedDirectory = new WalkedPath(directory, relativePath);
+            beforeListing.accept(walkedDirectory);
+            directories.add(walkedDirectory);
+            List<DirectoryWalk> subdirectoryWalks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    File file = entry.toFile();
+                    if (ignoredFiles.shouldBeIgnored(file)) {
+                        continue;
+                    }
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    String entryRelativePath = relativePath(relativePath, file.getName());
+                    if (attributes.isDirectory()) {
+                        subdirectoryWalks.add(new DirectoryWalk(entry, entryRelativePath, directories, files, beforeListing));
+                    } else if (attributes.isRegularFile() || file.isFile()) {
+                        files.add(new WalkedPath(entry, entryRelativePath));
+                    }
+                }
+            } catch (IOException exc) {
+                log.warn("Unsuccessful listing directory: {}. Its files won't be synchronized until they change.", directory, exc);
+            }
+            invokeAll(subdirectoryWalks);
+        }
+    }
+
+    /**
+     * Directories (including root) and files found in walked tree.
+     */
+    @Value
+    static class DirectoryTree {
+        List<WalkedPath> directories;
+        List<WalkedPath> files;
+    }
+
+    /**
+     * Path with its path in synchronized repository.
+     */
+    @Value
+    static class WalkedPath {
+        Path path;
+        String relativePath;
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.WatchShard.WatchedFolder;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watched folders which file events were lost, so that their file changes have to be found by rescan of folder instead:
+ * either watch service overflowed ({@link StandardWatchEventKinds#OVERFLOW}) or log of file events was full (see {@link FileEventLog}).
+ * Dirty folder is one marker (its watch key) no matter how many of its events were lost, so that memory doesn't grow
+ * during storm of events. Folder created in recursively watched folder is already watched when its files are logged,
+ * so that if they don't fit into log, whole created folder is marked dirty instead and its tree is listed by rescan.
+ * <p>
+ * Names of files directly in watched folders are kept up to date with their file events, so that rescan finds deleted files
+ * as well. They take memory proportional to amount of watched files (not to amount of events).
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class DirtyFolders {
+
+    Map<WatchKey, WatchShard> dirtyKeys = new ConcurrentHashMap<>();
+    Set<WatchedFolder> dirtyCreatedFolders = ConcurrentHashMap.newKeySet();
+    Map<Path, Set<String>> fileNames = new ConcurrentHashMap<>();
+    IgnoredFiles ignoredFiles;
+
+    /**
+     * Starts tracking names of files of watched folder.
+     */
+    void watched(Path folder, Collection<String> names) {
+        Set<String> folderFileNames = fileNames.computeIfAbsent(folder, f -> ConcurrentHashMap.newKeySet());
+        folderFileNames.addAll(names);
+    }
+
+    boolean watched(Path folder) {
+        return fileNames.containsKey(folder);
+    }
+
+    void unwatched(Path folder) {
+        fileNames.remove(folder);
+    }
+
+    void fileExists(Path folder, String name) {
+        Set<String> folderFileNames = fileNames.get(folder);
+        if (folderFileNames != null) {
+            folderFileNames.add(name);
+        }
+    }
+
+    void fileDeleted(Path folder, String name) {
+        Set<String> folderFileNames = fileNames.get(folder);
+        if (folderFileNames != null) {
+            folderFileNames.remove(name);
+        }
+    }
+
+    /**
+     * @param reason why events of watched key were lost
+     * @return true if key wasn't dirty yet
+     */
+    boolean markDirty(WatchKey key, WatchShard watchShard, String reason) {
+        boolean marked = dirtyKeys.putIfAbsent(key, watchShard) == null;
+        if (marked) {
+            log.warn("File events of {} were lost ({}). Its files will be rescanned.", key.watchable(), reason);
+        }
+        return marked;
+    }
+
+    /**
+     * @return true if created folder wasn't dirty yet
+     */
+    boolean markCreatedFolderDirty(WatchedFolder folder) {
+        boolean marked = dirtyCreatedFolders.add(folder);
+        if (marked) {
+            log.warn("File events of created folder {} didn't fit into log. Its files will be rescanned.", folder.getPath());
+        }
+        return marked;
+    }
+
+    boolean dirty(WatchKey key) {
+        return !dirtyKeys.isEmpty() && dirtyKeys.containsKey(key);
+    }
+
+    boolean anyDirty() {
+        return !dirtyKeys.isEmpty() || !dirtyCreatedFolders.isEmpty();
+    }
+
+    /**
+     * Removes markers of dirty keys, so that events occurring during their rescan are logged again.
+     *
+     * @return dirty keys with shards watching them
+     */
+    Map<WatchKey, WatchShard> takeDirty() {
+        Map<WatchKey, WatchShard> taken = new LinkedHashMap<>();
+        for (WatchKey key : dirtyKeys.keySet()) {
+            WatchShard watchShard = dirtyKeys.remove(key);
+            if (watchShard != null) {
+                taken.put(key, watchShard);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Removes markers of dirty created folders, so that they are rescanned once.
+     */
+    List<WatchedFolder> takeDirtyCreatedFolders() {
+        List<WatchedFolder> taken = new ArrayList<>();
+        for (WatchedFolder folder : dirtyCreatedFolders) {
+            if (dirtyCreatedFolders.remove(folder)) {
+                taken.add(folder);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Lists watched folder and compares its files with ones known from its previous events (which are replaced by listed ones).
+     * Folder which doesn't exist anymore (or can't be listed) has all its files deleted.
+     */
+    FolderScan rescan(WatchedFolder folder) {
+        Set<String> knownNames = fileNames.computeIfAbsent(folder.getPath(), f -> ConcurrentHashMap.newKeySet());
+        Map<String, File> files = new LinkedHashMap<>();
+        List<WatchedFolder> subfolders = new ArrayList<>();
+        File[] entries = folder.getPath().toFile().listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                if (ignoredFiles.shouldBeIgnored(entry)) {
+                    continue;
+                }
+                String relativePath = DirectoryTreeWalker.relativePath(folder.getRelativePath(), entry.getName());
+                if (entry.isFile()) {
+                    files.put(relativePath, entry);
+                } else if (entry.isDirectory()) {
+                    subfolders.add(new WatchedFolder(entry.toPath(), relativePath));
+                }
+            }
+        }
+        Set<String> listedNames = new HashSet<>();
+        files.values().forEach(file -> listedNames.add(file.getName()));
+        Map<String, File> deletedFiles = new LinkedHashMap<>();
+        for (String knownName : knownNames) {
+            if (!listedNames.contains(knownName)) {
+                File file = new File(folder.getPath().toFile(), knownName);
+                deletedFiles.put(DirectoryTreeWalker.relativePath(folder.getRelativePath(), knownName), file);
+            }
+        }
+        knownNames.retainAll(listedNames);
+        knownNames.addAll(listedNames);
+        return new FolderScan(files, deletedFiles, subfolders);
+    }
+
+    /**
+     * Files found in rescanned folder (by their paths in repository), files which were known but weren't found and subfolders.
+     */
+    @Value
+    static class FolderScan {
+        Map<String, File> files;
+        Map<String, File> deletedFiles;
+        List<WatchedFolder> subfolders;
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.pgagala.gitsynchronizer;
+
+import com.google.common.hash.Hashing;
+import io.github.pgagala.gitsynchronizer.processexecutor.InteractiveProcess;
+import io.github.pgagala.gitsynchronizer.processexecutor.OutputReader;
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.pgagala.gitsynchronizer.DockerGitBackend.DOCKER;
+
+/**
+ * Runs git commands via docker exec in one long-lived docker container with mounted local repository.
+ * Container is started once (see {@link #start()}) and it is restarted if it turns out that it died.
+ * <p>
+ * Name of container is derived from its configuration (mounted repository, remote and network), so that container left by
+ * previous run of application with the same configuration is reused. Containers are labeled, so that stopped ones left
+ * by any previous run are removed on start.
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class DockerExecGitBackend extends GitCommandLineBackend {
+
+    static final String LABEL = "io.github.pgagala.git-synchronizer";
+    private static final String CONTAINER_NAME_PREFIX = "git-synchronizer-";
+    private static final int CONTAINER_NAME_HASH_LENGTH = 16;
+
+    String containerName;
+    List<String> dockerRunCommand;
+    ProcessExecutor processExecutor;
+
+    DockerExecGitBackend(File gitRepositoryLocalFile, GitServerRemote serverRemote, Optional<String> network) {
+        this(gitRepositoryLocalFile, serverRemote, network, new ProcessExecutor(gitRepositoryLocalFile));
+    }
+
+    DockerExecGitBackend(File gitRepositoryLocalFile, GitServerRemote serverRemote, Optional<String> network,
+                         ProcessExecutor processExecutor) {
+        List<String> containerConfiguration = Stream.of(
+            network.map(n -> List.of("--network", n)).orElse(List.of()),
+            DockerGitBackend.volumes(gitRepositoryLocalFile, serverRemote),
+            DockerGitBackend.SSH_VOLUME)
+            .flatMap(Collection::stream)
+            .collect(Collectors.toUnmodifiableList());
+        this.containerName = containerName(containerConfiguration);
+        this.dockerRunCommand = Stream.of(
+            List.of(DOCKER, "run", "--detach", "--name", containerName,
+                "--label", LABEL + "=" + gitRepositoryLocalFile.getAbsolutePath()),
+            containerConfiguration,
+            List.of("--entrypoint", "tail", Docker.GIT_IMAGE, "-f", "/dev/null"))
+            .flatMap(Collection::stream)
+            .collect(Collectors.toUnmodifiableList());
+        this.processExecutor = processExecutor;
+    }
+
+    private static String containerName(List<String> containerConfiguration) {
+        String hash = Hashing.sha256().hashString(String.join(" ", containerConfiguration), StandardCharsets.UTF_8).toString();
+        return CONTAINER_NAME_PREFIX + hash.substring(0, CONTAINER_NAME_HASH_LENGTH);
+    }
+
+    /**
+     * Running container of the same configuration is reused. Stopped containers (also of other repositories) are removed.
+     */
+    @Override
+    public void start() throws InterruptedException {
+        Response containerState = inspectContainerState();
+        if (isRunning(containerState)) {
+            log.info("Reusing running git container: {}", containerName);
+            return;
+        }
+        removeStaleContainers();
+        if (containerState.isSuccessful()) {
+            removeContainer();
+        }
+        log.info("Starting git container: {}", containerName);
+        Response response = processExecutor.execute(dockerRunCommand, "starting git container");
+        if (response.isFailure()) {
+            throw new IllegalStateException("Cannot start git container. Check if docker is running. Response: " + response.result());
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        log.info("Stopping git container: {}", containerName);
+        removeContainer();
+    }
+
+    boolean isRunning() throws InterruptedException {
+        return isRunning(inspectContainerState());
+    }
+
+    private boolean isRunning(Response containerState) {
+        return containerState.isSuccessful() && containerState.result().trim().equals("true");
+    }
+
+    private Response inspectContainerState() throws InterruptedException {
+        return processExecutor.execute(List.of(DOCKER, "inspect", "--format", "{{.State.Running}}", containerName), "git container health check");
+    }
+
+    private void removeStaleContainers() throws InterruptedException {
+        Response response = processExecutor.execute(List.of(DOCKER, "ps", "--all", "--quiet", "--filter", "label=" + LABEL,
+            "--filter", "status=created", "--filter", "status=exited", "--filter", "status=dead"), "listing stale git containers");
+        if (response.isFailure()) {
+            log.warn("Cannot list stale git containers: {}", response.result());
+            return;
+        }
+        List<String> staleContainers = response.result().lines()
+            .map(String::trim)
+            .filter(id -> !id.isEmpty())
+            .collect(Collectors.toUnmodifiableList());
+        if (staleContainers.isEmpty()) {
+            return;
+        }
+        log.info("Removing stale git containers: {}", staleContainers);
+        List<String> dockerCommand = new ArrayList<>(List.of(DOCKER, "rm", "--force"));
+        dockerCommand.addAll(staleContainers);
+        processExecutor.execute(dockerCommand, "removing stale git containers");
+    }
+
+    private void removeContainer() throws InterruptedException {
+        processExecutor.execute(List.of(DOCKER, "rm", "--force", containerName), "removing git container");
+    }
+
+    @Override
+    Response git(List<String> gitArguments, String description, Optional<Duration> timeout) throws InterruptedException {
+        return repeatedIfNotRunning(() -> exec(gitArguments, description, timeout));
+    }
+
+    @Override
+    Response git(List<String> gitArguments, String description, OutputReader outputReader) throws InterruptedException {
+        return repeatedIfNotRunning(() -> processExecutor.execute(execCommand(gitArguments), description, outputReader));
+    }
+
+    /**
+     * Failed command is repeated once if container wasn't running at time of execution.
+     */
+    private Response repeatedIfNotRunning(Execution execution) throws InterruptedException {
+        Response response = execution.execute();
+        if (response.isFailure() && !isRunning()) {
+            log.warn("Git container {} isn't running. Restarting it...", containerName);
+            start();
+            response = execution.execute();
+        }
+        return response;
+    }
+
+    @Override
+    InteractiveProcess startGit(List<String> gitArguments, String description) throws IOException {
+        List<String> dockerCommand = new ArrayList<>(List.of(DOCKER, "exec", "--interactive", "--workdir", "/git", containerName, "git"));
+        dockerCommand.addAll(gitArguments);
+        return processExecutor.start(dockerCommand, description);
+    }
+
+    /**
+     * Git with timeout is time limited in container as well (see {@link DockerGitBackend#timeLimitedGit(Duration)}).
+     */
+    private Response exec(List<String> gitArguments, String description, Optional<Duration> timeout) throws InterruptedException {
+        if (timeout.isEmpty()) {
+            return processExecutor.execute(execCommand(gitArguments), description);
+        }
+        List<String> dockerCommand = execCommand(DockerGitBackend.timeLimitedGit(timeout.get()), gitArguments);
+        return processExecutor.execute(dockerCommand, description, DockerGitBackend.dockerClientTimeout(timeout.get()));
+    }
+
+    private List<String> execCommand(List<String> gitArguments) {
+        return execCommand(List.of("git"), gitArguments);
+    }
+
+    private List<String> execCommand(List<String> git, List<String> gitArguments) {
+        List<String> dockerCommand = new ArrayList<>(List.of(DOCKER, "exec", "--workdir", "/git", containerName));
+        dockerCommand.addAll(git);
+        dockerCommand.addAll(gitArguments);
+        return dockerCommand;
+    }
+
+    @FunctionalInterface
+    private interface Execution {
+        Response execute() throws InterruptedException;
+    }
+}
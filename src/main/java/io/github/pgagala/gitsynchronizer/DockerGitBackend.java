@@ -0,0 +1,123 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.processexecutor.InteractiveProcess;
+import io.github.pgagala.gitsynchronizer.processexecutor.OutputReader;
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs each git command in a new docker container with mounted local repository.
+ *
+ * @author Paweł Gągała
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class DockerGitBackend extends GitCommandLineBackend {
+
+    static final String DOCKER = "docker";
+    static final List<String> SSH_VOLUME = List.of("-v", Environment.getUserHome() + File.separator + ".ssh:/home/git-user/.ssh");
+    /**
+     * Time limited git gets this long to stop inside container before docker client is killed.
+     */
+    static final Duration CONTAINER_STOP_GRACE = Duration.ofSeconds(10);
+    private static final String FILE_PROTOCOL = "file://";
+    private static final String TIMEOUT = "timeout";
+    private static final List<String> dockerGitInvocationPrefixWithNetwork = List.of(DOCKER, "run", "--rm", "--network");
+    private static final List<String> dockerGitInvocationPrefix = List.of(DOCKER, "run", "--rm");
+    private static final List<String> dockerGitInvocationSuffix = Stream.of(SSH_VOLUME, List.of(Docker.GIT_IMAGE))
+        .flatMap(Collection::stream)
+        .collect(Collectors.toUnmodifiableList());
+
+    List<String> dockerGitInvocationCommand;
+    ProcessExecutor processExecutor;
+
+    static DockerGitBackend of(File gitRepositoryLocalFile, GitServerRemote serverRemote) {
+        return new DockerGitBackend(
+            Stream.of(dockerGitInvocationPrefix, volumes(gitRepositoryLocalFile, serverRemote), dockerGitInvocationSuffix)
+                .flatMap(Collection::stream)
+                .collect(Collectors.toUnmodifiableList()),
+            new ProcessExecutor(gitRepositoryLocalFile));
+    }
+
+    static DockerGitBackend of(File gitRepositoryLocalFile, GitServerRemote serverRemote, String gitServerNetwork) {
+        return new DockerGitBackend(
+            Stream.of(dockerGitInvocationPrefixWithNetwork, List.of(gitServerNetwork), volumes(gitRepositoryLocalFile, serverRemote),
+                dockerGitInvocationSuffix)
+                .flatMap(Collection::stream)
+                .collect(Collectors.toUnmodifiableList()),
+            new ProcessExecutor(gitRepositoryLocalFile));
+    }
+
+    /**
+     * Local repository is mounted under /git. Remote pointing on local filesystem (file://) is mounted under the same path
+     * as on host so that configured remote is reachable from container.
+     */
+    static List<String> volumes(File gitRepositoryLocalFile, GitServerRemote serverRemote) {
+        List<String> volumes = new ArrayList<>(List.of("-v", gitRepositoryLocalFile.getAbsolutePath() + ":/git"));
+        if (serverRemote.getValue().startsWith(FILE_PROTOCOL)) {
+            String remotePath = URI.create(serverRemote.getValue()).getPath();
+            volumes.addAll(List.of("-v", remotePath + ":" + remotePath));
+        }
+        return volumes;
+    }
+
+    /**
+     * Killing docker client doesn't stop git in container (which would keep e.g. .git/index.lock), so git with timeout
+     * is run under timeout command in container and docker client is killed only if git doesn't stop on its own.
+     */
+    static List<String> timeLimitedGit(Duration timeout) {
+        long seconds = Math.max(1, (timeout.toMillis() + 999) / 1000);
+        return List.of(TIMEOUT, String.valueOf(seconds), "git");
+    }
+
+    static Duration dockerClientTimeout(Duration timeout) {
+        return timeout.plus(CONTAINER_STOP_GRACE);
+    }
+
+    @Override
+    Response git(List<String> gitArguments, String description, Optional<Duration> timeout) throws InterruptedException {
+        List<String> dockerCommand = new ArrayList<>(dockerGitInvocationCommand);
+        if (timeout.isEmpty()) {
+            dockerCommand.addAll(gitArguments);
+            return processExecutor.execute(dockerCommand, description);
+        }
+        List<String> timeLimitedGit = timeLimitedGit(timeout.get());
+        dockerCommand.addAll(dockerCommand.size() - 1, List.of("--entrypoint", timeLimitedGit.get(0)));
+        dockerCommand.addAll(timeLimitedGit.subList(1, timeLimitedGit.size()));
+        dockerCommand.addAll(gitArguments);
+        return processExecutor.execute(dockerCommand, description, dockerClientTimeout(timeout.get()));
+    }
+
+    @Override
+    Response git(List<String> gitArguments, String description, OutputReader outputReader) throws InterruptedException {
+        List<String> dockerCommand = new ArrayList<>(dockerGitInvocationCommand);
+        dockerCommand.addAll(gitArguments);
+
+        return processExecutor.execute(dockerCommand, description, outputReader);
+    }
+
+    /**
+     * Container's standard input is kept open (docker run --interactive).
+     */
+    @Override
+    InteractiveProcess startGit(List<String> gitArguments, String description) throws IOException {
+        List<String> dockerCommand = new ArrayList<>(dockerGitInvocationCommand);
+        dockerCommand.add(dockerGitInvocationPrefix.size(), "--interactive");
+        dockerCommand.addAll(gitArguments);
+        return processExecutor.start(dockerCommand, description);
+    }
+}
@@ -0,0 +1,341 @@
+package io.github.pgagala.gitsynchronizer;
+
+import com.google.common.io.BaseEncoding;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
+import io.github.pgagala.gitsynchronizer.processexecutor.InteractiveProcess;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+
+/**
+ * {@link DirectCommitter} streaming file changes into one long-lived git fast-import process (started on the first commit).
+ * Content of each changed file is written as blob straight from watched path and hashed meanwhile, so that files which
+ * content is the same as in branch tree are left out of commit. Commit is made only if tree of branch changes.
+ * After each commit fast-import is asked to checkpoint (write its pack and update branch ref) and the commit is returned
+ * once checkpoint is done, so that it can be pushed right away.
+ * <p>
+ * Each checkpoint writes a new pack, so that repository is garbage collected (git gc --auto) from time to time,
+ * as git commit would do.
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class FastImportCommitter implements DirectCommitter {
+
+    private static final List<String> FAST_IMPORT = List.of("fast-import", "--quiet");
+    private static final Duration FINISH_TIMEOUT = Duration.ofSeconds(30);
+    private static final int COMMITS_PER_GC = 50;
+    private static final String COMMIT_DESCRIPTION = "git fast-import commit";
+    private static final String COMMIT_MARK = ":1";
+    private static final String REGULAR_FILE_MODE = "100644";
+    private static final String EXECUTABLE_FILE_MODE = "100755";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    GitCommandLineBackend gitBackend;
+    GitBranch branch;
+    Map<String, TreeEntry> tree = new HashMap<>();
+    @NonFinal
+    Optional<InteractiveProcess> fastImport = Optional.empty();
+    @NonFinal
+    Optional<String> parent = Optional.empty();
+    @NonFinal
+    int commits;
+
+    FastImportCommitter(GitCommandLineBackend gitBackend, GitBranch branch) {
+        this.gitBackend = gitBackend;
+        this.branch = branch;
+    }
+
+    /**
+     * Commit is recorded in metrics as command (see {@link Metrics#recordCommand(String, long, boolean)}).
+     */
+    @Override
+    public synchronized Optional<String> commit(TreeChanges changes, String message, String authorName, String authorEmail)
+        throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Optional<String> commit = commitChanges(changes, message, authorName, authorEmail);
+            failed = false;
+            return commit;
+        } finally {
+            Metrics.current().recordCommand(COMMIT_DESCRIPTION, System.nanoTime() - start, failed);
+        }
+    }
+
+    private Optional<String> commitChanges(TreeChanges changes, String message, String authorName, String authorEmail)
+        throws IOException, InterruptedException {
+        InteractiveProcess process = fastImport();
+        try {
+            Map<String, TreeEntry> writtenEntries = writeBlobs(process.input(), changes.getWrittenFiles());
+            List<String> removedPaths = changes.getRemovedPaths().stream()
+                .filter(this::inTree)
+                .collect(Collectors.toUnmodifiableList());
+            if (writtenEntries.isEmpty() && removedPaths.isEmpty()) {
+                return Optional.empty();
+            }
+            writeCommit(process.input(), writtenEntries, removedPaths, message, authorName, authorEmail);
+            String commit = awaitCheckpoint(process);
+            removedPaths.forEach(this::removeFromTree);
+            tree.putAll(writtenEntries);
+            parent = Optional.of(commit);
+            collectGarbageIfNeeded();
+            return Optional.of(commit);
+        } catch (IOException exc) {
+            log.error("Unsuccessful streaming commit into git fast-import: {}. Fast-import error output: {}", exc.toString(), process.error());
+            process.kill();
+            fastImport = Optional.empty();
+            throw exc;
+        }
+    }
+
+    /**
+     * Branch tree is (re)loaded whenever fast-import is (re)started, as branch could have been moved meanwhile.
+     * Branch which doesn't exist yet (git for-each-ref prints nothing for it) has empty tree. Tree listing is parsed while
+     * it is streamed, as it grows with amount of files in branch.
+     */
+    private InteractiveProcess fastImport() throws IOException, InterruptedException {
+        if (fastImport.isPresent() && fastImport.get().isAlive()) {
+            return fastImport.get();
+        }
+        parent = output(gitBackend.git(List.of("for-each-ref", "--format=%(objectname)", "refs/heads/" + branch.getValue()),
+            "git for-each-ref"));
+        tree.clear();
+        if (parent.isPresent()) {
+            Response response = gitBackend.git(List.of("ls-tree", "-r", "-z", "--full-tree", parent.get()), "git ls-tree", output -> {
+                tree.clear();
+                tree.putAll(TreeEntry.parse(output));
+            });
+            if (response.isFailure()) {
+                tree.clear();
+                throw new IOException("Unsuccessful reading tree of branch " + branch.getValue() + ": " + response.result());
+            }
+        }
+        fastImport = Optional.of(gitBackend.startGit(FAST_IMPORT, "git fast-import"));
+        log.info("Started git fast-import for branch {} ({} files in its tree)", branch.getValue(), tree.size());
+        return fastImport.get();
+    }
+
+    private Map<String, TreeEntry> writeBlobs(OutputStream input, Map<String, File> files) throws IOException {
+        Map<String, TreeEntry> writtenEntries = new LinkedHashMap<>();
+        for (Map.Entry<String, File> file : files.entrySet()) {
+            InputStream content;
+            long size;
+            try {
+                size = Files.size(file.getValue().toPath());
+                content = Files.newInputStream(file.getValue().toPath());
+            } catch (IOException exc) {
+                log.warn("File: {} couldn't be read. It will be committed with its next change: {}", file.getValue(), exc.toString());
+                continue;
+            }
+            Optional<String> blob;
+            try (content) {
+                blob = writeBlob(input, content, size);
+            }
+            if (blob.isEmpty()) {
+                log.warn("File: {} changed while it was read. It will be committed with its next change.", file.getValue());
+                continue;
+            }
+            TreeEntry current = tree.get(file.getKey());
+            TreeEntry written = new TreeEntry(current != null && current.getMode().equals(EXECUTABLE_FILE_MODE) ?
+                EXECUTABLE_FILE_MODE : REGULAR_FILE_MODE, blob.get());
+            if (!written.equals(current)) {
+                writtenEntries.put(file.getKey(), written);
+            }
+        }
+        return writtenEntries;
+    }
+
+    /**
+     * Size of blob is declared up front. If file is shortened (or fails to be read) meanwhile, blob is filled up with zeros,
+     * so that stream stays consistent, and it isn't used.
+     *
+     * @return id of written blob or empty if content didn't have declared size
+     */
+    private static Optional<String> writeBlob(OutputStream input, InputStream content, long size) throws IOException {
+        MessageDigest digest = sha1();
+        digest.update(format("blob %d\0", size).getBytes(StandardCharsets.US_ASCII));
+        write(input, format("blob\ndata %d\n", size));
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = size;
+        boolean complete = true;
+        while (remaining > 0) {
+            int read = complete ? readQuietly(content, buffer, (int) Math.min(buffer.length, remaining)) : -1;
+            if (read < 0) {
+                complete = false;
+                read = (int) Math.min(buffer.length, remaining);
+                Arrays.fill(buffer, 0, read, (byte) 0);
+            }
+            digest.update(buffer, 0, read);
+            input.write(buffer, 0, read);
+            remaining -= read;
+        }
+        write(input, "\n");
+        return complete ? Optional.of(BaseEncoding.base16().lowerCase().encode(digest.digest())) : Optional.empty();
+    }
+
+    private static int readQuietly(InputStream content, byte[] buffer, int length) {
+        try {
+            return content.read(buffer, 0, length);
+        } catch (IOException exc) {
+            return -1;
+        }
+    }
+
+    private void writeCommit(OutputStream input, Map<String, TreeEntry> writtenEntries, List<String> removedPaths, String message,
+                             String authorName, String authorEmail) throws IOException {
+        String identity = format("%s <%s> %d +0000", authorName, authorEmail, Instant.now().getEpochSecond());
+        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+        write(input, format("commit refs/heads/%s\nmark %s\nauthor %s\ncommitter %s\ndata %d\n",
+            branch.getValue(), COMMIT_MARK, identity, identity, messageBytes.length));
+        input.write(messageBytes);
+        StringBuilder fileCommands = new StringBuilder("\n");
+        parent.ifPresent(p -> fileCommands.append(format("from %s\n", p)));
+        removedPaths.forEach(path -> fileCommands.append(format("D %s\n", quoted(path))));
+        writtenEntries.forEach((path, entry) -> fileCommands.append(format("M %s %s %s\n", entry.getMode(), entry.getId(), quoted(path))));
+        fileCommands.append(format("\nget-mark %s\ncheckpoint\nprogress checkpoint-%d\n", COMMIT_MARK, commits));
+        write(input, fileCommands.toString());
+        input.flush();
+    }
+
+    /**
+     * Fast-import writes id of marked commit and progress message (after checkpoint is done) to its standard output.
+     *
+     * @return id of created commit
+     */
+    private String awaitCheckpoint(InteractiveProcess process) throws IOException {
+        String commit = process.output().readLine();
+        String progress = format("progress checkpoint-%d", commits);
+        String line;
+        while ((line = process.output().readLine()) != null && !line.equals(progress)) {
+            log.debug("Unexpected git fast-import output: {}", line);
+        }
+        if (commit == null || line == null) {
+            throw new IOException("git fast-import finished unexpectedly");
+        }
+        commits++;
+        return commit.strip();
+    }
+
+    private void collectGarbageIfNeeded() throws InterruptedException {
+        if (commits % COMMITS_PER_GC == 0) {
+            Response response = gitBackend.git(List.of("gc", "--auto", "--quiet"), "git gc --auto");
+            if (response.isFailure()) {
+                log.warn("Unsuccessful git gc --auto. Response: {}", response.result());
+            }
+        }
+    }
+
+    private boolean inTree(String path) {
+        String folderPrefix = path + "/";
+        return tree.containsKey(path) || tree.keySet().stream().anyMatch(p -> p.startsWith(folderPrefix));
+    }
+
+    private void removeFromTree(String path) {
+        String folderPrefix = path + "/";
+        tree.remove(path);
+        tree.keySet().removeIf(p -> p.startsWith(folderPrefix));
+    }
+
+    /**
+     * Path starting with quote or containing line feed has to be written as C-style quoted string.
+     */
+    static String quoted(String path) {
+        if (!path.startsWith("\"") && path.indexOf('\n') < 0) {
+            return path;
+        }
+        return "\"" + path.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    @Override
+    public synchronized void close() throws InterruptedException {
+        if (fastImport.isEmpty()) {
+            return;
+        }
+        Response response = fastImport.get().finish(FINISH_TIMEOUT);
+        if (response.isFailure()) {
+            log.warn("git fast-import didn't finish successfully. Response: {}", response.result());
+        }
+        fastImport = Optional.empty();
+    }
+
+    private static void write(OutputStream input, String command) throws IOException {
+        input.write(command.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException("SHA-1 isn't available", exc);
+        }
+    }
+
+    private static Optional<String> output(Response response) {
+        return response.isSuccessful() && !response.result().isBlank() ? Optional.of(response.result().strip()) : Optional.empty();
+    }
+
+    /**
+     * Entry of branch tree: file mode and id of blob.
+     */
+    @Value
+    static class TreeEntry {
+        String mode;
+        String id;
+
+        /**
+         * @param lsTree output of git ls-tree -r -z (entries "mode type id\tpath" separated by NUL)
+         */
+        static Map<String, TreeEntry> parse(InputStream lsTree) throws IOException {
+            Map<String, TreeEntry> entries = new HashMap<>();
+            InputStream input = new BufferedInputStream(lsTree, BUFFER_SIZE);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int read;
+            while ((read = input.read()) != -1) {
+                if (read == 0) {
+                    parseLine(line.toString(StandardCharsets.UTF_8), entries);
+                    line.reset();
+                } else {
+                    line.write(read);
+                }
+            }
+            parseLine(line.toString(StandardCharsets.UTF_8), entries);
+            return entries;
+        }
+
+        private static void parseLine(String line, Map<String, TreeEntry> entries) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                return;
+            }
+            String[] fields = line.substring(0, tab).strip().split(" ");
+            entries.put(line.substring(tab + 1), new TreeEntry(fields[0], fields[2]));
+        }
+    }
+}
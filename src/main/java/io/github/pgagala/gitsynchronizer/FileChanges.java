@@ -9,9 +9,14 @@ import lombok.experimental.Accessors;
 import lombok.experimental.FieldDefaults;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -26,9 +31,31 @@ import static java.lang.String.format;
 class FileChanges implements Iterable<FileChange> {
 
     private final List<FileChange> changes;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final int rawEventsCount;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final OptionalLong oldestEventNanos;
 
     FileChanges(List<FileChange> changes) {
+        this(changes, changes.size());
+    }
+
+    /**
+     * @param rawEventsCount amount of file events from which changes were flattened
+     */
+    FileChanges(List<FileChange> changes, int rawEventsCount) {
+        this(changes, rawEventsCount, OptionalLong.empty());
+    }
+
+    /**
+     * @param oldestEventNanos {@link System#nanoTime()} when the oldest of file events was noticed (if it is tracked)
+     */
+    FileChanges(List<FileChange> changes, int rawEventsCount, OptionalLong oldestEventNanos) {
         this.changes = Collections.unmodifiableList(changes);
+        this.rawEventsCount = rawEventsCount;
+        this.oldestEventNanos = oldestEventNanos;
     }
 
     @Override
@@ -40,6 +67,54 @@ class FileChanges implements Iterable<FileChange> {
         return this.changes.isEmpty();
     }
 
+    int size() {
+        return this.changes.size();
+    }
+
+    int rawEventsCount() {
+        return this.rawEventsCount;
+    }
+
+    OptionalLong oldestEventNanos() {
+        return this.oldestEventNanos;
+    }
+
+    /**
+     * @param earlierChanges file changes which occurred before these ones (e.g. ones which couldn't be synchronized)
+     * @return earlier file changes followed by these ones, flattened together
+     */
+    FileChanges after(FileChanges earlierChanges) {
+        List<FileChange> joinedChanges = new ArrayList<>(earlierChanges.changes);
+        joinedChanges.addAll(changes);
+        OptionalLong oldest = oldestEventNanos.isEmpty() ? earlierChanges.oldestEventNanos :
+            earlierChanges.oldestEventNanos.isEmpty() ? oldestEventNanos :
+                OptionalLong.of(Math.min(oldestEventNanos.getAsLong(), earlierChanges.oldestEventNanos.getAsLong()));
+        return new FileChanges(FileChangesFlattener.flatten(joinedChanges), rawEventsCount + earlierChanges.size(), oldest);
+    }
+
+    /**
+     * @param newOrModifiedFileNames paths (in synchronized repository) of new or modified files
+     * @param deletedFileNames       paths (in synchronized repository) of deleted files
+     * @return changes of given files in their order
+     */
+    FileChanges changesOf(Set<String> newOrModifiedFileNames, Set<String> deletedFileNames) {
+        List<FileChange> filesChanges = changes.stream()
+            .filter(f -> f.connectedWithRemoval() ? deletedFileNames.contains(f.fileName()) : newOrModifiedFileNames.contains(f.fileName()))
+            .collect(Collectors.toUnmodifiableList());
+        return new FileChanges(filesChanges, filesChanges.size(), oldestEventNanos);
+    }
+
+    /**
+     * @return new or modified files by their paths in synchronized repository
+     */
+    Map<String, File> newOrModifiedFilesByName() {
+        Map<String, File> files = new LinkedHashMap<>();
+        changes.stream()
+            .filter(f -> !f.connectedWithRemoval())
+            .forEach(f -> files.putIfAbsent(f.fileName(), f.file()));
+        return Collections.unmodifiableMap(files);
+    }
+
     List<File> newOrModifiedFiles() {
         return changes.stream()
             .filter(f -> !f.connectedWithRemoval())
@@ -47,6 +122,27 @@ class FileChanges implements Iterable<FileChange> {
             .collect(Collectors.toUnmodifiableList());
     }
 
+    /**
+     * @return distinct names of changed files (paths of changed files in synchronized repository)
+     */
+    List<String> fileNames() {
+        return changes.stream()
+            .map(FileChange::fileName)
+            .distinct()
+            .collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * @return distinct paths of deleted files in synchronized repository
+     */
+    List<String> deletedFileNames() {
+        return changes.stream()
+            .filter(FileChange::connectedWithRemoval)
+            .map(FileChange::fileName)
+            .distinct()
+            .collect(Collectors.toUnmodifiableList());
+    }
+
     List<File> deletedFiles() {
         return changes.stream()
             .filter(FileChange::connectedWithRemoval)
@@ -62,14 +158,20 @@ class FileChanges implements Iterable<FileChange> {
  */
 interface FileChange {
     File file();
+
+    /**
+     * @return path of file in synchronized repository (relative to it, with '/' as separator)
+     */
+    String fileName();
+
     default boolean connectedWithRemoval() {
         return false;
     }
 }
 
 /**
- * If any files from local files is changed or new relative to synchronized remote repository state on application startup,
- * then all files from local will be treated as initialized files during application startup.
+ * File found in watched paths on application startup. It can be new file or modification of file already existing in synchronized
+ * repository. Files which are same as in repository after its bootstrap aren't synchronized (see {@link FileWatcher#reconcileInitialFileChanges}).
  *
  * @author Paweł Gągała
  */
@@ -83,6 +185,10 @@ class FileInitialized implements FileChange {
         return new FileInitialized(file, file.getName());
     }
 
+    static FileInitialized of(File file, String fileName) {
+        return new FileInitialized(file, fileName);
+    }
+
     @Getter
     File file;
 
@@ -111,6 +217,10 @@ class FileCreated implements FileChange {
         return new FileCreated(file, file.getName());
     }
 
+    static FileCreated of(File file, String fileName) {
+        return new FileCreated(file, fileName);
+    }
+
     @Getter
     File file;
 
@@ -139,6 +249,10 @@ class FileModified implements FileChange {
         return new FileModified(file, file.getName());
     }
 
+    static FileModified of(File file, String fileName) {
+        return new FileModified(file, fileName);
+    }
+
     @Getter
     File file;
 
@@ -167,6 +281,10 @@ class FileDeleted implements FileChange {
         return new FileDeleted(file, file.getName());
     }
 
+    static FileDeleted of(File file, String fileName) {
+        return new FileDeleted(file, fileName);
+    }
+
     @Override
     public boolean connectedWithRemoval() {
         return true;
@@ -0,0 +1,99 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flattens file changes to their net effect in a single pass over them:
+ * <ul>
+ *     <li>duplicated file changes (same kind of change of same file name) are dropped - only the first one is left</li>
+ *     <li>if file was finally deleted then only deletion is left or nothing at all if file was created in the meantime</li>
+ *     <li>if file wasn't finally deleted then its deletion is dropped</li>
+ * </ul>
+ * Order of remaining file changes is preserved.
+ *
+ * @author Paweł Gągała
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+class FileChangesFlattener {
+
+    private static final int CREATED = 1;
+    private static final int DELETED = 1 << 1;
+    private static final int MODIFIED = 1 << 2;
+    private static final int INITIALIZED = 1 << 3;
+    private static final int OTHER = 1 << 4;
+
+    static List<FileChange> flatten(List<FileChange> fileChanges) {
+        Map<String, FileState> fileStates = new HashMap<>();
+        List<FileChange> uniqueFileChanges = new ArrayList<>(fileChanges.size());
+        List<FileState> uniqueFileChangesStates = new ArrayList<>(fileChanges.size());
+
+        for (FileChange fileChange : fileChanges) {
+            FileState fileState = fileStates.computeIfAbsent(fileChange.fileName(), n -> new FileState());
+            if (fileState.register(fileChange)) {
+                uniqueFileChanges.add(fileChange);
+                uniqueFileChangesStates.add(fileState);
+            }
+        }
+
+        List<FileChange> flattenedFileChanges = new ArrayList<>(uniqueFileChanges.size());
+        for (int i = 0; i < uniqueFileChanges.size(); i++) {
+            FileChange fileChange = uniqueFileChanges.get(i);
+            if (uniqueFileChangesStates.get(i).retains(fileChange)) {
+                flattenedFileChanges.add(fileChange);
+            }
+        }
+        return Collections.unmodifiableList(flattenedFileChanges);
+    }
+
+    private static int kind(FileChange fileChange) {
+        if (fileChange.connectedWithRemoval()) {
+            return DELETED;
+        }
+        if (fileChange instanceof FileCreated) {
+            return CREATED;
+        }
+        if (fileChange instanceof FileModified) {
+            return MODIFIED;
+        }
+        if (fileChange instanceof FileInitialized) {
+            return INITIALIZED;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Kinds of file changes which occurred for particular file name together with the last of them.
+     */
+    private static class FileState {
+        private int kinds;
+        private int lastKind;
+
+        /**
+         * @return true if file change wasn't registered before (it isn't duplicated)
+         */
+        boolean register(FileChange fileChange) {
+            int kind = kind(fileChange);
+            if ((kinds & kind) != 0) {
+                return false;
+            }
+            kinds |= kind;
+            lastKind = kind;
+            return true;
+        }
+
+        boolean retains(FileChange fileChange) {
+            int kind = kind(fileChange);
+            if (lastKind == DELETED) {
+                return kind == DELETED && (kinds & CREATED) == 0;
+            }
+            return kind != DELETED;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package io.github.pgagala.gitsynchronizer;
+
+import com.google.common.io.BaseEncoding;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of synchronized files content: file name (path in repository) -> (size, modification time, target modification time,
+ * content hash). It allows to tell whether file changed since its last synchronization without copying it. Modification time and size
+ * are compared first, content is hashed only if they differ (e.g. file was touched or rewritten with identical bytes).
+ * Entry is valid only as long as its target keeps modification time it had when it was synchronized, so that target replaced
+ * by pull or reset (even with content of the same size) isn't treated as synchronized copy anymore.
+ * On startup file which isn't indexed yet (e.g. it was pulled from remote repository) can be compared with its target by content hash.
+ * <p>
+ * Index is persisted inside .git folder of local repository, so it lives exactly as long as the repository.
+ * If the folder doesn't exist index is kept only in memory. Changes of index are appended to journal next to it, so that
+ * persisting costs only changed entries. Index is rewritten with journal applied (and journal is dropped) once journal
+ * outgrows it, so that journal can't grow without limit.
+ * Index is thread safe, files are hashed without holding any lock.
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class FileContentIndex {
+
+    static final String INDEX_FILE_NAME = "git-synchronizer-index";
+    static final String JOURNAL_FILE_SUFFIX = ".journal";
+    static final int MIN_COMPACTED_JOURNAL_RECORDS = 1024;
+    private static final String PUT_RECORD = "+";
+    private static final String REMOVE_RECORD = "-";
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+    private static final long MAPPING_THRESHOLD = 8L * 1024 * 1024;
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    File indexFile;
+    File journalFile;
+    Map<String, Entry> entries = new ConcurrentHashMap<>();
+    Queue<String> pendingRecords = new ConcurrentLinkedQueue<>();
+    @NonFinal
+    volatile boolean loaded;
+    @NonFinal
+    boolean compactionRequired;
+    @NonFinal
+    int journalRecords;
+
+    FileContentIndex(File indexFile) {
+        this.indexFile = indexFile;
+        this.journalFile = new File(indexFile.getPath() + JOURNAL_FILE_SUFFIX);
+    }
+
+    static FileContentIndex of(File gitRepositoryLocalFile) {
+        return new FileContentIndex(new File(new File(gitRepositoryLocalFile, ".git"), INDEX_FILE_NAME));
+    }
+
+    /**
+     * @return true if content of source file is the same as content already synchronized to target file.
+     * Index entry is refreshed if only metadata of source file changed.
+     */
+    boolean unchanged(String fileName, File source, File target) throws IOException {
+        load();
+        Entry entry = entries.get(fileName);
+        if (entry == null || !target.isFile() || target.length() != entry.getSize() ||
+            modificationTime(target) != entry.getTargetModificationTime()) {
+            return false;
+        }
+        long size = source.length();
+        long modificationTime = modificationTime(source);
+        if (size != entry.getSize()) {
+            return false;
+        }
+        if (modificationTime == entry.getModificationTime()) {
+            return true;
+        }
+        String hash = hash(source);
+        if (!hash.equals(entry.getHash())) {
+            return false;
+        }
+        put(fileName, new Entry(size, modificationTime, entry.getTargetModificationTime(), hash));
+        return true;
+    }
+
+    /**
+     * Same as {@link #unchanged(String, File, File)}, but file which isn't indexed (or which target changed since it was indexed)
+     * is compared with target by content hash (and indexed if it is the same).
+     */
+    boolean sameAsTarget(String fileName, File source, File target) throws IOException {
+        load();
+        if (entries.containsKey(fileName) && unchanged(fileName, source, target)) {
+            return true;
+        }
+        if (!target.isFile() || target.length() != source.length()) {
+            return false;
+        }
+        long modificationTime = modificationTime(source);
+        long targetModificationTime = modificationTime(target);
+        String hash = hash(source);
+        if (!hash.equals(hash(target))) {
+            return false;
+        }
+        put(fileName, new Entry(target.length(), modificationTime, targetModificationTime, hash));
+        return true;
+    }
+
+    /**
+     * Records content of just synchronized file. Modification time of source file should be taken before copying it,
+     * so that source modified during copying is hashed again on its next change.
+     */
+    void update(String fileName, File target, long sourceModificationTime) throws IOException {
+        load();
+        long targetModificationTime = modificationTime(target);
+        put(fileName, new Entry(target.length(), sourceModificationTime, targetModificationTime, hash(target)));
+    }
+
+    /**
+     * Removes entry of file or entries of all files under folder if given name isn't indexed file.
+     */
+    void remove(String fileName) {
+        load();
+        if (removeEntries(fileName)) {
+            pendingRecords.add(REMOVE_RECORD + " " + fileName);
+        }
+    }
+
+    private boolean removeEntries(String fileName) {
+        if (entries.remove(fileName) != null) {
+            return true;
+        }
+        String folderPrefix = fileName + "/";
+        return entries.keySet().removeIf(name -> name.startsWith(folderPrefix));
+    }
+
+    int size() {
+        load();
+        return entries.size();
+    }
+
+    /**
+     * Appends changes of index since last persisting to its journal. Index is compacted instead if it wasn't written yet,
+     * if journal outgrew it (but not before it has {@link #MIN_COMPACTED_JOURNAL_RECORDS} records) or if journal couldn't
+     * be appended before.
+     */
+    synchronized void persist() {
+        File indexFolder = indexFile.getParentFile();
+        if (indexFolder == null || !indexFolder.isDirectory()) {
+            return;
+        }
+        List<String> records = new ArrayList<>();
+        for (String record = pendingRecords.poll(); record != null; record = pendingRecords.poll()) {
+            records.add(record);
+        }
+        if (records.isEmpty() && !compactionRequired) {
+            return;
+        }
+        journalRecords += records.size();
+        if (compactionRequired || !indexFile.isFile() || journalRecords > Math.max(MIN_COMPACTED_JOURNAL_RECORDS, entries.size())) {
+            compact(indexFolder);
+            return;
+        }
+        try {
+            Files.write(journalFile.toPath(), records, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException exc) {
+            compactionRequired = true;
+            log.warn("Unsuccessful appending to file content index journal: {}.", journalFile.getAbsolutePath(), exc);
+        }
+    }
+
+    /**
+     * Writes whole index (atomically replacing previous one) and drops its journal. Index is written to temporary
+     * file which is renamed over previous index, so that interrupted writing never leaves truncated index behind.
+     * Temporary file of unsuccessful writing is removed and index is compacted again on next persisting.
+     */
+    private void compact(File indexFolder) {
+        List<String> lines = new ArrayList<>(entries.size());
+        entries.forEach((fileName, entry) -> lines.add(line(fileName, entry)));
+        Path temporaryIndex = null;
+        try {
+            temporaryIndex = Files.createTempFile(indexFolder.toPath(), INDEX_FILE_NAME, ".tmp");
+            Files.write(temporaryIndex, lines, StandardCharsets.UTF_8);
+            Files.move(temporaryIndex, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(journalFile.toPath());
+            journalRecords = 0;
+            compactionRequired = false;
+        } catch (IOException exc) {
+            compactionRequired = true;
+            deleteTemporaryIndex(temporaryIndex);
+            log.warn("Unsuccessful persisting file content index: {}.", indexFile.getAbsolutePath(), exc);
+        }
+    }
+
+    private static String line(String fileName, Entry entry) {
+        return entry.getSize() + " " + entry.getModificationTime() + " " + entry.getTargetModificationTime() + " " +
+            entry.getHash() + " " + fileName;
+    }
+
+    private static void deleteTemporaryIndex(Path temporaryIndex) {
+        if (temporaryIndex == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporaryIndex);
+        } catch (IOException exc) {
+            log.warn("Unsuccessful removing temporary file content index: {}.", temporaryIndex, exc);
+        }
+    }
+
+    private void put(String fileName, Entry entry) {
+        if (!entry.equals(entries.put(fileName, entry))) {
+            pendingRecords.add(PUT_RECORD + " " + line(fileName, entry));
+        }
+    }
+
+    /**
+     * Index is loaded on first usage, so that it reflects repository state after its bootstrap.
+     */
+    private void load() {
+        if (!loaded) {
+            loadOnce();
+        }
+    }
+
+    private synchronized void loadOnce() {
+        if (loaded) {
+            return;
+        }
+        if (indexFile.isFile()) {
+            read();
+        }
+        loaded = true;
+    }
+
+    /**
+     * Journal is applied on index. Journal without index (or with index which couldn't be read) is useless, so that index
+     * is compacted on next persisting then.
+     */
+    private void read() {
+        try {
+            for (String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                putLine(line);
+            }
+        } catch (IOException | NumberFormatException exc) {
+            log.warn("Unsuccessful loading file content index: {}. Starting with empty one.", indexFile.getAbsolutePath(), exc);
+            entries.clear();
+            compactionRequired = true;
+            return;
+        }
+        if (journalFile.isFile()) {
+            readJournal();
+        }
+    }
+
+    /**
+     * Reading journal stops at its first malformed record (e.g. truncated by interrupted appending), so that index is
+     * compacted with records read so far on next persisting.
+     */
+    private void readJournal() {
+        try {
+            for (String record : Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8)) {
+                journalRecords++;
+                if (record.startsWith(PUT_RECORD + " ")) {
+                    putLine(record.substring(PUT_RECORD.length() + 1));
+                } else if (record.startsWith(REMOVE_RECORD + " ")) {
+                    removeEntries(record.substring(REMOVE_RECORD.length() + 1));
+                } else {
+                    throw new IOException("Malformed record: " + record);
+                }
+            }
+        } catch (IOException | NumberFormatException exc) {
+            log.warn("Unsuccessful loading file content index journal: {}. Index will be compacted.", journalFile.getAbsolutePath(), exc);
+            compactionRequired = true;
+        }
+    }
+
+    private void putLine(String line) {
+        String[] fields = line.split(" ", 5);
+        if (fields.length != 5) {
+            throw new NumberFormatException("Malformed line: " + line);
+        }
+        entries.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+    }
+
+    static long modificationTime(File file) throws IOException {
+        return Files.getLastModifiedTime(file.toPath()).to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Small files are hashed with chunked reads, big ones via memory mapped regions.
+     */
+    static String hash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAPPING_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK_SIZE);
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            } else {
+                for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                    MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                    digest.update(region);
+                }
+            }
+        }
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    @Value
+    static class Entry {
+        long size;
+        long modificationTime;
+        long targetModificationTime;
+        String hash;
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.pgagala.gitsynchronizer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of copying file (or folder) into repository by {@link FileManager}. Files which content didn't change
+ * aren't copied, so they don't have this event.
+ *
+ * @author Paweł Gągała
+ */
+@Name("io.github.pgagala.gitsynchronizer.FileCopy")
+@Label("File Copy")
+@Category({"Git Synchronizer", "Copying"})
+@Description("File copied into repository")
+class FileCopyEvent extends jdk.jfr.Event {
+
+    @Label("File Name")
+    @Description("Path of file in repository")
+    String fileName;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,290 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Queue of file events between file watcher and synchronizer kept as primitives: id of file (see {@link PathDictionary}),
+ * kind of event and {@link System#nanoTime()} when it was noticed, stored in ring buffer of parallel arrays.
+ * File changes are materialized only when drained events are synchronized, once per file and kind of change (repeated ones
+ * would be dropped by flattening anyway).
+ * <p>
+ * Ring grows on demand up to its capacity. Watch events are only offered (they are rejected when log is full), whereas
+ * events which mustn't be lost (initialized files) are always added. Each logged event holds one reference to id of its file,
+ * which is released when event is rejected or materialized.
+ * <p>
+ * Rescan of dirty folders (see {@link DirtyFolders}) is requested apart from events, because it doesn't refer to any file.
+ *
+ * @author Paweł Gągała
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class FileEventLog {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    private static final Kind[] KINDS = Kind.values();
+
+    PathDictionary paths;
+    int capacity;
+    ReentrantLock lock = new ReentrantLock();
+    Condition notEmpty = lock.newCondition();
+    @NonFinal
+    int[] pathIds;
+    @NonFinal
+    byte[] kinds;
+    @NonFinal
+    long[] timestamps;
+    @NonFinal
+    int head;
+    @NonFinal
+    int count;
+    @NonFinal
+    boolean rescanRequested;
+
+    /**
+     * @param capacity max amount of offered events
+     */
+    FileEventLog(PathDictionary paths, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity of file event log should be positive");
+        }
+        this.paths = paths;
+        this.capacity = capacity;
+        int initialCapacity = Math.min(capacity, INITIAL_CAPACITY);
+        this.pathIds = new int[initialCapacity];
+        this.kinds = new byte[initialCapacity];
+        this.timestamps = new long[initialCapacity];
+    }
+
+    /**
+     * @return false if log is full (reference to path id is released then)
+     */
+    boolean offer(int pathId, Kind kind, long noticedNanos) {
+        lock.lock();
+        try {
+            if (count >= capacity) {
+                paths.release(pathId);
+                return false;
+            }
+            append(pathId, kind, noticedNanos);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds event even if log is full. Only initialized files are added, so that log exceeds its capacity by at most amount
+     * of files found in watched paths on start.
+     */
+    void add(int pathId, Kind kind, long noticedNanos) {
+        lock.lock();
+        try {
+            append(pathId, kind, noticedNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(int pathId, Kind kind, long noticedNanos) {
+        if (count == pathIds.length) {
+            grow();
+        }
+        int tail = (head + count) % pathIds.length;
+        pathIds[tail] = pathId;
+        kinds[tail] = (byte) kind.ordinal();
+        timestamps[tail] = noticedNanos;
+        count++;
+        notEmpty.signal();
+    }
+
+    private void grow() {
+        int length = (int) Math.min(Math.max(2L * pathIds.length, 1), MAX_CAPACITY);
+        if (count < capacity) {
+            length = Math.min(length, capacity);
+        }
+        int[] grownPathIds = new int[length];
+        byte[] grownKinds = new byte[length];
+        long[] grownTimestamps = new long[length];
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % pathIds.length;
+            grownPathIds[i] = pathIds[index];
+            grownKinds[i] = kinds[index];
+            grownTimestamps[i] = timestamps[index];
+        }
+        pathIds = grownPathIds;
+        kinds = grownKinds;
+        timestamps = grownTimestamps;
+        head = 0;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes up consumer awaiting events, even if log is empty. Request is cleared by next drain.
+     */
+    void requestRescan() {
+        lock.lock();
+        try {
+            rescanRequested = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until any event is in log or rescan is requested.
+     */
+    void await() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !rescanRequested) {
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return false if no event was in log (nor rescan was requested) within given time
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !rescanRequested) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves all events from log to given drained ones.
+     */
+    void drainTo(Drained drained) {
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % pathIds.length;
+                drained.add(pathIds[index], kinds[index], timestamps[index]);
+            }
+            head = 0;
+            count = 0;
+            rescanRequested = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases references of drained events to their path ids, so that drained events can't be materialized again.
+     *
+     * @return file changes of drained events in their order (only the first one of each file and kind of change)
+     */
+    List<FileChange> materialize(Drained drained) {
+        List<FileChange> changes = new ArrayList<>();
+        BitSet materialized = new BitSet();
+        for (int i = 0; i < drained.size; i++) {
+            int pathId = drained.pathIds[i];
+            Kind kind = KINDS[drained.kinds[i]];
+            int bit = pathId * KINDS.length + kind.ordinal();
+            if (!materialized.get(bit)) {
+                materialized.set(bit);
+                changes.add(kind.fileChange(paths.file(pathId), paths.fileName(pathId)));
+            }
+        }
+        for (int i = 0; i < drained.size; i++) {
+            paths.release(drained.pathIds[i]);
+        }
+        return changes;
+    }
+
+    /**
+     * Kind of file event (see {@link FileChange} implementations).
+     */
+    enum Kind {
+        INITIALIZED(FileInitialized::of),
+        CREATED(FileCreated::of),
+        MODIFIED(FileModified::of),
+        DELETED(FileDeleted::of);
+
+        private final BiFunction<File, String, FileChange> fileChangeCreator;
+
+        Kind(BiFunction<File, String, FileChange> fileChangeCreator) {
+            this.fileChangeCreator = fileChangeCreator;
+        }
+
+        FileChange fileChange(File file, String fileName) {
+            return fileChangeCreator.apply(file, fileName);
+        }
+    }
+
+    /**
+     * Events drained from log by one consumer (possibly by several drains).
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    static class Drained {
+        int[] pathIds = new int[16];
+        byte[] kinds = new byte[16];
+        int size;
+        long oldestEventNanos;
+
+        private void add(int pathId, byte kind, long noticedNanos) {
+            if (size == pathIds.length) {
+                pathIds = Arrays.copyOf(pathIds, size * 2);
+                kinds = Arrays.copyOf(kinds, size * 2);
+            }
+            if (size == 0 || noticedNanos - oldestEventNanos < 0) {
+                oldestEventNanos = noticedNanos;
+            }
+            pathIds[size] = pathId;
+            kinds[size] = kind;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int pathId(int index) {
+            return pathIds[index];
+        }
+
+        Kind kind(int index) {
+            return KINDS[kinds[index]];
+        }
+
+        /**
+         * @return {@link System#nanoTime()} when the oldest of drained events was noticed
+         */
+        OptionalLong oldestEventNanos() {
+            return size == 0 ? OptionalLong.empty() : OptionalLong.of(oldestEventNanos);
+        }
+    }
+}
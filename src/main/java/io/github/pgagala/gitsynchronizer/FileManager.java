@@ -1,5 +1,8 @@
 package io.github.pgagala.gitsynchronizer;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.pgagala.gitsynchronizer.FileOperationsResult.FileOperationResult;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -8,26 +11,108 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
- * Copying/removing files to/from specific path.
+ * Copying/removing files to/from specific path. Files are copied under their paths relative to target path (see {@link FileChange#fileName()}).
+ * Files which content is same as already copied one (according to {@link FileContentIndex}) aren't copied again.
+ * Regular files are copied with configured {@link CopyStrategy}. Strategy which turned out to be unsupported
+ * (see {@link UnsupportedCopyStrategyException}) is replaced by its fallback for all further copies. Other copying errors
+ * fail only copied file.
+ * With parallelism greater than 1 files are copied/removed on bounded pool of workers, otherwise on calling thread.
+ * Each copy is emitted as {@link FileCopyEvent} if it is enabled in flight recording.
  *
  * @author Paweł Gągała
  */
 @Slf4j
-@RequiredArgsConstructor
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 class FileManager {
 
+    static final int SEQUENTIAL = 1;
+
     File targetFilePath;
+    FileContentIndex fileContentIndex;
+    CopyStrategy copyStrategy;
+    Optional<ExecutorService> workers;
+    Set<CopyStrategy> unsupportedCopyStrategies = ConcurrentHashMap.newKeySet();
+
+    FileManager(File targetFilePath, CopyStrategy copyStrategy, int parallelism) {
+        this(targetFilePath, FileContentIndex.of(targetFilePath), copyStrategy, workers(parallelism));
+    }
+
+    FileManager(File targetFilePath, CopyStrategy copyStrategy) {
+        this(targetFilePath, copyStrategy, SEQUENTIAL);
+    }
+
+    FileManager(File targetFilePath) {
+        this(targetFilePath, CopyStrategy.STREAM);
+    }
 
     FileManager(String targetPath) {
-        this.targetFilePath = new File(targetPath);
+        this(new File(targetPath));
+    }
+
+    private static Optional<ExecutorService> workers(int parallelism) {
+        if (parallelism < SEQUENTIAL) {
+            throw new IllegalArgumentException("Parallelism has to be positive: " + parallelism);
+        }
+        return parallelism == SEQUENTIAL ? Optional.empty() : Optional.of(Executors.newFixedThreadPool(parallelism,
+            new ThreadFactoryBuilder().setNameFormat("file-manager-thread-%d").setDaemon(true).build()));
+    }
+
+    /**
+     * @return result with removed files (from target path) and ones which couldn't be removed
+     */
+    FileOperationsResult deleteFromTargetPath(List<String> fileNames) throws InterruptedException {
+        Map<String, File> filesToDelete = new LinkedHashMap<>();
+        fileNames.forEach(fileName -> filesToDelete.put(fileName, new File(targetFilePath, fileName)));
+        FileOperationsResult result = execute(filesToDelete, this::deleteFromTargetPath);
+        fileContentIndex.persist();
+        return result;
+    }
+
+    /**
+     * File which isn't in target path (e.g. it was never synchronized) has nothing to be deleted.
+     */
+    private FileOperationResult deleteFromTargetPath(String fileName, File fileToDelete) {
+        if (!fileToDelete.exists()) {
+            fileContentIndex.remove(fileName);
+            return FileOperationResult.skipped(fileToDelete);
+        }
+        try {
+            FileUtils.forceDelete(fileToDelete);
+            fileContentIndex.remove(fileName);
+            return FileOperationResult.processed(fileToDelete);
+        } catch (IOException exc) {
+            log.error("Unsuccessful deleting file: {}.", fileToDelete.getAbsolutePath(), exc);
+            return FileOperationResult.failed(fileName, fileToDelete, exc.toString());
+        }
     }
 
-    void deleteFromTargetPath(List<String> fileNames) {
-        fileNames.forEach(this::delete);
+    /**
+     * Removes given files (by their paths in target path) from content index, e.g. because they were committed without being
+     * copied to target path, so that their indexed content isn't up to date anymore.
+     */
+    void forget(List<String> fileNames) {
+        fileNames.forEach(fileContentIndex::remove);
+        fileContentIndex.persist();
     }
 
     void delete(File file) {
@@ -48,20 +133,156 @@ class FileManager {
         }
     }
 
-    void copy(List<File> files) {
-        files.forEach(this::copy);
+    /**
+     * @return result with copied files (without ones which content didn't change) and ones which couldn't be copied
+     */
+    FileOperationsResult copy(List<File> files) throws InterruptedException {
+        Map<String, File> filesByName = new LinkedHashMap<>();
+        files.forEach(file -> filesByName.putIfAbsent(file.getName(), file));
+        return copy(filesByName);
+    }
+
+    /**
+     * @param filesByName files by their paths in target path (relative to it). Missing folders are created.
+     * @return result with copied files (without ones which content didn't change) and ones which couldn't be copied
+     */
+    FileOperationsResult copy(Map<String, File> filesByName) throws InterruptedException {
+        FileOperationsResult result = execute(filesByName, this::copy);
+        fileContentIndex.persist();
+        return result;
+    }
+
+    FileOperationResult copy(File file) {
+        return copy(file.getName(), file);
+    }
+
+    /**
+     * Compares files with their already synchronized copies without copying them (on workers if parallelism is greater than 1).
+     * Files which couldn't be compared are treated as changed.
+     *
+     * @param filesByName files by their paths in target path (relative to it)
+     * @return files (by their paths) which content differs from synchronized one or which weren't synchronized at all
+     */
+    Map<String, File> changedFiles(Map<String, File> filesByName) throws InterruptedException {
+        FileOperationsResult result = execute(filesByName, this::compare);
+        fileContentIndex.persist();
+        Set<File> changedFiles = new HashSet<>(result.processedFiles());
+        changedFiles.addAll(result.failedFiles());
+        Map<String, File> changedFilesByName = new LinkedHashMap<>();
+        filesByName.forEach((fileName, file) -> {
+            if (changedFiles.contains(file)) {
+                changedFilesByName.put(fileName, file);
+            }
+        });
+        return changedFilesByName;
     }
 
-    void copy(File file) {
+    private FileOperationResult compare(String fileName, File file) {
+        try {
+            return fileContentIndex.sameAsTarget(fileName, file, new File(targetFilePath, fileName)) ?
+                FileOperationResult.skipped(file) :
+                FileOperationResult.processed(file);
+        } catch (IOException exc) {
+            log.warn("Unsuccessful comparing file: {} with its synchronized copy.", file.getAbsolutePath(), exc);
+            return FileOperationResult.failed(fileName, file, exc.toString());
+        }
+    }
+
+    private FileOperationResult copy(String fileName, File file) {
+        FileCopyEvent event = new FileCopyEvent();
+        event.begin();
         try {
             if (file.isDirectory()) {
                 FileUtils.copyDirectoryToDirectory(file, targetFilePath);
-            } else {
-                FileUtils.copyFileToDirectory(file, targetFilePath, true);
+                recordCopiedBytes(file);
+                commit(event, fileName, file);
+                return FileOperationResult.processed(file);
+            }
+            File targetFile = new File(targetFilePath, fileName);
+            long modificationTime = FileContentIndex.modificationTime(file);
+            if (fileContentIndex.unchanged(fileName, file, targetFile)) {
+                log.debug("Content of file: {} didn't change. Skipping copying it.", file.getAbsolutePath());
+                return FileOperationResult.skipped(file);
             }
+            if (!targetFile.getParentFile().equals(targetFilePath)) {
+                Files.createDirectories(targetFile.getParentFile().toPath());
+            }
+            copyFile(copyStrategy, file, targetFile);
+            recordCopiedBytes(targetFile);
+            commit(event, fileName, targetFile);
+            fileContentIndex.update(fileName, targetFile, modificationTime);
+            return FileOperationResult.processed(file);
         } catch (IOException exc) {
             log.error("Unsuccessful copying file: {} to path: {}.", file.getAbsolutePath(), targetFilePath.getAbsolutePath(), exc);
+            return FileOperationResult.failed(fileName, file, exc.toString());
+        }
+    }
+
+    /**
+     * Size of copied file (or folder) is read only if metrics are enabled.
+     */
+    private static void recordCopiedBytes(File copied) {
+        Metrics metrics = Metrics.current();
+        if (metrics.enabled()) {
+            metrics.addCopiedBytes(copied.isDirectory() ? FileUtils.sizeOfDirectory(copied) : copied.length());
+        }
+    }
+
+    /**
+     * Size of copied file (or folder) is read only if event is going to be committed.
+     */
+    private static void commit(FileCopyEvent event, String fileName, File copied) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.fileName = fileName;
+            event.bytes = copied.isDirectory() ? FileUtils.sizeOfDirectory(copied) : copied.length();
+            event.commit();
         }
     }
 
-}
\ No newline at end of file
+    private void copyFile(CopyStrategy strategy, File file, File targetFile) throws IOException {
+        Optional<CopyStrategy> fallback = strategy.fallback();
+        if (fallback.isPresent() && unsupportedCopyStrategies.contains(strategy)) {
+            copyFile(fallback.get(), file, targetFile);
+            return;
+        }
+        try {
+            strategy.copyFile(file, targetFile);
+        } catch (UnsupportedCopyStrategyException exc) {
+            if (fallback.isEmpty()) {
+                throw exc;
+            }
+            copyFile(fallback.get(), file, targetFile);
+            if (unsupportedCopyStrategies.add(strategy)) {
+                log.warn("Copy strategy {} isn't supported ({}). Falling back to {}.", strategy, exc.getMessage(), fallback.get());
+            }
+        }
+    }
+
+    private FileOperationsResult execute(Map<String, File> filesByName, BiFunction<String, File, FileOperationResult> operation)
+        throws InterruptedException {
+        Function<Map.Entry<String, File>, FileOperationResult> safeOperation = entry -> {
+            try {
+                return operation.apply(entry.getKey(), entry.getValue());
+            } catch (RuntimeException exc) {
+                log.error("Unsuccessful operation on file: {}.", entry.getValue().getAbsolutePath(), exc);
+                return FileOperationResult.failed(entry.getKey(), entry.getValue(), exc.toString());
+            }
+        };
+        if (workers.isEmpty() || filesByName.size() <= SEQUENTIAL) {
+            return FileOperationsResult.of(filesByName.entrySet().stream().map(safeOperation).collect(Collectors.toUnmodifiableList()));
+        }
+        List<Callable<FileOperationResult>> tasks = filesByName.entrySet().stream()
+            .map(entry -> (Callable<FileOperationResult>) () -> safeOperation.apply(entry))
+            .collect(Collectors.toUnmodifiableList());
+        List<FileOperationResult> results = new ArrayList<>(tasks.size());
+        for (Future<FileOperationResult> result : workers.get().invokeAll(tasks)) {
+            try {
+                results.add(result.get());
+            } catch (ExecutionException exc) {
+                throw new IllegalStateException("Unexpected failure of file operation", exc.getCause());
+            }
+        }
+        return FileOperationsResult.of(results);
+    }
+}
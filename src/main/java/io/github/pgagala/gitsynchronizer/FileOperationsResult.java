@@ -0,0 +1,121 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.Value;
+import lombok.experimental.Accessors;
+import lombok.experimental.FieldDefaults;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregated result of copying/removing files by {@link FileManager}.
+ * Files which didn't need any operation (e.g. their content didn't change) are neither processed nor failed.
+ *
+ * @author Paweł Gągała
+ */
+@ToString
+@EqualsAndHashCode
+@Accessors(fluent = true)
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class FileOperationsResult {
+
+    static final FileOperationsResult EMPTY = new FileOperationsResult(List.of(), List.of());
+
+    /**
+     * Successfully copied/removed files
+     */
+    @Getter
+    List<File> processedFiles;
+
+    @Getter
+    List<FileOperationFailure> failures;
+
+    static FileOperationsResult of(Collection<FileOperationResult> results) {
+        List<File> processedFiles = new ArrayList<>();
+        List<FileOperationFailure> failures = new ArrayList<>();
+        for (FileOperationResult result : results) {
+            if (result.failure != null) {
+                failures.add(result.failure);
+            } else if (result.processed) {
+                processedFiles.add(result.file);
+            }
+        }
+        return new FileOperationsResult(List.copyOf(processedFiles), List.copyOf(failures));
+    }
+
+    static FileOperationsResult processed(List<File> processedFiles) {
+        return new FileOperationsResult(List.copyOf(processedFiles), List.of());
+    }
+
+    boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    List<File> failedFiles() {
+        return failures.stream()
+            .map(FileOperationFailure::getFile)
+            .collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * @return paths (in target path) of files which couldn't be copied/removed
+     */
+    Set<String> failedFileNames() {
+        return failures.stream()
+            .map(FileOperationFailure::getFileName)
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Result of operation on single file.
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    static class FileOperationResult {
+        File file;
+        boolean processed;
+        FileOperationFailure failure;
+
+        static FileOperationResult processed(File file) {
+            return new FileOperationResult(file, true, null);
+        }
+
+        static FileOperationResult skipped(File file) {
+            return new FileOperationResult(file, false, null);
+        }
+
+        /**
+         * @param fileName path of file in target path (relative to it)
+         */
+        static FileOperationResult failed(String fileName, File file, String reason) {
+            return new FileOperationResult(file, false, new FileOperationFailure(fileName, file, reason));
+        }
+    }
+}
+
+/**
+ * Copying/removing of file which didn't succeed.
+ *
+ * @author Paweł Gągała
+ */
+@Value
+class FileOperationFailure {
+    String fileName;
+    File file;
+    String reason;
+
+    @Override
+    public String toString() {
+        return file.getAbsolutePath() + " (" + reason + ")";
+    }
+}
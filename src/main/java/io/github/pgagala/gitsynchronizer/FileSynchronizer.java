@@ -1,22 +1,30 @@
 package io.github.pgagala.gitsynchronizer;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.File;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 
 /**
- * Collecting file change events in loop via {@link FileWatcher#occurredFileChanges()}.
+ * Collecting file change events in loop via {@link FileWatcher#awaitFileChanges(CoalescingWindow)} (waiting without polling until any event occurs).
+ * File change events occurring within one coalescing window are synchronized together.
  * Collected file change events are transformed to files, copied to synchronized local repository and
- * committed to remote repository.
+ * committed to remote repository. Nothing is committed if content of all changed files is same as already synchronized.
+ * <p>
+ * File changes which couldn't be synchronized (files which couldn't be copied/deleted or whole batch which couldn't be committed
+ * directly) are retried together with the next batch, which is awaited at most for retry delay (doubled with each
+ * unsuccessful retry), so that file changes which won't occur again (e.g. deletions) aren't lost.
  *
  * @author Paweł Gągała
  */
@@ -24,33 +32,58 @@ import static java.lang.String.format;
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 @Slf4j
 class FileSynchronizer {
+    static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(5);
 
     ExecutorService executorService =
         Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("file-synchronizer-thread-%d").build());
     FileWatcher fileWatcher;
     GitService gitService;
     FileManager fileManager;
+    CoalescingWindow coalescingWindow;
+    Duration initialRetryDelay;
+    CoalescingStatistics coalescingStatistics = new CoalescingStatistics();
+    @NonFinal
+    FileChanges retriedChanges = new FileChanges(List.of());
+
+    FileSynchronizer(FileWatcher fileWatcher, GitService gitService, FileManager fileManager, CoalescingWindow coalescingWindow) {
+        this(fileWatcher, gitService, fileManager, coalescingWindow, RETRY_DELAY);
+    }
+
+    FileSynchronizer(FileWatcher fileWatcher, GitService gitService, FileManager fileManager) {
+        this(fileWatcher, gitService, fileManager, CoalescingWindow.NONE);
+    }
 
     void run() {
         executorService.submit(() -> {
             try {
+                Duration retryDelay = initialRetryDelay;
                 while (true) {
-                    FileChanges fileChanges = fileWatcher.occurredFileChanges();
+                    boolean retrying = !retriedChanges.isEmpty();
+                    FileChanges fileChanges = retrying ?
+                        fileWatcher.awaitFileChanges(coalescingWindow, retryDelay).after(retriedChanges) :
+                        fileWatcher.awaitFileChanges(coalescingWindow);
+                    retriedChanges = new FileChanges(List.of());
                     if (fileChanges.isEmpty()) {
-                        Thread.sleep(1000);
                         continue;
                     }
-                    fileManager.copy(fileChanges.newOrModifiedFiles());
-                    if (!gitService.lackOfNewChangesInRepository() || !fileChanges.deletedFiles().isEmpty()) {
-                        log.info("New file changes occurred on watched paths:\n{}", fileChanges);
+                    boolean committed = gitService.bypassesWorkingTree() ? commitDirectly(fileChanges) : copyAndCommit(fileChanges);
+                    if (retriedChanges.isEmpty()) {
+                        retryDelay = initialRetryDelay;
+                    } else if (retrying) {
+                        retryDelay = retryDelay.multipliedBy(2).compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : retryDelay.multipliedBy(2);
                     }
-                    fileManager.deleteFromTargetPath(
-                        fileChanges.deletedFiles()
-                            .stream()
-                            .map(File::getName)
-                            .collect(Collectors.toUnmodifiableList()));
-                    gitService.commitChanges(fileChanges);
+                    if (!committed) {
+                        continue;
+                    }
+                    coalescingStatistics.record(fileChanges);
+                    log.info("Synchronized {} file changes coalesced from {} raw file events ({})",
+                        fileChanges.size(), fileChanges.rawEventsCount(), coalescingStatistics);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info("File synchronizer stopped");
+                return null;
             } catch (Exception e) {
                 Thread.currentThread().interrupt();
                 log.error(format("Exception during synchronizing files. Restart application is required.%nException: %s", e));
@@ -58,4 +91,68 @@ class FileSynchronizer {
             }
         });
     }
+
+    /**
+     * Interrupts synchronization (file changes which weren't committed yet stay not committed).
+     *
+     * @return true if synchronization stopped within given time
+     */
+    boolean stop(Duration timeout) throws InterruptedException {
+        executorService.shutdownNow();
+        return executorService.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Changes of files which couldn't be copied/deleted are retried.
+     *
+     * @return false if nothing was committed as no changed file was copied and no file was deleted
+     */
+    private boolean copyAndCommit(FileChanges fileChanges) throws InterruptedException {
+        FileOperationsResult copyResult = fileManager.copy(fileChanges.newOrModifiedFilesByName());
+        if (copyResult.processedFiles().isEmpty() && fileChanges.deletedFiles().isEmpty()) {
+            if (copyResult.hasFailures()) {
+                retryFailures(fileChanges, copyResult, FileOperationsResult.EMPTY);
+            } else {
+                log.debug("Content of changed files is same as already synchronized. Skipping commit of:\n{}", fileChanges);
+            }
+            return false;
+        }
+        log.info("New file changes occurred on watched paths:\n{}", fileChanges);
+        FileOperationsResult deleteResult = fileManager.deleteFromTargetPath(fileChanges.deletedFileNames());
+        retryFailures(fileChanges, copyResult, deleteResult);
+        gitService.commitChanges(fileChanges);
+        return true;
+    }
+
+    /**
+     * Changed files aren't copied into repository, so that their content index entries are dropped (see {@link FileManager#forget(List)})
+     * once they are committed. File changes which couldn't be committed are retried.
+     *
+     * @return false if file changes couldn't be committed
+     */
+    private boolean commitDirectly(FileChanges fileChanges) throws InterruptedException {
+        log.info("New file changes occurred on watched paths:\n{}", fileChanges);
+        Response response = gitService.commitChanges(fileChanges);
+        if (response.isFailure()) {
+            log.warn("File changes couldn't be committed. They will be retried: {}", response.result());
+            retriedChanges = fileChanges;
+            return false;
+        }
+        fileManager.forget(fileChanges.fileNames());
+        return true;
+    }
+
+    private void retryFailures(FileChanges fileChanges, FileOperationsResult copyResult, FileOperationsResult deleteResult) {
+        logFailures("copied", copyResult);
+        logFailures("deleted", deleteResult);
+        if (copyResult.hasFailures() || deleteResult.hasFailures()) {
+            retriedChanges = fileChanges.changesOf(copyResult.failedFileNames(), deleteResult.failedFileNames());
+        }
+    }
+
+    private static void logFailures(String operation, FileOperationsResult result) {
+        if (result.hasFailures()) {
+            log.warn("{} files couldn't be {} (they will be retried): {}", result.failures().size(), operation, result.failures());
+        }
+    }
 }
\ No newline at end of file
@@ -1,42 +1,70 @@
 package io.github.pgagala.gitsynchronizer;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.pgagala.gitsynchronizer.DirectoryTreeWalker.DirectoryTree;
+import io.github.pgagala.gitsynchronizer.DirectoryTreeWalker.WalkedPath;
+import io.github.pgagala.gitsynchronizer.DirtyFolders.FolderScan;
+import io.github.pgagala.gitsynchronizer.FileEventLog.Drained;
+import io.github.pgagala.gitsynchronizer.FileEventLog.Kind;
+import io.github.pgagala.gitsynchronizer.WatchShard.WatchedFolder;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
-import lombok.Value;
-import lombok.experimental.Accessors;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import static java.lang.String.format;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 /**
- * Watches file change events in loop and collects them in queue.
+ * Watches file change events in loop and collects them in compact log of file events ({@link FileEventLog}), from which file
+ * changes are materialized when they are taken for synchronization.
+ * Watched paths are partitioned into shards ({@link WatchShard}), each with own watch service polled by separate thread.
+ * In recursive mode whole trees of watched folders are watched. Folders created in them are registered when their creation is noticed.
+ * Files found in watched paths on start are initialized file changes. Ones which are same as already in repository can be dropped
+ * by {@link #reconcileInitialFileChanges(ChangedFilesSelector, ChangedFilesSelector)}.
+ * <p>
+ * If metrics are enabled (see {@link Metrics}), watch events are counted by their kind. Each logged event keeps the time
+ * when it was noticed, so that latency of synchronization of taken file changes can be measured from the oldest of them.
+ * Each batch of watch events and each materialization and flattening of drained file events is emitted as flight recorder event
+ * ({@link WatchBatchEvent}, {@link FlattenEvent}) if it is enabled in flight recording.
+ * <p>
+ * Log of file events can be bounded. When it is full or watch service overflowed (dropped events), events of watched
+ * folder aren't logged anymore: folder is marked dirty (see {@link DirtyFolders}) and it is rescanned once when file changes
+ * are taken. Rescanned files are compared with repository by the same selector as initialized ones, so that only changed
+ * files are synchronized.
  *
  * @author Paweł Gągała
  */
@@ -44,109 +72,344 @@ import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 @Slf4j
 class FileWatcher {
-    Map<String, Function<File, FileChange>> eventNameToFileChangeCreatorMapping = Map.of(
-        ENTRY_CREATE.name(), FileCreated::of,
-        ENTRY_MODIFY.name(), FileModified::of,
-        ENTRY_DELETE.name(), FileDeleted::of);
-    LinkedBlockingQueue<FileChange> fileChanges = new LinkedBlockingQueue<>();
+    static final int PATHS_PER_SHARD = 500;
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    Map<String, Kind> eventNameToKindMapping = Map.of(
+        ENTRY_CREATE.name(), Kind.CREATED,
+        ENTRY_MODIFY.name(), Kind.MODIFIED,
+        ENTRY_DELETE.name(), Kind.DELETED);
+    PathDictionary pathDictionary = new PathDictionary();
+    FileEventLog fileEvents;
     ExecutorService executorService;
-    WatchService watchService;
+    List<WatchShard> watchShards;
     Function<File, Collection<File>> filesFetcher;
-    Map<WatchKey, Path> watchKeyWatchedFolderMap;
-    Map<WatchKey, List<File>> watchKeyWatchedFileMap;
     IgnoredFiles ignoredFiles;
+    Optional<DirectoryTreeWalker> directoryTreeWalker;
+    Set<String> initializedFileNames = new HashSet<>();
+    DirtyFolders dirtyFolders;
+    @NonFinal
+    volatile ChangedFilesSelector rescannedFilesSelector = ChangedFilesSelector.ALL_FILES;
 
-    public FileWatcher(WatchService watchService, List<Path> paths, Function<File, Collection<File>> filesFetcher, IgnoredFiles ignoredFiles) throws IOException {
-        this.watchService = watchService;
-        executorService = Executors.newFixedThreadPool(paths.size(), new ThreadFactoryBuilder().setNameFormat("file-watcher-thread-%d").build());
+    /**
+     * @param watchServices      each watch service is separate shard of watched paths, polled by its own thread
+     * @param recursive          whether subfolders of watched folders should be watched as well (their files are synchronized
+     *                           under their paths relative to watched folder)
+     * @param eventQueueCapacity max amount of logged file events (initialized file changes are always logged)
+     */
+    public FileWatcher(List<WatchService> watchServices, List<Path> paths, Function<File, Collection<File>> filesFetcher, IgnoredFiles ignoredFiles,
+                       boolean recursive, int eventQueueCapacity) throws IOException {
+        if (watchServices.isEmpty()) {
+            throw new IllegalArgumentException("At least one watch service is required");
+        }
+        this.fileEvents = new FileEventLog(pathDictionary, eventQueueCapacity);
+        this.dirtyFolders = new DirtyFolders(ignoredFiles);
+        this.watchShards = IntStream.range(0, watchServices.size())
+            .mapToObj(i -> new WatchShard(i, watchServices.get(i)))
+            .collect(Collectors.toUnmodifiableList());
+        executorService = Executors.newFixedThreadPool(watchShards.size(), new ThreadFactoryBuilder().setNameFormat("file-watcher-thread-%d").build());
         this.filesFetcher = filesFetcher;
-        this.watchKeyWatchedFolderMap = new HashMap<>();
-        this.watchKeyWatchedFileMap = new HashMap<>();
         this.ignoredFiles = ignoredFiles;
+        this.directoryTreeWalker = recursive ? Optional.of(new DirectoryTreeWalker(ignoredFiles)) : Optional.empty();
         subscribePathsToWatcherService(Collections.unmodifiableList(paths));
+        Metrics.current().registerQueueDepth(fileEvents::size);
+    }
+
+    public FileWatcher(List<WatchService> watchServices, List<Path> paths, Function<File, Collection<File>> filesFetcher, IgnoredFiles ignoredFiles,
+                       boolean recursive) throws IOException {
+        this(watchServices, paths, filesFetcher, ignoredFiles, recursive, UNBOUNDED);
+    }
+
+    public FileWatcher(List<WatchService> watchServices, List<Path> paths, Function<File, Collection<File>> filesFetcher, IgnoredFiles ignoredFiles) throws IOException {
+        this(watchServices, paths, filesFetcher, ignoredFiles, false);
+    }
+
+    public FileWatcher(WatchService watchService, List<Path> paths, Function<File, Collection<File>> filesFetcher, IgnoredFiles ignoredFiles) throws IOException {
+        this(List.of(watchService), paths, filesFetcher, ignoredFiles);
     }
 
     public FileWatcher(WatchService watchService, List<Path> paths, IgnoredFiles ignoredFiles) throws IOException {
         this(watchService, paths, f -> FileUtils.listFiles(f, null, false), ignoredFiles);
     }
 
+    public FileWatcher(int watchShards, List<Path> paths, IgnoredFiles ignoredFiles, boolean recursive) throws IOException {
+        this(watchShards, paths, ignoredFiles, recursive, UNBOUNDED);
+    }
+
+    public FileWatcher(int watchShards, List<Path> paths, IgnoredFiles ignoredFiles, boolean recursive, int eventQueueCapacity) throws IOException {
+        this(watchServices(watchShards), paths, f -> FileUtils.listFiles(f, null, false), ignoredFiles, recursive, eventQueueCapacity);
+    }
+
+    private static List<WatchService> watchServices(int amount) throws IOException {
+        List<WatchService> watchServices = new ArrayList<>(amount);
+        for (int i = 0; i < amount; i++) {
+            watchServices.add(FileSystems.getDefault().newWatchService());
+        }
+        return watchServices;
+    }
+
+    /**
+     * @return one shard per {@link #PATHS_PER_SHARD} watched paths, but not more than available processors
+     */
+    static int defaultWatchShards(int paths) {
+        int shards = (paths + PATHS_PER_SHARD - 1) / PATHS_PER_SHARD;
+        return Math.max(1, Math.min(shards, Runtime.getRuntime().availableProcessors()));
+    }
+
     private void subscribePathsToWatcherService(List<Path> paths) throws IOException {
+        List<Path> folders = new ArrayList<>();
         for (Path path : paths) {
             if (path.toFile().isFile()) {
-                subscribeSingleFile(path);
+                WatchShard.of(watchShards, path.toFile().getParentFile().toPath()).watchFile(path);
                 addFileToInitialFileInitializedEvents(path.toFile());
+            } else if (directoryTreeWalker.isPresent()) {
+                subscribeFolderRecursively(path);
             } else {
-                watchKeyWatchedFolderMap.put(path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), path);
-                addFilesToInitialFileInitializedEvents(path);
+                WatchShard.of(watchShards, path).watchFolder(path);
+                folders.add(path);
             }
         }
+        addFilesToInitialFileInitializedEvents(folders);
+        initializedFileNames.clear();
+        log.info("Watching {} paths in {} shards", paths.size(), watchShards.size());
     }
 
-    private void subscribeSingleFile(Path path) throws IOException {
-        Path parentPathOfFile = path.toFile().getParentFile().toPath();
-        WatchKey watchKey = parentPathOfFile.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
-        watchKeyWatchedFileMap.merge(watchKey, List.of(path.toFile()), (l1, l2) -> {
-            List<File> files = new ArrayList<>();
-            files.addAll(l1);
-            files.addAll(l2);
-            return Collections.unmodifiableList(files);
-        });
+    /**
+     * Tree of folder is walked in parallel. Each folder is registered before it is listed, so that no file created during walk
+     * is missed (shards aren't polled yet, but they can be registered concurrently).
+     */
+    private void subscribeFolderRecursively(Path path) throws IOException {
+        DirectoryTree directoryTree;
+        try {
+            directoryTree = directoryTreeWalker.orElseThrow().walk(path, "", folder -> {
+                try {
+                    WatchShard.of(watchShards, folder.getPath()).watchFolder(folder.getPath(), folder.getRelativePath());
+                } catch (IOException exc) {
+                    throw new UncheckedIOException(exc);
+                }
+            });
+        } catch (UncheckedIOException exc) {
+            throw exc.getCause();
+        }
+        watchedFileNames(directoryTree);
+        for (WalkedPath file : directoryTree.getFiles()) {
+            addFileToInitialFileInitializedEvents(FileInitialized.of(file.getPath().toFile(), file.getRelativePath()));
+        }
+        log.debug("Watching {} folders with {} files under: {}", directoryTree.getDirectories().size(), directoryTree.getFiles().size(), path);
     }
 
-    private void addFilesToInitialFileInitializedEvents(Path path) {
-        filesFetcher.apply(path.toFile())
-            .stream()
-            .filter(File::isFile)
-            .filter(f -> !ignoredFiles.shouldBeIgnored(f))
-            .forEach(this::addFileToInitialFileInitializedEvents);
+    /**
+     * Folders are listed in parallel (after they are registered, so that no change is missed). Duplicates are looked for
+     * in order of folders.
+     */
+    private void addFilesToInitialFileInitializedEvents(List<Path> folders) {
+        List<List<File>> filesOfFolders = folders.parallelStream()
+            .map(folder -> filesFetcher.apply(folder.toFile())
+                .stream()
+                .filter(File::isFile)
+                .filter(f -> !ignoredFiles.shouldBeIgnored(f))
+                .collect(Collectors.toUnmodifiableList()))
+            .collect(Collectors.toUnmodifiableList());
+        for (int i = 0; i < folders.size(); i++) {
+            dirtyFolders.watched(folders.get(i), filesOfFolders.get(i).stream().map(File::getName).collect(Collectors.toUnmodifiableList()));
+        }
+        filesOfFolders.forEach(files -> files.forEach(this::addFileToInitialFileInitializedEvents));
+    }
+
+    /**
+     * Names of files in walked tree are tracked, so that files deleted from its folders are found by their rescan.
+     */
+    private void watchedFileNames(DirectoryTree directoryTree) {
+        for (WalkedPath folder : directoryTree.getDirectories()) {
+            dirtyFolders.watched(folder.getPath(), List.of());
+        }
+        for (WalkedPath file : directoryTree.getFiles()) {
+            dirtyFolders.fileExists(file.getPath().getParent(), file.getPath().getFileName().toString());
+        }
     }
 
     private void addFileToInitialFileInitializedEvents(File file) {
-        FileInitialized fileInitialized = FileInitialized.of(file);
-        if (fileChanges.contains(fileInitialized)) {
+        addFileToInitialFileInitializedEvents(FileInitialized.of(file));
+    }
+
+    private void addFileToInitialFileInitializedEvents(FileInitialized fileInitialized) {
+        if (!initializedFileNames.add(fileInitialized.fileName())) {
             log.error("There is already a synchronized file with same name as: " + fileInitialized.fileName());
             throw new DuplicatedWatchedFileException("There is already a synchronized file with same name as: " + fileInitialized);
         }
-        fileChanges.add(fileInitialized);
+        fileEvents.add(pathDictionary.id(fileInitialized.file(), fileInitialized.fileName()), Kind.INITIALIZED, System.nanoTime());
+    }
+
+    /**
+     * Same as {@link #reconcileInitialFileChanges(ChangedFilesSelector, ChangedFilesSelector)} with the same selector for rescanned files.
+     */
+    int reconcileInitialFileChanges(ChangedFilesSelector changedFilesSelector) throws InterruptedException {
+        return reconcileInitialFileChanges(changedFilesSelector, changedFilesSelector);
+    }
+
+    /**
+     * Drops initialized file changes of files which content is the same as already in repository (e.g. pulled from remote
+     * repository or synchronized before restart), so that restart over many unchanged files costs only their scan.
+     * Should be invoked after repository bootstrap and before watching is started.
+     *
+     * @param rescannedFilesSelector drops unchanged files found by rescans of dirty folders later on. It has to compare files
+     *                               with the latest commit, so that {@link ChangedFilesSelector#ALL_FILES} should be used if repository it compares
+     *                               with isn't kept up to date with commits (e.g. working tree isn't updated on each commit)
+     * @return amount of initialized file changes left to be synchronized
+     */
+    int reconcileInitialFileChanges(ChangedFilesSelector changedFilesSelector, ChangedFilesSelector rescannedFilesSelector)
+        throws InterruptedException {
+        this.rescannedFilesSelector = rescannedFilesSelector;
+        Drained drained = new Drained();
+        fileEvents.drainTo(drained);
+        Map<String, File> initializedFiles = new LinkedHashMap<>();
+        for (int i = 0; i < drained.size(); i++) {
+            if (drained.kind(i) == Kind.INITIALIZED) {
+                initializedFiles.put(pathDictionary.fileName(drained.pathId(i)), pathDictionary.file(drained.pathId(i)));
+            }
+        }
+        Map<String, File> changedFiles = changedFilesSelector.changedFiles(initializedFiles);
+        long reconciled = System.nanoTime();
+        for (int i = 0; i < drained.size(); i++) {
+            if (drained.kind(i) != Kind.INITIALIZED || changedFiles.containsKey(pathDictionary.fileName(drained.pathId(i)))) {
+                fileEvents.add(drained.pathId(i), drained.kind(i), reconciled);
+            } else {
+                pathDictionary.release(drained.pathId(i));
+            }
+        }
+        log.info("{} of {} files found in watched paths differ from repository and will be synchronized", changedFiles.size(),
+            initializedFiles.size());
+        return changedFiles.size();
     }
 
     void run() {
-        executorService.submit(() -> {
-            try {
-                boolean poll = true;
-                while (poll) {
-                    WatchKey key = watchService.take();
-                    List<WatchEvent<?>> watchEvents = key.pollEvents();
-                    if (watchEvents == null) {
-                        continue;
-                    }
+        watchShards.forEach(watchShard -> executorService.submit(() -> watch(watchShard)));
+    }
+
+    /**
+     * Stops polling of watch services and closes them. File changes which weren't taken yet are dropped.
+     */
+    void stop() throws IOException {
+        executorService.shutdownNow();
+        for (WatchShard watchShard : watchShards) {
+            watchShard.watchService().close();
+        }
+    }
+
+    private void watch(WatchShard watchShard) {
+        try {
+            boolean poll = true;
+            while (poll) {
+                WatchKey key = watchShard.watchService().take();
+                List<WatchEvent<?>> watchEvents = key.pollEvents();
+                if (watchEvents == null) {
+                    continue;
+                }
+                WatchBatchEvent event = new WatchBatchEvent();
+                event.begin();
+                watchShard.recordEvents(watchEvents.size());
+                long noticed = System.nanoTime();
+                WatchedFolder watchedFolder = watchShard.watchedFolder(key);
+                int notIgnoredEvents = watchEvents.size();
+                if (!eventsLost(key, watchShard, watchEvents)) {
                     List<WatchEvent<?>> reducedWatchEvents = ignoredFiles.removeEventsRefersToIgnoredFiles(watchEvents);
-                    if (watchKeyWatchedFileMap.containsKey(key)) {
-                        addToFileChangesForWatchedSingleFile(key, reducedWatchEvents);
+                    notIgnoredEvents = reducedWatchEvents.size();
+                    List<File> watchedFiles = watchShard.watchedFiles(key);
+                    boolean logged = true;
+                    if (watchedFiles != null) {
+                        logged = logWatchedSingleFileEvent(watchedFiles, reducedWatchEvents, noticed);
                     }
-                    if (watchKeyWatchedFolderMap.containsKey(key)) {
-                        fileChanges.addAll(toFileChanges(reducedWatchEvents, watchKeyWatchedFolderMap.get(key)));
+                    if (watchedFolder != null) {
+                        logged &= logFileEvents(reducedWatchEvents, watchedFolder, watchShard, noticed);
+                    }
+                    if (!logged) {
+                        markDirty(key, watchShard, "log of file events is full");
                     }
-                    poll = key.reset();
                 }
-            } catch (Exception e) {
-                Thread.currentThread().interrupt();
-                log.error(format("Exception during watching paths: %s, watching files: %s for file events. %n Exception: %s",
-                    watchKeyWatchedFolderMap.values(),
-                    watchKeyWatchedFileMap.values(), e));
-                throw new IllegalStateException(e);
+                recordMetrics(watchEvents);
+                commit(event, watchShard, watchEvents.size(), notIgnoredEvents);
+                poll = key.reset() || (unwatch(key, watchedFolder, watchShard) && watchShard.watchesAnything());
             }
-        });
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+            log.debug("Stopped watching file events in {}", watchShard);
+        } catch (Exception e) {
+            Thread.currentThread().interrupt();
+            log.error(format("Exception during watching file events in %s. %n Exception: %s", watchShard, e));
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Events of watch key are lost (and it is marked dirty) if watch service overflowed. Events of key which is already dirty
+     * aren't logged until it is rescanned.
+     */
+    private boolean eventsLost(WatchKey key, WatchShard watchShard, List<WatchEvent<?>> watchEvents) {
+        if (dirtyFolders.dirty(key)) {
+            return true;
+        }
+        if (watchEvents.stream().anyMatch(e -> e.kind() == OVERFLOW)) {
+            markDirty(key, watchShard, "watch service overflowed");
+            return true;
+        }
+        return false;
     }
 
-    private void addToFileChangesForWatchedSingleFile(WatchKey key, List<WatchEvent<?>> watchEvents) {
-        Optional<File> correspondingFileOpt = watchKeyWatchedFileMap.get(key)
+    /**
+     * Rescan request wakes up taking of file changes, even if no event was logged.
+     */
+    private void markDirty(WatchKey key, WatchShard watchShard, String reason) {
+        if (dirtyFolders.markDirty(key, watchShard, reason)) {
+            fileEvents.requestRescan();
+        }
+    }
+
+    private boolean unwatch(WatchKey key, WatchedFolder watchedFolder, WatchShard watchShard) {
+        if (watchedFolder != null) {
+            dirtyFolders.unwatched(watchedFolder.getPath());
+            pathDictionary.unwatched(watchedFolder);
+        }
+        return watchShard.unwatch(key);
+    }
+
+    private void recordMetrics(List<WatchEvent<?>> watchEvents) {
+        Metrics metrics = Metrics.current();
+        if (!metrics.enabled()) {
+            return;
+        }
+        for (WatchEvent<?> watchEvent : watchEvents) {
+            metrics.markEvent(watchEvent.kind().name());
+        }
+    }
+
+    private static void commit(WatchBatchEvent event, WatchShard watchShard, int events, int notIgnoredEvents) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.shard = watchShard.id();
+            event.eventCount = events;
+            event.ignoredCount = events - notIgnoredEvents;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return shards of watched paths with statistics of their events
+     */
+    List<WatchShard> watchShards() {
+        return watchShards;
+    }
+
+    /**
+     * @return false if log of file events is full
+     */
+    private boolean logWatchedSingleFileEvent(List<File> watchedFiles, List<WatchEvent<?>> watchEvents, long noticed) {
+        Optional<File> correspondingFileOpt = watchedFiles
             .stream()
             .filter(f -> watchEvents.stream().anyMatch(e -> e.context().toString().equals(f.getName())))
             .findFirst();
 
         if (correspondingFileOpt.isEmpty()) {
-            return;
+            return true;
         }
 
         File correspondingFile = correspondingFileOpt.get();
@@ -161,7 +424,8 @@ class FileWatcher {
             .findFirst()
             .orElseThrow(() -> new IllegalStateException(correspondingSingleEventErrorMsg.get()));
 
-        fileChanges.add(eventNameToFileChangeCreatorMapping.get(correspondingEvent.kind().name()).apply(correspondingFile));
+        return fileEvents.offer(pathDictionary.id(correspondingFile, correspondingFile.getName()), eventNameToKindMapping.get(correspondingEvent.kind().name()),
+            noticed);
     }
 
     private List<String> toHumanReadable(List<WatchEvent<?>> watchEvents) {
@@ -170,101 +434,193 @@ class FileWatcher {
             .collect(Collectors.toUnmodifiableList());
     }
 
-    FileChanges occurredFileChanges() {
-        List<FileChange> changes = new ArrayList<>();
-        fileChanges.drainTo(changes);
-        return new FileChanges(flattenFileChanges(changes));
+    FileChanges occurredFileChanges() throws InterruptedException {
+        Drained drained = new Drained();
+        fileEvents.drainTo(drained);
+        return toFileChanges(drained);
     }
 
-    @SuppressWarnings("java:S3864")
-    private List<FileChange> toFileChanges(List<WatchEvent<?>> events, Path path) {
-        return events
-            .stream()
-            .peek(event -> {
-                    String eventName = event.kind().name();
-                    if (!eventNameToFileChangeCreatorMapping.containsKey(eventName)) {
-                        throw new IllegalArgumentException("Unsupported event name: " + eventName);
-                    }
-                }
-            )
-            .map(event -> event(event, path))
-            .filter(event -> {
-                File f = new File(event.path);
-                return f.isFile() || !f.exists();
-            })
-            .map(
-                event ->
-                    eventNameToFileChangeCreatorMapping.get(event.kind()).apply(new File(event.path)))
-            .collect(Collectors.toUnmodifiableList());
+    /**
+     * Blocks until any file change occurs and then returns all file changes accumulated so far.
+     */
+    FileChanges awaitFileChanges() throws InterruptedException {
+        return awaitFileChanges(CoalescingWindow.NONE);
     }
 
-    private List<FileChange> flattenFileChanges(List<FileChange> fileChanges) {
-        List<FileChange> uniqueFiles = new ArrayList<>();
-
-        List<String> filenamesToCreate = new ArrayList<>();
-        List<String> filenamesToRemove = new ArrayList<>();
-
-        Map<String, List<FileChange>> filenameWithFileChanges = new HashMap<>();
-
-        fileChanges.stream()
-            .filter(f -> !uniqueFiles.contains(f))
-            .forEach(f -> {
-                String fileName = f.file().getName();
-                if(f instanceof FileCreated) {
-                    filenamesToCreate.add(fileName);
-                }
-                else if(f.connectedWithRemoval()) {
-                    filenamesToRemove.add(fileName);
-                }
-                uniqueFiles.add(f);
-
-                filenameWithFileChanges.merge(fileName, List.of(f), (oldFChanges, newFChanges) -> {
-                    List<FileChange> fC = new ArrayList<>();
-                    fC.addAll(oldFChanges);
-                    fC.addAll(newFChanges);
-                    return Collections.unmodifiableList(fC);
-                });
-            });
+    /**
+     * Blocks until any file change occurs and then gathers file changes as long as they keep arriving within
+     * quiet period of coalescing window (but not longer than its max latency).
+     */
+    FileChanges awaitFileChanges(CoalescingWindow coalescingWindow) throws InterruptedException {
+        fileEvents.await();
+        return coalesceFileChanges(coalescingWindow);
+    }
 
-        List<FileChange> filesToRemove = filesToRemove(filenamesToCreate, filenamesToRemove, filenameWithFileChanges);
+    /**
+     * Same as {@link #awaitFileChanges(CoalescingWindow)}, but returns no file changes if none occurs within given time.
+     */
+    FileChanges awaitFileChanges(CoalescingWindow coalescingWindow, Duration timeout) throws InterruptedException {
+        if (!fileEvents.await(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            return occurredFileChanges();
+        }
+        return coalesceFileChanges(coalescingWindow);
+    }
 
-        uniqueFiles.removeAll(filesToRemove);
+    private FileChanges coalesceFileChanges(CoalescingWindow coalescingWindow) throws InterruptedException {
+        Drained drained = new Drained();
+        long deadline = System.nanoTime() + coalescingWindow.getMaxLatency().toNanos();
+        long quietPeriod = coalescingWindow.getQuietPeriod().toNanos();
+        fileEvents.drainTo(drained);
+        long remaining = deadline - System.nanoTime();
+        while (remaining > 0) {
+            if (!fileEvents.await(Math.min(quietPeriod, remaining), TimeUnit.NANOSECONDS)) {
+                break;
+            }
+            fileEvents.drainTo(drained);
+            remaining = deadline - System.nanoTime();
+        }
+        return toFileChanges(drained);
+    }
 
-        return Collections.unmodifiableList(uniqueFiles);
+    /**
+     * File changes are materialized from drained file events only here, followed by changes found by rescans of dirty folders.
+     */
+    private FileChanges toFileChanges(Drained drained) throws InterruptedException {
+        List<FileChange> rescannedChanges = dirtyFolders.anyDirty() ? rescanDirtyFolders() : List.of();
+        FlattenEvent event = new FlattenEvent();
+        event.begin();
+        List<FileChange> changes = fileEvents.materialize(drained);
+        changes.addAll(rescannedChanges);
+        int rawEventsCount = drained.size() + rescannedChanges.size();
+        List<FileChange> flattened = FileChangesFlattener.flatten(changes);
+        event.end();
+        if (event.shouldCommit()) {
+            event.inputSize = rawEventsCount;
+            event.outputSize = flattened.size();
+            event.commit();
+        }
+        return new FileChanges(flattened, rawEventsCount, drained.oldestEventNanos());
     }
 
-    private List<FileChange> filesToRemove(List<String> filenamesToCreate, List<String> filenamesToRemove,
-                                           Map<String, List<FileChange>> filenameWithFileChanges) {
-        return filenameWithFileChanges.entrySet()
-            .stream()
-            .flatMap(filenameWithChangesEntry -> {
-                List<FileChange> fChanges = filenameWithChangesEntry.getValue();
-                int sizeOfFChanges = fChanges.size();
-                if (fChanges.get(sizeOfFChanges - 1).connectedWithRemoval()) {
-                    if (filenamesToCreate.contains(filenameWithChangesEntry.getKey())) {
-                        return fChanges.stream();
+    /**
+     * Dirty folders are unmarked before their rescan, so that events occurring meanwhile are logged again (they can duplicate
+     * rescanned changes, which are flattened anyway). Present files are reported as modified if they differ from repository.
+     * Files of whole tree of dirty created folder are reported as created.
+     */
+    private List<FileChange> rescanDirtyFolders() throws InterruptedException {
+        List<FileChange> changes = new ArrayList<>();
+        Map<String, File> presentFiles = new LinkedHashMap<>();
+        for (Map.Entry<WatchKey, WatchShard> dirtyKey : dirtyFolders.takeDirty().entrySet()) {
+            WatchShard watchShard = dirtyKey.getValue();
+            WatchedFolder watchedFolder = watchShard.watchedFolder(dirtyKey.getKey());
+            if (watchedFolder != null) {
+                FolderScan folderScan = dirtyFolders.rescan(watchedFolder);
+                presentFiles.putAll(folderScan.getFiles());
+                folderScan.getDeletedFiles().forEach((fileName, file) -> changes.add(FileDeleted.of(file, fileName)));
+                if (directoryTreeWalker.isPresent()) {
+                    folderScan.getSubfolders()
+                        .stream()
+                        .filter(subfolder -> !dirtyFolders.watched(subfolder.getPath()))
+                        .flatMap(subfolder -> subscribeCreatedFolder(subfolder.getPath(), subfolder.getRelativePath(), watchShard).stream())
+                        .forEach(file -> changes.add(FileCreated.of(file.getPath().toFile(), file.getRelativePath())));
+                }
+            }
+            List<File> watchedFiles = watchShard.watchedFiles(dirtyKey.getKey());
+            if (watchedFiles != null) {
+                for (File watchedFile : watchedFiles) {
+                    if (watchedFile.isFile()) {
+                        presentFiles.put(watchedFile.getName(), watchedFile);
                     } else {
-                        return fChanges.subList(0, sizeOfFChanges - 1).stream();
+                        changes.add(FileDeleted.of(watchedFile));
                     }
                 }
-                if (filenamesToRemove.contains(filenameWithChangesEntry.getKey())) {
-                    return fChanges.stream()
-                        .filter(FileChange::connectedWithRemoval)
-                        .collect(Collectors.toList())
-                        .stream();
+            }
+        }
+        for (WatchedFolder createdFolder : dirtyFolders.takeDirtyCreatedFolders()) {
+            directoryTreeWalker.orElseThrow().walk(createdFolder.getPath(), createdFolder.getRelativePath()).getFiles()
+                .forEach(file -> changes.add(FileCreated.of(file.getPath().toFile(), file.getRelativePath())));
+        }
+        rescannedFilesSelector.changedFiles(presentFiles).forEach((fileName, file) -> changes.add(FileModified.of(file, fileName)));
+        log.info("Rescanned dirty folders found {} file changes", changes.size());
+        return changes;
+    }
+
+    /**
+     * Logs file events of watched folder. Files are looked up in path dictionary, so that repeated events of the same file
+     * don't allocate anything on their own. Created folder is already watched when its files are logged, so that rescan
+     * of folder which noticed it would skip it. If its files don't fit into log, created folder is marked dirty on its own
+     * (see {@link DirtyFolders#markCreatedFolderDirty(WatchedFolder)}).
+     *
+     * @return false if log of file events got full
+     */
+    boolean logFileEvents(List<WatchEvent<?>> events, WatchedFolder folder, WatchShard watchShard, long noticed) {
+        boolean logged = true;
+        for (WatchEvent<?> event : events) {
+            Kind kind = eventNameToKindMapping.get(event.kind().name());
+            if (kind == null) {
+                throw new IllegalArgumentException("Unsupported event name: " + event.kind().name());
+            }
+            int pathId = pathDictionary.id(folder, event.context());
+            File f = pathDictionary.file(pathId);
+            if (kind == Kind.DELETED) {
+                dirtyFolders.fileDeleted(folder.getPath(), f.getName());
+            } else if (f.isFile()) {
+                dirtyFolders.fileExists(folder.getPath(), f.getName());
+            }
+            if (f.isFile() || !f.exists()) {
+                logged &= fileEvents.offer(pathId, kind, noticed);
+                continue;
+            }
+            String fileName = pathDictionary.fileName(pathId);
+            pathDictionary.release(pathId);
+            if (directoryTreeWalker.isPresent() && kind == Kind.CREATED && f.isDirectory()) {
+                logCreatedFolderFiles(new WatchedFolder(f.toPath(), fileName), watchShard, noticed);
+            }
+        }
+        return logged;
+    }
+
+    private void logCreatedFolderFiles(WatchedFolder createdFolder, WatchShard watchShard, long noticed) {
+        for (WalkedPath file : subscribeCreatedFolder(createdFolder.getPath(), createdFolder.getRelativePath(), watchShard)) {
+            if (!fileEvents.offer(pathDictionary.id(file.getPath().toFile(), file.getRelativePath()), Kind.CREATED, noticed)) {
+                if (dirtyFolders.markCreatedFolderDirty(createdFolder)) {
+                    fileEvents.requestRescan();
                 }
-                return Stream.of();
-            }).collect(Collectors.toList());
+                return;
+            }
+        }
     }
 
-    @Value
-    @Accessors(fluent = true)
-    private static class Event {
-        String kind;
-        String path;
+    /**
+     * Folder created in recursively watched folder (and each its subfolder) is registered in shard which noticed it before it
+     * is listed, so that no file created meanwhile is missed. Files which were created in that folder before its registration
+     * are treated as created as well.
+     *
+     * @return files found in created folder
+     */
+    private List<WalkedPath> subscribeCreatedFolder(Path folder, String relativePath, WatchShard watchShard) {
+        DirectoryTree directoryTree = directoryTreeWalker.orElseThrow().walk(folder, relativePath, subfolder -> {
+            try {
+                watchShard.watchFolder(subfolder.getPath(), subfolder.getRelativePath());
+            } catch (IOException exc) {
+                log.warn("Unsuccessful watching created folder: {}. Its files won't be synchronized.", subfolder.getPath(), exc);
+            }
+        });
+        watchedFileNames(directoryTree);
+        return directoryTree.getFiles();
     }
 
-    private Event event(WatchEvent<?> event, Path path) {
-        return new Event(event.kind().name(), path.toString() + "/" + event.context().toString());
+    @FunctionalInterface
+    interface ChangedFilesSelector {
+        /**
+         * Treats all files as changed.
+         */
+        ChangedFilesSelector ALL_FILES = filesByName -> filesByName;
+
+        /**
+         * @param filesByName files by their paths in repository
+         * @return those of given files which differ from repository
+         */
+        Map<String, File> changedFiles(Map<String, File> filesByName) throws InterruptedException;
     }
-}
\ No newline at end of file
+}
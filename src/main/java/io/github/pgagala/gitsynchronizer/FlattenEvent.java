@@ -0,0 +1,26 @@
+package io.github.pgagala.gitsynchronizer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of materializing file events drained from log of {@link FileWatcher} (see {@link FileEventLog})
+ * and flattening them (see {@link FileChangesFlattener}).
+ *
+ * @author Paweł Gągała
+ */
+@Name("io.github.pgagala.gitsynchronizer.Flatten")
+@Label("Flatten File Changes")
+@Category({"Git Synchronizer", "Watching"})
+@Description("File events drained from log materialized and flattened to one change per file")
+class FlattenEvent extends jdk.jfr.Event {
+
+    @Label("Input Size")
+    @Description("Drained file events (including changes found by rescans)")
+    int inputSize;
+
+    @Label("Output Size")
+    int outputSize;
+}
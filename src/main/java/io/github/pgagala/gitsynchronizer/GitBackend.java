@@ -0,0 +1,129 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Executes git commands on local repository. Allows {@link GitService} to be independent of the way how git is invoked.
+ *
+ * @author Paweł Gągała
+ */
+interface GitBackend {
+
+    /**
+     * Prepares backend for executing commands in existing repository folder.
+     */
+    default void start() throws InterruptedException {
+    }
+
+    /**
+     * Releases resources held by backend.
+     */
+    default void stop() throws InterruptedException {
+    }
+
+    Response init() throws InterruptedException;
+
+    Response addRemote(String name, GitServerRemote remote) throws InterruptedException;
+
+    Response createBranchAndSwitch(GitBranch branch) throws InterruptedException;
+
+    /**
+     * Stages given paths (relative to repository root) existing in working tree. Rest of working tree isn't scanned.
+     */
+    Response add(List<String> paths) throws InterruptedException;
+
+    /**
+     * Stages removal of given paths (relative to repository root) which don't exist in working tree anymore.
+     * Paths which weren't tracked are ignored.
+     */
+    Response remove(List<String> paths) throws InterruptedException;
+
+    /**
+     * @return true if index doesn't differ from HEAD commit
+     */
+    boolean lackOfStagedChanges() throws InterruptedException;
+
+    Response commit(String message, String authorName, String authorEmail) throws InterruptedException;
+
+    Response push(String remote, GitBranch branch) throws InterruptedException;
+
+    /**
+     * @param depth amount of the latest commits of remote branch which should be fetched (whole history if empty).
+     *              Limited depth should be used only for pulling into repository without commits.
+     */
+    Response pull(String remote, GitBranch branch, OptionalInt depth, Duration timeout) throws InterruptedException;
+
+    /**
+     * @return url of given remote or empty if repository doesn't have such remote
+     */
+    Optional<String> remoteUrl(String remote) throws InterruptedException;
+
+    /**
+     * @return branch which HEAD points to or empty if HEAD is detached (or it can't be resolved)
+     */
+    Optional<String> currentBranch() throws InterruptedException;
+
+    /**
+     * @return true if neither index nor working tree differ from HEAD commit and there are no untracked files
+     */
+    boolean cleanWorkingTree() throws InterruptedException;
+
+    /**
+     * Updates index and working tree to HEAD commit (e.g. after commits made by {@link DirectCommitter}).
+     */
+    Response resetToHead() throws InterruptedException;
+
+    /**
+     * @return committer streaming file changes into git fast-import or empty if backend doesn't run git command line tool
+     */
+    default Optional<DirectCommitter> fastImportCommitter(GitBranch branch) {
+        return Optional.empty();
+    }
+}
+
+/**
+ * Available implementations of {@link GitBackend}.
+ *
+ * @author Paweł Gągała
+ */
+enum GitBackendType {
+    /**
+     * Each git command is executed in a new docker container.
+     */
+    DOCKER {
+        @Override
+        GitBackend create(GitRepositoryLocal repositoryLocal, GitServerRemote serverRemote, Optional<String> network) {
+            return network.map(n -> DockerGitBackend.of(repositoryLocal.getValue(), serverRemote, n))
+                .orElseGet(() -> DockerGitBackend.of(repositoryLocal.getValue(), serverRemote));
+        }
+    },
+    /**
+     * Git commands are executed via docker exec in one long-lived docker container.
+     */
+    DOCKER_EXEC {
+        @Override
+        GitBackend create(GitRepositoryLocal repositoryLocal, GitServerRemote serverRemote, Optional<String> network) {
+            return new DockerExecGitBackend(repositoryLocal.getValue(), serverRemote, network);
+        }
+    },
+    /**
+     * Git commands are executed in-process (via JGit). Doesn't require docker.
+     */
+    JGIT {
+        @Override
+        GitBackend create(GitRepositoryLocal repositoryLocal, GitServerRemote serverRemote, Optional<String> network) {
+            return new JGitBackend(repositoryLocal.getValue());
+        }
+    };
+
+    abstract GitBackend create(GitRepositoryLocal repositoryLocal, GitServerRemote serverRemote, Optional<String> network);
+
+    boolean requiresDocker() {
+        return this != JGIT;
+    }
+}
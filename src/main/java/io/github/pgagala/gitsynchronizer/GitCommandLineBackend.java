@@ -0,0 +1,135 @@
+package io.github.pgagala.gitsynchronizer;
+
+import com.google.common.collect.Lists;
+import io.github.pgagala.gitsynchronizer.processexecutor.InteractiveProcess;
+import io.github.pgagala.gitsynchronizer.processexecutor.OutputReader;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static java.lang.String.format;
+
+/**
+ * {@link GitBackend} running git command line tool. Subclasses decide where git process is started.
+ *
+ * @author Paweł Gągała
+ */
+abstract class GitCommandLineBackend implements GitBackend {
+
+    private static final int PATHS_PER_COMMAND = 500;
+
+    abstract Response git(List<String> gitArguments, String description, Optional<Duration> timeout) throws InterruptedException;
+
+    /**
+     * Standard output of git is streamed to given reader instead of being returned, so that output of any size can be processed.
+     */
+    abstract Response git(List<String> gitArguments, String description, OutputReader outputReader) throws InterruptedException;
+
+    Response git(List<String> gitArguments, String description) throws InterruptedException {
+        return git(gitArguments, description, Optional.empty());
+    }
+
+    /**
+     * Starts git process which is fed via its standard input.
+     */
+    abstract InteractiveProcess startGit(List<String> gitArguments, String description) throws IOException;
+
+    @Override
+    public Response init() throws InterruptedException {
+        return git(List.of("init"), "git init");
+    }
+
+    @Override
+    public Response addRemote(String name, GitServerRemote remote) throws InterruptedException {
+        return git(List.of("remote", "add", name, remote.getValue()), format("git adding remote %s", remote));
+    }
+
+    @Override
+    public Response createBranchAndSwitch(GitBranch branch) throws InterruptedException {
+        return git(List.of("checkout", "-b", branch.getValue()), "git checkout -b");
+    }
+
+    /**
+     * Paths are passed literally (without pathspec magic) in chunks, so that command line length limit isn't exceeded.
+     */
+    @Override
+    public Response add(List<String> paths) throws InterruptedException {
+        return gitWithPaths(List.of("--literal-pathspecs", "add", "--all", "--"), paths, "git adding file");
+    }
+
+    @Override
+    public Response remove(List<String> paths) throws InterruptedException {
+        return gitWithPaths(List.of("--literal-pathspecs", "rm", "-r", "--quiet", "--cached", "--ignore-unmatch", "--"), paths,
+            "git removing file");
+    }
+
+    private Response gitWithPaths(List<String> gitArguments, List<String> paths, String description) throws InterruptedException {
+        List<Response> responses = new ArrayList<>();
+        for (List<String> chunk : Lists.partition(paths, PATHS_PER_COMMAND)) {
+            List<String> arguments = new ArrayList<>(gitArguments);
+            arguments.addAll(chunk);
+            responses.add(git(arguments, description));
+        }
+        return Response.of(responses.toArray(Response[]::new));
+    }
+
+    @Override
+    public boolean lackOfStagedChanges() throws InterruptedException {
+        Response response = git(List.of("diff", "--cached", "--name-only"), "git diff --cached");
+        return response.isSuccessful() && response.result().isBlank();
+    }
+
+    @Override
+    public Response commit(String message, String authorName, String authorEmail) throws InterruptedException {
+        return git(List.of("-c", "user.name='" + authorName + "'", "-c", "user.email=" + authorEmail, "commit", "-m", message),
+            "git committing");
+    }
+
+    @Override
+    public Response push(String remote, GitBranch branch) throws InterruptedException {
+        return git(List.of("push", remote, branch.getValue()), "git pushing to origin");
+    }
+
+    @Override
+    public Response pull(String remote, GitBranch branch, OptionalInt depth, Duration timeout) throws InterruptedException {
+        List<String> arguments = new ArrayList<>(List.of("pull"));
+        depth.ifPresent(d -> arguments.add("--depth=" + d));
+        arguments.addAll(List.of(remote, branch.getValue()));
+        return git(arguments, "git pull", Optional.of(timeout));
+    }
+
+    @Override
+    public Optional<String> remoteUrl(String remote) throws InterruptedException {
+        return output(git(List.of("remote", "get-url", remote), "git remote get-url"));
+    }
+
+    @Override
+    public Optional<String> currentBranch() throws InterruptedException {
+        return output(git(List.of("symbolic-ref", "--quiet", "--short", "HEAD"), "git symbolic-ref HEAD"));
+    }
+
+    @Override
+    public boolean cleanWorkingTree() throws InterruptedException {
+        Response response = git(List.of("status", "--porcelain", "--untracked-files=all"), "git status");
+        return response.isSuccessful() && response.result().isBlank();
+    }
+
+    @Override
+    public Response resetToHead() throws InterruptedException {
+        return git(List.of("reset", "--hard", "--quiet", "HEAD"), "git reset --hard");
+    }
+
+    @Override
+    public Optional<DirectCommitter> fastImportCommitter(GitBranch branch) {
+        return Optional.of(new FastImportCommitter(this, branch));
+    }
+
+    private static Optional<String> output(Response response) {
+        return response.isSuccessful() && !response.result().isBlank() ? Optional.of(response.result().strip()) : Optional.empty();
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Amount of objects (and bytes they take) in object database of local repository. Difference of statistics taken before
+ * and after fetch shows how much was transferred from remote repository. Statistics are read from files of
+ * {@code .git/objects} directly, so that they don't depend on {@link GitBackend}.
+ *
+ * @author Paweł Gągała
+ */
+@Value
+@Slf4j
+class GitObjects {
+
+    static final GitObjects NONE = new GitObjects(0, 0);
+    private static final int PACK_HEADER_OBJECTS_OFFSET = 8;
+
+    long objects;
+    long bytes;
+
+    static GitObjects of(File repository) {
+        File objectsDirectory = new File(repository, ".git/objects");
+        File[] directories = objectsDirectory.listFiles(File::isDirectory);
+        if (directories == null) {
+            return NONE;
+        }
+        long objects = 0;
+        long bytes = 0;
+        for (File directory : directories) {
+            File[] files = directory.listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (directory.getName().length() == 2) {
+                    objects++;
+                    bytes += file.length();
+                } else if (directory.getName().equals("pack") && file.getName().endsWith(".pack")) {
+                    objects += packedObjects(file);
+                    bytes += file.length();
+                }
+            }
+        }
+        return new GitObjects(objects, bytes);
+    }
+
+    /**
+     * Pack starts with signature, version and amount of objects (each as 4 bytes).
+     */
+    private static long packedObjects(File pack) {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(pack))) {
+            input.skipNBytes(PACK_HEADER_OBJECTS_OFFSET);
+            return Integer.toUnsignedLong(input.readInt());
+        } catch (IOException exc) {
+            log.warn("Unsuccessful reading amount of objects in pack: {}", pack, exc);
+            return 0;
+        }
+    }
+
+    GitObjects minus(GitObjects other) {
+        return new GitObjects(Math.max(0, objects - other.objects), Math.max(0, bytes - other.bytes));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d objects (%d bytes)", objects, bytes);
+    }
+}
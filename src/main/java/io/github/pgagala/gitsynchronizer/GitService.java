@@ -1,6 +1,6 @@
 package io.github.pgagala.gitsynchronizer;
 
-import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
 import io.github.pgagala.gitsynchronizer.processexecutor.Response;
 import lombok.AccessLevel;
 import lombok.Value;
@@ -10,20 +10,23 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static java.lang.String.format;
-import static java.util.List.of;
 
 /**
- * Creating/destroying temporary local git repository (point of file synchronization with remote repository). Using docker to run git commands.
+ * Creating/reusing/destroying local git repository (point of file synchronization with remote repository).
+ * Git commands are run via {@link GitBackend} (by default docker is used). Commits are pushed in background by {@link PushQueue}.
  *
  * @author Paweł Gągała
  */
@@ -31,74 +34,168 @@ import static java.util.List.of;
 @Slf4j
 public class GitService {
 
-    private static final String DOCKER = "docker";
-    private static final List<String> dockerGitInvocationPrefixWithNetwork = of(DOCKER, "run", "--rm", "--network");
-    private static final List<String> dockerGitInvocationPrefix = of(DOCKER, "run", "--rm");
-    private static final List<String> dockerGitInvocationSuffix = of("-v", Environment.getUserHome() + File.separator + ".ssh:/home/git-user/.ssh", Docker.GIT_IMAGE);
     private static final String ORIGIN = "origin";
-    List<String> dockerGitInvocationCommand;
+    private static final String AUTHOR_NAME = "git synchronizer";
+    private static final String NO_CHANGES_MESSAGE =
+        "No new files changes to commit. File changes are same as already existing in local repository";
+    private static final Duration PUSH_ON_STOP_TIMEOUT = Duration.ofSeconds(10);
+    static final Duration DEFAULT_PULL_TIMEOUT = Duration.ofMinutes(5);
     File gitRepositoryLocalFile;
     GitServerRemote gitServerRemote;
     GitBranch gitBranch;
-    ProcessExecutor processExecutor;
+    GitBackend gitBackend;
+    PushQueue pushQueue;
+    CommitMode commitMode;
+    Optional<DirectCommitter> directCommitter;
+    AtomicBoolean committedDirectly = new AtomicBoolean();
 
     public GitService(GitServerRemote serverRemote, GitRepositoryLocal repositoryLocal, GitBranch gitBranch) {
-        this.gitRepositoryLocalFile = repositoryLocal.getValue();
-        this.gitServerRemote = serverRemote;
-        this.gitBranch = gitBranch;
-        this.processExecutor = new ProcessExecutor(this.gitRepositoryLocalFile);
-        dockerGitInvocationCommand =
-            Stream.of(dockerGitInvocationPrefix, of("-v", gitRepositoryLocalFile.getAbsolutePath() + ":/git"), dockerGitInvocationSuffix)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toUnmodifiableList());
+        this(serverRemote, repositoryLocal, gitBranch, DockerGitBackend.of(repositoryLocal.getValue(), serverRemote));
     }
 
     public GitService(GitServerRemote serverRemote, GitRepositoryLocal repositoryLocal, GitBranch gitBranch, String gitServerNetwork) {
+        this(serverRemote, repositoryLocal, gitBranch, DockerGitBackend.of(repositoryLocal.getValue(), serverRemote, gitServerNetwork));
+    }
+
+    GitService(GitServerRemote serverRemote, GitRepositoryLocal repositoryLocal, GitBranch gitBranch, GitBackend gitBackend) {
+        this(serverRemote, repositoryLocal, gitBranch, gitBackend, CommitMode.WORKING_TREE);
+    }
+
+    GitService(GitServerRemote serverRemote, GitRepositoryLocal repositoryLocal, GitBranch gitBranch, GitBackend gitBackend,
+               CommitMode commitMode) {
         this.gitRepositoryLocalFile = repositoryLocal.getValue();
         this.gitServerRemote = serverRemote;
         this.gitBranch = gitBranch;
-        this.processExecutor = new ProcessExecutor(repositoryLocal.getValue());
-        dockerGitInvocationCommand =
-            Stream.of(dockerGitInvocationPrefixWithNetwork, of(gitServerNetwork, "-v", gitRepositoryLocalFile.getAbsolutePath() + ":/git"),
-                dockerGitInvocationSuffix)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toUnmodifiableList());
+        this.gitBackend = gitBackend;
+        this.pushQueue = new PushQueue(() -> gitBackend.push(ORIGIN, gitBranch));
+        this.commitMode = commitMode;
+        this.directCommitter = directCommitter(commitMode, gitBackend, gitRepositoryLocalFile, gitBranch);
+    }
+
+    private static Optional<DirectCommitter> directCommitter(CommitMode commitMode, GitBackend gitBackend, File gitRepositoryLocalFile,
+                                                             GitBranch gitBranch) {
+        if (commitMode == CommitMode.FAST_IMPORT) {
+            return Optional.of(gitBackend.fastImportCommitter(gitBranch)
+                .orElseThrow(() -> new IllegalArgumentException("Git backend doesn't support commit mode " + commitMode)));
+        }
+        if (commitMode == CommitMode.OBJECT_STORE) {
+            return Optional.of(new ObjectStoreCommitter(gitRepositoryLocalFile, gitBranch));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return true if changed files shouldn't be copied into working tree before committing them (see {@link CommitMode})
+     */
+    boolean bypassesWorkingTree() {
+        return commitMode.bypassesWorkingTree();
     }
 
     void createRepository() throws InterruptedException, IOException {
         createRepositoryFolderIfDoesNotExist();
-        log.info("Creating repository under path: {}. Files will be synchronized in that repository. " +
-            "After program shutdown that will be automatically cleaned up", gitRepositoryLocalFile.getAbsolutePath());
-        Response response = Response.of(initRepository(), addRemote(), createNewBranchAndSwitch());
+        gitBackend.start();
+        log.info("Creating repository under path: {}. Files will be synchronized in that repository.", gitRepositoryLocalFile.getAbsolutePath());
+        Response response = Response.of(gitBackend.init(), gitBackend.addRemote(ORIGIN, gitServerRemote), gitBackend.createBranchAndSwitch(gitBranch));
         if (response.isFailure()) {
-            throw new IllegalStateException("Exception during creating repository. Check if docker is running. Response: " + response.result());
+            throw new IllegalStateException("Exception during creating repository. Response: " + response.result());
         }
+        pushQueue.start();
     }
 
-    void pull() throws InterruptedException {
-        List<String> pullCommand = getDockerGitCommandForLocalExecution(of("pull", ORIGIN, gitBranch.getValue()));
-        processExecutor.execute(pullCommand, "git pull", Duration.ofSeconds(5));
+    /**
+     * Opens repository left by previous run if it is still synchronized with the same remote repository and branch and
+     * it doesn't contain any changes which weren't committed. Commits which weren't pushed by previous run are pushed.
+     *
+     * @return false (with git backend stopped) if there is no repository which could be reused
+     */
+    boolean openExistingRepository() throws InterruptedException {
+        if (!new File(gitRepositoryLocalFile, ".git").isDirectory()) {
+            log.info("There is no repository under path: {} which could be reused", gitRepositoryLocalFile.getAbsolutePath());
+            return false;
+        }
+        gitBackend.start();
+        Optional<String> reasonOfInvalidity = reasonOfInvalidity();
+        if (reasonOfInvalidity.isPresent()) {
+            log.warn("Repository under path: {} can't be reused: {}", gitRepositoryLocalFile.getAbsolutePath(), reasonOfInvalidity.get());
+            gitBackend.stop();
+            return false;
+        }
+        log.info("Reusing repository under path: {}. Files will be synchronized in that repository.", gitRepositoryLocalFile.getAbsolutePath());
+        pushQueue.start();
+        pushQueue.requestPush();
+        return true;
     }
 
-    private void createRepositoryFolderIfDoesNotExist() throws IOException {
-        if (!gitRepositoryLocalFile.exists()) {
-            Files.createDirectory(gitRepositoryLocalFile.toPath());
+    private Optional<String> reasonOfInvalidity() throws InterruptedException {
+        Optional<String> remoteUrl = gitBackend.remoteUrl(ORIGIN);
+        if (!remoteUrl.equals(Optional.of(gitServerRemote.getValue()))) {
+            return Optional.of(format("its remote %s (%s) isn't %s", ORIGIN, remoteUrl.orElse("none"), gitServerRemote.getValue()));
+        }
+        Optional<String> currentBranch = gitBackend.currentBranch();
+        if (!currentBranch.equals(Optional.of(gitBranch.getValue()))) {
+            return Optional.of(format("its current branch (%s) isn't %s", currentBranch.orElse("none"), gitBranch.getValue()));
+        }
+        if (!gitBackend.cleanWorkingTree()) {
+            return Optional.of("it contains not committed changes");
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Not pushed commits are tried to be pushed before stopping. If commits were made directly into object database,
+     * working tree is updated to them, so that repository can be reused.
+     */
+    void stop() throws InterruptedException {
+        if (directCommitter.isPresent()) {
+            directCommitter.get().close();
         }
+        pushQueue.stop(PUSH_ON_STOP_TIMEOUT);
+        if (committedDirectly.get()) {
+            Response response = gitBackend.resetToHead();
+            if (response.isFailure()) {
+                log.warn("Unsuccessful updating working tree to the latest commit. Response: {}", response.result());
+            }
+        }
+        gitBackend.stop();
+    }
+
+    /**
+     * @return true if all commits made till now were pushed within given time
+     */
+    boolean awaitPushed(Duration timeout) throws InterruptedException {
+        return pushQueue.awaitPushed(timeout);
     }
 
-    private Response initRepository() throws InterruptedException {
-        List<String> initCommand = getDockerGitCommandForLocalExecution(of("init"));
-        return processExecutor.execute(initCommand, "git init");
+    GitObjects pull() throws InterruptedException {
+        return pull(BootstrapFetch.FULL, DEFAULT_PULL_TIMEOUT);
     }
 
-    private Response createNewBranchAndSwitch() throws InterruptedException {
-        List<String> createNewBranchAndSwitch = getDockerGitCommandForLocalExecution(of("checkout", "-b", gitBranch.getValue()));
-        return processExecutor.execute(createNewBranchAndSwitch, "git checkout -b");
+    /**
+     * Pulls content of remote branch. Fetch other than {@link BootstrapFetch#FULL} should be used only for repository which
+     * doesn't contain any commits yet (existing history couldn't be fast-forwarded to shallow one).
+     *
+     * @return objects (and bytes they take) which were transferred from remote repository
+     */
+    GitObjects pull(BootstrapFetch fetch, Duration timeout) throws InterruptedException {
+        OptionalInt depth = fetch.depth();
+        GitObjects objectsBeforePull = GitObjects.of(gitRepositoryLocalFile);
+        long start = System.nanoTime();
+        Response response = gitBackend.pull(ORIGIN, gitBranch, depth, timeout);
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        GitObjects transferred = GitObjects.of(gitRepositoryLocalFile).minus(objectsBeforePull);
+        if (response.isFailure()) {
+            log.warn("Unsuccessful pulling branch {} from remote repository (it may not exist yet). Response: {}", gitBranch.getValue(),
+                response.result());
+        }
+        log.info("Pulled {} of branch {}{} from remote repository in {} ms", transferred, gitBranch.getValue(),
+            depth.isPresent() ? " (depth " + depth.getAsInt() + ")" : "", durationMillis);
+        return transferred;
     }
 
-    private Response addRemote() throws InterruptedException {
-        List<String> addingRemoteCommand = getDockerGitCommandForLocalExecution(of("remote", "add", ORIGIN, gitServerRemote.getValue()));
-        return processExecutor.execute(addingRemoteCommand, format("git adding remote %s", gitServerRemote));
+    private void createRepositoryFolderIfDoesNotExist() throws IOException {
+        if (!gitRepositoryLocalFile.exists()) {
+            Files.createDirectory(gitRepositoryLocalFile.toPath());
+        }
     }
 
     Response deleteRepository() {
@@ -117,44 +214,63 @@ public class GitService {
         }
     }
 
+    /**
+     * Only paths of changed files are staged, so cost of committing doesn't depend on size of repository.
+     * If commit mode bypasses working tree, changed files are committed from watched paths (see {@link DirectCommitter}).
+     * Commit is pushed asynchronously (see {@link PushQueue}), returned response concerns only committing.
+     */
     Response commitChanges(FileChanges fileChanges) throws InterruptedException {
-        List<String> addCommand = getDockerGitCommandForLocalExecution(of("add", "."));
-        Response addingResp = processExecutor.execute(addCommand, "git adding file");
+        if (directCommitter.isPresent()) {
+            return commitDirectly(directCommitter.get(), fileChanges);
+        }
+        Map<Boolean, List<String>> existingPaths = fileChanges.fileNames()
+            .stream()
+            .collect(Collectors.partitioningBy(path -> new File(gitRepositoryLocalFile, path).exists()));
+        Response addingResp = Response.of(gitBackend.add(existingPaths.get(true)), gitBackend.remove(existingPaths.get(false)));
 
-        if (lackOfNewChangesInRepository()) {
-            return Response.success("No new files changes to commit. File changes are same as already existing in local repository");
+        if (gitBackend.lackOfStagedChanges()) {
+            return Response.success(NO_CHANGES_MESSAGE);
         }
 
-        String email = "user.email=git@synchronizer-" + UUID.randomUUID() + ".com";
-        List<String> commitCommand = getDockerGitCommandForLocalExecution(of("-c", "user.name='git synchronizer'", "-c", email,
-            "commit", "-m",
-            getCommitMessage(fileChanges)));
-        Response committingResp = processExecutor.execute(commitCommand, "git committing");
+        Response committingResp = gitBackend.commit(getCommitMessage(fileChanges), AUTHOR_NAME, authorEmail());
+        if (committingResp.isSuccessful()) {
+            committed(fileChanges);
+        }
 
-        List<String> pushingToOriginCommand = getDockerGitCommandForLocalExecution(of("push", ORIGIN, gitBranch.getValue()));
-        Response pushingResp = processExecutor.execute(pushingToOriginCommand, "git pushing to origin");
+        return Response.of(addingResp, committingResp);
+    }
 
-        return Response.of(addingResp, committingResp, pushingResp);
+    private Response commitDirectly(DirectCommitter committer, FileChanges fileChanges) throws InterruptedException {
+        try {
+            Optional<String> commit = committer.commit(TreeChanges.of(fileChanges), getCommitMessage(fileChanges), AUTHOR_NAME,
+                authorEmail());
+            if (commit.isEmpty()) {
+                return Response.success(NO_CHANGES_MESSAGE);
+            }
+            committedDirectly.set(true);
+            committed(fileChanges);
+            return Response.success(commit.get());
+        } catch (IOException | UncheckedIOException exc) {
+            String errorMsg = format("Unsuccessful committing file changes (%s commit mode). Error msg: %s", commitMode, exc);
+            log.error(errorMsg);
+            return Response.failure(errorMsg);
+        }
     }
 
-    boolean lackOfNewChangesInRepository() throws InterruptedException {
-        List<String> statusCommand = getDockerGitCommandForLocalExecution(of("status"));
-        return processExecutor.execute(statusCommand, "git status").result()
-            .contains("nothing to commit");
+    private void committed(FileChanges fileChanges) {
+        Metrics.current().recordCommitted(fileChanges.oldestEventNanos());
+        pushQueue.requestPush(fileChanges.oldestEventNanos());
     }
 
-    private String getCommitMessage(FileChanges fileChanges) {
+    private static String authorEmail() {
+        return "git@synchronizer-" + UUID.randomUUID() + ".com";
+    }
+
+    static String getCommitMessage(FileChanges fileChanges) {
         StringBuilder commitMessageBuilder = new StringBuilder();
         fileChanges.forEach(f -> commitMessageBuilder.append(f.toString()).append(" ").append(System.lineSeparator()));
         return commitMessageBuilder.toString();
     }
-
-    private List<String> getDockerGitCommandForLocalExecution(List<String> gitCommand) {
-        List<String> dockerCommand = new ArrayList<>(dockerGitInvocationCommand);
-        dockerCommand.addAll(gitCommand);
-
-        return dockerCommand;
-    }
 }
 
 @Value
@@ -7,15 +7,17 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.StringKey;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.pgagala.gitsynchronizer.FileWatcher.ChangedFilesSelector;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -34,36 +36,65 @@ import java.util.stream.Collectors;
 @Slf4j
 public class GitSynchronizerApplication {
 
+    private static final Duration SYNCHRONIZER_STOP_TIMEOUT = Duration.ofSeconds(30);
+
     @SuppressWarnings("java:S3655")
     public static void main(String[] args) throws IOException, InterruptedException, URISyntaxException {
         GitSynchronizerApplicationArgsParser appArgs = new GitSynchronizerApplicationArgsParser(args);
         if (appArgs.applicationArgs.help) {
             return;
         }
-        Docker.pullDockerGitImageOrThrowException();
+        if (appArgs.gitBackend().requiresDocker()) {
+            Docker.pullDockerGitImageOrThrowException();
+        }
         printStartMsg(appArgs);
+        if (appArgs.jmxMetrics()) {
+            Metrics.enable();
+        }
 
         GitRepositoryLocal gitRepositoryLocal = appArgs.repositoryLocal();
-        GitService gitService = appArgs.network().isPresent() ?
-            new GitService(appArgs.serverRemote(), gitRepositoryLocal, appArgs.gitBranch(), appArgs.network().get()) :
-            new GitService(appArgs.serverRemote(), gitRepositoryLocal, appArgs.gitBranch());
-        FileWatcher fileWatcher = new FileWatcher(FileSystems.getDefault().newWatchService(), appArgs.paths(), appArgs.ignoredFilesPattern());
-        FileManager fileManager = new FileManager(gitRepositoryLocal.getValue());
-        RepositoryBootstrap repositoryBootstrap = new RepositoryBootstrap(gitService);
-        FileSynchronizer fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager);
+        GitService gitService = new GitService(appArgs.serverRemote(), gitRepositoryLocal, appArgs.gitBranch(),
+            appArgs.gitBackend().create(gitRepositoryLocal, appArgs.serverRemote(), appArgs.network()), appArgs.commitMode());
+        FileWatcher fileWatcher = new FileWatcher(appArgs.watchShards(), appArgs.paths(), appArgs.ignoredFilesPattern(), appArgs.recursive(),
+            appArgs.eventQueueCapacity());
+        FileManager fileManager = new FileManager(gitRepositoryLocal.getValue(), appArgs.copyStrategy(), appArgs.fileOperationsParallelism());
+        RepositoryBootstrap repositoryBootstrap = new RepositoryBootstrap(gitService, appArgs.persistentRepository(), appArgs.bootstrapFetch(),
+            appArgs.pullTimeout());
+        FileSynchronizer fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager, appArgs.coalescingWindow());
         ExecutorService executorService = Executors.newFixedThreadPool(2,
             new ThreadFactoryBuilder().setNameFormat("git-synchronizer-app-%d").build());
 
         repositoryBootstrap.initialize();
+        fileWatcher.reconcileInitialFileChanges(fileManager::changedFiles,
+            gitService.bypassesWorkingTree() ? ChangedFilesSelector.ALL_FILES : fileManager::changedFiles);
         executorService.submit(fileWatcher::run);
         executorService.submit(fileSynchronizer::run);
 
-        addShutdownHook(repositoryBootstrap);
+        addShutdownHook(fileWatcher, fileSynchronizer, repositoryBootstrap);
         log.info("Git synchronizer started");
     }
 
-    private static void addShutdownHook(RepositoryBootstrap repositoryBootstrap) {
-        Runtime.getRuntime().addShutdownHook(new Thread(repositoryBootstrap::cleanup));
+    /**
+     * File watcher is stopped first, so that no more file changes are taken. Then synchronization is stopped and only then
+     * git backend is stopped (and repository cleaned up), so that no git command runs against stopped backend.
+     */
+    private static void addShutdownHook(FileWatcher fileWatcher, FileSynchronizer fileSynchronizer, RepositoryBootstrap repositoryBootstrap) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                fileWatcher.stop();
+            } catch (IOException e) {
+                log.error("Cannot stop file watcher", e);
+            }
+            try {
+                if (!fileSynchronizer.stop(SYNCHRONIZER_STOP_TIMEOUT)) {
+                    log.warn("File synchronizer didn't stop within {}", SYNCHRONIZER_STOP_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted during stopping file synchronizer", e);
+            }
+            repositoryBootstrap.shutdown();
+        }));
     }
 
     private static void printStartMsg(GitSynchronizerApplicationArgsParser appArgs) {
@@ -75,6 +106,18 @@ public class GitSynchronizerApplication {
                     - repository path: %s
                     - git branch: %s
                     - ignored file patterns: %s
+                    - git backend: %s
+                    - commit mode: %s
+                    - coalescing window: quiet period %d ms, max latency %d ms
+                    - copy strategy: %s
+                    - file operations parallelism: %d
+                    - watch shards: %d
+                    - event queue capacity: %s
+                    - recursive watching: %s
+                    - persistent repository: %s
+                    - bootstrap fetch: %s
+                    - pull timeout: %d ms
+                    - jmx metrics: %s
                     %s
                     """,
                 appArgs.serverRemote().getValue(),
@@ -82,6 +125,19 @@ public class GitSynchronizerApplication {
                 appArgs.repositoryLocal().getValue(),
                 appArgs.gitBranch().getValue(),
                 appArgs.ignoredFilesPattern(),
+                appArgs.gitBackend(),
+                appArgs.commitMode(),
+                appArgs.coalescingWindow().getQuietPeriod().toMillis(),
+                appArgs.coalescingWindow().getMaxLatency().toMillis(),
+                appArgs.copyStrategy(),
+                appArgs.fileOperationsParallelism(),
+                appArgs.watchShards(),
+                appArgs.eventQueueCapacity() == FileWatcher.UNBOUNDED ? "unbounded" : appArgs.eventQueueCapacity(),
+                appArgs.recursive(),
+                appArgs.persistentRepository(),
+                appArgs.bootstrapFetch(),
+                appArgs.pullTimeout().toMillis(),
+                appArgs.jmxMetrics(),
                 appArgs.network().map(n -> "- git server network: " + n).orElse(""));
         log.info(startMsg);
     }
@@ -112,6 +168,20 @@ public class GitSynchronizerApplication {
             if (cmd.getDescriptions().get(new StringKey(HELP)).isAssigned()) {
                 cmd.usage();
             }
+            if (applicationArgs.persistentRepository && applicationArgs.gitRepositoryPath == null) {
+                log.error("Persistent repository requires repository path.");
+                cmd.usage();
+                throw new ParameterException("Persistent repository requires repository path (--repositoryPath)");
+            }
+            if (commitMode() == CommitMode.FAST_IMPORT && gitBackend() == GitBackendType.JGIT) {
+                log.error("Fast-import commit mode requires git command line backend.");
+                cmd.usage();
+                throw new ParameterException("Commit mode FAST_IMPORT isn't supported by git backend JGIT");
+            }
+            if (copyStrategy() == CopyStrategy.HARDLINK) {
+                log.warn("Copy strategy HARDLINK is unsafe: files in repository share content with watched files, so that " +
+                    "anything rewriting repository files in place changes watched files as well");
+            }
         }
 
         GitServerRemote serverRemote() {
@@ -140,14 +210,74 @@ public class GitSynchronizerApplication {
         }
 
         IgnoredFiles ignoredFilesPattern() {
-            return applicationArgs.ignoredPattern != null ? IgnoredFiles.from(applicationArgs.ignoredPattern) :
+            IgnoredFiles ignoredFiles = applicationArgs.ignoredPattern != null ? IgnoredFiles.from(applicationArgs.ignoredPattern) :
                 IgnoredFiles.intermediateIgnoredFiles();
+            return applicationArgs.ignoredGlobs != null ? ignoredFiles.withGlobs(applicationArgs.ignoredGlobs) : ignoredFiles;
         }
 
         Optional<String> network() {
             return applicationArgs.network != null ? Optional.of(applicationArgs.network) : Optional.empty();
         }
 
+        CoalescingWindow coalescingWindow() {
+            if (applicationArgs.quietPeriod == null && applicationArgs.maxLatency == null) {
+                return CoalescingWindow.DEFAULT;
+            }
+            Duration quietPeriod = applicationArgs.quietPeriod != null ?
+                Duration.ofMillis(applicationArgs.quietPeriod) : CoalescingWindow.DEFAULT.getQuietPeriod();
+            Duration maxLatency = applicationArgs.maxLatency != null ?
+                Duration.ofMillis(applicationArgs.maxLatency) : CoalescingWindow.DEFAULT.getMaxLatency();
+            try {
+                return new CoalescingWindow(quietPeriod, maxLatency);
+            } catch (IllegalArgumentException exception) {
+                throw new ParameterException(exception.getMessage());
+            }
+        }
+
+        GitBackendType gitBackend() {
+            return applicationArgs.gitBackend != null ? applicationArgs.gitBackend : GitBackendType.DOCKER_EXEC;
+        }
+
+        CommitMode commitMode() {
+            return applicationArgs.commitMode != null ? applicationArgs.commitMode : CommitMode.WORKING_TREE;
+        }
+
+        CopyStrategy copyStrategy() {
+            return applicationArgs.copyStrategy != null ? applicationArgs.copyStrategy : CopyStrategy.STREAM;
+        }
+
+        int fileOperationsParallelism() {
+            return applicationArgs.fileOperationsParallelism != null ? applicationArgs.fileOperationsParallelism : FileManager.SEQUENTIAL;
+        }
+
+        int watchShards() {
+            return applicationArgs.watchShards != null ? applicationArgs.watchShards : FileWatcher.defaultWatchShards(paths().size());
+        }
+
+        int eventQueueCapacity() {
+            return applicationArgs.eventQueueCapacity != null ? applicationArgs.eventQueueCapacity : FileWatcher.UNBOUNDED;
+        }
+
+        boolean recursive() {
+            return applicationArgs.recursive;
+        }
+
+        boolean persistentRepository() {
+            return applicationArgs.persistentRepository;
+        }
+
+        boolean jmxMetrics() {
+            return applicationArgs.jmxMetrics;
+        }
+
+        BootstrapFetch bootstrapFetch() {
+            return applicationArgs.bootstrapFetch != null ? applicationArgs.bootstrapFetch : BootstrapFetch.FULL;
+        }
+
+        Duration pullTimeout() {
+            return applicationArgs.pullTimeout != null ? Duration.ofMillis(applicationArgs.pullTimeout) : GitService.DEFAULT_PULL_TIMEOUT;
+        }
+
         private static class ApplicationArgs {
 
             @Parameter(names = {HELP, "--h"},
@@ -202,6 +332,16 @@ public class GitSynchronizerApplication {
             )
             private List<Pattern> ignoredPattern;
 
+            @Parameter(
+                names = {"--ignoredGlob", "-ig"},
+                description = """
+                    Ignored file name globs in .gitignore syntax, applied in addition to ignored patterns \
+                    (e.g. --ignoredGlob *.log,build-?,!important.log). Glob starting with ! excludes files from being ignored. \
+                    Default is none""",
+                validateWith = IgnoredGlobValidator.class
+            )
+            private List<String> ignoredGlobs;
+
             @Parameter(
                 names = {"--network", "-n"},
                 arity = 1,
@@ -209,6 +349,138 @@ public class GitSynchronizerApplication {
             )
             private String network;
 
+            @Parameter(
+                names = {"--gitBackend", "-gb"},
+                arity = 1,
+                description = """
+                    Way of executing git commands: DOCKER_EXEC (each command via docker exec in one long-lived docker container), \
+                    DOCKER (each command in a new docker container) or JGIT (in-process, docker isn't required). Default is DOCKER_EXEC"""
+            )
+            private GitBackendType gitBackend;
+
+            @Parameter(
+                names = {"--commitMode", "-cm"},
+                arity = 1,
+                description = """
+                    Way of committing file changes: WORKING_TREE (files are copied into repository, staged and committed), \
+                    FAST_IMPORT (files are streamed from watched paths into long-lived git fast-import process without copying them, \
+                    working tree is updated on shutdown; not supported by JGIT git backend) or OBJECT_STORE (blobs are written \
+                    from watched paths straight into object database and commit is created from tree built in memory, working tree \
+                    is updated on shutdown). Default is WORKING_TREE"""
+            )
+            private CommitMode commitMode;
+
+            @Parameter(
+                names = {"--quietPeriod", "-qp"},
+                arity = 1,
+                description = """
+                    Time in milliseconds after last file change for which synchronization waits for further file changes \
+                    (e.g. --quietPeriod 300). File changes occurring meanwhile are committed together. Default is 300, so that \
+                    file changes are no longer committed as soon as they are noticed (--quietPeriod 0 --maxLatency 0 restores \
+                    committing them right away)""",
+                validateWith = NonNegativeNumberValidator.class
+            )
+            private Long quietPeriod;
+
+            @Parameter(
+                names = {"--maxLatency", "-ml"},
+                arity = 1,
+                description = """
+                    Max time in milliseconds for which synchronization of the first file change can be delayed by waiting for \
+                    further file changes (e.g. --maxLatency 5000). Default is 5000 (see --quietPeriod)""",
+                validateWith = NonNegativeNumberValidator.class
+            )
+            private Long maxLatency;
+
+            @Parameter(
+                names = {"--copyStrategy", "-cs"},
+                arity = 1,
+                description = """
+                    Way of copying files to repository: STREAM (java.nio Files.copy), TRANSFER_TO (FileChannel.transferTo), \
+                    REFLINK (copy-on-write clone if file system supports it) or HARDLINK (if watched paths and repository are on the same \
+                    file system; unsafe, as repository files share content with watched files, so that anything rewriting repository \
+                    file in place, e.g. git checkout or reset, rewrites watched file as well). Unsupported strategy falls back to STREAM. \
+                    Default is STREAM"""
+            )
+            private CopyStrategy copyStrategy;
+
+            @Parameter(
+                names = {"--fileOperationsParallelism", "-fp"},
+                arity = 1,
+                description = """
+                    Amount of workers copying/removing files in parallel (e.g. --fileOperationsParallelism 8). \
+                    Default is 1 (files are copied/removed one by one)""",
+                validateWith = PositiveNumberValidator.class
+            )
+            private Integer fileOperationsParallelism;
+
+            @Parameter(
+                names = {"--watchShards", "-ws"},
+                arity = 1,
+                description = """
+                    Amount of watch services (each polled by its own thread) among which watched paths are partitioned \
+                    (e.g. --watchShards 4). Default is one per 500 watched paths, but not more than available processors""",
+                validateWith = PositiveNumberValidator.class
+            )
+            private Integer watchShards;
+
+            @Parameter(
+                names = {"--eventQueueCapacity", "-eq"},
+                arity = 1,
+                description = """
+                    Max amount of file events waiting for synchronization (e.g. --eventQueueCapacity 100000). When queue is full \
+                    (or file system drops events), folders with lost events are marked dirty and rescanned once instead of queueing \
+                    their events, so that memory stays flat under storm of events. Default is unbounded queue""",
+                validateWith = PositiveNumberValidator.class
+            )
+            private Integer eventQueueCapacity;
+
+            @Parameter(
+                names = {"--recursive", "-R"},
+                description = """
+                    Watching also all subfolders of watched folders (including ones created later). Files are synchronized \
+                    under their paths relative to watched folder. Default is watching only files directly in watched folders"""
+            )
+            private boolean recursive;
+
+            @Parameter(
+                names = {"--persistentRepository", "-pr"},
+                description = """
+                    Keeping repository after shutdown and reusing it on next start (if it is still synchronized with the same remote \
+                    repository and branch and it doesn't contain any not committed changes), so that only changes which appeared \
+                    on remote repository meanwhile are pulled. Requires --repositoryPath. Default is creating new repository on each \
+                    start and removing it on shutdown"""
+            )
+            private boolean persistentRepository;
+
+            @Parameter(
+                names = {"--bootstrapFetch", "-bf"},
+                arity = 1,
+                description = """
+                    Way of fetching remote branch into newly created repository: FULL (whole history) or SHALLOW (only the latest \
+                    commit, so that bootstrap time doesn't grow with history of remote repository). Default is FULL"""
+            )
+            private BootstrapFetch bootstrapFetch;
+
+            @Parameter(
+                names = {"--pullTimeout", "-pt"},
+                arity = 1,
+                description = """
+                    Max time in milliseconds of pulling remote branch during bootstrap (e.g. --pullTimeout 600000). \
+                    Default is 300000""",
+                validateWith = PositiveNumberValidator.class
+            )
+            private Integer pullTimeout;
+
+            @Parameter(
+                names = {"--jmxMetrics", "-jm"},
+                description = """
+                    Collecting metrics of synchronization (file watcher queue depth, file events per second, latency from file \
+                    event to commit and push, git command durations and failures, copied bytes) and exporting them over JMX as \
+                    io.github.pgagala.gitsynchronizer:type=Metrics. Default is no metrics"""
+            )
+            private boolean jmxMetrics;
+
         }
     }
 
@@ -257,6 +529,46 @@ public class GitSynchronizerApplication {
         }
     }
 
+    public static class IgnoredGlobValidator implements IParameterValidator {
+
+        @Override
+        public void validate(String name, String value) {
+            try {
+                Arrays.stream(value.split(",")).forEach(GitignoreGlob::of);
+            } catch (RuntimeException exc) {
+                throw new ParameterException("Passed ignored glob isn't correct: " + exc.getMessage());
+            }
+        }
+    }
+
+    public static class NonNegativeNumberValidator implements IParameterValidator {
+
+        @Override
+        public void validate(String name, String value) {
+            try {
+                if (Long.parseLong(value) < 0) {
+                    throw new ParameterException("Passed number can't be negative: " + value);
+                }
+            } catch (NumberFormatException exc) {
+                throw new ParameterException("Passed number isn't parsable: " + value);
+            }
+        }
+    }
+
+    public static class PositiveNumberValidator implements IParameterValidator {
+
+        @Override
+        public void validate(String name, String value) {
+            try {
+                if (Integer.parseInt(value) <= 0) {
+                    throw new ParameterException("Passed number has to be positive: " + value);
+                }
+            } catch (NumberFormatException exc) {
+                throw new ParameterException("Passed number isn't parsable: " + value);
+            }
+        }
+    }
+
     public static class GitServerRemoteValidator implements IParameterValidator {
 
         private static final String GIT_SERVER_REMOTE = "^[^,]+/[^,]+\\.git$";
@@ -0,0 +1,108 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.Value;
+
+import java.util.regex.Pattern;
+
+/**
+ * Glob of file name in .gitignore syntax translated to regex:
+ * <ul>
+ * <li>{@code *} (and {@code **}) matches any characters, {@code ?} matches one character,</li>
+ * <li>{@code [...]} matches one character from class ({@code [!...]} or {@code [^...]} from its complement),</li>
+ * <li>{@code \} escapes next character, trailing spaces are ignored unless escaped,</li>
+ * <li>leading {@code !} negates glob: file matched by it isn't ignored even if other ignored pattern matches it.</li>
+ * </ul>
+ * Glob is matched against file name only, so that globs with {@code /} aren't supported.
+ *
+ * @author Paweł Gągała
+ */
+@Value
+class GitignoreGlob {
+
+    Pattern pattern;
+    boolean negated;
+
+    static GitignoreGlob of(String glob) {
+        boolean negated = glob.startsWith("!");
+        String nameGlob = stripTrailingSpaces(negated ? glob.substring(1) : glob);
+        if (nameGlob.isEmpty()) {
+            throw new IllegalArgumentException("Glob can't be empty: " + glob);
+        }
+        if (nameGlob.contains("/")) {
+            throw new IllegalArgumentException("Only globs of file names (without '/') are supported: " + glob);
+        }
+        return new GitignoreGlob(Pattern.compile(regex(nameGlob)), negated);
+    }
+
+    private static String stripTrailingSpaces(String glob) {
+        int end = glob.length();
+        while (end > 0 && glob.charAt(end - 1) == ' ' && (end < 2 || glob.charAt(end - 2) != '\\')) {
+            end--;
+        }
+        return glob.substring(0, end);
+    }
+
+    private static String regex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                while (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    i++;
+                }
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                i = appendCharacterClass(glob, i, regex);
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                i++;
+                appendLiteral(glob.charAt(i), regex);
+            } else {
+                appendLiteral(c, regex);
+            }
+            i++;
+        }
+        return regex.toString();
+    }
+
+    /**
+     * @return index of bracket closing character class
+     */
+    private static int appendCharacterClass(String glob, int opening, StringBuilder regex) {
+        regex.append('[');
+        int i = opening + 1;
+        if (glob.charAt(i) == '!' || glob.charAt(i) == '^') {
+            regex.append('^');
+            i++;
+        }
+        boolean first = true;
+        while (i < glob.length() && (first || glob.charAt(i) != ']')) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                i++;
+                c = glob.charAt(i);
+            }
+            if (c == '-' && !first && i + 1 < glob.length() && glob.charAt(i + 1) != ']') {
+                regex.append('-');
+            } else {
+                appendLiteral(c, regex);
+            }
+            first = false;
+            i++;
+        }
+        regex.append(']');
+        return i;
+    }
+
+    /**
+     * Characters other than letters and digits are escaped, so that they are always taken literally.
+     */
+    private static void appendLiteral(char c, StringBuilder regex) {
+        if (!Character.isLetterOrDigit(c)) {
+            regex.append('\\');
+        }
+        regex.append(c);
+    }
+}
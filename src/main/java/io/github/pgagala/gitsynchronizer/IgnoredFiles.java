@@ -1,32 +1,58 @@
 package io.github.pgagala.gitsynchronizer;
 
 import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 
 import java.io.File;
 import java.nio.file.WatchEvent;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Representation of ignored files.
+ * Representation of ignored files. File is ignored if its name matches any of ignored patterns (regexes or .gitignore-style globs,
+ * see {@link GitignoreGlob}) and none of negated globs. Patterns are compiled into {@link IgnoredNameMatcher}.
+ * Decisions are cached per file name in bounded LRU cache, as the same files tend to change over and over.
  *
  * @author Paweł Gągała
  */
-@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 @SuppressWarnings("java:S1452")
 class IgnoredFiles {
 
+    static final int DECISIONS_CACHE_SIZE = 10_000;
+
     List<Pattern> ignoredFilePatterns;
+    List<Pattern> notIgnoredFilePatterns;
+    IgnoredNameMatcher ignoredNameMatcher;
+    IgnoredNameMatcher notIgnoredNameMatcher;
+    int decisionsCacheSize;
+    Optional<DecisionsCache> decisions;
 
     static final String INTERMEDIATE_FILES_PATTERN = "^(\\..+\\.sw.*|\\.~.+|.+~)$";
     //4913+ is intermediate VIM program file - https://github.com/neovim/neovim/blob/536c0ba27e79929eb30850d8e11f2ed026930ab3/src/nvim/fileio.c#L2710
     static final String VIM_INTERMEDIATE_FILES_PATTERN = "^(([4-9]9[1-9][3-9])|([5-9]\\d\\d\\d)|(\\d{5,}))$";
 
+    private IgnoredFiles(List<Pattern> ignoredFilePatterns) {
+        this(ignoredFilePatterns, List.of(), DECISIONS_CACHE_SIZE);
+    }
+
+    private IgnoredFiles(List<Pattern> ignoredFilePatterns, List<Pattern> notIgnoredFilePatterns, int decisionsCacheSize) {
+        this.ignoredFilePatterns = List.copyOf(ignoredFilePatterns);
+        this.notIgnoredFilePatterns = List.copyOf(notIgnoredFilePatterns);
+        this.ignoredNameMatcher = IgnoredNameMatcher.of(ignoredFilePatterns);
+        this.notIgnoredNameMatcher = IgnoredNameMatcher.of(notIgnoredFilePatterns);
+        this.decisionsCacheSize = decisionsCacheSize;
+        this.decisions = decisionsCacheSize > 0 && !ignoredFilePatterns.isEmpty() ?
+            Optional.of(new DecisionsCache(decisionsCacheSize)) :
+            Optional.empty();
+    }
+
     static IgnoredFiles from(List<Pattern> patterns) {
         if(patterns.isEmpty()) {
             return noIgnoredFiles();
@@ -45,20 +71,83 @@ class IgnoredFiles {
         return new IgnoredFiles(List.of());
     }
 
+    /**
+     * @param globs .gitignore-style globs of file names (see {@link GitignoreGlob})
+     * @return ignored files which additionally ignore files matching given globs (or don't ignore them if glob is negated)
+     */
+    IgnoredFiles withGlobs(List<String> globs) {
+        List<Pattern> ignoredPatterns = new ArrayList<>(ignoredFilePatterns);
+        List<Pattern> notIgnoredPatterns = new ArrayList<>(notIgnoredFilePatterns);
+        for (String glob : globs) {
+            GitignoreGlob gitignoreGlob = GitignoreGlob.of(glob);
+            (gitignoreGlob.isNegated() ? notIgnoredPatterns : ignoredPatterns).add(gitignoreGlob.getPattern());
+        }
+        return new IgnoredFiles(ignoredPatterns, notIgnoredPatterns, decisionsCacheSize);
+    }
+
+    /**
+     * @param decisionsCacheSize max amount of file names which decisions are cached (0 disables caching)
+     */
+    IgnoredFiles withDecisionsCacheSize(int decisionsCacheSize) {
+        return new IgnoredFiles(ignoredFilePatterns, notIgnoredFilePatterns, decisionsCacheSize);
+    }
+
     boolean shouldBeIgnored(File file) {
-        return ignoredFilePatterns.stream()
-            .anyMatch(p -> p.matcher(file.getName()).matches());
+        return shouldBeIgnored(file.getName());
+    }
+
+    boolean shouldBeIgnored(String fileName) {
+        if (ignoredFilePatterns.isEmpty()) {
+            return false;
+        }
+        if (decisions.isEmpty()) {
+            return matches(fileName);
+        }
+        DecisionsCache decisionsCache = decisions.get();
+        synchronized (decisionsCache) {
+            return decisionsCache.computeIfAbsent(fileName, this::matches);
+        }
+    }
+
+    private boolean matches(String fileName) {
+        return ignoredNameMatcher.matches(fileName) && !notIgnoredNameMatcher.matches(fileName);
     }
 
     List<WatchEvent<?>> removeEventsRefersToIgnoredFiles(List<WatchEvent<?>> watchEvents) {
-        List<WatchEvent<?>> copiedWatchEvents = new ArrayList<>(watchEvents);
-        return copiedWatchEvents.stream()
-            .filter(e -> ignoredFilePatterns.stream().noneMatch(p -> p.matcher(e.context().toString()).matches()))
-            .collect(Collectors.toUnmodifiableList());
+        List<WatchEvent<?>> notIgnoredWatchEvents = new ArrayList<>(watchEvents.size());
+        for (WatchEvent<?> watchEvent : watchEvents) {
+            if (!shouldBeIgnored(watchEvent.context().toString())) {
+                notIgnoredWatchEvents.add(watchEvent);
+            }
+        }
+        return List.copyOf(notIgnoredWatchEvents);
     }
 
     @Override
     public String toString() {
-        return String.join(",", ignoredFilePatterns.stream().map(Pattern::toString).collect(Collectors.toUnmodifiableList()));
+        return Stream.concat(
+                ignoredFilePatterns.stream().map(Pattern::toString),
+                notIgnoredFilePatterns.stream().map(pattern -> "!" + pattern))
+            .collect(Collectors.joining(","));
+    }
+
+    /**
+     * LRU cache of decisions (access ordered map evicting least recently used name), guarded by its own monitor.
+     */
+    private static final class DecisionsCache extends LinkedHashMap<String, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private DecisionsCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > maxSize;
+        }
     }
-}
\ No newline at end of file
+}
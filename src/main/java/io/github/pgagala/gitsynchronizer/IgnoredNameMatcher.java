@@ -0,0 +1,295 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Matcher of file names compiled from many patterns. Patterns are combined into one alternation, so that name is evaluated
+ * by single regex instead of by every pattern separately:
+ * <ul>
+ * <li>patterns which every alternative requires literal prefix or suffix (e.g. {@code .+\.swp}) are evaluated only for names
+ * having any of those prefixes/suffixes,</li>
+ * <li>rest of patterns are evaluated for every name,</li>
+ * <li>patterns which can't be combined (compiled with flags or containing back references / named groups) are evaluated
+ * one by one.</li>
+ * </ul>
+ * Name is matched if it matches whole any of patterns ({@link java.util.regex.Matcher#matches()}).
+ *
+ * @author Paweł Gągała
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class IgnoredNameMatcher {
+
+    private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+    private static final Pattern NOT_PREFILTERABLE = Pattern.compile("\\(\\?[a-zA-Z-]|\\\\[Qxuc0pPN]");
+
+    List<Affix> affixes;
+    Optional<Pattern> prefilteredPattern;
+    Optional<Pattern> combinedPattern;
+    List<Pattern> separatePatterns;
+
+    private IgnoredNameMatcher(List<Affix> affixes, Optional<Pattern> prefilteredPattern, Optional<Pattern> combinedPattern,
+                               List<Pattern> separatePatterns) {
+        this.affixes = affixes;
+        this.prefilteredPattern = prefilteredPattern;
+        this.combinedPattern = combinedPattern;
+        this.separatePatterns = separatePatterns;
+    }
+
+    static IgnoredNameMatcher of(List<Pattern> patterns) {
+        List<Affix> affixes = new ArrayList<>();
+        List<Pattern> prefilteredPatterns = new ArrayList<>();
+        List<Pattern> combinedPatterns = new ArrayList<>();
+        List<Pattern> separatePatterns = new ArrayList<>();
+        for (Pattern pattern : patterns) {
+            if (pattern.flags() != 0 || NOT_COMBINABLE.matcher(pattern.pattern()).find()) {
+                separatePatterns.add(pattern);
+                continue;
+            }
+            Optional<List<Affix>> patternAffixes = affixes(pattern.pattern());
+            if (patternAffixes.isPresent()) {
+                affixes.addAll(patternAffixes.get());
+                prefilteredPatterns.add(pattern);
+            } else {
+                combinedPatterns.add(pattern);
+            }
+        }
+        return new IgnoredNameMatcher(List.copyOf(affixes), combine(prefilteredPatterns), combine(combinedPatterns),
+            List.copyOf(separatePatterns));
+    }
+
+    private static Optional<Pattern> combine(List<Pattern> patterns) {
+        if (patterns.isEmpty()) {
+            return Optional.empty();
+        }
+        if (patterns.size() == 1) {
+            return Optional.of(patterns.get(0));
+        }
+        return Optional.of(Pattern.compile(patterns.stream()
+            .map(pattern -> "(?:" + pattern.pattern() + ")")
+            .collect(Collectors.joining("|"))));
+    }
+
+    boolean matches(String name) {
+        if (prefilteredPattern.isPresent() && hasAnyAffix(name) && prefilteredPattern.get().matcher(name).matches()) {
+            return true;
+        }
+        if (combinedPattern.isPresent() && combinedPattern.get().matcher(name).matches()) {
+            return true;
+        }
+        for (Pattern pattern : separatePatterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasAnyAffix(String name) {
+        for (Affix affix : affixes) {
+            if (affix.matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds literal prefix and suffix of each top level alternative of regex (also of alternatives of group wrapping whole regex).
+     *
+     * @return empty if any alternative has neither literal prefix nor suffix or regex isn't simple enough to tell it
+     * (e.g. it contains inline flags, quotation or escaped code points)
+     */
+    static Optional<List<Affix>> affixes(String regex) {
+        if (NOT_PREFILTERABLE.matcher(regex).find()) {
+            return Optional.empty();
+        }
+        String body = regex;
+        if (body.startsWith("^")) {
+            body = body.substring(1);
+        }
+        if (body.endsWith("$") && !body.endsWith("\\$")) {
+            body = body.substring(0, body.length() - 1);
+        }
+        if (body.startsWith("(") && closingParenthesis(body, 0) == body.length() - 1) {
+            body = body.substring(body.startsWith("(?:") ? 3 : 1, body.length() - 1);
+        }
+        List<Affix> affixes = new ArrayList<>();
+        for (String alternative : alternatives(body)) {
+            Optional<Affix> affix = affix(alternative);
+            if (affix.isEmpty()) {
+                return Optional.empty();
+            }
+            affixes.add(affix.get());
+        }
+        return Optional.of(affixes);
+    }
+
+    private static Optional<Affix> affix(String alternative) {
+        List<Character> tokens = tokens(alternative);
+        if (tokens == null) {
+            return Optional.empty();
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < tokens.size() && tokens.get(i) != null; i++) {
+            prefix.append(tokens.get(i));
+        }
+        StringBuilder suffix = new StringBuilder();
+        for (int i = tokens.size() - 1; i >= 0 && tokens.get(i) != null; i--) {
+            suffix.insert(0, tokens.get(i));
+        }
+        return prefix.length() == 0 && suffix.length() == 0 ? Optional.empty() : Optional.of(new Affix(prefix.toString(), suffix.toString()));
+    }
+
+    /**
+     * @return literal characters of regex with null in place of any other construct (e.g. character class, group or quantified
+     * character) or null if regex can't be tokenized
+     */
+    private static List<Character> tokens(String regex) {
+        List<Character> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return null;
+                }
+                char escaped = regex.charAt(i + 1);
+                tokens.add(Character.isLetterOrDigit(escaped) ? null : escaped);
+                i += 2;
+            } else if (c == '[' || c == '(') {
+                int end = c == '[' ? closingBracket(regex, i) : closingParenthesis(regex, i);
+                if (end < 0) {
+                    return null;
+                }
+                tokens.add(null);
+                i = end + 1;
+            } else if (c == '*' || c == '+' || c == '?' || c == '{') {
+                if (tokens.isEmpty()) {
+                    return null;
+                }
+                tokens.set(tokens.size() - 1, null);
+                if (c == '{') {
+                    int end = regex.indexOf('}', i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    i = end;
+                }
+                i++;
+                if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+                    i++;
+                }
+            } else if (c == ')' || c == ']' || c == '|') {
+                return null;
+            } else {
+                tokens.add(c == '.' || c == '^' || c == '$' ? null : c);
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static List<String> alternatives(String regex) {
+        List<String> alternatives = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[' || c == '(') {
+                int end = c == '[' ? closingBracket(regex, i) : closingParenthesis(regex, i);
+                i = end < 0 ? regex.length() : end + 1;
+                continue;
+            }
+            if (c == '|') {
+                alternatives.add(regex.substring(start, i));
+                start = i + 1;
+            }
+            i++;
+        }
+        alternatives.add(regex.substring(start));
+        return alternatives;
+    }
+
+    /**
+     * @return index of parenthesis closing the one at given index or -1 if it isn't closed
+     */
+    private static int closingParenthesis(String regex, int opening) {
+        int depth = 0;
+        int i = opening;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                int end = closingBracket(regex, i);
+                if (end < 0) {
+                    return -1;
+                }
+                i = end + 1;
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of bracket closing character class opened at given index (with nested classes) or -1 if it isn't closed
+     */
+    private static int closingBracket(String regex, int opening) {
+        int depth = 0;
+        int i = opening;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                if (regex.startsWith("^", i + 1)) {
+                    i++;
+                }
+                if (regex.startsWith("]", i + 1)) {
+                    i++;
+                }
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Literal prefix and suffix which every name matched by pattern alternative has.
+     */
+    @Value
+    static class Affix {
+        String prefix;
+        String suffix;
+
+        boolean matches(String name) {
+            return name.startsWith(prefix) && name.endsWith(suffix);
+        }
+    }
+}
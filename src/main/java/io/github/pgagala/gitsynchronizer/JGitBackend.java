@@ -0,0 +1,316 @@
+package io.github.pgagala.gitsynchronizer;
+
+import com.google.common.base.Strings;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.PullResult;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.RmCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.URIish;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static java.lang.String.format;
+
+/**
+ * Executes git commands in-process via JGit. Neither docker nor git installation is required.
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class JGitBackend implements GitBackend {
+
+    private static final Set<RemoteRefUpdate.Status> SUCCESSFUL_PUSH_STATUSES = EnumSet.of(RemoteRefUpdate.Status.OK, RemoteRefUpdate.Status.UP_TO_DATE);
+
+    File gitRepositoryLocalFile;
+
+    @Override
+    public Response init() {
+        return recorded("git init", () -> {
+            try {
+                Git.init().setDirectory(gitRepositoryLocalFile).call().close();
+                return Response.success();
+            } catch (GitAPIException exc) {
+                return failure("git init", exc);
+            }
+        });
+    }
+
+    @Override
+    public Response addRemote(String name, GitServerRemote remote) {
+        String description = format("git adding remote %s", remote);
+        return recorded(description, () -> {
+            try (Git git = open()) {
+                git.remoteAdd().setName(name).setUri(new URIish(remote.getValue())).call();
+                return Response.success();
+            } catch (IOException | GitAPIException | URISyntaxException exc) {
+                return failure(description, exc);
+            }
+        });
+    }
+
+    /**
+     * Repository has no commits yet, so switching to new branch means only pointing HEAD on it.
+     */
+    @Override
+    public Response createBranchAndSwitch(GitBranch branch) {
+        return recorded("git checkout -b", () -> {
+            try (Git git = open()) {
+                RefUpdate.Result result = git.getRepository().updateRef(Constants.HEAD).link(Constants.R_HEADS + branch.getValue());
+                return result == RefUpdate.Result.REJECTED || result == RefUpdate.Result.LOCK_FAILURE || result == RefUpdate.Result.IO_FAILURE ?
+                    failure("git checkout -b", result.name()) :
+                    Response.success();
+            } catch (IOException exc) {
+                return failure("git checkout -b", exc);
+            }
+        });
+    }
+
+    /**
+     * Second (update) adding stages removal of files inside given directories.
+     */
+    @Override
+    public Response add(List<String> paths) {
+        if (paths.isEmpty()) {
+            return Response.success();
+        }
+        return recorded("git adding file", () -> {
+            try (Git git = open()) {
+                AddCommand add = git.add();
+                AddCommand update = git.add().setUpdate(true);
+                paths.forEach(path -> {
+                    add.addFilepattern(path);
+                    update.addFilepattern(path);
+                });
+                add.call();
+                update.call();
+                return Response.success();
+            } catch (IOException | GitAPIException exc) {
+                return failure("git adding file", exc);
+            }
+        });
+    }
+
+    @Override
+    public Response remove(List<String> paths) {
+        if (paths.isEmpty()) {
+            return Response.success();
+        }
+        return recorded("git removing file", () -> {
+            try (Git git = open()) {
+                RmCommand rm = git.rm().setCached(true);
+                paths.forEach(rm::addFilepattern);
+                rm.call();
+                return Response.success();
+            } catch (IOException | GitAPIException exc) {
+                return failure("git removing file", exc);
+            }
+        });
+    }
+
+    @Override
+    public boolean lackOfStagedChanges() {
+        Response response = recorded("git diff --cached", () -> {
+            try (Git git = open()) {
+                return Response.success(git.diff().setCached(true).setShowNameAndStatusOnly(true).call().stream()
+                    .map(entry -> entry.getChangeType() == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath())
+                    .collect(Collectors.joining("\n")));
+            } catch (IOException | GitAPIException exc) {
+                return failure("git diff --cached", exc);
+            }
+        });
+        return response.isSuccessful() && response.result().isBlank();
+    }
+
+    @Override
+    public Response commit(String message, String authorName, String authorEmail) {
+        return recorded("git committing", () -> {
+            try (Git git = open()) {
+                git.commit()
+                    .setMessage(message)
+                    .setAuthor(authorName, authorEmail)
+                    .setCommitter(authorName, authorEmail)
+                    .call();
+                return Response.success();
+            } catch (IOException | GitAPIException exc) {
+                return failure("git committing", exc);
+            }
+        });
+    }
+
+    @Override
+    public Response push(String remote, GitBranch branch) {
+        return recorded("git pushing to origin", () -> {
+            try (Git git = open()) {
+                Iterable<PushResult> pushResults = git.push()
+                    .setRemote(remote)
+                    .setRefSpecs(new RefSpec(Constants.R_HEADS + branch.getValue()))
+                    .call();
+                List<RemoteRefUpdate> rejectedUpdates = StreamSupport.stream(pushResults.spliterator(), false)
+                    .flatMap(r -> r.getRemoteUpdates().stream())
+                    .filter(u -> !SUCCESSFUL_PUSH_STATUSES.contains(u.getStatus()))
+                    .collect(Collectors.toUnmodifiableList());
+                return rejectedUpdates.isEmpty() ? Response.success() : failure("git pushing to origin", rejectedUpdates.toString());
+            } catch (IOException | GitAPIException exc) {
+                return failure("git pushing to origin", exc);
+            }
+        });
+    }
+
+    /**
+     * Pull command doesn't support depth, so that depth-limited pull is done as shallow fetch followed by fast-forward merge.
+     */
+    @Override
+    public Response pull(String remote, GitBranch branch, OptionalInt depth, Duration timeout) {
+        return recorded("git pull", () -> depth.isPresent() ?
+            shallowPull(remote, branch, depth.getAsInt(), timeout) :
+            pull(remote, branch, timeout));
+    }
+
+    private Response pull(String remote, GitBranch branch, Duration timeout) {
+        try (Git git = open()) {
+            PullResult pullResult = git.pull()
+                .setRemote(remote)
+                .setRemoteBranchName(branch.getValue())
+                .setTimeout(timeoutInSeconds(timeout))
+                .call();
+            return pullResult.isSuccessful() ? Response.success(pullResult.toString()) : failure("git pull", pullResult.toString());
+        } catch (IOException | GitAPIException exc) {
+            return failure("git pull", exc);
+        }
+    }
+
+    private Response shallowPull(String remote, GitBranch branch, int depth, Duration timeout) {
+        String remoteBranch = Constants.R_REMOTES + remote + "/" + branch.getValue();
+        try (Git git = open()) {
+            git.fetch()
+                .setRemote(remote)
+                .setRefSpecs(new RefSpec("+" + Constants.R_HEADS + branch.getValue() + ":" + remoteBranch))
+                .setDepth(depth)
+                .setTimeout(timeoutInSeconds(timeout))
+                .call();
+            MergeResult mergeResult = git.merge()
+                .include(git.getRepository().exactRef(remoteBranch))
+                .setFastForward(MergeCommand.FastForwardMode.FF_ONLY)
+                .call();
+            return mergeResult.getMergeStatus().isSuccessful() ?
+                Response.success(mergeResult.toString()) :
+                failure("git pull --depth", mergeResult.toString());
+        } catch (IOException | GitAPIException exc) {
+            return failure("git pull --depth", exc);
+        }
+    }
+
+    private static int timeoutInSeconds(Duration timeout) {
+        return (int) Math.max(1, timeout.toSeconds());
+    }
+
+    @Override
+    public Optional<String> remoteUrl(String remote) {
+        return output(recorded("git remote get-url", () -> {
+            try (Git git = open()) {
+                return Response.success(Strings.nullToEmpty(
+                    git.getRepository().getConfig().getString(ConfigConstants.CONFIG_REMOTE_SECTION, remote, "url")));
+            } catch (IOException exc) {
+                return failure("git remote get-url", exc);
+            }
+        }));
+    }
+
+    @Override
+    public Optional<String> currentBranch() {
+        return output(recorded("git symbolic-ref HEAD", () -> {
+            try (Git git = open()) {
+                Ref head = git.getRepository().exactRef(Constants.HEAD);
+                return Response.success(head != null && head.isSymbolic() ? Repository.shortenRefName(head.getTarget().getName()) : "");
+            } catch (IOException exc) {
+                return failure("git symbolic-ref HEAD", exc);
+            }
+        }));
+    }
+
+    @Override
+    public boolean cleanWorkingTree() {
+        Response response = recorded("git status", () -> {
+            try (Git git = open()) {
+                return Response.success(git.status().call().isClean() ? "" : "uncommitted changes");
+            } catch (IOException | GitAPIException exc) {
+                return failure("git status", exc);
+            }
+        });
+        return response.isSuccessful() && response.result().isBlank();
+    }
+
+    @Override
+    public Response resetToHead() {
+        return recorded("git reset --hard", () -> {
+            try (Git git = open()) {
+                git.reset().setMode(ResetCommand.ResetType.HARD).call();
+                return Response.success();
+            } catch (IOException | GitAPIException exc) {
+                return failure("git reset --hard", exc);
+            }
+        });
+    }
+
+    private Git open() throws IOException {
+        return Git.open(gitRepositoryLocalFile);
+    }
+
+    /**
+     * Operations are recorded in metrics under the same descriptions as commands of command line backends
+     * (see {@link Metrics#recordCommand(String, long, boolean)}), so that both backends are comparable.
+     */
+    private static Response recorded(String description, Supplier<Response> operation) {
+        long start = System.nanoTime();
+        Response response = operation.get();
+        Metrics.current().recordCommand(description, System.nanoTime() - start, response.isFailure());
+        return response;
+    }
+
+    private static Optional<String> output(Response response) {
+        return response.isSuccessful() && !response.result().isBlank() ? Optional.of(response.result().strip()) : Optional.empty();
+    }
+
+    private Response failure(String description, Exception exc) {
+        return failure(description, exc.toString());
+    }
+
+    private Response failure(String description, String reason) {
+        String errorMsg = format("Unsuccessful %s execution in repository: %s. %nReason: %s",
+            description, gitRepositoryLocalFile.getAbsolutePath(), reason);
+        log.error(errorMsg);
+        return Response.failure(errorMsg);
+    }
+}
@@ -0,0 +1,254 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link DirectCommitter} writing objects straight into object database of local repository (in-process, via JGit), whichever
+ * {@link GitBackend} runs the rest of git commands. Content of each changed file is inserted as blob from watched path, new tree
+ * is built in memory from tree of the latest commit and changes, and branch ref is moved to commit created from it.
+ * Only object database and refs are used, so that it would work the same way for bare repository.
+ * <p>
+ * Tree of the latest commit is kept in memory (as in-core {@link DirCache}) and it is read again only if branch was moved
+ * by someone else meanwhile (e.g. by pull). Objects are written as loose ones, so that repository is garbage collected
+ * (gc --auto) from time to time, as git commit would do.
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class ObjectStoreCommitter implements DirectCommitter {
+
+    private static final int COMMITS_PER_GC = 50;
+    private static final String COMMIT_DESCRIPTION = "object store commit";
+    private static final Set<RefUpdate.Result> SUCCESSFUL_REF_UPDATES = EnumSet.of(RefUpdate.Result.NEW, RefUpdate.Result.FAST_FORWARD);
+    private static final ObjectId EMPTY_TREE_ID = new ObjectInserter.Formatter().idFor(Constants.OBJ_TREE, new byte[0]);
+
+    File gitDir;
+    String branchRef;
+    @NonFinal
+    Optional<Repository> repository = Optional.empty();
+    @NonFinal
+    Optional<DirCache> tree = Optional.empty();
+    @NonFinal
+    Optional<ObjectId> treeCommit = Optional.empty();
+    @NonFinal
+    int commits;
+
+    ObjectStoreCommitter(File gitRepositoryLocalFile, GitBranch branch) {
+        this.gitDir = new File(gitRepositoryLocalFile, Constants.DOT_GIT);
+        this.branchRef = Constants.R_HEADS + branch.getValue();
+    }
+
+    /**
+     * Commit is recorded in metrics as command (see {@link Metrics#recordCommand(String, long, boolean)}).
+     */
+    @Override
+    public synchronized Optional<String> commit(TreeChanges changes, String message, String authorName, String authorEmail)
+        throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Optional<String> commit = commitChanges(changes, message, authorName, authorEmail);
+            failed = false;
+            return commit;
+        } finally {
+            Metrics.current().recordCommand(COMMIT_DESCRIPTION, System.nanoTime() - start, failed);
+        }
+    }
+
+    private Optional<String> commitChanges(TreeChanges changes, String message, String authorName, String authorEmail)
+        throws IOException {
+        Repository repo = repository();
+        try (ObjectInserter inserter = repo.newObjectInserter()) {
+            Optional<ObjectId> parent = Optional.ofNullable(repo.resolve(branchRef + "^{commit}"));
+            DirCache parentTree = tree(repo, parent);
+            ObjectId parentTreeId = treeId(repo, parent);
+            DirCacheEditor editor = parentTree.editor();
+            changes.getRemovedPaths().forEach(path -> editor.add(parentTree.findEntry(path) >= 0 ?
+                new DirCacheEditor.DeletePath(path) :
+                new DirCacheEditor.DeleteTree(path)));
+            for (Map.Entry<String, File> file : changes.getWrittenFiles().entrySet()) {
+                Optional<ObjectId> blob = insertBlob(inserter, file.getValue());
+                if (blob.isPresent()) {
+                    editor.add(new BlobEdit(file.getKey(), blob.get(), fileMode(parentTree.getEntry(file.getKey()))));
+                }
+            }
+            editor.finish();
+            ObjectId treeId = parentTree.writeTree(inserter);
+            if (treeId.equals(parentTreeId)) {
+                treeCommit = parent;
+                return Optional.empty();
+            }
+            ObjectId commit = inserter.insert(commitBuilder(treeId, parent, message, new PersonIdent(authorName, authorEmail)));
+            inserter.flush();
+            updateBranch(repo, parent, commit, message);
+            treeCommit = Optional.of(commit);
+            collectGarbageIfNeeded(repo);
+            return Optional.of(commit.name());
+        } catch (IOException | RuntimeException exc) {
+            tree = Optional.empty();
+            throw exc;
+        }
+    }
+
+    /**
+     * Repository is opened on the first commit, as it doesn't exist before repository is created by {@link GitService}.
+     */
+    private Repository repository() throws IOException {
+        if (repository.isEmpty()) {
+            repository = Optional.of(new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).build());
+        }
+        return repository.get();
+    }
+
+    private DirCache tree(Repository repo, Optional<ObjectId> parent) throws IOException {
+        if (tree.isPresent() && treeCommit.equals(parent)) {
+            return tree.get();
+        }
+        DirCache parentTree = DirCache.newInCore();
+        if (parent.isPresent()) {
+            DirCacheBuilder builder = parentTree.builder();
+            try (ObjectReader reader = repo.newObjectReader(); RevWalk revWalk = new RevWalk(reader)) {
+                RevCommit parentCommit = revWalk.parseCommit(parent.get());
+                builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, parentCommit.getTree());
+            }
+            builder.finish();
+        }
+        log.info("Read tree of {} ({} files)", parent.map(p -> "commit " + p.name()).orElse("empty branch"), parentTree.getEntryCount());
+        tree = Optional.of(parentTree);
+        treeCommit = parent;
+        return parentTree;
+    }
+
+    /**
+     * Tree id is read from parent commit, so that unchanged tree is recognized without hashing whole tree again.
+     */
+    private static ObjectId treeId(Repository repo, Optional<ObjectId> commit) throws IOException {
+        if (commit.isEmpty()) {
+            return EMPTY_TREE_ID;
+        }
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            return revWalk.parseCommit(commit.get()).getTree().getId();
+        }
+    }
+
+    /**
+     * Blob has size of file when it was opened. If file is shortened meanwhile inserting fails, so that it is skipped as
+     * file which couldn't be read.
+     *
+     * @return id of inserted blob or empty if file couldn't be read
+     */
+    private static Optional<ObjectId> insertBlob(ObjectInserter inserter, File file) {
+        try (InputStream content = Files.newInputStream(file.toPath())) {
+            return Optional.of(inserter.insert(Constants.OBJ_BLOB, Files.size(file.toPath()), content));
+        } catch (IOException exc) {
+            log.warn("File: {} couldn't be read. It will be committed with its next change: {}", file, exc.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Executable bit of file already committed is kept, as it can't be told reliably from watched path (e.g. on Windows).
+     */
+    private static FileMode fileMode(DirCacheEntry current) {
+        return current != null && current.getFileMode() == FileMode.EXECUTABLE_FILE ? FileMode.EXECUTABLE_FILE : FileMode.REGULAR_FILE;
+    }
+
+    private static CommitBuilder commitBuilder(ObjectId treeId, Optional<ObjectId> parent, String message, PersonIdent author) {
+        CommitBuilder commitBuilder = new CommitBuilder();
+        commitBuilder.setTreeId(treeId);
+        parent.ifPresent(commitBuilder::setParentId);
+        commitBuilder.setAuthor(author);
+        commitBuilder.setCommitter(author);
+        commitBuilder.setMessage(message);
+        return commitBuilder;
+    }
+
+    /**
+     * Branch is moved only if it still points to parent commit, so that commits made meanwhile by someone else aren't lost.
+     */
+    private void updateBranch(Repository repo, Optional<ObjectId> parent, ObjectId commit, String message) throws IOException {
+        RefUpdate refUpdate = repo.updateRef(branchRef);
+        refUpdate.setNewObjectId(commit);
+        refUpdate.setExpectedOldObjectId(parent.orElse(ObjectId.zeroId()));
+        refUpdate.setRefLogMessage("commit: " + message.lines().findFirst().orElse(""), false);
+        RefUpdate.Result result = refUpdate.update();
+        if (!SUCCESSFUL_REF_UPDATES.contains(result)) {
+            throw new IOException("Unsuccessful moving branch " + branchRef + " to commit " + commit.name() + ": " + result);
+        }
+    }
+
+    private void collectGarbageIfNeeded(Repository repo) {
+        if (++commits % COMMITS_PER_GC != 0 || !(repo instanceof FileRepository)) {
+            return;
+        }
+        try {
+            GC gc = new GC((FileRepository) repo);
+            gc.setAuto(true);
+            gc.gc().join();
+        } catch (IOException | ParseException | CompletionException exc) {
+            log.warn("Unsuccessful garbage collection of repository: {}", exc.toString());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        repository.ifPresent(Repository::close);
+        repository = Optional.empty();
+        tree = Optional.empty();
+    }
+
+    /**
+     * Points path to given blob (replacing file or folder which had the same path).
+     */
+    private static class BlobEdit extends DirCacheEditor.PathEdit {
+
+        private final ObjectId blob;
+        private final FileMode fileMode;
+
+        private BlobEdit(String path, ObjectId blob, FileMode fileMode) {
+            super(path);
+            this.blob = blob;
+            this.fileMode = fileMode;
+        }
+
+        @Override
+        public void apply(DirCacheEntry entry) {
+            entry.setFileMode(fileMode);
+            entry.setObjectId(blob);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.pgagala.gitsynchronizer;
+
+import io.github.pgagala.gitsynchronizer.WatchShard.WatchedFolder;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns watched files as int ids, so that file events queued in {@link FileEventLog} refer to their files by id instead of
+ * holding own file and file name. Files of watch events are looked up by watched folder and name from watch event,
+ * so that repeated events of the same file don't build its path again.
+ * <p>
+ * Each looked up id is a reference to its file, which is released when event referring to it is materialized (or isn't logged).
+ * File without references is forgotten and its id is reused, so that dictionary holds only files which events are queued,
+ * no matter how many distinct files had any event.
+ *
+ * @author Paweł Gągała
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class PathDictionary {
+    private static final int INITIAL_CAPACITY = 256;
+
+    Map<File, Integer> ids = new HashMap<>();
+    Map<WatchedFolder, Map<Object, Integer>> idsByFolder = new HashMap<>();
+    @NonFinal
+    File[] files = new File[INITIAL_CAPACITY];
+    @NonFinal
+    String[] fileNames = new String[INITIAL_CAPACITY];
+    @NonFinal
+    int[] references = new int[INITIAL_CAPACITY];
+    @NonFinal
+    WatchedFolder[] folders = new WatchedFolder[INITIAL_CAPACITY];
+    @NonFinal
+    Object[] names = new Object[INITIAL_CAPACITY];
+    @NonFinal
+    int[] freeIds = new int[INITIAL_CAPACITY];
+    @NonFinal
+    int freeIdsCount;
+    @NonFinal
+    int size;
+
+    /**
+     * @param fileName path of file in synchronized repository
+     * @return id of file with one more reference to it
+     */
+    synchronized int id(File file, String fileName) {
+        Integer id = ids.get(file);
+        if (id == null) {
+            id = register(file, fileName);
+        }
+        references[id]++;
+        return id;
+    }
+
+    /**
+     * @param name name of file in watched folder (context of its watch event)
+     * @return id of file with one more reference to it
+     */
+    synchronized int id(WatchedFolder folder, Object name) {
+        Map<Object, Integer> folderIds = idsByFolder.computeIfAbsent(folder, f -> new HashMap<>());
+        Integer id = folderIds.get(name);
+        if (id != null) {
+            references[id]++;
+            return id;
+        }
+        String fileName = name.toString();
+        int fileId = id(new File(folder.getPath().toString() + "/" + fileName), DirectoryTreeWalker.relativePath(folder.getRelativePath(), fileName));
+        folderIds.put(name, fileId);
+        folders[fileId] = folder;
+        names[fileId] = name;
+        return fileId;
+    }
+
+    /**
+     * Releases one reference to file. Ids which aren't referenced (e.g. not looked up in this dictionary) are ignored.
+     */
+    synchronized void release(int id) {
+        if (id < 0 || id >= size || references[id] == 0 || --references[id] > 0) {
+            return;
+        }
+        ids.remove(files[id]);
+        if (folders[id] != null) {
+            Map<Object, Integer> folderIds = idsByFolder.get(folders[id]);
+            if (folderIds != null) {
+                folderIds.remove(names[id]);
+            }
+        }
+        files[id] = null;
+        fileNames[id] = null;
+        folders[id] = null;
+        names[id] = null;
+        if (freeIdsCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIdsCount * 2);
+        }
+        freeIds[freeIdsCount++] = id;
+    }
+
+    /**
+     * Forgets lookup of files by names of unwatched folder (ids of its files stay valid as long as they are referenced).
+     */
+    synchronized void unwatched(WatchedFolder folder) {
+        idsByFolder.remove(folder);
+    }
+
+    private int register(File file, String fileName) {
+        int id;
+        if (freeIdsCount > 0) {
+            id = freeIds[--freeIdsCount];
+        } else {
+            if (size == files.length) {
+                files = Arrays.copyOf(files, size * 2);
+                fileNames = Arrays.copyOf(fileNames, size * 2);
+                references = Arrays.copyOf(references, size * 2);
+                folders = Arrays.copyOf(folders, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            id = size++;
+        }
+        files[id] = file;
+        fileNames[id] = fileName;
+        ids.put(file, id);
+        return id;
+    }
+
+    synchronized File file(int id) {
+        return files[id];
+    }
+
+    synchronized String fileName(int id) {
+        return fileNames[id];
+    }
+
+    /**
+     * @return amount of interned files
+     */
+    synchronized int size() {
+        return ids.size();
+    }
+
+    /**
+     * @return amount of folders which files are looked up by names
+     */
+    synchronized int folders() {
+        return idsByFolder.size();
+    }
+}
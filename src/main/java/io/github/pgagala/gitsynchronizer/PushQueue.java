@@ -0,0 +1,182 @@
+package io.github.pgagala.gitsynchronizer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
+import io.github.pgagala.gitsynchronizer.processexecutor.Response;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes local commits to remote repository in background, so that committing doesn't wait for remote.
+ * Any number of commits requested to be pushed meanwhile is pushed at once (branch tip is pushed).
+ * Failed push is repeated with exponential backoff until it succeeds.
+ * Time when the oldest event of pushed commits was noticed is reported to {@link Metrics} once they are pushed.
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class PushQueue {
+
+    static final Duration INITIAL_BACKOFF = Duration.ofMillis(500);
+    static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    Pusher pusher;
+    Duration initialBackoff;
+    Duration maxBackoff;
+    ExecutorService executorService =
+        Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("git-push-thread-%d").setDaemon(true).build());
+    @NonFinal
+    long requestedPushes;
+    @NonFinal
+    long pushedRequests;
+    @NonFinal
+    long pushes;
+    @NonFinal
+    long failedPushes;
+    @NonFinal
+    boolean started;
+    @NonFinal
+    OptionalLong oldestRequestedEventNanos = OptionalLong.empty();
+    @NonFinal
+    OptionalLong oldestPushedEventNanos = OptionalLong.empty();
+
+    PushQueue(Pusher pusher, Duration initialBackoff, Duration maxBackoff) {
+        this.pusher = pusher;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    PushQueue(Pusher pusher) {
+        this(pusher, INITIAL_BACKOFF, MAX_BACKOFF);
+    }
+
+    synchronized void start() {
+        if (!started) {
+            started = true;
+            executorService.submit(this::pushInLoop);
+        }
+    }
+
+    /**
+     * Tries to push pending commits (waiting at most given time) and stops pushing.
+     *
+     * @return true if all commits were pushed
+     */
+    boolean stop(Duration timeout) throws InterruptedException {
+        boolean pushed = awaitPushed(timeout);
+        if (!pushed) {
+            log.warn("Not all commits were pushed to remote repository before stopping");
+        }
+        executorService.shutdownNow();
+        return pushed;
+    }
+
+    /**
+     * Requests pushing of all commits made so far.
+     */
+    synchronized void requestPush() {
+        requestPush(OptionalLong.empty());
+    }
+
+    /**
+     * @param oldestEventNanos {@link System#nanoTime()} when the oldest event of committed file changes was noticed (if known)
+     */
+    synchronized void requestPush(OptionalLong oldestEventNanos) {
+        requestedPushes++;
+        oldestRequestedEventNanos = older(oldestRequestedEventNanos, oldestEventNanos);
+        notifyAll();
+    }
+
+    private static OptionalLong older(OptionalLong first, OptionalLong second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        return second.isEmpty() || first.getAsLong() - second.getAsLong() <= 0 ? first : second;
+    }
+
+    /**
+     * @return true if all commits requested to be pushed till now were pushed within given time
+     */
+    synchronized boolean awaitPushed(Duration timeout) throws InterruptedException {
+        long awaitedRequest = requestedPushes;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pushedRequests < awaitedRequest) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    synchronized long pushes() {
+        return pushes;
+    }
+
+    synchronized long failedPushes() {
+        return failedPushes;
+    }
+
+    private void pushInLoop() {
+        Duration backoff = initialBackoff;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long pushedRequest = awaitPushRequest();
+                Response response = pusher.push();
+                if (response.isSuccessful()) {
+                    markPushed(pushedRequest);
+                    backoff = initialBackoff;
+                } else {
+                    markFailed();
+                    log.warn("Unsuccessful pushing to remote repository. Retrying in {} ms. Response: {}", backoff.toMillis(), response.result());
+                    Thread.sleep(backoff.toMillis());
+                    backoff = backoff.multipliedBy(2).compareTo(maxBackoff) > 0 ? maxBackoff : backoff.multipliedBy(2);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Exception during pushing to remote repository. Commits won't be pushed anymore", e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the latest push request which will be fulfilled by the next push
+     */
+    private synchronized long awaitPushRequest() throws InterruptedException {
+        while (pushedRequests >= requestedPushes) {
+            wait();
+        }
+        oldestPushedEventNanos = older(oldestPushedEventNanos, oldestRequestedEventNanos);
+        oldestRequestedEventNanos = OptionalLong.empty();
+        return requestedPushes;
+    }
+
+    private synchronized void markPushed(long pushedRequest) {
+        pushes++;
+        pushedRequests = pushedRequest;
+        Metrics.current().recordPushed(oldestPushedEventNanos);
+        oldestPushedEventNanos = OptionalLong.empty();
+        notifyAll();
+    }
+
+    private synchronized void markFailed() {
+        failedPushes++;
+    }
+
+    @FunctionalInterface
+    interface Pusher {
+        Response push() throws InterruptedException;
+    }
+}
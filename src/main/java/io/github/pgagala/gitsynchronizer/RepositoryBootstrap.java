@@ -6,10 +6,14 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.time.Duration;
 
 /**
  * Initializing local repository synchronized with remote repository.
- * Take care about cleaning repository before initialization.
+ * Take care about cleaning repository before initialization and releasing git backend on shutdown.
+ * Persistent repository is reused on next start (if it is still valid) and only changes which appeared on remote repository
+ * meanwhile are pulled. It isn't cleaned up on shutdown. Newly created repository can fetch only the latest remote commit
+ * (see {@link BootstrapFetch}).
  *
  * @author Paweł Gągała
  */
@@ -19,15 +23,45 @@ import java.io.IOException;
 class RepositoryBootstrap {
 
     GitService gitService;
+    boolean persistentRepository;
+    BootstrapFetch bootstrapFetch;
+    Duration pullTimeout;
+
+    RepositoryBootstrap(GitService gitService, boolean persistentRepository) {
+        this(gitService, persistentRepository, BootstrapFetch.FULL, GitService.DEFAULT_PULL_TIMEOUT);
+    }
+
+    RepositoryBootstrap(GitService gitService) {
+        this(gitService, false);
+    }
 
     void initialize() throws InterruptedException, IOException {
         log.info("Initializing repository. Each initialized type file change can be new file or modification of already existing file in synchronized repository");
+        if (persistentRepository && gitService.openExistingRepository()) {
+            gitService.pull(BootstrapFetch.FULL, pullTimeout);
+            return;
+        }
         cleanup();
         gitService.createRepository();
-        gitService.pull();
+        gitService.pull(bootstrapFetch, pullTimeout);
+        if (!persistentRepository) {
+            log.info("Repository will be automatically cleaned up after program shutdown");
+        }
     }
 
     void cleanup() {
         gitService.deleteRepository();
     }
+
+    void shutdown() {
+        try {
+            gitService.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted during stopping git backend", e);
+        }
+        if (!persistentRepository) {
+            cleanup();
+        }
+    }
 }
\ No newline at end of file
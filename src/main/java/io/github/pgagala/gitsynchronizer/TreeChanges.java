@@ -0,0 +1,65 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.Value;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File changes translated into changes of repository tree: files which content should be written (by their paths in repository)
+ * and removed paths (of files or whole folders). Changed folder is expanded into files it contains. Removal wins if path
+ * is both changed and removed, as it does when changes are applied to working tree.
+ *
+ * @author Paweł Gągała
+ */
+@Value
+class TreeChanges {
+
+    Map<String, File> writtenFiles;
+    List<String> removedPaths;
+
+    static TreeChanges of(FileChanges fileChanges) {
+        List<String> removedPaths = fileChanges.deletedFileNames();
+        Set<String> removedPathsLookup = new HashSet<>(removedPaths);
+        Map<String, File> writtenFiles = new LinkedHashMap<>();
+        fileChanges.newOrModifiedFilesByName().forEach((fileName, file) -> {
+            if (removedPathsLookup.contains(fileName)) {
+                return;
+            }
+            if (file.isDirectory()) {
+                writtenFiles.putAll(filesOfFolder(fileName, file.toPath()));
+            } else {
+                writtenFiles.put(fileName, file);
+            }
+        });
+        return new TreeChanges(Collections.unmodifiableMap(writtenFiles), removedPaths);
+    }
+
+    private static Map<String, File> filesOfFolder(String folderName, Path folder) {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            return paths.filter(Files::isRegularFile)
+                .collect(Collectors.toMap(
+                    path -> folderName + "/" + folder.relativize(path).toString().replace(File.separatorChar, '/'),
+                    Path::toFile,
+                    (first, second) -> first,
+                    LinkedHashMap::new));
+        } catch (IOException exc) {
+            throw new UncheckedIOException("Unsuccessful listing files of folder: " + folder, exc);
+        }
+    }
+
+    boolean isEmpty() {
+        return writtenFiles.isEmpty() && removedPaths.isEmpty();
+    }
+}
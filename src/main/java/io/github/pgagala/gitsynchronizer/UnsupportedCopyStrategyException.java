@@ -0,0 +1,22 @@
+package io.github.pgagala.gitsynchronizer;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link CopyStrategy} which can't copy files between watched paths and repository at all
+ * (e.g. file system doesn't support reflinks or they are on different file systems).
+ *
+ * @author Paweł Gągała
+ */
+class UnsupportedCopyStrategyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedCopyStrategyException(String message) {
+        super(message);
+    }
+
+    UnsupportedCopyStrategyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.pgagala.gitsynchronizer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of processing one batch of watch events (all events polled from one watch key) by {@link FileWatcher}.
+ * Like every flight recorder event it costs nothing but a check of its state unless it is enabled in a running recording.
+ *
+ * @author Paweł Gągała
+ */
+@Name("io.github.pgagala.gitsynchronizer.WatchBatch")
+@Label("Watch Batch")
+@Category({"Git Synchronizer", "Watching"})
+@Description("Batch of watch events polled from one watch key and logged as file events")
+class WatchBatchEvent extends jdk.jfr.Event {
+
+    @Label("Watch Shard")
+    int shard;
+
+    @Label("Event Count")
+    int eventCount;
+
+    @Label("Ignored Count")
+    @Description("Events which refer to ignored files")
+    int ignoredCount;
+}
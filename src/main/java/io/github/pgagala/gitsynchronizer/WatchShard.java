@@ -0,0 +1,155 @@
+package io.github.pgagala.gitsynchronizer;
+
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Part of watched paths registered in one {@link WatchService}. Each shard is polled by its own thread of {@link FileWatcher}.
+ * Paths are registered mostly before polling starts, but folders created in watched folders can be registered by polling thread
+ * or during rescan of dirty folder (see {@link DirtyFolders}) by synchronizing thread, so that registered paths are kept in synchronized maps.
+ * Collects statistics of file events which occurred on its paths.
+ *
+ * @author Paweł Gągała
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class WatchShard {
+
+    int id;
+    WatchService watchService;
+    Map<WatchKey, WatchedFolder> watchedFolders = Collections.synchronizedMap(new HashMap<>());
+    Map<WatchKey, List<File>> watchedFiles = Collections.synchronizedMap(new HashMap<>());
+    LongAdder events = new LongAdder();
+    long creationTime = System.nanoTime();
+
+    WatchShard(int id, WatchService watchService) {
+        this.id = id;
+        this.watchService = watchService;
+    }
+
+    /**
+     * Shard which should watch given directory. The same directory always belongs to the same shard.
+     */
+    static WatchShard of(List<WatchShard> watchShards, Path directory) {
+        return watchShards.size() == 1 ? watchShards.get(0) : watchShards.get(Math.floorMod(directory.hashCode(), watchShards.size()));
+    }
+
+    void watchFolder(Path folder) throws IOException {
+        watchFolder(folder, "");
+    }
+
+    /**
+     * @param relativePath path of folder in synchronized repository ('/' separated, empty for repository itself)
+     */
+    void watchFolder(Path folder, String relativePath) throws IOException {
+        watchedFolders.put(register(folder), new WatchedFolder(folder, relativePath));
+    }
+
+    /**
+     * Single file is watched via its parent folder.
+     */
+    void watchFile(Path file) throws IOException {
+        WatchKey watchKey = register(file.toFile().getParentFile().toPath());
+        watchedFiles.merge(watchKey, List.of(file.toFile()), (l1, l2) -> {
+            List<File> files = new ArrayList<>();
+            files.addAll(l1);
+            files.addAll(l2);
+            return Collections.unmodifiableList(files);
+        });
+    }
+
+    private WatchKey register(Path folder) throws IOException {
+        return folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    }
+
+    WatchService watchService() {
+        return watchService;
+    }
+
+    WatchedFolder watchedFolder(WatchKey key) {
+        return watchedFolders.get(key);
+    }
+
+    List<File> watchedFiles(WatchKey key) {
+        return watchedFiles.get(key);
+    }
+
+    /**
+     * Stops watching key which is no longer valid (e.g. its folder was deleted).
+     *
+     * @return true if key was watched by shard
+     */
+    boolean unwatch(WatchKey key) {
+        boolean watchedFolder = watchedFolders.remove(key) != null;
+        boolean watchedFile = watchedFiles.remove(key) != null;
+        return watchedFolder || watchedFile;
+    }
+
+    boolean watchesAnything() {
+        return !watchedFolders.isEmpty() || !watchedFiles.isEmpty();
+    }
+
+    void recordEvents(int amount) {
+        events.add(amount);
+    }
+
+    int id() {
+        return id;
+    }
+
+    /**
+     * @return amount of folders registered in watch service of shard
+     */
+    int registeredFolders() {
+        Set<WatchKey> keys;
+        synchronized (watchedFolders) {
+            keys = new HashSet<>(watchedFolders.keySet());
+        }
+        synchronized (watchedFiles) {
+            keys.addAll(watchedFiles.keySet());
+        }
+        return keys.size();
+    }
+
+    long events() {
+        return events.sum();
+    }
+
+    double eventsPerSecond() {
+        double seconds = (System.nanoTime() - creationTime) / 1_000_000_000d;
+        return seconds > 0 ? events() / seconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("watch shard %d (registered folders: %d, events: %d, events per second: %.2f)",
+            id, registeredFolders(), events(), eventsPerSecond());
+    }
+
+    /**
+     * Watched folder with its path in synchronized repository.
+     */
+    @Value
+    static class WatchedFolder {
+        Path path;
+        String relativePath;
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.pgagala.gitsynchronizer.metrics;
+
+import lombok.Value;
+
+/**
+ * Executions of one kind of command (by its description): how many of them failed and how long they took.
+ *
+ * @author Paweł Gągała
+ */
+@Value
+public class CommandStatistics {
+    long executions;
+    long failures;
+    LatencySnapshot durations;
+}
@@ -0,0 +1,90 @@
+package io.github.pgagala.gitsynchronizer.metrics;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with buckets growing by powers of two (bucket i holds durations from 2^(i-1) to 2^i nanoseconds),
+ * so that recording is one increment of preallocated counter and percentiles are accurate to factor of two
+ * (they are reported as upper bound of bucket, but not more than max recorded duration).
+ *
+ * @author Paweł Gągała
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class LatencyHistogram {
+
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    LongAdder count = new LongAdder();
+    LongAdder sum = new LongAdder();
+    AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(duration));
+        count.increment();
+        sum.add(duration);
+        max.accumulateAndGet(duration, Math::max);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long maxNanos = max.get();
+        return new LatencySnapshot(total, total == 0 ? 0 : millis(sum.sum()) / total,
+            millis(percentile(counts, total, 0.5, maxNanos)),
+            millis(percentile(counts, total, 0.9, maxNanos)),
+            millis(percentile(counts, total, 0.99, maxNanos)),
+            millis(maxNanos));
+    }
+
+    /**
+     * @return amount of durations by upper bound of their bucket in milliseconds (without empty buckets)
+     */
+    SortedMap<Double, Long> distribution() {
+        SortedMap<Double, Long> distribution = new TreeMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucketCount = buckets.get(i);
+            if (bucketCount > 0) {
+                distribution.put(millis(upperBound(i)), bucketCount);
+            }
+        }
+        return distribution;
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == Long.SIZE ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long maxNanos) {
+        long rank = (long) Math.ceil(total * quantile);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank && cumulative > 0) {
+                return Math.min(upperBound(i), maxNanos);
+            }
+        }
+        return 0;
+    }
+
+    private static double millis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.pgagala.gitsynchronizer.metrics;
+
+import lombok.Value;
+
+/**
+ * Snapshot of {@link LatencyHistogram} in milliseconds (exported over JMX as composite data).
+ *
+ * @author Paweł Gągała
+ */
+@Value
+public class LatencySnapshot {
+    long count;
+    double meanMillis;
+    double p50Millis;
+    double p90Millis;
+    double p99Millis;
+    double maxMillis;
+}
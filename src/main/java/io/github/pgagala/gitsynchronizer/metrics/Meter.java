@@ -0,0 +1,58 @@
+package io.github.pgagala.gitsynchronizer.metrics;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter of events with rate per second over the last minute. Count is sampled by {@link #tick()} (invoked periodically by
+ * {@link Metrics}), so that marking an event is only increment of counter.
+ *
+ * @author Paweł Gągała
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class Meter {
+
+    static final int SAMPLES = 13;
+
+    LongAdder count = new LongAdder();
+    long[] sampledCounts = new long[SAMPLES];
+    long[] sampleTimes = new long[SAMPLES];
+    @NonFinal
+    int samples;
+
+    void mark() {
+        count.increment();
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    synchronized void tick() {
+        tick(System.nanoTime());
+    }
+
+    synchronized void tick(long nanoTime) {
+        int index = samples % SAMPLES;
+        sampledCounts[index] = count.sum();
+        sampleTimes[index] = nanoTime;
+        samples++;
+    }
+
+    /**
+     * @return events per second between the oldest kept sample and the latest one (0 until two samples are taken)
+     */
+    synchronized double ratePerSecond() {
+        if (samples < 2) {
+            return 0;
+        }
+        int latest = (samples - 1) % SAMPLES;
+        int oldest = samples < SAMPLES ? 0 : samples % SAMPLES;
+        long elapsed = sampleTimes[latest] - sampleTimes[oldest];
+        return elapsed <= 0 ? 0 : (double) (sampledCounts[latest] - sampledCounts[oldest]) * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+}
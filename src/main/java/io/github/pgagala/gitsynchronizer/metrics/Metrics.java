@@ -0,0 +1,253 @@
+package io.github.pgagala.gitsynchronizer.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics of synchronization pipeline: depth of file watcher queue, watch events by kind, latency from event to commit and push,
+ * durations and failures of command line processes and bytes copied into repository. Metrics are disabled by default and
+ * enabled (and exported over JMX) by {@link #enable()}. Instrumented code records metrics via {@link #current()}.
+ * <p>
+ * Disabled metrics return from every recording method right away, so that instrumented hot paths don't allocate anything.
+ * Enabled metrics record into preallocated counters and histograms (a new counter is created only for the first event
+ * of its kind or the first command with given description).
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class Metrics implements MetricsMXBean {
+
+    public static final String OBJECT_NAME = "io.github.pgagala.gitsynchronizer:type=Metrics";
+    //rates of events are computed over the last minute from counts sampled every tick
+    static final Duration TICK = Duration.ofSeconds(5);
+    private static final Metrics DISABLED = new Metrics(false);
+    @NonFinal
+    private static volatile Metrics current = DISABLED;
+
+    boolean enabled;
+    Map<String, Meter> eventMeters = new ConcurrentHashMap<>();
+    LatencyHistogram eventToCommitLatency = new LatencyHistogram();
+    LatencyHistogram eventToPushLatency = new LatencyHistogram();
+    Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+    LongAdder copiedBytes = new LongAdder();
+    @NonFinal
+    volatile IntSupplier queueDepth = () -> 0;
+    @NonFinal
+    Optional<ScheduledExecutorService> ticker = Optional.empty();
+
+    Metrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return enabled metrics if they were enabled, otherwise disabled ones
+     */
+    public static Metrics current() {
+        return current;
+    }
+
+    /**
+     * Enables metrics and exports them over JMX. Metrics are collected even if they couldn't be exported.
+     *
+     * @return enabled metrics
+     */
+    public static synchronized Metrics enable() {
+        if (current.enabled) {
+            return current;
+        }
+        Metrics metrics = new Metrics(true);
+        metrics.startTicking();
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(metrics, objectName);
+            log.info("Metrics are exported over JMX as {}", OBJECT_NAME);
+        } catch (JMException exc) {
+            log.warn("Unsuccessful exporting metrics over JMX: {}", exc.toString());
+        }
+        current = metrics;
+        return metrics;
+    }
+
+    /**
+     * Disables metrics and removes them from JMX.
+     */
+    public static synchronized void disable() {
+        if (!current.enabled) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException exc) {
+            log.warn("Unsuccessful removing metrics from JMX: {}", exc.toString());
+        }
+        current.ticker.ifPresent(ScheduledExecutorService::shutdownNow);
+        current = DISABLED;
+    }
+
+    private void startTicking() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("metrics-ticker-thread-%d").setDaemon(true).build());
+        scheduler.scheduleAtFixedRate(this::tick, 0, TICK.toMillis(), TimeUnit.MILLISECONDS);
+        ticker = Optional.of(scheduler);
+    }
+
+    void tick() {
+        eventMeters.values().forEach(Meter::tick);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * @param queueDepth supplier of amount of file changes waiting in queue (the latest registered one is exported)
+     */
+    public void registerQueueDepth(IntSupplier queueDepth) {
+        if (enabled) {
+            this.queueDepth = queueDepth;
+        }
+    }
+
+    public void markEvent(String kind) {
+        if (!enabled) {
+            return;
+        }
+        Meter meter = eventMeters.get(kind);
+        if (meter == null) {
+            meter = eventMeters.computeIfAbsent(kind, k -> new Meter());
+        }
+        meter.mark();
+    }
+
+    /**
+     * @param oldestEventNanos {@link System#nanoTime()} of the oldest event of committed file changes (if known)
+     */
+    public void recordCommitted(OptionalLong oldestEventNanos) {
+        if (enabled && oldestEventNanos.isPresent()) {
+            eventToCommitLatency.record(System.nanoTime() - oldestEventNanos.getAsLong());
+        }
+    }
+
+    /**
+     * @param oldestEventNanos {@link System#nanoTime()} of the oldest event of pushed commits (if known)
+     */
+    public void recordPushed(OptionalLong oldestEventNanos) {
+        if (enabled && oldestEventNanos.isPresent()) {
+            eventToPushLatency.record(System.nanoTime() - oldestEventNanos.getAsLong());
+        }
+    }
+
+    /**
+     * @param description description of command (the same as passed to process executor)
+     */
+    public void recordCommand(String description, long durationNanos, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        CommandMetrics command = commands.get(description);
+        if (command == null) {
+            command = commands.computeIfAbsent(description, d -> new CommandMetrics());
+        }
+        command.durations.record(durationNanos);
+        if (failed) {
+            command.failures.increment();
+        }
+    }
+
+    public void addCopiedBytes(long bytes) {
+        if (enabled) {
+            copiedBytes.add(bytes);
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public Map<String, Long> getEventCounts() {
+        Map<String, Long> eventCounts = new TreeMap<>();
+        eventMeters.forEach((kind, meter) -> eventCounts.put(kind, meter.count()));
+        return eventCounts;
+    }
+
+    @Override
+    public Map<String, Double> getEventsPerSecond() {
+        Map<String, Double> eventsPerSecond = new TreeMap<>();
+        eventMeters.forEach((kind, meter) -> eventsPerSecond.put(kind, meter.ratePerSecond()));
+        return eventsPerSecond;
+    }
+
+    @Override
+    public LatencySnapshot getEventToCommitLatency() {
+        return eventToCommitLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getEventToPushLatency() {
+        return eventToPushLatency.snapshot();
+    }
+
+    /**
+     * @return amount of latencies from event to commit by upper bound of their histogram bucket in milliseconds
+     */
+    public SortedMap<Double, Long> eventToCommitDistribution() {
+        return eventToCommitLatency.distribution();
+    }
+
+    /**
+     * @return amount of latencies from event to push by upper bound of their histogram bucket in milliseconds
+     */
+    public SortedMap<Double, Long> eventToPushDistribution() {
+        return eventToPushLatency.distribution();
+    }
+
+    @Override
+    public Map<String, CommandStatistics> getCommands() {
+        Map<String, CommandStatistics> commandStatistics = new TreeMap<>();
+        commands.forEach((description, command) -> commandStatistics.put(description,
+            new CommandStatistics(command.durations.count(), command.failures.sum(), command.durations.snapshot())));
+        return commandStatistics;
+    }
+
+    @Override
+    public long getCopiedBytes() {
+        return copiedBytes.sum();
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class CommandMetrics {
+        LatencyHistogram durations = new LatencyHistogram();
+        LongAdder failures = new LongAdder();
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.pgagala.gitsynchronizer.metrics;
+
+import java.util.Map;
+
+/**
+ * Metrics of synchronization pipeline exported over JMX (under {@link Metrics#OBJECT_NAME}).
+ *
+ * @author Paweł Gągała
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return file changes waiting in queue of file watcher
+     */
+    int getQueueDepth();
+
+    /**
+     * @return amount of watch events by their kind (e.g. ENTRY_MODIFY)
+     */
+    Map<String, Long> getEventCounts();
+
+    /**
+     * @return watch events per second over the last minute by their kind
+     */
+    Map<String, Double> getEventsPerSecond();
+
+    /**
+     * @return time from the oldest event of synchronized file changes to their commit
+     */
+    LatencySnapshot getEventToCommitLatency();
+
+    /**
+     * @return time from the oldest event of pushed commits to their push
+     */
+    LatencySnapshot getEventToPushLatency();
+
+    /**
+     * @return executions of git (and other) command line processes by their description
+     */
+    Map<String, CommandStatistics> getCommands();
+
+    /**
+     * @return bytes copied into repository
+     */
+    long getCopiedBytes();
+}
@@ -0,0 +1,103 @@
+package io.github.pgagala.gitsynchronizer.processexecutor;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Future;
+
+import static java.lang.String.format;
+
+/**
+ * Long running process started by {@link ProcessExecutor#start(List, String)} which is fed via its standard input
+ * (e.g. git fast-import). Its error output is drained concurrently (and captured up to limit), standard output is read
+ * by the caller.
+ *
+ * @author Paweł Gągała
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class InteractiveProcess {
+
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    Process process;
+    List<String> commands;
+    String description;
+    OutputStream input;
+    BufferedReader output;
+    OutputCapture error;
+    Future<OutputCapture> errorDraining;
+
+    InteractiveProcess(Process process, List<String> commands, String description, OutputCapture error, Future<OutputCapture> errorDraining) {
+        this.process = process;
+        this.commands = commands;
+        this.description = description;
+        this.input = new BufferedOutputStream(process.getOutputStream(), INPUT_BUFFER_SIZE);
+        this.output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        this.error = error;
+        this.errorDraining = errorDraining;
+    }
+
+    /**
+     * @return buffered standard input of process (it has to be flushed to reach the process)
+     */
+    public OutputStream input() {
+        return input;
+    }
+
+    public BufferedReader output() {
+        return output;
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * @return error output captured so far
+     */
+    public String error() {
+        return error.toString();
+    }
+
+    /**
+     * Closes standard input (which for most of processes means end of work) and waits for process to finish.
+     * Process which doesn't finish within timeout is killed with its descendants.
+     */
+    public Response finish(Duration timeout) throws InterruptedException {
+        try {
+            input.close();
+        } catch (IOException exc) {
+            log.debug("Standard input of {} process was already closed: {}", description, exc.toString());
+        }
+        try {
+            if (!ProcessExecutor.waitFor(process, Optional.of(timeout))) {
+                kill();
+                return ProcessExecutor.failure(description, commands, process,
+                    format("process didn't finish within %d ms. %s", timeout.toMillis(), error));
+            }
+        } catch (InterruptedException exc) {
+            kill();
+            throw exc;
+        }
+        ProcessExecutor.awaitDraining(errorDraining);
+        if (process.exitValue() != 0) {
+            return ProcessExecutor.failure(description, commands, process, format("exit code %d. %s", process.exitValue(), error));
+        }
+        return Response.success();
+    }
+
+    public void kill() {
+        ProcessExecutor.destroyWithDescendants(process);
+    }
+}
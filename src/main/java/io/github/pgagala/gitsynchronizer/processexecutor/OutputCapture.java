@@ -0,0 +1,75 @@
+package io.github.pgagala.gitsynchronizer.processexecutor;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static java.lang.String.format;
+
+/**
+ * Output of process stream captured up to given limit. Above the limit beginning and end of the output are kept
+ * (half of the limit each), e.g. command and its error of long git progress output, and the middle is skipped.
+ * Capture can be read while stream is still being drained.
+ *
+ * @author Paweł Gągała
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class OutputCapture {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    int headLimit;
+    ByteArrayOutputStream head;
+    byte[] tail;
+    @NonFinal
+    int tailPosition;
+    @NonFinal
+    long size;
+
+    OutputCapture(int limit) {
+        this.headLimit = limit / 2;
+        this.head = new ByteArrayOutputStream(Math.min(headLimit, BUFFER_SIZE));
+        this.tail = new byte[limit - headLimit];
+    }
+
+    /**
+     * Reads stream until its end.
+     */
+    OutputCapture drain(InputStream input) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            append(buffer, read);
+        }
+        return this;
+    }
+
+    private synchronized void append(byte[] buffer, int length) {
+        int toHead = (int) Math.max(0, Math.min(length, headLimit - size));
+        head.write(buffer, 0, toHead);
+        for (int i = toHead; i < length && tail.length > 0; i++) {
+            tail[tailPosition] = buffer[i];
+            tailPosition = (tailPosition + 1) % tail.length;
+        }
+        size += length;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long tailSize = Math.min(size - head.size(), tail.length);
+        byte[] tailBytes = new byte[(int) tailSize];
+        int tailStart = tailSize < tail.length ? 0 : tailPosition;
+        for (int i = 0; i < tailSize; i++) {
+            tailBytes[i] = tail[(tailStart + i) % tail.length];
+        }
+        long skipped = size - head.size() - tailSize;
+        return head.toString(StandardCharsets.UTF_8) +
+            (skipped > 0 ? format("%n... (%d bytes skipped) ...%n", skipped) : "") +
+            new String(tailBytes, StandardCharsets.UTF_8);
+    }
+}
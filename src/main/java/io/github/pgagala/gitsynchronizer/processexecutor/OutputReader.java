@@ -0,0 +1,18 @@
+package io.github.pgagala.gitsynchronizer.processexecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads standard output of process while it runs, so that output of any size can be processed without capturing it.
+ *
+ * @author Paweł Gągała
+ */
+@FunctionalInterface
+public interface OutputReader {
+
+    /**
+     * Unread rest of output is drained after it returns.
+     */
+    void read(InputStream output) throws IOException;
+}
@@ -0,0 +1,30 @@
+package io.github.pgagala.gitsynchronizer.processexecutor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of command line process executed by {@link ProcessExecutor} (from its start until its output is drained).
+ *
+ * @author Paweł Gągała
+ */
+@Name("io.github.pgagala.gitsynchronizer.ProcessExecution")
+@Label("Process Execution")
+@Category({"Git Synchronizer", "Processes"})
+@Description("Command line process (e.g. git command) executed until its end")
+class ProcessExecutionEvent extends jdk.jfr.Event {
+
+    static final int NOT_EXITED = -1;
+
+    @Label("Description")
+    String description;
+
+    @Label("Exit Code")
+    @Description("Exit code of process or -1 if it couldn't be started or didn't finish within timeout")
+    int exitCode = NOT_EXITED;
+
+    @Label("Successful")
+    boolean successful;
+}
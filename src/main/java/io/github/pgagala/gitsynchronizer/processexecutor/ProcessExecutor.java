@@ -1,100 +1,222 @@
 package io.github.pgagala.gitsynchronizer.processexecutor;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.pgagala.gitsynchronizer.metrics.Metrics;
 import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 
 /**
- * Executes command line processes.
+ * Executes command line processes. Standard and error output are drained concurrently while process runs (so that process
+ * never blocks on full pipe, e.g. on long git progress output). Error output (used only for diagnostics) is captured up to
+ * given limit (see {@link OutputCapture}). Standard output is result of process, so that it is never truncated: it is either
+ * captured whole or streamed to {@link OutputReader} (e.g. if it can be big).
+ * Process which doesn't finish within timeout is killed together with its descendants.
+ * Duration and result of each execution is recorded in {@link Metrics} by description of process and emitted as
+ * {@link ProcessExecutionEvent} if it is enabled in flight recording.
  *
  * @author Paweł Gągała
  */
-@RequiredArgsConstructor
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 @Slf4j
 public class ProcessExecutor {
 
-    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    static final int MAX_CAPTURED_OUTPUT_BYTES = 1024 * 1024;
+    //output left in pipes when process finishes is drained immediately, it takes longer only if process left running
+    //descendants which still hold the pipes
+    private static final Duration OUTPUT_DRAINING_TIMEOUT = Duration.ofSeconds(5);
+    private static final ExecutorService OUTPUT_DRAINERS = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("process-output-thread-%d").setDaemon(true).build());
+
     File executionLocation;
+    int maxCapturedOutputBytes;
+
+    public ProcessExecutor(File executionLocation) {
+        this(executionLocation, MAX_CAPTURED_OUTPUT_BYTES);
+    }
+
+    ProcessExecutor(File executionLocation, int maxCapturedOutputBytes) {
+        this.executionLocation = executionLocation;
+        this.maxCapturedOutputBytes = maxCapturedOutputBytes;
+    }
 
     public Response execute(List<String> commands, String description) throws InterruptedException {
-        return executeProcess(description, commands, new ProcessBuilder()
-            .directory(executionLocation)
-            .command(commands));
+        return execute(commands, description, Optional.empty());
     }
 
     public Response execute(List<String> commands, String description, Duration timeout) throws InterruptedException {
-        return executeProcess(description, commands, new ProcessBuilder()
-                .directory(executionLocation)
-                .command(commands),
-            timeout);
+        return execute(commands, description, Optional.of(timeout));
     }
 
-    private Response executeProcess(String description, List<String> commands, ProcessBuilder processBuilder) throws InterruptedException {
-        try {
-            return executeAndWaitUntilFinished(description, commands, processBuilder.start());
-        } catch (IOException exception) {
-            return Response.failure(format("Unsuccessful %s process execution, commands: %s, exception: %s", description, commands, exception));
+    /**
+     * @param outputReader reader of standard output, which isn't captured then (result of successful response is empty).
+     *                     Its failure fails execution
+     */
+    public Response execute(List<String> commands, String description, OutputReader outputReader) throws InterruptedException {
+        return execute(commands, description, Optional.empty(), Optional.of(outputReader));
+    }
+
+    /**
+     * Starts process which is fed via its standard input (see {@link InteractiveProcess}).
+     */
+    public InteractiveProcess start(List<String> commands, String description) throws IOException {
+        Process process = new ProcessBuilder()
+            .directory(executionLocation)
+            .command(commands)
+            .start();
+        OutputCapture error = new OutputCapture(maxCapturedOutputBytes);
+        Future<OutputCapture> errorDraining = OUTPUT_DRAINERS.submit(() -> error.drain(process.getErrorStream()));
+        return new InteractiveProcess(process, commands, description, error, errorDraining);
+    }
+
+    private Response execute(List<String> commands, String description, Optional<Duration> timeout) throws InterruptedException {
+        return execute(commands, description, timeout, Optional.empty());
+    }
+
+    private Response execute(List<String> commands, String description, Optional<Duration> timeout, Optional<OutputReader> outputReader)
+        throws InterruptedException {
+        ProcessExecutionEvent event = new ProcessExecutionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Response response = run(commands, description, timeout, outputReader, event);
+        Metrics.current().recordCommand(description, System.nanoTime() - start, response.isFailure());
+        event.end();
+        if (event.shouldCommit()) {
+            event.description = description;
+            event.successful = response.isSuccessful();
+            event.commit();
         }
+        return response;
     }
 
-    private Response executeProcess(String description, List<String> commands, ProcessBuilder processBuilder, Duration timeout) throws InterruptedException {
+    /**
+     * @param event event of execution which gets exit code of process (if it finished)
+     */
+    private Response run(List<String> commands, String description, Optional<Duration> timeout, Optional<OutputReader> outputReader,
+                         ProcessExecutionEvent event) throws InterruptedException {
+        Process process;
         try {
-            return executeAndWaitForDuration(description, commands, processBuilder.start(), timeout);
+            process = new ProcessBuilder()
+                .directory(executionLocation)
+                .command(commands)
+                .start();
         } catch (IOException exception) {
             return Response.failure(format("Unsuccessful %s process execution, commands: %s, exception: %s", description, commands, exception));
         }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputReader reader = outputReader.orElse(stream -> stream.transferTo(output));
+        OutputCapture error = new OutputCapture(maxCapturedOutputBytes);
+        Future<?> outputReading = OUTPUT_DRAINERS.submit(() -> read(process.getInputStream(), reader));
+        Future<OutputCapture> errorDraining = OUTPUT_DRAINERS.submit(() -> error.drain(process.getErrorStream()));
+        try {
+            if (!waitFor(process, timeout)) {
+                destroyWithDescendants(process);
+                awaitDraining(errorDraining);
+                return failure(description, commands, process,
+                    format("process didn't finish within %d ms. %s", timeout.orElseThrow().toMillis(), error));
+            }
+            Optional<String> outputFailure = awaitReading(outputReading, outputReader.isPresent());
+            awaitDraining(errorDraining);
+            event.exitCode = process.exitValue();
+            if (process.exitValue() != 0) {
+                return failure(description, commands, process, format("exit code %d. %s", process.exitValue(), error));
+            }
+            if (outputFailure.isPresent()) {
+                return failure(description, commands, process, format("%s. %s", outputFailure.get(), error));
+            }
+            return Response.success(output.toString(StandardCharsets.UTF_8));
+        } catch (InterruptedException exc) {
+            destroyWithDescendants(process);
+            throw exc;
+        }
     }
 
-    private Response executeAndWaitForDuration(String description, List<String> commands, Process process, Duration duration) throws InterruptedException, IOException {
-        StringBuilder responseBuilder = getResponseBuilder(process);
-        boolean response = process.waitFor(duration.getSeconds(), TimeUnit.SECONDS);
-        if (!response) {
-            return printFailureResponseMessage(description, commands, process);
+    static boolean waitFor(Process process, Optional<Duration> timeout) throws InterruptedException {
+        if (timeout.isEmpty()) {
+            process.waitFor();
+            return true;
         }
-        return Response.success(responseBuilder.toString());
+        return process.waitFor(timeout.get().toMillis(), TimeUnit.MILLISECONDS);
     }
 
-    private Response executeAndWaitUntilFinished(String description, List<String> commands, Process process) throws InterruptedException,
-        IOException {
-        StringBuilder responseBuilder = getResponseBuilder(process);
-        int responseCode = process.waitFor();
-        if (responseCode != 0) {
-            return printFailureResponseMessage(description, commands, process);
-        }
-        return Response.success(responseBuilder.toString());
+    /**
+     * Descendants are collected before process is destroyed, as they stop being its descendants afterwards.
+     */
+    static void destroyWithDescendants(Process process) {
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toUnmodifiableList());
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
     }
 
-    private Response printFailureResponseMessage(String description, List<String> commands, Process process) throws IOException {
-        String errorMsg = String.format("Unsuccessful %s process execution: %s. %nCommand: \"%s\". %nProcess response: %s",
-            description, process, String.join(" ", commands), IOUtils.toString(process.getErrorStream(), StandardCharsets.UTF_8.name()));
-        log.error(errorMsg);
-        return Response.failure(errorMsg);
+    /**
+     * Output left unread by reader (also failed one) is drained, so that process never blocks on full pipe.
+     */
+    private static Void read(InputStream output, OutputReader outputReader) throws IOException {
+        try (output) {
+            try {
+                outputReader.read(output);
+            } finally {
+                output.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        return null;
     }
 
-    private StringBuilder getResponseBuilder(Process process) throws IOException {
-        try (BufferedReader reader =
-                 new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder builder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                builder.append(line);
-                builder.append(LINE_SEPARATOR);
+    /**
+     * Captured output is awaited as long as error output (see {@link #awaitDraining(Future)}), given reader without timeout,
+     * as its work can take long. Output which wasn't read whole is never used partially.
+     *
+     * @return failure of reading
+     */
+    private static Optional<String> awaitReading(Future<?> reading, boolean withoutTimeout) throws InterruptedException {
+        try {
+            if (withoutTimeout) {
+                reading.get();
+            } else {
+                reading.get(OUTPUT_DRAINING_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
             }
-            return builder;
+            return Optional.empty();
+        } catch (ExecutionException exc) {
+            return Optional.of("unsuccessful reading output: " + exc.getCause());
+        } catch (TimeoutException exc) {
+            return Optional.of("output wasn't fully read");
+        }
+    }
+
+    /**
+     * Output captured so far is used if draining doesn't finish in time (or fails), so that stream isn't awaited forever.
+     */
+    static void awaitDraining(Future<?> draining) throws InterruptedException {
+        try {
+            draining.get(OUTPUT_DRAINING_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException exc) {
+            log.warn("Process output wasn't fully drained: {}", exc.toString());
         }
     }
+
+    static Response failure(String description, List<String> commands, Process process, String reason) {
+        String errorMsg = format("Unsuccessful %s process execution: %s. %nCommand: \"%s\". %nProcess response: %s",
+            description, process, String.join(" ", commands), reason);
+        log.error(errorMsg);
+        return Response.failure(errorMsg);
+    }
 }
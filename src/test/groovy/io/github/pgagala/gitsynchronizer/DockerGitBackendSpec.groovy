@@ -0,0 +1,110 @@
+package io.github.pgagala.gitsynchronizer
+
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor
+import io.github.pgagala.gitsynchronizer.processexecutor.Response
+import io.github.pgagala.gitsynchronizer.util.SpockMockitoVerifier
+import org.mockito.ArgumentCaptor
+import org.mockito.Mockito
+import spock.lang.Specification
+
+import java.time.Duration
+
+class DockerGitBackendSpec extends Specification {
+
+    static final File REPOSITORY = new File("/tmp/repository")
+    static final GitServerRemote REMOTE = new GitServerRemote("git@github.com:user/repository.git")
+
+    ProcessExecutor processExecutor = Mockito.mock(ProcessExecutor)
+
+    def setup() {
+        Mockito.when(processExecutor.execute(Mockito.anyList(), Mockito.anyString(), (Duration) Mockito.any(Duration)))
+            .thenReturn(Response.success(""))
+    }
+
+    def "git with timeout should be time limited in new container and docker client should be killed only after it"() {
+        given:
+            def gitBackend = new DockerGitBackend(["docker", "run", "--rm", Docker.GIT_IMAGE], processExecutor)
+
+        when:
+            gitBackend.pull("origin", new GitBranch("master"), OptionalInt.empty(), Duration.ofMillis(29_500))
+
+        then:
+            executedCommand() == ["docker", "run", "--rm", "--entrypoint", "timeout", Docker.GIT_IMAGE, "30", "git", "pull", "origin", "master"]
+            clientTimeout() == Duration.ofMillis(29_500).plus(DockerGitBackend.CONTAINER_STOP_GRACE)
+    }
+
+    def "git with timeout should be time limited in long-lived container and docker client should be killed only after it"() {
+        given:
+            def gitBackend = new DockerExecGitBackend(REPOSITORY, REMOTE, Optional.empty(), processExecutor)
+
+        when:
+            gitBackend.pull("origin", new GitBranch("master"), OptionalInt.of(1), Duration.ofSeconds(30))
+
+        then:
+            def command = executedCommand()
+            command.subList(0, 4) == ["docker", "exec", "--workdir", "/git"]
+            command.subList(5, command.size()) == ["timeout", "30", "git", "pull", "--depth=1", "origin", "master"]
+            clientTimeout() == Duration.ofSeconds(30).plus(DockerGitBackend.CONTAINER_STOP_GRACE)
+    }
+
+    def "long-lived container should be named after its configuration"() {
+        expect:
+            containerName(REPOSITORY, Optional.empty()) == containerName(REPOSITORY, Optional.empty())
+            containerName(REPOSITORY, Optional.empty()) != containerName(new File("/tmp/other-repository"), Optional.empty())
+            containerName(REPOSITORY, Optional.empty()) != containerName(REPOSITORY, Optional.of("network"))
+    }
+
+    def "stale containers should be removed when long-lived container is started"() {
+        given:
+            def gitBackend = new DockerExecGitBackend(REPOSITORY, REMOTE, Optional.empty(), processExecutor)
+            Mockito.when(processExecutor.execute(Mockito.anyList(), Mockito.anyString())).thenAnswer {
+                List<String> command = it.getArgument(0)
+                switch (command[1]) {
+                    case "inspect": return Response.failure("No such object")
+                    case "ps": return Response.success("stale1\nstale2\n")
+                    default: return Response.success("")
+                }
+            }
+
+        when:
+            gitBackend.start()
+
+        then:
+            def commands = ArgumentCaptor.forClass(List)
+            SpockMockitoVerifier.toSpockVerification(Mockito.verify(processExecutor, Mockito.times(4)).execute(commands.capture(), Mockito.anyString()))
+            commands.allValues[1].containsAll(["ps", "--all", "label=" + DockerExecGitBackend.LABEL])
+            commands.allValues[2] == ["docker", "rm", "--force", "stale1", "stale2"]
+            commands.allValues[3].containsAll(["run", "--name", gitBackend.containerName, "--label",
+                                               DockerExecGitBackend.LABEL + "=" + REPOSITORY.absolutePath])
+    }
+
+    def "running long-lived container should be reused"() {
+        given:
+            def gitBackend = new DockerExecGitBackend(REPOSITORY, REMOTE, Optional.empty(), processExecutor)
+            Mockito.when(processExecutor.execute(Mockito.anyList(), Mockito.anyString())).thenReturn(Response.success("true"))
+
+        when:
+            gitBackend.start()
+
+        then:
+            def commands = ArgumentCaptor.forClass(List)
+            SpockMockitoVerifier.toSpockVerification(Mockito.verify(processExecutor).execute(commands.capture(), Mockito.anyString()))
+            commands.value == ["docker", "inspect", "--format", "{{.State.Running}}", gitBackend.containerName]
+    }
+
+    private static String containerName(File repository, Optional<String> network) {
+        return new DockerExecGitBackend(repository, REMOTE, network, Mockito.mock(ProcessExecutor)).containerName
+    }
+
+    private List<String> executedCommand() {
+        def command = ArgumentCaptor.forClass(List)
+        Mockito.verify(processExecutor).execute(command.capture(), Mockito.anyString(), (Duration) Mockito.any(Duration))
+        return command.value
+    }
+
+    private Duration clientTimeout() {
+        def timeout = ArgumentCaptor.forClass(Duration)
+        Mockito.verify(processExecutor).execute(Mockito.anyList(), Mockito.anyString(), (Duration) timeout.capture())
+        return timeout.value
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.pgagala.gitsynchronizer
+
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.nio.file.Files
+
+@Requires({ LocalGitBackend.gitAvailable() })
+class FastImportCommitterSpec extends Specification {
+
+    static final GitBranch BRANCH = new GitBranch("master")
+
+    File repository
+    File watchedFolder
+    LocalGitBackend gitBackend
+
+    def setup() {
+        repository = Files.createTempDirectory("local_repo_").toFile()
+        watchedFolder = Files.createTempDirectory("watched_").toFile()
+        gitBackend = new LocalGitBackend(repository)
+        assert gitBackend.init().isSuccessful()
+        assert gitBackend.git(["symbolic-ref", "HEAD", "refs/heads/" + BRANCH.value], "git symbolic-ref").isSuccessful()
+    }
+
+    def cleanup() {
+        repository.deleteDir()
+        watchedFolder.deleteDir()
+    }
+
+    @Timeout(120)
+    def "changes should be committed against whole branch tree even if its listing is bigger than captured process output"() {
+        given: "branch which tree listing exceeds limit of captured process output"
+            def folder = new File(repository, "folder-with-long-name-to-make-listing-of-tree-big")
+            folder.mkdir()
+            def fileNames = (0..<12_000).collect { String.format("file-%05d", it) }
+            fileNames.each { new File(folder, it).text = it }
+            def removedPath = "${folder.name}/file-06000".toString()
+            def executablePath = "${folder.name}/file-06001".toString()
+            assert gitBackend.git(["add", "--all"], "git add").isSuccessful()
+            assert gitBackend.git(["update-index", "--chmod=+x", executablePath], "git update-index").isSuccessful()
+            assert gitBackend.commit("initial", "author", "author@email.com").isSuccessful()
+            assert lsTree().length() > 1024 * 1024
+        and: "fast-import committer"
+            def committer = new FastImportCommitter(gitBackend, BRANCH)
+        and: "new content of executable file"
+            def executableFile = new File(watchedFolder, "file-06001")
+            executableFile.text = "new content"
+
+        when: "file from the middle of tree listing is removed and executable file is modified"
+            def commit = committer.commit(new TreeChanges([(executablePath): executableFile], [removedPath]), "message", "author", "author@email.com")
+            committer.close()
+
+        then: "removal is committed"
+            commit.isPresent()
+            def tree = lsTree()
+            !tree.contains(removedPath)
+        and: "modified file keeps its executable mode"
+            def blob = gitBackend.git(["hash-object", executableFile.absolutePath], "git hash-object").result().trim()
+            tree.contains("100755 blob ${blob}\t${executablePath}")
+        and: "other files are kept"
+            tree.count("\n") == fileNames.size() - 1
+    }
+
+    private String lsTree() {
+        def output = new ByteArrayOutputStream()
+        def response = gitBackend.git(["ls-tree", "-r", "--full-tree", BRANCH.value], "git ls-tree", { InputStream input -> input.transferTo(output) })
+        assert response.isSuccessful()
+        return output.toString("UTF-8")
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.pgagala.gitsynchronizer
+
+import spock.lang.Specification
+
+import java.util.stream.Collectors
+import java.util.stream.Stream
+
+class FileChangesFlattenerSpec extends Specification implements FileChangesSampleData {
+
+    def "file changes should be flattened to their net effect"() {
+        expect:
+            FileChangesFlattener.flatten(fileChanges) == expectedFileChanges
+
+        where:
+            fileChanges                                                                         | expectedFileChanges
+            []                                                                                  | []
+            [fileInitialized(file("file1")), fileModified(file("file1"))]                       | [fileInitialized(file("file1")), fileModified(file("file1"))]
+            [fileInitialized(file("file1")), fileDeleted(file("file1"))]                        | [fileDeleted(file("file1"))]
+            [fileCreated(file("file1")), fileModified(file("file1")), fileDeleted(file("file1"))] | []
+            [fileDeleted(file("file1")), fileCreated(file("file1")), fileDeleted(file("file1"))]  | [fileCreated(file("file1"))]
+            [fileModified(file("file1")), fileModified(file("file2")), fileModified(file("file1"))] | [fileModified(file("file1")), fileModified(file("file2"))]
+    }
+
+    def "flattening should give same result as previous quadratic implementation"() {
+        given: "random file changes of few files"
+            def random = new Random(seed)
+            def files = (1..3).collect { file("file$it") }
+            def creators = [{ f -> fileCreated(f) }, { f -> fileModified(f) }, { f -> fileDeleted(f) }, { f -> fileInitialized(f) }]
+            List<FileChange> fileChanges = (0..<random.nextInt(10)).collect {
+                creators[random.nextInt(creators.size())](files[random.nextInt(files.size())]) as FileChange
+            }
+
+        expect:
+            FileChangesFlattener.flatten(fileChanges) == quadraticFlatten(fileChanges)
+
+        where:
+            seed << (1..500)
+    }
+
+    private File file(String name) {
+        return new File("/watched/$name")
+    }
+
+    /**
+     * Flattening algorithm used before {@link FileChangesFlattener}.
+     */
+    private static List<FileChange> quadraticFlatten(List<FileChange> fileChanges) {
+        List<FileChange> uniqueFiles = []
+        List<String> filenamesToCreate = []
+        List<String> filenamesToRemove = []
+        Map<String, List<FileChange>> filenameWithFileChanges = [:]
+
+        fileChanges.each { f ->
+            if (uniqueFiles.contains(f)) {
+                return
+            }
+            String fileName = f.file().getName()
+            if (f instanceof FileCreated) {
+                filenamesToCreate.add(fileName)
+            } else if (f.connectedWithRemoval()) {
+                filenamesToRemove.add(fileName)
+            }
+            uniqueFiles.add(f)
+            filenameWithFileChanges.computeIfAbsent(fileName, { [] }).add(f)
+        }
+
+        List<FileChange> filesToRemove = filenameWithFileChanges.entrySet().stream().flatMap { entry ->
+            List<FileChange> fChanges = entry.value
+            if (fChanges.last().connectedWithRemoval()) {
+                return filenamesToCreate.contains(entry.key) ? fChanges.stream() : fChanges.subList(0, fChanges.size() - 1).stream()
+            }
+            if (filenamesToRemove.contains(entry.key)) {
+                return fChanges.stream().filter { it.connectedWithRemoval() }
+            }
+            return Stream.of()
+        }.collect(Collectors.toList())
+
+        uniqueFiles.removeAll(filesToRemove)
+        return uniqueFiles
+    }
+}
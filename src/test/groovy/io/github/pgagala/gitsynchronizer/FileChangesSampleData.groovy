@@ -36,6 +36,10 @@ trait FileChangesSampleData {
         return new AbstractWatchKey.Event<Object>(StandardWatchEventKinds.ENTRY_MODIFY, fileName)
     }
 
+    WatchEvent<?> eventOverflow() {
+        return new AbstractWatchKey.Event<Object>(StandardWatchEventKinds.OVERFLOW, null)
+    }
+
     WatchEvent<?> eventCreate(File file) {
         return eventCreate(file.name)
     }
@@ -0,0 +1,246 @@
+package io.github.pgagala.gitsynchronizer
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+import java.security.MessageDigest
+
+class FileContentIndexSpec extends Specification {
+
+    File repository
+    File source
+    File target
+
+    def setup() {
+        repository = Files.createTempDirectory("testRepo_").toFile()
+        new File(repository, ".git").mkdir()
+        source = new File(Files.createTempDirectory("testSource_").toFile(), "file1")
+        source.text = "content"
+        target = new File(repository, "file1")
+    }
+
+    def cleanup() {
+        repository.deleteDir()
+        source.parentFile.deleteDir()
+    }
+
+    def "file not synchronized before should be treated as changed"() {
+        expect:
+            !FileContentIndex.of(repository).unchanged("file1", source, target)
+    }
+
+    def "touched file with same content should be treated as unchanged"() {
+        given: "synchronized file"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+        when: "file is touched"
+            touch(source)
+        then:
+            index.unchanged("file1", source, target)
+    }
+
+    def "file with modified content should be treated as changed"() {
+        given: "synchronized file"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+        when: "file content is modified"
+            source.text = newContent
+            touch(source)
+        then:
+            !index.unchanged("file1", source, target)
+
+        where:
+            newContent << ["CONTENT", "other content"]
+    }
+
+    def "file should be treated as changed if synchronized copy was removed"() {
+        given: "synchronized file"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+        when: "synchronized copy is removed"
+            target.delete()
+        then:
+            !index.unchanged("file1", source, target)
+    }
+
+    def "file should be treated as changed if synchronized copy was replaced with content of same size"() {
+        given: "synchronized file"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+        when: "synchronized copy is replaced (e.g. by pull) with other content of the same size"
+            target.text = "CONTENT"
+            touch(target)
+        then:
+            !index.unchanged("file1", source, target)
+            !index.sameAsTarget("file1", source, target)
+        when: "synchronized copy gets content of file again"
+            target.text = "content"
+        then: "it is compared by content"
+            index.sameAsTarget("file1", source, target)
+            index.unchanged("file1", source, target)
+    }
+
+    def "index should be persisted in git folder of repository"() {
+        given: "synchronized file"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+        when: "index is persisted and loaded again"
+            index.persist()
+            def loadedIndex = FileContentIndex.of(repository)
+        then:
+            new File(repository, ".git/" + FileContentIndex.INDEX_FILE_NAME).isFile()
+            loadedIndex.size() == 1
+            loadedIndex.unchanged("file1", source, target)
+    }
+
+    def "index should be written only when it changed and without leaving temporary files"() {
+        given: "index of synchronized file which can't be written"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+            def indexFile = new File(repository, ".git/" + FileContentIndex.INDEX_FILE_NAME)
+            indexFile.mkdir()
+            new File(indexFile, "blocking").text = "content"
+
+        when: "index is persisted"
+            index.persist()
+
+        then: "temporary index is removed"
+            new File(repository, ".git").list() as Set == [FileContentIndex.INDEX_FILE_NAME] as Set
+
+        when: "index can be written again"
+            indexFile.deleteDir()
+            index.persist()
+
+        then: "index is written although it didn't change since previous persisting"
+            indexFile.isFile()
+            FileContentIndex.of(repository).size() == 1
+
+        when: "index which didn't change is persisted"
+            indexFile.delete()
+            index.persist()
+
+        then: "it isn't written"
+            !indexFile.exists()
+    }
+
+    def "changes of index should be appended to journal and compacted into index once journal outgrows it"() {
+        given: "persisted index of synchronized file"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+            index.persist()
+            def indexFile = new File(repository, ".git/" + FileContentIndex.INDEX_FILE_NAME)
+            def journalFile = new File(repository, ".git/" + FileContentIndex.INDEX_FILE_NAME + FileContentIndex.JOURNAL_FILE_SUFFIX)
+            def persistedIndex = indexFile.text
+
+        when: "index changes"
+            index.update("file2", target, FileContentIndex.modificationTime(source))
+            index.remove("file1")
+            index.persist()
+
+        then: "only its changes are appended to journal"
+            indexFile.text == persistedIndex
+            journalFile.readLines().size() == 2
+        and: "loaded index has changes applied"
+            def loadedIndex = FileContentIndex.of(repository)
+            loadedIndex.size() == 1
+            loadedIndex.unchanged("file2", source, target)
+
+        when: "index changes more times than its journal can be appended"
+            FileContentIndex.MIN_COMPACTED_JOURNAL_RECORDS.times {
+                index.remove("file2")
+                index.update("file2", target, FileContentIndex.modificationTime(source))
+            }
+            index.persist()
+
+        then: "index is written with changes applied and journal is dropped"
+            !journalFile.exists()
+            indexFile.readLines().size() == 1
+            FileContentIndex.of(repository).unchanged("file2", source, target)
+    }
+
+    def "index should be loaded with records of journal preceding its truncated record"() {
+        given: "persisted index with journal which last record was truncated"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+            index.persist()
+            index.update("file2", target, FileContentIndex.modificationTime(source))
+            index.persist()
+            def journalFile = new File(repository, ".git/" + FileContentIndex.INDEX_FILE_NAME + FileContentIndex.JOURNAL_FILE_SUFFIX)
+            journalFile << "+ 7 12"
+
+        when: "index is loaded and persisted"
+            def loadedIndex = FileContentIndex.of(repository)
+            def size = loadedIndex.size()
+            loadedIndex.persist()
+
+        then: "records preceding truncated one are applied and index is compacted"
+            size == 2
+            !journalFile.exists()
+            FileContentIndex.of(repository).size() == 2
+    }
+
+    def "removed file should be treated as changed"() {
+        given: "synchronized file"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+        when: "file is removed from index"
+            index.remove(target.name)
+        then:
+            !index.unchanged("file1", source, target)
+            index.size() == 0
+    }
+
+    def "removing folder should remove files under it"() {
+        given: "synchronized files in folder and its subfolder"
+            def index = FileContentIndex.of(repository)
+            synchronize(index)
+            ["folder/file2", "folder/sub/file3", "folder2/file4"].each {
+                index.update(it, target, FileContentIndex.modificationTime(source))
+            }
+        when: "folder is removed from index"
+            index.remove("folder")
+        then: "only files outside of folder are left"
+            index.size() == 2
+            index.unchanged("file1", source, target)
+            index.unchanged("folder2/file4", source, target)
+    }
+
+    def "not indexed file should be compared with its synchronized copy by content (#targetContent)"() {
+        given: "synchronized copy which wasn't indexed (e.g. pulled from remote repository)"
+            def index = FileContentIndex.of(repository)
+            target.text = targetContent
+
+        expect:
+            index.sameAsTarget("file1", source, target) == same
+            index.unchanged("file1", source, target) == same
+
+        where:
+            targetContent   | same
+            "content"       | true
+            "CONTENT"       | false
+            "other content" | false
+    }
+
+    def "hash of big file should be same as hash of its whole content"() {
+        given: "file bigger than memory mapping threshold"
+            def bigFile = new File(source.parentFile, "bigFile")
+            def content = new byte[20 * 1024 * 1024 + 13]
+            new Random(1).nextBytes(content)
+            bigFile.bytes = content
+
+        expect:
+            FileContentIndex.hash(bigFile) == MessageDigest.getInstance("SHA-256").digest(content).encodeHex().toString()
+            FileContentIndex.hash(source) == MessageDigest.getInstance("SHA-256").digest(source.bytes).encodeHex().toString()
+    }
+
+    private void synchronize(FileContentIndex index) {
+        long modificationTime = FileContentIndex.modificationTime(source)
+        target.bytes = source.bytes
+        index.update("file1", target, modificationTime)
+    }
+
+    private static void touch(File file) {
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 5000))
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.pgagala.gitsynchronizer
+
+import spock.lang.Specification
+
+import java.nio.file.Path
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+import static io.github.pgagala.gitsynchronizer.FileEventLog.Kind.CREATED
+import static io.github.pgagala.gitsynchronizer.FileEventLog.Kind.DELETED
+import static io.github.pgagala.gitsynchronizer.FileEventLog.Kind.INITIALIZED
+import static io.github.pgagala.gitsynchronizer.FileEventLog.Kind.MODIFIED
+
+class FileEventLogSpec extends Specification {
+
+    PathDictionary pathDictionary = new PathDictionary()
+
+    def "Files should be interned once, no matter if they are looked up by folder or by file"() {
+        given: "watched folder"
+            def folder = new WatchShard.WatchedFolder(Path.of("/tmp/watched"), "nested")
+
+        when: "file of folder is looked up by name from its watch events and by file"
+            def byEventName = pathDictionary.id(folder, Path.of("file1"))
+            def byEventNameAgain = pathDictionary.id(folder, Path.of("file1"))
+            def byFile = pathDictionary.id(new File("/tmp/watched/file1"), "nested/file1")
+            def otherFile = pathDictionary.id(folder, Path.of("file2"))
+
+        then: "the same file has one id with its path in repository"
+            byEventName == byEventNameAgain
+            byEventName == byFile
+            otherFile != byEventName
+            pathDictionary.size() == 2
+            pathDictionary.file(byEventName) == new File("/tmp/watched/file1")
+            pathDictionary.fileName(byEventName) == "nested/file1"
+    }
+
+    def "Events should be drained in order after ring grew and wrapped around"() {
+        given: "log with events drained once, so that ring doesn't start at its beginning"
+            def fileEventLog = new FileEventLog(pathDictionary, FileWatcher.UNBOUNDED)
+            3.times { fileEventLog.add(it, MODIFIED, it) }
+            fileEventLog.drainTo(new FileEventLog.Drained())
+
+        when: "more events than initial size of ring are added and drained"
+            5000.times { fileEventLog.add(it, it % 2 == 0 ? CREATED : DELETED, 1000 + it) }
+            def drained = new FileEventLog.Drained()
+            fileEventLog.drainTo(drained)
+
+        then: "all of them are drained in order of their addition"
+            fileEventLog.size() == 0
+            drained.size() == 5000
+            (0..<5000).every { drained.pathId(it) == it && drained.kind(it) == (it % 2 == 0 ? CREATED : DELETED) }
+            drained.oldestEventNanos() == OptionalLong.of(1000)
+    }
+
+    def "Offered events should be rejected when log is full, but added ones shouldn't"() {
+        given: "log with capacity of two events"
+            def fileEventLog = new FileEventLog(pathDictionary, 2)
+
+        expect: "offered events are logged only until capacity is reached"
+            fileEventLog.offer(0, MODIFIED, 0)
+            fileEventLog.offer(1, MODIFIED, 0)
+            !fileEventLog.offer(2, MODIFIED, 0)
+
+        when: "event which can't be lost is added"
+            fileEventLog.add(3, INITIALIZED, 0)
+
+        then: "it is logged over capacity"
+            fileEventLog.size() == 3
+
+        when: "log is drained"
+            fileEventLog.drainTo(new FileEventLog.Drained())
+
+        then: "events are offered successfully again"
+            fileEventLog.offer(4, MODIFIED, 0)
+    }
+
+    def "Repeated events should be materialized once per file and kind of change"() {
+        given: "log with thousand modifications of hot file among other events"
+            def fileEventLog = new FileEventLog(pathDictionary, FileWatcher.UNBOUNDED)
+            File hotFile = new File("/tmp/hot")
+            File otherFile = new File("/tmp/other")
+            int hot = pathDictionary.id(hotFile, "hot")
+            int other = pathDictionary.id(otherFile, "other")
+            1000.times { fileEventLog.add(hot, MODIFIED, 10 + it) }
+            fileEventLog.add(other, CREATED, 2000)
+            fileEventLog.add(hot, DELETED, 2001)
+
+        when: "events are drained and materialized"
+            def drained = new FileEventLog.Drained()
+            fileEventLog.drainTo(drained)
+            def changes = fileEventLog.materialize(drained)
+
+        then: "one file change is materialized per file and kind of change in order of events"
+            changes == [FileModified.of(hotFile, "hot"), FileCreated.of(otherFile, "other"), FileDeleted.of(hotFile, "hot")]
+            changes*.class == [FileModified, FileCreated, FileDeleted]
+        and: "all file events are counted and the oldest of them is known exactly"
+            drained.size() == 1002
+            drained.oldestEventNanos() == OptionalLong.of(10)
+    }
+
+    def "Files should be forgotten and their ids reused once no logged event refers to them"() {
+        given: "log with capacity of one event and folder which files had events"
+            def fileEventLog = new FileEventLog(pathDictionary, 1)
+            def folder = new WatchShard.WatchedFolder(Path.of("/tmp/watched"), "")
+            int modified = pathDictionary.id(folder, Path.of("file1"))
+            int modifiedAgain = pathDictionary.id(folder, Path.of("file1"))
+            int rejected = pathDictionary.id(folder, Path.of("file2"))
+            fileEventLog.offer(modified, MODIFIED, 0)
+            fileEventLog.add(modifiedAgain, MODIFIED, 1)
+
+        when: "event of other file is rejected"
+            fileEventLog.offer(rejected, MODIFIED, 2)
+
+        then: "only files which events are logged are kept"
+            pathDictionary.size() == 1
+
+        when: "logged events are drained and materialized"
+            def drained = new FileEventLog.Drained()
+            fileEventLog.drainTo(drained)
+            def changes = fileEventLog.materialize(drained)
+
+        then: "file is materialized and forgotten afterwards"
+            changes == [FileModified.of(new File("/tmp/watched/file1"), "file1")]
+            pathDictionary.size() == 0
+
+        when: "other file of folder has event"
+            int next = pathDictionary.id(folder, Path.of("file3"))
+
+        then: "id of forgotten file is reused"
+            next in [modified, rejected]
+            pathDictionary.file(next) == new File("/tmp/watched/file3")
+            pathDictionary.size() == 1
+    }
+
+    def "Lookup of files by names of folder should be dropped when folder is unwatched"() {
+        given: "file of watched folder with logged event"
+            def folder = new WatchShard.WatchedFolder(Path.of("/tmp/watched"), "")
+            int id = pathDictionary.id(folder, Path.of("file1"))
+
+        when: "folder is unwatched"
+            pathDictionary.unwatched(folder)
+
+        then: "folder is forgotten, but its file is kept until its event is released"
+            pathDictionary.folders() == 0
+            pathDictionary.file(id) == new File("/tmp/watched/file1")
+
+        when: "event of file is released"
+            pathDictionary.release(id)
+
+        then: "file is forgotten as well"
+            pathDictionary.size() == 0
+    }
+
+    def "Awaiting events should block until any event is logged"() {
+        given: "empty log"
+            def fileEventLog = new FileEventLog(pathDictionary, FileWatcher.UNBOUNDED)
+
+        expect: "awaiting with timeout returns nothing"
+            !fileEventLog.await(50, TimeUnit.MILLISECONDS)
+
+        when: "events are awaited"
+            def awaited = CompletableFuture.runAsync { fileEventLog.await() }
+
+        then: "nothing is returned until event is logged"
+            Thread.sleep(200)
+            !awaited.isDone()
+
+        when: "event is logged"
+            fileEventLog.offer(0, MODIFIED, 0)
+
+        then: "awaiting is finished"
+            awaited.get(1, TimeUnit.SECONDS) == null
+    }
+
+    def "Awaiting events should be woken up by rescan request until log is drained"() {
+        given: "empty log"
+            def fileEventLog = new FileEventLog(pathDictionary, FileWatcher.UNBOUNDED)
+
+        when: "events are awaited and rescan is requested"
+            def awaited = CompletableFuture.runAsync { fileEventLog.await() }
+            fileEventLog.requestRescan()
+
+        then: "awaiting is finished although no event is logged"
+            awaited.get(1, TimeUnit.SECONDS) == null
+            fileEventLog.size() == 0
+
+        when: "log is drained"
+            def drained = new FileEventLog.Drained()
+            fileEventLog.drainTo(drained)
+
+        then: "rescan request is cleared and nothing was drained"
+            !fileEventLog.await(50, TimeUnit.MILLISECONDS)
+            drained.size() == 0
+    }
+}
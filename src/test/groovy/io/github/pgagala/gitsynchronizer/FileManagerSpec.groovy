@@ -1,6 +1,7 @@
 package io.github.pgagala.gitsynchronizer
 
 import org.testcontainers.shaded.org.apache.commons.lang.RandomStringUtils
+import spock.lang.Requires
 import spock.lang.Specification
 
 import java.nio.file.Files
@@ -89,6 +90,202 @@ class FileManagerSpec extends Specification {
             size = files.size()
     }
 
+    def "File with unchanged content should not be copied again"() {
+        given: "File copied to target path"
+            def file = file()
+            file.text = "content"
+            assert fileManager.copy([file]).processedFiles() == [file]
+        and: "File rewritten with identical content"
+            file.text = "content"
+            file.setLastModified(file.lastModified() + 5000)
+
+        expect: "File isn't copied again"
+            fileManager.copy([file]).processedFiles() == []
+
+        when: "File content is changed"
+            file.text = "new content"
+        then: "File is copied"
+            fileManager.copy([file]).processedFiles() == [file]
+            new File(fileManagerTargetPath, file.name).text == "new content"
+
+        cleanup:
+            forceDelete(file)
+    }
+
+    def "File should be copied with #copyStrategy copy strategy or its fallback"() {
+        given: "File manager with copy strategy"
+            def fileManager = new FileManager(new File(fileManagerTargetPath), copyStrategy)
+        and: "File with content"
+            def file = file()
+            file.text = "content"
+            file.setLastModified(1_600_000_000_000)
+
+        when: "File is copied"
+            def copiedFiles = fileManager.copy([file])
+
+        then: "File with same content and modification time exists under target path"
+            copiedFiles.processedFiles() == [file]
+            def copiedFile = new File(fileManagerTargetPath, file.name)
+            copiedFile.text == "content"
+            copiedFile.lastModified() == file.lastModified()
+
+        when: "File is modified and copied again"
+            file.text = "new content"
+            fileManager.copy([file])
+        then: "Copied file is replaced"
+            copiedFile.text == "new content"
+
+        cleanup:
+            forceDelete(file)
+
+        where:
+            copyStrategy << CopyStrategy.values()
+    }
+
+    @Requires({ new File("/dev/shm").isDirectory() && Files.getFileStore(Path.of("/dev/shm")) != Files.getFileStore(Path.of(System.getProperty("java.io.tmpdir"))) })
+    def "Hard link strategy should be replaced by its fallback when repository is on another file system"() {
+        given: "File manager with hard link copy strategy and repository on another file system"
+            def targetPath = Files.createTempDirectory(Path.of("/dev/shm"), "testRepo_").toFile()
+            def fileManager = new FileManager(targetPath, CopyStrategy.HARDLINK)
+        and: "File with content"
+            def file = file()
+            file.text = "content"
+
+        when: "File is copied"
+            def copiedFiles = fileManager.copy([file])
+
+        then: "File is copied by fallback strategy and hard link strategy isn't used anymore"
+            copiedFiles.processedFiles() == [file]
+            new File(targetPath, file.name).text == "content"
+            fileManager.unsupportedCopyStrategies == [CopyStrategy.HARDLINK] as Set
+
+        cleanup:
+            forceDelete(file)
+            forceDelete(targetPath)
+    }
+
+    def "Copy strategy should be still used after failure concerning only copied file"() {
+        given: "File manager with transfer copy strategy"
+            def fileManager = new FileManager(new File(fileManagerTargetPath), CopyStrategy.TRANSFER_TO)
+        and: "File which target path is occupied by folder"
+            def blockedFile = file()
+            blockedFile.text = "content"
+            new File(fileManagerTargetPath, "${blockedFile.name}/subFile").with {
+                parentFile.mkdirs()
+                text = "other content"
+            }
+        and: "Other file"
+            def otherFile = file()
+            otherFile.text = "other file content"
+
+        when: "Files are copied"
+            def copiedFiles = fileManager.copy([blockedFile])
+            def otherCopiedFiles = fileManager.copy([otherFile])
+
+        then: "Only copying of file which target path is occupied fails"
+            copiedFiles.failedFiles() == [blockedFile]
+            otherCopiedFiles.processedFiles() == [otherFile]
+            new File(fileManagerTargetPath, otherFile.name).text == "other file content"
+        and: "Strategy isn't replaced by its fallback"
+            fileManager.unsupportedCopyStrategies.isEmpty()
+
+        cleanup:
+            forceDelete(blockedFile)
+            forceDelete(otherFile)
+    }
+
+    def "Files should be copied and removed in parallel with reporting failed ones"() {
+        given: "File manager with 4 workers"
+            def fileManager = new FileManager(new File(fileManagerTargetPath), CopyStrategy.STREAM, 4)
+        and: "Existing files and not existing one"
+            def sourceDir = Files.createTempDirectory("testSource_").toFile()
+            def files = (1..200).collect { new File(sourceDir, "file$it").tap { it.text = "content $it" } }
+            def notExistingFile = new File(sourceDir, "notExistingFile")
+
+        when: "Files are copied"
+            def copyResult = fileManager.copy(files + notExistingFile)
+
+        then: "Existing files are copied and not existing one is reported as failed"
+            copyResult.processedFiles() == files
+            copyResult.failedFiles() == [notExistingFile]
+            files.every { new File(fileManagerTargetPath, it.name).text == it.text }
+
+        when: "Files are removed from target path"
+            def deleteResult = fileManager.deleteFromTargetPath(files.collect { it.name } + notExistingFile.name)
+
+        then: "Copied files are removed and not existing one is skipped as there is nothing to remove"
+            deleteResult.processedFiles().size() == files.size()
+            !deleteResult.hasFailures()
+            new File(fileManagerTargetPath).list().findAll { !it.startsWith(".") }.isEmpty()
+
+        cleanup:
+            forceDelete(sourceDir)
+    }
+
+    def "Files should be copied under their relative paths and removed with whole folders (#copyStrategy)"() {
+        given: "File manager with copy strategy"
+            def fileManager = new FileManager(new File(fileManagerTargetPath), copyStrategy)
+        and: "Files from nested folders"
+            def sourceDir = Files.createTempDirectory("testSource_").toFile()
+            def filesByName = ["file1", "folder/file2", "folder/sub/file3"].collectEntries {
+                def file = new File(sourceDir, it)
+                file.parentFile.mkdirs()
+                file.text = "content of $it"
+                [it, file]
+            }
+
+        when: "Files are copied"
+            def copyResult = fileManager.copy(filesByName)
+
+        then: "Files are copied under their relative paths"
+            copyResult.processedFiles() == filesByName.values() as List
+            filesByName.every { name, file -> new File(fileManagerTargetPath, name).text == file.text }
+
+        when: "Folder is removed from target path"
+            def deleteResult = fileManager.deleteFromTargetPath(["folder"])
+
+        then: "Folder is removed with all its files and they are copied again afterwards"
+            deleteResult.processedFiles() == [new File(fileManagerTargetPath, "folder")]
+            !new File(fileManagerTargetPath, "folder").exists()
+            fileManager.copy(filesByName).processedFiles() == [filesByName["folder/file2"], filesByName["folder/sub/file3"]]
+
+        cleanup:
+            forceDelete(sourceDir)
+
+        where:
+            copyStrategy << CopyStrategy.values()
+    }
+
+    def "Only files which differ from their copies already existing in target path should be selected as changed (parallelism #parallelism)"() {
+        given: "File manager"
+            def fileManager = new FileManager(new File(fileManagerTargetPath), CopyStrategy.STREAM, parallelism)
+        and: "Files with copies in target path which weren't copied by file manager (e.g. pulled from remote repository)"
+            def sourceDir = Files.createTempDirectory("testSource_").toFile()
+            def filesByName = ["same", "folder/same", "different", "missing"].collectEntries {
+                def file = new File(sourceDir, it)
+                file.parentFile.mkdirs()
+                file.text = "content"
+                [it, file]
+            }
+            ["same": "content", "folder/same": "content", "different": "CONTENT"].each { name, content ->
+                def copy = new File(fileManagerTargetPath, name)
+                copy.parentFile.mkdirs()
+                copy.text = content
+            }
+
+        expect: "Only files which differ from their copies are changed"
+            fileManager.changedFiles(filesByName) == filesByName.subMap(["different", "missing"])
+
+        and: "Same files aren't copied"
+            fileManager.copy(filesByName).processedFiles() == [filesByName["different"], filesByName["missing"]]
+
+        cleanup:
+            forceDelete(sourceDir)
+
+        where:
+            parallelism << [1, 4]
+    }
+
     static File dirWithContent() {
         def dir = Files.createTempDirectory("testDir_" + RandomStringUtils.randomAlphabetic(4)).toFile()
         Files.createDirectory(Path.of(dir.getAbsolutePath().toString(), "/subDir")).toFile()
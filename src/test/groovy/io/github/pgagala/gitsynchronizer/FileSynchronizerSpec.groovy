@@ -1,12 +1,16 @@
 package io.github.pgagala.gitsynchronizer
 
 
+import io.github.pgagala.gitsynchronizer.processexecutor.Response
 import io.github.pgagala.gitsynchronizer.util.SpockMockitoVerifier
 import org.mockito.Mockito
+import org.mockito.stubbing.Answer
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
 import java.nio.file.Path
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
 
 class FileSynchronizerSpec extends Specification implements FileChangesSampleData {
 
@@ -14,19 +18,17 @@ class FileSynchronizerSpec extends Specification implements FileChangesSampleDat
 
     def "new files should be copied to synchronized folder and added to git repo"() {
         given: "file watcher with recorded files changes"
-            FileWatcher fileWatcher = Mock(FileWatcher) {
-                occurredFileChanges() >>> [filesChanges, new FileChanges([])]
-            }
+            FileWatcher fileWatcher = fileWatcher(filesChanges)
         and: "file synchronizer with mocked git service"
             GitService gitService = Mockito.mock(GitService)
-            FileManager fileManager = Mockito.mock(FileManager)
+            FileManager fileManager = fileManager()
             fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager)
 
         when: "synchronizer is started"
             fileSynchronizer.run()
         then: "new files should be copied to synchronized folder"
             new PollingConditions(timeout: 2).eventually {
-                SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager).copy(filesChanges.collect {it.file()}))
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager).copy(filesChanges.collectEntries { [it.fileName(), it.file()] }))
             }
         and: "committed to git repository"
             new PollingConditions(timeout: 2).eventually {
@@ -45,23 +47,21 @@ class FileSynchronizerSpec extends Specification implements FileChangesSampleDat
         given: "files changes"
             def filesChanges = fileChanges([fileCreated(file("file1")), fileDeleted(file("file1", false))])
         and: "file watcher with recorded files changes"
-            FileWatcher fileWatcher = Mock(FileWatcher) {
-                occurredFileChanges() >>> [filesChanges, new FileChanges([])]
-            }
+            FileWatcher fileWatcher = fileWatcher(filesChanges)
         and: "file synchronizer with mocked git service"
             GitService gitService = Mockito.mock(GitService)
-            FileManager fileManager = Mockito.mock(FileManager)
+            FileManager fileManager = fileManager()
             fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager)
 
         when: "synchronizer is started"
             fileSynchronizer.run()
         then: "new file should be copied to synchronized folder"
             new PollingConditions(timeout: 2).eventually {
-                SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager).copy(filesChanges.newOrModifiedFiles()))
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager).copy(filesChanges.newOrModifiedFilesByName()))
             }
         and: "new file should be deleted from synchronized folder"
             new PollingConditions(timeout: 2).eventually {
-                SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager).deleteFromTargetPath(filesChanges.deletedFiles().collect {it.name}))
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager).deleteFromTargetPath(filesChanges.deletedFileNames()))
             }
         and: "committed to git repository"
             new PollingConditions(timeout: 2).eventually {
@@ -69,6 +69,157 @@ class FileSynchronizerSpec extends Specification implements FileChangesSampleDat
             }
     }
 
+    def "nothing should be committed if content of changed files didn't change"() {
+        given: "file watcher with recorded modification of file"
+            def filesChanges = fileChanges([fileModified(file("file1"))])
+            FileWatcher fileWatcher = fileWatcher(filesChanges)
+        and: "file manager which doesn't copy file as its content didn't change"
+            GitService gitService = Mockito.mock(GitService)
+            FileManager fileManager = Mockito.mock(FileManager)
+            Mockito.when(fileManager.copy(Mockito.anyMap())).thenReturn(FileOperationsResult.EMPTY)
+            fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager)
+
+        when: "synchronizer is started"
+            fileSynchronizer.run()
+        then: "file was attempted to be copied"
+            new PollingConditions(timeout: 2).eventually {
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager).copy(filesChanges.newOrModifiedFilesByName()))
+            }
+        and: "nothing was committed"
+            Thread.sleep(200)
+            SpockMockitoVerifier.toSpockVerification(Mockito.verify(gitService, Mockito.never()).commitChanges(Mockito.any(FileChanges)))
+    }
+
+    def "files which couldn't be copied or deleted should not stop synchronization and should be retried"() {
+        given: "file watcher with recorded files changes"
+            def filesChanges = fileChanges([fileCreated(file("file1")), fileDeleted(file("file2", false))])
+            FileWatcher fileWatcher = fileWatcher(filesChanges)
+        and: "file manager failing on every file once"
+            GitService gitService = Mockito.mock(GitService)
+            FileManager fileManager = Mockito.mock(FileManager)
+            Mockito.when(fileManager.copy(Mockito.anyMap()))
+                    .thenReturn(failed(filesChanges.newOrModifiedFiles()))
+                    .thenAnswer({ FileOperationsResult.processed(it.getArgument(0).values() as List) } as Answer)
+            Mockito.when(fileManager.deleteFromTargetPath(Mockito.anyList()))
+                    .thenReturn(failed(filesChanges.deletedFiles()))
+                    .thenAnswer({ FileOperationsResult.processed(it.getArgument(0).collect { new File(it) }) } as Answer)
+            fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager, CoalescingWindow.NONE, Duration.ofMillis(10))
+
+        when: "synchronizer is started"
+            fileSynchronizer.run()
+        then: "file changes are committed anyway and committed again once failed files are retried"
+            new PollingConditions(timeout: 2).eventually {
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(gitService, Mockito.times(2)).commitChanges(filesChanges))
+            }
+            SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager, Mockito.times(2)).copy(filesChanges.newOrModifiedFilesByName()))
+            SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager, Mockito.times(2)).deleteFromTargetPath(filesChanges.deletedFileNames()))
+    }
+
+    def "changes of files which couldn't be copied should be retried even if nothing was committed"() {
+        given: "file watcher with recorded modification of file which won't occur again"
+            def filesChanges = fileChanges([fileModified(file("file1"))])
+            FileWatcher fileWatcher = fileWatcher(filesChanges)
+        and: "file manager failing to copy file once"
+            GitService gitService = Mockito.mock(GitService)
+            FileManager fileManager = Mockito.mock(FileManager)
+            Mockito.when(fileManager.deleteFromTargetPath(Mockito.anyList())).thenReturn(FileOperationsResult.EMPTY)
+            Mockito.when(fileManager.copy(Mockito.anyMap()))
+                    .thenReturn(failed(filesChanges.newOrModifiedFiles()))
+                    .thenAnswer({ FileOperationsResult.processed(it.getArgument(0).values() as List) } as Answer)
+            fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager, CoalescingWindow.NONE, Duration.ofMillis(10))
+
+        when: "synchronizer is started"
+            fileSynchronizer.run()
+        then: "file change is committed once its file is copied by retry"
+            new PollingConditions(timeout: 2).eventually {
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(gitService).commitChanges(filesChanges))
+            }
+            SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager, Mockito.times(2)).copy(filesChanges.newOrModifiedFilesByName()))
+    }
+
+    def "file changes which couldn't be committed directly should be retried and forgotten only once committed"() {
+        given: "file watcher with recorded deletion of file which won't occur again"
+            def filesChanges = fileChanges([fileCreated(file("file1")), fileDeleted(file("file2", false))])
+            FileWatcher fileWatcher = fileWatcher(filesChanges)
+        and: "git service committing without working tree which fails once"
+            GitService gitService = Mockito.mock(GitService)
+            Mockito.when(gitService.bypassesWorkingTree()).thenReturn(true)
+            Mockito.when(gitService.commitChanges(Mockito.any(FileChanges)))
+                    .thenReturn(Response.failure("failure"))
+                    .thenReturn(Response.success())
+            FileManager fileManager = Mockito.mock(FileManager)
+            fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager, CoalescingWindow.NONE, Duration.ofMillis(10))
+
+        when: "synchronizer is started"
+            fileSynchronizer.run()
+        then: "file changes are committed again by retry"
+            new PollingConditions(timeout: 2).eventually {
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(gitService, Mockito.times(2)).commitChanges(filesChanges))
+            }
+        and: "they are forgotten by file manager only once they are committed"
+            new PollingConditions(timeout: 2).eventually {
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager, Mockito.times(1)).forget(filesChanges.fileNames()))
+            }
+            SpockMockitoVerifier.toSpockVerification(Mockito.verify(fileManager, Mockito.never()).copy(Mockito.anyMap()))
+    }
+
+        def "stopped synchronizer should terminate its thread and not synchronize further file changes"() {
+        given: "file watcher returning file changes continuously"
+            def filesChanges = fileChanges([fileCreated(file("file1"))])
+            FileWatcher fileWatcher = Mockito.mock(FileWatcher)
+            Mockito.when(fileWatcher.awaitFileChanges(Mockito.any(CoalescingWindow)))
+                    .thenAnswer({ Thread.sleep(10); filesChanges } as Answer)
+        and: "running file synchronizer"
+            GitService gitService = Mockito.mock(GitService)
+            fileSynchronizer = new FileSynchronizer(fileWatcher, gitService, fileManager())
+            fileSynchronizer.run()
+            new PollingConditions(timeout: 2).eventually {
+                SpockMockitoVerifier.toSpockVerification(Mockito.verify(gitService, Mockito.atLeastOnce()).commitChanges(filesChanges))
+            }
+
+        when: "synchronizer is stopped"
+            def stopped = fileSynchronizer.stop(Duration.ofSeconds(5))
+            def invocationsAfterStop = Mockito.mockingDetails(fileWatcher).invocations.size()
+            Thread.sleep(200)
+
+        then: "its thread is terminated"
+            stopped
+            fileSynchronizer.executorService.isTerminated()
+        and: "no more file changes are taken"
+            Mockito.mockingDetails(fileWatcher).invocations.size() == invocationsAfterStop
+    }
+
+    /**
+     * File manager successfully copying and deleting all passed files.
+     */
+    static FileManager fileManager() {
+        FileManager fileManager = Mockito.mock(FileManager)
+        Mockito.when(fileManager.copy(Mockito.anyMap()))
+                .thenAnswer({ FileOperationsResult.processed(it.getArgument(0).values() as List) } as Answer)
+        Mockito.when(fileManager.deleteFromTargetPath(Mockito.anyList()))
+                .thenAnswer({ FileOperationsResult.processed(it.getArgument(0).collect { new File(it) }) } as Answer)
+        return fileManager
+    }
+
+    static FileOperationsResult failed(List<File> files) {
+        return FileOperationsResult.of(files.collect { FileOperationsResult.FileOperationResult.failed(it.name, it, "failure") })
+    }
+
+    /**
+     * After returning recorded file changes, file watcher blocks as there are no more file changes (or returns none when
+     * file changes are awaited with timeout).
+     * Spock mock can't be used for that as blocking in its response would block whole mock controller.
+     */
+    static FileWatcher fileWatcher(FileChanges filesChanges) {
+        FileWatcher fileWatcher = Mockito.mock(FileWatcher)
+        Mockito.when(fileWatcher.awaitFileChanges(Mockito.any(CoalescingWindow)))
+                .thenReturn(filesChanges)
+                .thenAnswer({ new CountDownLatch(1).await() } as Answer)
+        Mockito.when(fileWatcher.awaitFileChanges(Mockito.any(CoalescingWindow), Mockito.any(Duration)))
+                .thenReturn(new FileChanges([]))
+        return fileWatcher
+    }
+
     def file(String name, boolean exists = true) {
         return Mock(File) {
             isFile() >> exists
@@ -4,9 +4,15 @@ import spock.lang.Shared
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
+import java.nio.file.FileSystems
+import java.nio.file.Files
 import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.time.Duration
 import java.nio.file.WatchKey
 import java.nio.file.WatchService
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
 
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE
@@ -59,6 +65,32 @@ class FileWatcherSpec extends Specification implements FileChangesSampleData {
             occurredFileChanges.newOrModifiedFiles() == [FILE1, FILE2]
     }
 
+    def "On reconciliation initialized events of files same as in repository should be dropped"() {
+        given: "file watcher with paths"
+            FileWatcher fileWatcher = new FileWatcher(watchService, [
+                    Mock(Path) {
+                        toFile() >> Mock(File) {
+                            isFile() >> false
+                        }
+                        toString() >> "/"
+                    }
+            ], { f -> [FILE1, FILE2, FILE3] }, IgnoredFiles.noIgnoredFiles())
+        and: "repository in which only file2 differs"
+            Map<String, File> comparedFiles = [:]
+            FileWatcher.ChangedFilesSelector changedFilesSelector = { Map<String, File> files ->
+                comparedFiles.putAll(files)
+                files.subMap([FILE2.name])
+            }
+
+        when: "initialized events are reconciled with repository"
+            int changedFiles = fileWatcher.reconcileInitialFileChanges(changedFilesSelector)
+
+        then: "all files are compared, but only initialized event of changed file is left"
+            comparedFiles == [(FILE1.name): FILE1, (FILE2.name): FILE2, (FILE3.name): FILE3]
+            changedFiles == 1
+            fileWatcher.occurredFileChanges() == fileChanges([FileInitialized.of(FILE2)])
+    }
+
     def "Exception should be thrown on file watcher start if there are any files in watched paths with same file name"() {
         when: "file watcher with duplicated files is created"
             new FileWatcher(watchService, [Mock(Path) {
@@ -120,13 +152,13 @@ class FileWatcherSpec extends Specification implements FileChangesSampleData {
                     }]
             FileWatcher fileWatcher = new FileWatcher(watchService, watchedPaths, { f -> [] }, IgnoredFiles.noIgnoredFiles())
 
-        when: "File watcher is started"
+        when: "File watcher is started and it stops after its only watch key turned out to be invalid"
             fileWatcher.run()
+            fileWatcher.executorService.shutdown()
+            fileWatcher.executorService.awaitTermination(2, TimeUnit.SECONDS)
 
-        then: "Events without duplication in correct order are returned"
-            new PollingConditions(timeout: 2).eventually {
-                assert fileWatcher.occurredFileChanges() == expectedFileChanges
-            }
+        then: "Events without duplication in correct order are returned (all at once, not split among several drains)"
+            fileWatcher.occurredFileChanges() == expectedFileChanges
 
         where:
             events                                                                                               | expectedFileChanges
@@ -151,6 +183,78 @@ class FileWatcherSpec extends Specification implements FileChangesSampleData {
             [eventDelete(FILE1), eventDelete(FILE2), eventModify(FILE1)]                                         | fileChanges([fileDeleted(FILE2), fileModified(FILE1)])
     }
 
+    def "awaiting file changes should block until any file change occurs"() {
+        given: "file watcher without any file changes"
+            FileWatcher fileWatcher = fileWatcherWithoutFileChanges()
+
+        when: "file changes are awaited"
+            def awaitedFileChanges = CompletableFuture.supplyAsync { fileWatcher.awaitFileChanges() }
+
+        then: "nothing is returned until file change occurs"
+            Thread.sleep(200)
+            !awaitedFileChanges.isDone()
+
+        when: "file change occurs"
+            logFileChanges(fileWatcher, [fileModified(FILE1)])
+
+        then: "file change is returned"
+            awaitedFileChanges.get(1, TimeUnit.SECONDS) == fileChanges([fileModified(FILE1)])
+
+        when: "file changes are accumulated before awaiting"
+            logFileChanges(fileWatcher, [fileModified(FILE1), fileModified(FILE1), fileCreated(FILE2)])
+
+        then: "all accumulated file changes are returned at once"
+            fileWatcher.awaitFileChanges() == fileChanges([fileModified(FILE1), fileCreated(FILE2)])
+    }
+
+    def "file changes arriving within quiet period should be coalesced"() {
+        given: "file watcher without any file changes"
+            FileWatcher fileWatcher = fileWatcherWithoutFileChanges()
+        and: "file changes arriving every 50 ms"
+            def fileChangesProducer = CompletableFuture.runAsync {
+                5.times {
+                    logFileChanges(fileWatcher, [fileModified(FILE1)])
+                    Thread.sleep(50)
+                }
+            }
+
+        when: "file changes are awaited with quiet period longer than interval between them"
+            def awaitedFileChanges = fileWatcher.awaitFileChanges(new CoalescingWindow(Duration.ofMillis(300), Duration.ofSeconds(5)))
+
+        then: "all file changes are coalesced"
+            fileChangesProducer.get(1, TimeUnit.SECONDS) == null
+            awaitedFileChanges == fileChanges([fileModified(FILE1)])
+            awaitedFileChanges.rawEventsCount() == 5
+    }
+
+    def "coalescing file changes shouldn't last longer than max latency"() {
+        given: "file watcher without any file changes"
+            FileWatcher fileWatcher = fileWatcherWithoutFileChanges()
+        and: "file changes arriving continuously every 10 ms"
+            def producing = true
+            def fileChangesProducer = CompletableFuture.runAsync {
+                while (producing) {
+                    logFileChanges(fileWatcher, [fileModified(FILE1)])
+                    Thread.sleep(10)
+                }
+            }
+
+        when: "file changes are awaited"
+            long start = System.nanoTime()
+            def awaitedFileChanges = fileWatcher.awaitFileChanges(new CoalescingWindow(Duration.ofMillis(100), Duration.ofMillis(500)))
+            long awaitingDurationMs = Duration.ofNanos(System.nanoTime() - start).toMillis()
+
+        then: "file changes are returned after max latency"
+            awaitingDurationMs >= 500
+            awaitingDurationMs < 1500
+            awaitedFileChanges == fileChanges([fileModified(FILE1)])
+            awaitedFileChanges.rawEventsCount() > 1
+
+        cleanup:
+            producing = false
+            fileChangesProducer.get(1, TimeUnit.SECONDS)
+    }
+
     def "watching single file should be possible"() {
         given: "Watch service which returned particular events"
             WatchKey key = Mock(WatchKey) {
@@ -182,6 +286,273 @@ class FileWatcherSpec extends Specification implements FileChangesSampleData {
             fileChangesL.size() == 2
     }
 
+    def "thousands of watched directories should be partitioned among watch shards polled in parallel"() {
+        given: "5000 watched directories"
+            File root = Files.createTempDirectory("file-watcher-shards").toFile()
+            List<Path> watchedPaths = (0..<5000).collect {
+                File directory = new File(root, "directory$it")
+                directory.mkdir()
+                directory.toPath()
+            }
+        and: "file watcher with 4 shards"
+            List<WatchService> watchServices = (0..<4).collect { FileSystems.getDefault().newWatchService() }
+            FileWatcher fileWatcher = new FileWatcher(watchServices, watchedPaths, { f -> [] }, IgnoredFiles.noIgnoredFiles())
+
+        expect: "all directories are registered and spread among shards"
+            fileWatcher.watchShards().size() == 4
+            fileWatcher.watchShards().sum { it.registeredFolders() } == 5000
+            fileWatcher.watchShards().every { it.registeredFolders() > 0 }
+
+        when: "file watcher is started and files are created in every 50th directory"
+            fileWatcher.run()
+            List<File> createdFiles = (0..<5000).step(50).collect {
+                File file = new File(watchedPaths[it].toFile(), "file$it")
+                file.text = "content"
+                file
+            }
+
+        then: "file change of each created file is collected"
+            Set<String> changedFiles = [] as Set
+            new PollingConditions(timeout: 10).eventually {
+                changedFiles.addAll(fileWatcher.occurredFileChanges().newOrModifiedFiles()*.name)
+                assert changedFiles == createdFiles*.name as Set
+            }
+        and: "events are counted by shards which watch their directories"
+            fileWatcher.watchShards().sum { it.events() } >= createdFiles.size()
+            fileWatcher.watchShards().count { it.events() > 0 } > 1
+            fileWatcher.watchShards().every { it.eventsPerSecond() >= 0 }
+
+        cleanup:
+            fileWatcher?.executorService?.shutdownNow()
+            watchServices*.close()
+            root?.deleteDir()
+    }
+
+    def "files of whole tree should be watched in recursive mode under their relative paths"() {
+        given: "watched folder with nested files"
+            File root = Files.createTempDirectory("file-watcher-recursive").toFile()
+            ["file1", "folder/file2", "folder/sub/file3", "folder/sub/.file4.swp"].each {
+                File file = new File(root, it)
+                file.parentFile.mkdirs()
+                file.text = "content"
+            }
+        and: "recursive file watcher"
+            WatchService watchService = FileSystems.getDefault().newWatchService()
+            FileWatcher fileWatcher = new FileWatcher([watchService], [root.toPath()], { f -> [] }, IgnoredFiles.intermediateIgnoredFiles(), true)
+
+        expect: "files of whole tree (without ignored ones) are initialized under their relative paths"
+            fileWatcher.occurredFileChanges().collect { it.fileName() } as Set == ["file1", "folder/file2", "folder/sub/file3"] as Set
+
+        when: "file watcher is started, nested file is modified and folder with file is created"
+            fileWatcher.run()
+            new File(root, "folder/sub/file3").text = "new content"
+            File createdFolder = new File(root, "folder/created")
+            createdFolder.mkdir()
+            new File(createdFolder, "file5").text = "content"
+
+        then: "changes of files in nested and created folders are collected under their relative paths"
+            Map<String, FileChange> changes = [:]
+            new PollingConditions(timeout: 10).eventually {
+                fileWatcher.occurredFileChanges().each { changes.putIfAbsent(it.fileName(), it) }
+                assert changes.keySet().containsAll(["folder/sub/file3", "folder/created/file5"])
+            }
+            changes["folder/sub/file3"] instanceof FileModified
+            changes["folder/created/file5"] instanceof FileCreated
+
+        when: "file in created folder is modified and nested folder is deleted"
+            new File(createdFolder, "file5").text = "new content"
+            new File(root, "folder/sub").deleteDir()
+
+        then: "file in created folder is watched and deletion of folder is collected"
+            Set<String> changedFiles = [] as Set
+            new PollingConditions(timeout: 10).eventually {
+                changedFiles.addAll(fileWatcher.occurredFileChanges().collect { it.fileName() })
+                assert changedFiles.containsAll(["folder/created/file5", "folder/sub"])
+            }
+
+        cleanup:
+            fileWatcher?.executorService?.shutdownNow()
+            watchService?.close()
+            root?.deleteDir()
+    }
+
+    def "overflow of watch service should be recovered by rescan of folder"() {
+        given: "watched folder with two files"
+            File folder = Files.createTempDirectory("file-watcher-overflow").toFile()
+            File file1 = new File(folder, "file1")
+            File file2 = new File(folder, "file2")
+            file1.text = "content"
+            file2.text = "content"
+        and: "watch service which overflowed"
+            WatchKey key = Mock(WatchKey) {
+                pollEvents() >>> [[eventOverflow()], []]
+                reset() >> true
+            }
+            WatchService watchService = Mock(WatchService) {
+                take() >> key >> { throw new InterruptedException() }
+            }
+            def watchedPaths = [Mock(Path) {
+                toString() >> folder.absolutePath
+                register(_ as WatchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE) >> key
+                toFile() >> folder
+            }]
+            FileWatcher fileWatcher = new FileWatcher(watchService, watchedPaths, { f -> f.listFiles() as List }, IgnoredFiles.noIgnoredFiles())
+        and: "repository in which file2 is the same as in watched folder"
+            fileWatcher.reconcileInitialFileChanges({ Map<String, File> files -> files.findAll { it.key != "file2" } })
+            fileWatcher.occurredFileChanges()
+
+        when: "file1 is deleted, file3 is created and file watcher is started"
+            file1.delete()
+            new File(folder, "file3").text = "content"
+            fileWatcher.run()
+
+        then: "changes lost by overflow are found by rescan and unchanged file is dropped"
+            new PollingConditions(timeout: 2).eventually {
+                assert fileWatcher.occurredFileChanges() == fileChanges([FileDeleted.of(file1), FileModified.of(new File(folder, "file3"))])
+            }
+
+        cleanup:
+            folder?.deleteDir()
+    }
+
+    def "files found by rescan should be selected by selector of rescanned files"() {
+        given: "watched folder with two files"
+            File folder = Files.createTempDirectory("file-watcher-overflow").toFile()
+            File file1 = new File(folder, "file1")
+            File file2 = new File(folder, "file2")
+            file1.text = "content"
+            file2.text = "content"
+        and: "watch service which overflowed"
+            WatchKey key = Mock(WatchKey) {
+                pollEvents() >>> [[eventOverflow()], []]
+                reset() >> true
+            }
+            WatchService watchService = Mock(WatchService) {
+                take() >> key >> { throw new InterruptedException() }
+            }
+            def watchedPaths = [Mock(Path) {
+                toString() >> folder.absolutePath
+                register(_ as WatchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE) >> key
+                toFile() >> folder
+            }]
+            FileWatcher fileWatcher = new FileWatcher(watchService, watchedPaths, { f -> f.listFiles() as List }, IgnoredFiles.noIgnoredFiles())
+        and: "repository in which both files are the same as in watched folder, but which isn't updated by commits"
+            fileWatcher.reconcileInitialFileChanges({ Map<String, File> files -> [:] }, FileWatcher.ChangedFilesSelector.ALL_FILES)
+            assert fileWatcher.occurredFileChanges().isEmpty()
+
+        when: "file watcher is started"
+            fileWatcher.run()
+
+        then: "all present files found by rescan are treated as modified"
+            Set<FileChange> changes = [] as Set
+            new PollingConditions(timeout: 2).eventually {
+                changes.addAll(fileWatcher.occurredFileChanges().changes)
+                assert changes == [FileModified.of(file1), FileModified.of(file2)] as Set
+            }
+
+        cleanup:
+            folder?.deleteDir()
+    }
+
+    def "events occurring when queue is full should be collapsed into rescan of their folder"() {
+        given: "watched folder with one file"
+            File folder = Files.createTempDirectory("file-watcher-bounded").toFile()
+            new File(folder, "file0").text = "content"
+        and: "file watcher which queue has room for initialized file change only"
+            WatchService watchService = FileSystems.getDefault().newWatchService()
+            FileWatcher fileWatcher = new FileWatcher([watchService], [folder.toPath()], { f -> f.listFiles() as List },
+                IgnoredFiles.noIgnoredFiles(), false, 1)
+
+        when: "file watcher is started and 100 files are created"
+            fileWatcher.run()
+            (1..100).each { new File(folder, "file$it").text = "content" }
+
+        then: "folder is marked dirty instead of queueing events"
+            new PollingConditions(timeout: 10).eventually {
+                assert fileWatcher.dirtyFolders.anyDirty()
+            }
+            fileWatcher.fileEvents.size() <= 2
+
+        and: "all files are found by rescan"
+            Set<String> changedFiles = [] as Set
+            new PollingConditions(timeout: 10).eventually {
+                changedFiles.addAll(fileWatcher.occurredFileChanges().newOrModifiedFiles()*.name)
+                assert changedFiles == (0..100).collect { "file$it".toString() } as Set
+            }
+
+        cleanup:
+            fileWatcher?.stop()
+            folder?.deleteDir()
+    }
+
+    def "files of folder created when queue is full shouldn't be lost"() {
+        given: "recursively watched folder with one file"
+            File folder = Files.createTempDirectory("file-watcher-bounded-recursive").toFile()
+            new File(folder, "file0").text = "content"
+        and: "folder with files prepared outside of watched folder"
+            File preparedFolder = Files.createTempDirectory("file-watcher-prepared").toFile()
+            (1..20).each { new File(preparedFolder, "file$it").text = "content" }
+        and: "recursive file watcher which queue is filled up by initialized file change"
+            WatchService watchService = FileSystems.getDefault().newWatchService()
+            FileWatcher fileWatcher = new FileWatcher([watchService], [folder.toPath()], { f -> f.listFiles() as List },
+                IgnoredFiles.noIgnoredFiles(), true, 1)
+
+        when: "file watcher is started and populated folder is moved into watched folder at once"
+            fileWatcher.run()
+            Files.move(preparedFolder.toPath(), folder.toPath().resolve("created"), StandardCopyOption.ATOMIC_MOVE)
+
+        then: "created folder is marked dirty instead of exceeding capacity of queue"
+            new PollingConditions(timeout: 10).eventually {
+                assert fileWatcher.dirtyFolders.anyDirty()
+            }
+            fileWatcher.fileEvents.size() == 1
+
+        and: "all files of created folder are found by rescan"
+            Set<String> changedFiles = [] as Set
+            new PollingConditions(timeout: 10).eventually {
+                changedFiles.addAll(fileWatcher.occurredFileChanges().collect { it.fileName() })
+                assert changedFiles.containsAll(["file0"] + (1..20).collect { "created/file$it".toString() })
+            }
+
+        cleanup:
+            fileWatcher?.stop()
+            folder?.deleteDir()
+            preparedFolder?.deleteDir()
+    }
+
+    def "stopped file watcher should terminate its threads and ignore further events"() {
+        given: "running file watcher of folder"
+            File folder = Files.createTempDirectory("file-watcher-stop").toFile()
+            FileWatcher fileWatcher = new FileWatcher([FileSystems.getDefault().newWatchService()], [folder.toPath()],
+                { f -> f.listFiles() as List }, IgnoredFiles.noIgnoredFiles())
+            fileWatcher.run()
+        and: "file created meanwhile is noticed"
+            def file1 = new File(folder, "file1")
+            file1.text = "content"
+            new PollingConditions(timeout: 10).eventually {
+                assert fileWatcher.occurredFileChanges().newOrModifiedFiles().contains(file1)
+            }
+
+        when: "file watcher is stopped"
+            fileWatcher.stop()
+
+        then: "its threads are terminated"
+            new PollingConditions(timeout: 5).eventually {
+                assert fileWatcher.executorService.isTerminated()
+            }
+
+        when: "file is created after stop"
+            def file2 = new File(folder, "file2")
+            file2.text = "content"
+            Thread.sleep(500)
+
+        then: "its events aren't logged (events of file noticed before stop can still be in queue)"
+            fileWatcher.occurredFileChanges().fileNames().every { it != file2.name }
+
+        cleanup:
+            folder?.deleteDir()
+    }
+
     def "equal of file changes should work correctly"() {
         expect:
             (expectedFileChanges == fileChangesToCheck) == result
@@ -200,6 +571,21 @@ class FileWatcherSpec extends Specification implements FileChangesSampleData {
             fileChanges([fileModified(FILE1), fileCreated(FILE1)]) | fileChanges([fileModified(FILE1)])                     || false
     }
 
+    static void logFileChanges(FileWatcher fileWatcher, List<FileChange> fileChanges) {
+        fileChanges.each {
+            def kind = it instanceof FileCreated ? FileEventLog.Kind.CREATED : it instanceof FileDeleted ? FileEventLog.Kind.DELETED : FileEventLog.Kind.MODIFIED
+            fileWatcher.fileEvents.add(fileWatcher.pathDictionary.id(it.file(), it.fileName()), kind, System.nanoTime())
+        }
+    }
+
+    FileWatcher fileWatcherWithoutFileChanges() {
+        return new FileWatcher(watchService, [Mock(Path) {
+            toFile() >> Mock(File) {
+                isFile() >> false
+            }
+        }], { f -> [] }, IgnoredFiles.noIgnoredFiles())
+    }
+
     def file(String name, File parentFile = new File(""), String path = "/$name", boolean exists = true) {
         return Mock(File) {
             isFile() >> exists
@@ -0,0 +1,115 @@
+package io.github.pgagala.gitsynchronizer
+
+import jdk.jfr.Recording
+import jdk.jfr.RecordingState
+import jdk.jfr.consumer.RecordedEvent
+import jdk.jfr.consumer.RecordingFile
+import org.testcontainers.shaded.org.apache.commons.lang.RandomStringUtils
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.WatchKey
+import java.nio.file.WatchService
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY
+import static org.apache.commons.io.FileUtils.forceDelete
+
+@SuppressWarnings("GroovyAccessibility")
+class FlightRecorderEventsSpec extends Specification implements FileChangesSampleData {
+
+    @Shared
+    final File FILE1 = new File("file1")
+
+    @Shared
+    final File FILE2_SWP = new File(".file2.swp")
+
+    Recording recording
+
+    def setup() {
+        recording = new Recording()
+        ["WatchBatch", "Flatten", "FileCopy"].each {
+            recording.enable("io.github.pgagala.gitsynchronizer." + it).withoutThreshold()
+        }
+        recording.start()
+    }
+
+    def cleanup() {
+        recording.close()
+    }
+
+    def "Watch batches and flattening of file changes should be recorded"() {
+        given: "watch service which returned modification of file and creation of ignored file"
+            WatchKey key = Mock(WatchKey) {
+                pollEvents() >> [eventModify(FILE1), eventModify(FILE1), eventCreate(FILE2_SWP)]
+            }
+            WatchService watchService = Mock(WatchService) {
+                take() >> key
+            }
+            def watchedPaths =
+                    [Mock(Path) {
+                        toString() >> "/"
+                        register(_ as WatchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE) >> key
+                        toFile() >> Mock(File) {
+                            isFile() >> false
+                        }
+                    }]
+            FileWatcher fileWatcher = new FileWatcher(watchService, watchedPaths, { f -> [] }, IgnoredFiles.intermediateIgnoredFiles())
+
+        when: "file watcher is started and its file changes are drained"
+            fileWatcher.run()
+            new PollingConditions(timeout: 2).eventually {
+                assert fileWatcher.occurredFileChanges() == fileChanges([fileModified(FILE1)])
+            }
+
+        then: "batch of watch events is recorded with amount of ignored events"
+            def watchBatch = recordedEvents("io.github.pgagala.gitsynchronizer.WatchBatch").first()
+            watchBatch.getInt("shard") == 0
+            watchBatch.getInt("eventCount") == 3
+            watchBatch.getInt("ignoredCount") == 1
+
+        and: "flattening of drained file changes is recorded"
+            recordedEvents("io.github.pgagala.gitsynchronizer.Flatten").any {
+                it.getInt("inputSize") == 2 && it.getInt("outputSize") == 1
+            }
+    }
+
+    def "Copied files should be recorded with their size"() {
+        given: "file manager and file with content"
+            def target = Files.createTempDirectory("testRepo_" + RandomStringUtils.randomAlphabetic(4) + "_").toFile()
+            def fileManager = new FileManager(target.absolutePath)
+            def file = Files.createTempFile("testFile_", "").toFile()
+            file.bytes = new byte[1024]
+
+        when: "file is copied twice"
+            fileManager.copy([file])
+            fileManager.copy([file])
+
+        then: "only actual copy is recorded"
+            def fileCopies = recordedEvents("io.github.pgagala.gitsynchronizer.FileCopy")
+            fileCopies.size() == 1
+            fileCopies.first().getString("fileName") == file.name
+            fileCopies.first().getLong("bytes") == 1024
+
+        cleanup:
+            forceDelete(target)
+            forceDelete(file)
+    }
+
+    private List<RecordedEvent> recordedEvents(String name) {
+        if (recording.state == RecordingState.RUNNING) {
+            recording.stop()
+        }
+        def recordingFile = Files.createTempFile("recording_", ".jfr")
+        try {
+            recording.dump(recordingFile)
+            return RecordingFile.readAllEvents(recordingFile).findAll { it.eventType.name == name }
+        } finally {
+            Files.delete(recordingFile)
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.pgagala.gitsynchronizer
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+@Requires({ LocalGitBackend.gitAvailable() })
+class GitCommandLineBackendSpec extends Specification {
+
+    File repository
+    LocalGitBackend gitBackend
+
+    def setup() {
+        repository = Files.createTempDirectory("local_repo_").toFile()
+        gitBackend = new LocalGitBackend(repository)
+        assert gitBackend.init().isSuccessful()
+    }
+
+    def cleanup() {
+        repository.deleteDir()
+    }
+
+    def "only given paths should be staged"() {
+        given: "two new files"
+            new File(repository, "file1").text = "foo"
+            new File(repository, "file2").text = "bar"
+
+        expect: "nothing is staged in empty repository"
+            gitBackend.lackOfStagedChanges()
+
+        when: "one of files is added"
+            def response = gitBackend.add(["file1"])
+
+        then: "only this file is staged"
+            response.isSuccessful()
+            !gitBackend.lackOfStagedChanges()
+            gitBackend.git(["diff", "--cached", "--name-only"], "git diff --cached").result().trim() == "file1"
+    }
+
+    def "removal of tracked paths should be staged and not tracked paths should be ignored"() {
+        given: "committed file"
+            def file = new File(repository, ":file")
+            file.text = "foo"
+            assert gitBackend.add([file.name]).isSuccessful()
+            assert gitBackend.commit("message", "author", "author@email.com").isSuccessful()
+            assert gitBackend.lackOfStagedChanges()
+
+        when: "file is deleted and its removal is staged together with never tracked path"
+            file.delete()
+            def response = gitBackend.remove([file.name, "notTrackedFile"])
+
+        then: "removal is staged"
+            response.isSuccessful()
+            !gitBackend.lackOfStagedChanges()
+    }
+
+    def "state of repository should be resolved"() {
+        given: "repository with remote and branch"
+            assert gitBackend.addRemote("origin", new GitServerRemote("file:///tmp/remote.git")).isSuccessful()
+            assert gitBackend.createBranchAndSwitch(new GitBranch("branch")).isSuccessful()
+
+        expect: "remote and branch are resolved"
+            gitBackend.remoteUrl("origin") == Optional.of("file:///tmp/remote.git")
+            gitBackend.remoteUrl("other").isEmpty()
+            gitBackend.currentBranch() == Optional.of("branch")
+            gitBackend.cleanWorkingTree()
+
+        when: "not tracked file appears"
+            new File(repository, "file").text = "foo"
+
+        then: "working tree isn't clean"
+            !gitBackend.cleanWorkingTree()
+    }
+
+    def "many paths should be staged in chunks"() {
+        given: "more files than paths passed in one command"
+            def fileNames = (1..1200).collect { "file$it".toString() }
+            fileNames.each { new File(repository, it).text = it }
+
+        when: "files are added"
+            def response = gitBackend.add(fileNames)
+
+        then: "all of them are staged"
+            response.isSuccessful()
+            gitBackend.git(["diff", "--cached", "--name-only"], "git diff --cached").result().readLines().size() == fileNames.size()
+    }
+}
@@ -7,6 +7,7 @@ import spock.lang.Specification
 import spock.util.environment.OperatingSystem
 
 import java.nio.file.Path
+import java.time.Duration
 
 
 @SuppressWarnings("GroovyAccessibility")
@@ -81,6 +82,216 @@ class GitSynchronizerApplicationArgsParserSpec extends Specification {
             parser.paths().size() == 1
     }
 
+    def "Should parse git backend (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed git backend is as expected"
+            parser.gitBackend() == gitBackend
+
+        where:
+            parameters                                                                 | gitBackend
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                  | GitBackendType.DOCKER_EXEC
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-gb", "DOCKER"] as String[] | GitBackendType.DOCKER
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-gb", "JGIT"] as String[]   | GitBackendType.JGIT
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-gb", "jgit"] as String[]   | GitBackendType.JGIT
+    }
+
+    def "Should parse copy strategy (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed copy strategy is as expected"
+            parser.copyStrategy() == copyStrategy
+
+        where:
+            parameters                                                                     | copyStrategy
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                      | CopyStrategy.STREAM
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-cs", "REFLINK"] as String[]    | CopyStrategy.REFLINK
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-cs", "hardlink"] as String[]   | CopyStrategy.HARDLINK
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "--copyStrategy", "TRANSFER_TO"] as String[] | CopyStrategy.TRANSFER_TO
+    }
+
+    def "Should parse coalescing window (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed coalescing window is as expected"
+            parser.coalescingWindow() == coalescingWindow
+
+        where:
+            parameters                                                                                  | coalescingWindow
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                                   | CoalescingWindow.DEFAULT
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-qp", "100", "-ml", "1000"] as String[]      | new CoalescingWindow(Duration.ofMillis(100), Duration.ofSeconds(1))
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "--quietPeriod", "0", "--maxLatency", "0"] as String[] | CoalescingWindow.NONE
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-qp", "1000"] as String[]                    | new CoalescingWindow(Duration.ofSeconds(1), Duration.ofSeconds(5))
+    }
+
+    def "Should fail on invalid coalescing window (#parameters)"() {
+        when: "parameters are passed to parser"
+            new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters).coalescingWindow()
+        then: "exception should be thrown"
+            thrown ParameterException
+
+        where:
+            parameters << [
+                    ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-qp", "-1"] as String[],
+                    ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-qp", "bla"] as String[],
+                    ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-qp", "1000", "-ml", "100"] as String[]
+            ]
+    }
+
+    def "Should parse file operations parallelism (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed file operations parallelism is as expected"
+            parser.fileOperationsParallelism() == parallelism
+
+        where:
+            parameters                                                                                 | parallelism
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                                  | 1
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-fp", "8"] as String[]                      | 8
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "--fileOperationsParallelism", "2"] as String[] | 2
+    }
+
+    def "Should fail on invalid file operations parallelism (#parameters)"() {
+        when: "parameters are passed to parser"
+            new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+        then: "exception should be thrown"
+            thrown ParameterException
+
+        where:
+            parameters << [
+                    ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-fp", "0"] as String[],
+                    ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-fp", "-2"] as String[],
+                    ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-fp", "bla"] as String[]
+            ]
+    }
+
+    def "Should parse watch shards (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed watch shards are as expected"
+            parser.watchShards() == watchShards
+
+        where:
+            parameters                                                                      | watchShards
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                       | 1
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-ws", "4"] as String[]           | 4
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "--watchShards", "2"] as String[] | 2
+    }
+
+    def "Should parse recursive watching (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed recursive watching is as expected"
+            parser.recursive() == recursive
+
+        where:
+            parameters                                                               | recursive
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                | false
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-R"] as String[]          | true
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "--recursive"] as String[] | true
+    }
+
+    @Requires({ !OperatingSystem.getCurrent().isWindows() })
+    def "Should parse persistent repository (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed persistent repository is as expected"
+            parser.persistentRepository() == persistentRepository
+
+        where:
+            parameters                                                                                              | persistentRepository
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                                               | false
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-r", PATH_LITERAL2, "-pr"] as String[]                   | true
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-r", PATH_LITERAL2, "--persistentRepository"] as String[] | true
+    }
+
+    def "Should fail on persistent repository without repository path"() {
+        when: "parameters are passed to parser"
+            new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-pr"] as String[])
+        then: "exception should be thrown"
+            thrown ParameterException
+    }
+
+    def "Should parse ignored globs (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed ignored files are as expected"
+            ignored.every { parser.ignoredFilesPattern().shouldBeIgnored(new File(it)) }
+            notIgnored.every { !parser.ignoredFilesPattern().shouldBeIgnored(new File(it)) }
+
+        where:
+            parameters                                                                                     | ignored                  | notIgnored
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                                      | [".file.swp"]            | ["app.log"]
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-ig", "*.log,!keep.log"] as String[]            | [".file.swp", "app.log"] | ["keep.log"]
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-i", "", "--ignoredGlob", "*.log"] as String[]  | ["app.log"]              | [".file.swp"]
+    }
+
+    def "Should fail on invalid ignored glob"() {
+        when: "parameters are passed to parser"
+            new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-ig", "dir/*.log"] as String[])
+        then: "exception should be thrown"
+            thrown ParameterException
+    }
+
+    def "Should parse bootstrap fetch and pull timeout (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed bootstrap fetch and pull timeout are as expected"
+            parser.bootstrapFetch() == bootstrapFetch
+            parser.pullTimeout() == pullTimeout
+
+        where:
+            parameters                                                                                         | bootstrapFetch         | pullTimeout
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                                          | BootstrapFetch.FULL    | GitService.DEFAULT_PULL_TIMEOUT
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-bf", "SHALLOW", "-pt", "1000"] as String[]         | BootstrapFetch.SHALLOW | Duration.ofSeconds(1)
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "--bootstrapFetch", "shallow"] as String[]           | BootstrapFetch.SHALLOW | GitService.DEFAULT_PULL_TIMEOUT
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "--pullTimeout", "600000"] as String[]               | BootstrapFetch.FULL    | Duration.ofMinutes(10)
+    }
+
+    def "Should fail on invalid pull timeout (#parameters)"() {
+        when: "parameters are passed to parser"
+            new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+        then: "exception should be thrown"
+            thrown ParameterException
+
+        where:
+            parameters << [
+                    ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-pt", "0"] as String[],
+                    ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-pt", "bla"] as String[]
+            ]
+    }
+
+    def "Should parse commit mode (#parameters)"() {
+        given: "argument parser"
+            def parser = new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
+
+        expect: "parsed commit mode is as expected"
+            parser.commitMode() == commitMode
+
+        where:
+            parameters                                                                                 | commitMode
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE] as String[]                                  | CommitMode.WORKING_TREE
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-cm", "FAST_IMPORT"] as String[]            | CommitMode.FAST_IMPORT
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "--commitMode", "fast_import"] as String[]   | CommitMode.FAST_IMPORT
+            ["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-gb", "JGIT", "-cm", "OBJECT_STORE"] as String[] | CommitMode.OBJECT_STORE
+    }
+
+    def "Should fail on fast-import commit mode with JGit backend"() {
+        when: "parameters are passed to parser"
+            new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(["-p", PATH_LITERAL, "-g", GIT_SERVER_REMOTE, "-gb", "JGIT", "-cm", "FAST_IMPORT"] as String[])
+        then: "exception should be thrown"
+            thrown ParameterException
+    }
+
     def "Should fail on missing mandatory parameter (#description)"() {
         when: "parameters are passed to parser"
             new GitSynchronizerApplication.GitSynchronizerApplicationArgsParser(parameters)
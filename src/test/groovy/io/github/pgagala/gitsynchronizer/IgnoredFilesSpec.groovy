@@ -75,4 +75,91 @@ class IgnoredFilesSpec extends Specification implements FileChangesSampleData {
             []                         | new File("abc")   | false
     }
 
-}
\ No newline at end of file
+    def "compiled patterns should ignore same files as patterns evaluated one by one (decisions cache size #cacheSize)"() {
+        given: "many patterns of different kinds"
+            def patterns = [IgnoredFiles.INTERMEDIATE_FILES_PATTERN, IgnoredFiles.VIM_INTERMEDIATE_FILES_PATTERN, ".*\\.log", "^tmp-.*",
+                            "(a|b)+c", "(.)\\1.*", "(?i)readme", "x[.]y", "build\\d+\\.out", "\\Q*.bak\\E", "file1"]
+                    .collect { Pattern.compile(it) } + [Pattern.compile("CASE", Pattern.CASE_INSENSITIVE)]
+            def ignoredFiles = IgnoredFiles.from(patterns).withDecisionsCacheSize(cacheSize)
+            def names = [".file.swp", ".~lock", "file~", "4913", "12345", "abc.log", "log", "tmp-1", "tmp", "abababc", "c", "aab",
+                         "ab", "README", "Readme.md", "x.y", "xzy", "build12.out", "build.out", "*.bak", "a.bak", "file1", "file12",
+                         "case", "CaSe", "file", ""]
+
+        expect: "each name is ignored only if any pattern matches it"
+            names.every { name ->
+                ignoredFiles.shouldBeIgnored(new File(name)) == patterns.any { it.matcher(name).matches() } &&
+                        ignoredFiles.shouldBeIgnored(new File(name)) == patterns.any { it.matcher(name).matches() }
+            }
+
+        where:
+            cacheSize << [0, 2, IgnoredFiles.DECISIONS_CACHE_SIZE]
+    }
+
+    def "literal prefixes and suffixes of pattern alternatives should be found (#regex)"() {
+        expect:
+            IgnoredNameMatcher.affixes(regex) == Optional.ofNullable(affixes?.collect { new IgnoredNameMatcher.Affix(it[0], it[1]) })
+
+        where:
+            regex                                    | affixes
+            IgnoredFiles.INTERMEDIATE_FILES_PATTERN  | [[".", ""], [".~", ""], ["", "~"]]
+            IgnoredFiles.VIM_INTERMEDIATE_FILES_PATTERN | null
+            ".*\\.log"                             | [["", ".log"]]
+            "^tmp-.*\$"                             | [["tmp-", ""]]
+            "file1"                                  | [["file1", "file1"]]
+            "ab+c"                                   | [["a", "c"]]
+            "a(b|c)d|e.*"                            | [["a", "d"], ["e", ""]]
+            "x[.]y{2}"                               | [["x", ""]]
+            ".*"                                     | null
+            "(?i)readme"                             | null
+            "\\Q.bak\\E"                         | null
+            "\\x41.*"                              | null
+    }
+
+    def "files matching gitignore globs should be ignored unless negated glob matches them (#name)"() {
+        given: "ignored files with globs"
+            def ignoredFiles = IgnoredFiles.from([]).withGlobs(["*.log", "!important.log", "build-?", "[abc]*.tmp", "[!0-9]x", "\\!bang", "**.bak", "a\\*b "])
+
+        expect:
+            ignoredFiles.shouldBeIgnored(new File(name)) == isIgnored
+
+        where:
+            name            | isIgnored
+            "app.log"       | true
+            ".log"          | true
+            "important.log" | false
+            "app.log.1"     | false
+            "build-1"       | true
+            "build-12"      | false
+            "a1.tmp"        | true
+            "d1.tmp"        | false
+            "ax"            | true
+            "1x"            | false
+            "!bang"         | true
+            "old.bak"       | true
+            "a*b"           | true
+            "axb"           | false
+            "file"          | false
+    }
+
+    def "globs should be applied in addition to ignored patterns"() {
+        given:
+            def ignoredFiles = IgnoredFiles.intermediateIgnoredFiles().withGlobs(["*.log", "!.keep.swp"])
+
+        expect:
+            ignoredFiles.shouldBeIgnored(new File(".file.swp"))
+            ignoredFiles.shouldBeIgnored(new File("app.log"))
+            !ignoredFiles.shouldBeIgnored(new File(".keep.swp"))
+            !ignoredFiles.shouldBeIgnored(new File("file"))
+            ignoredFiles.toString() == IgnoredFiles.INTERMEDIATE_FILES_PATTERN + "," + IgnoredFiles.VIM_INTERMEDIATE_FILES_PATTERN + ",.*\\.log,!\\.keep\\.swp"
+    }
+
+    def "glob which isn't a glob of file name should be rejected (#glob)"() {
+        when:
+            GitignoreGlob.of(glob)
+        then:
+            thrown IllegalArgumentException
+
+        where:
+            glob << ["dir/*.log", "/build", "!", "  "]
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.pgagala.gitsynchronizer
+
+import io.github.pgagala.gitsynchronizer.metrics.Metrics
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class JGitBackendSpec extends Specification {
+
+    File repository
+    JGitBackend gitBackend
+
+    def setup() {
+        repository = Files.createTempDirectory("jgit_repo_").toFile()
+        gitBackend = new JGitBackend(repository)
+    }
+
+    def cleanup() {
+        Metrics.disable()
+        repository.deleteDir()
+    }
+
+    def "operations and direct commits should be recorded in metrics as commands"() {
+        given: "enabled metrics"
+            def metrics = Metrics.enable()
+
+        when: "repository is created and changes are committed"
+            assert gitBackend.init().isSuccessful()
+            assert gitBackend.createBranchAndSwitch(new GitBranch("master")).isSuccessful()
+            def file = new File(repository, "file")
+            file.text = "foo"
+            assert gitBackend.add([file.name]).isSuccessful()
+            assert gitBackend.commit("message", "author", "author@email.com").isSuccessful()
+            def committer = new ObjectStoreCommitter(repository, new GitBranch("master"))
+            file.text = "bar"
+            committer.commit(new TreeChanges([(file.name): file], []), "message", "author", "author@email.com")
+            committer.close()
+
+        and: "pushing fails as there is no remote"
+            gitBackend.push("origin", new GitBranch("master"))
+
+        then: "operations are recorded by descriptions of command line git"
+            ["git init", "git checkout -b", "git adding file", "git committing"].every {
+                metrics.commands[it].executions == 1 && metrics.commands[it].failures == 0
+            }
+            metrics.commands["object store commit"].executions == 1
+            metrics.commands["object store commit"].failures == 0
+            metrics.commands["git pushing to origin"].failures == 1
+    }
+}
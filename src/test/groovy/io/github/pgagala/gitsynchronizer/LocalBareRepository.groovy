@@ -0,0 +1,99 @@
+package io.github.pgagala.gitsynchronizer
+
+import org.apache.commons.io.FileUtils
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.revwalk.RevCommit
+import org.eclipse.jgit.transport.RefSpec
+import org.eclipse.jgit.treewalk.TreeWalk
+
+import java.nio.file.Files
+
+/**
+ * Bare git repository on local filesystem used as a remote (file://) in tests.
+ */
+@SuppressWarnings("GroovyAccessibility")
+class LocalBareRepository {
+
+    final File directory
+
+    LocalBareRepository() {
+        directory = Files.createTempDirectory("bare_remote_").resolve("remote.git").toFile()
+        Git.init().setBare(true).setDirectory(directory).call().close()
+    }
+
+    GitServerRemote remote() {
+        return new GitServerRemote("file://${directory.absolutePath}")
+    }
+
+    List<RevCommit> commits(GitBranch branch = GitBranch.DEFAULT_BRANCH) {
+        Git.open(directory).withCloseable { git ->
+            def head = git.repository.resolve(Constants.R_HEADS + branch.value)
+            head == null ? [] : git.log().add(head).call().toList()
+        }
+    }
+
+    String treeId(GitBranch branch = GitBranch.DEFAULT_BRANCH) {
+        Git.open(directory).withCloseable { git ->
+            git.repository.resolve(Constants.R_HEADS + branch.value + "^{tree}")?.name()
+        }
+    }
+
+    Map<String, String> files(GitBranch branch = GitBranch.DEFAULT_BRANCH) {
+        Git.open(directory).withCloseable { git ->
+            def head = git.repository.resolve(Constants.R_HEADS + branch.value + "^{tree}")
+            Map<String, String> files = [:]
+            if (head == null) {
+                return files
+            }
+            new TreeWalk(git.repository).withCloseable { walk ->
+                walk.addTree(head)
+                walk.recursive = true
+                while (walk.next()) {
+                    files[walk.pathString] = new String(git.repository.open(walk.getObjectId(0)).bytes)
+                }
+            }
+            files
+        }
+    }
+
+    /**
+     * Pushes given amount of commits, each modifying one of given amount of files, so that remote has long history
+     * while its latest tree stays small. History is created from scratch, so that given branch shouldn't exist on remote yet.
+     */
+    void pushHistory(int commits, int files, GitBranch branch = GitBranch.DEFAULT_BRANCH) {
+        def workingDirectory = Files.createTempDirectory("bare_remote_history_").toFile()
+        try {
+            Git.init().setDirectory(workingDirectory).call().withCloseable { git ->
+                (1..commits).each { commit ->
+                    new File(workingDirectory, "file-${commit % files}").text = "content-$commit"
+                    git.add().addFilepattern(".").call()
+                    git.commit().setMessage("commit-$commit").setAuthor("history", "history@synchronizer.com")
+                            .setCommitter("history", "history@synchronizer.com").call()
+                }
+                git.push().setRemote(remote().value).setRefSpecs(new RefSpec(Constants.HEAD + ":" + Constants.R_HEADS + branch.value)).call()
+            }
+        } finally {
+            FileUtils.deleteQuietly(workingDirectory)
+        }
+    }
+
+    /**
+     * Remote becomes unreachable until {@link #makeAvailable()} is invoked.
+     */
+    void makeUnavailable() {
+        assert directory.renameTo(unavailableDirectory())
+    }
+
+    void makeAvailable() {
+        assert unavailableDirectory().renameTo(directory)
+    }
+
+    private File unavailableDirectory() {
+        return new File(directory.parentFile, "unavailable.git")
+    }
+
+    void delete() {
+        FileUtils.deleteQuietly(directory.parentFile)
+    }
+}
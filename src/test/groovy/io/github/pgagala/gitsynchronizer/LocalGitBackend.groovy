@@ -0,0 +1,46 @@
+package io.github.pgagala.gitsynchronizer
+
+import io.github.pgagala.gitsynchronizer.processexecutor.InteractiveProcess
+import io.github.pgagala.gitsynchronizer.processexecutor.OutputReader
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor
+import io.github.pgagala.gitsynchronizer.processexecutor.Response
+
+import java.time.Duration
+
+/**
+ * {@link GitCommandLineBackend} running git installed on local machine. Allows to check git command line invocations without docker.
+ */
+class LocalGitBackend extends GitCommandLineBackend {
+
+    private final ProcessExecutor processExecutor
+
+    LocalGitBackend(File gitRepositoryLocalFile) {
+        this.processExecutor = new ProcessExecutor(gitRepositoryLocalFile)
+    }
+
+    @Override
+    Response git(List<String> gitArguments, String description, Optional<Duration> timeout) throws InterruptedException {
+        List<String> command = ["git"] + gitArguments
+        return timeout.isPresent() ?
+                processExecutor.execute(command, description, timeout.get()) :
+                processExecutor.execute(command, description)
+    }
+
+    @Override
+    Response git(List<String> gitArguments, String description, OutputReader outputReader) throws InterruptedException {
+        return processExecutor.execute(["git"] + gitArguments, description, outputReader)
+    }
+
+    @Override
+    InteractiveProcess startGit(List<String> gitArguments, String description) throws IOException {
+        return processExecutor.start(["git"] + gitArguments, description)
+    }
+
+    static boolean gitAvailable() {
+        try {
+            return new ProcessExecutor(new File("./")).execute(["git", "--version"], "git version").isSuccessful()
+        } catch (Exception ignored) {
+            return false
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package io.github.pgagala.gitsynchronizer
+
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor
+import org.apache.commons.io.FileUtils
+import org.eclipse.jgit.api.Git
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.nio.file.Files
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+import static org.testcontainers.shaded.org.apache.commons.lang.RandomStringUtils.randomAlphabetic
+
+/**
+ * Checks every available git backend against a bare repository on local filesystem (file:// remote).
+ * Docker backend is checked only if docker is available.
+ */
+@Timeout(value = 3, unit = TimeUnit.MINUTES)
+@SuppressWarnings("GroovyAccessibility")
+class LocalRemoteGitServiceIntegrationSpec extends Specification {
+
+    static final Duration PUSH_TIMEOUT = Duration.ofSeconds(30)
+    static final Duration PULL_TIMEOUT = Duration.ofSeconds(30)
+    static final String LOCAL_GIT = "LOCAL_GIT"
+
+    LocalBareRepository bareRepository
+    List<File> localRepositories = []
+    List<GitService> gitServices = []
+
+    def setupSpec() {
+        if (dockerAvailable()) {
+            Docker.pullDockerGitImageOrThrowException()
+        }
+    }
+
+    def setup() {
+        bareRepository = new LocalBareRepository()
+    }
+
+    def cleanup() {
+        gitServices.each { it.stop() }
+        bareRepository.delete()
+        localRepositories.each { FileUtils.deleteQuietly(it) }
+    }
+
+    def "Committed changes should be pushed to local bare remote (#backendType)"() {
+        given: "Git service with created repository"
+            def repository = localRepository()
+            def gitService = gitService(backendType, repository)
+            gitService.createRepository()
+
+        when: "New file is committed"
+            def file = new File(repository, "file-" + randomAlphabetic(5))
+            file.text = "foo"
+            def response = gitService.commitChanges(new FileChanges([FileCreated.of(file)]))
+
+        then: "File is present on remote"
+            response.isSuccessful()
+            gitService.awaitPushed(PUSH_TIMEOUT)
+            bareRepository.files() == [(file.name): "foo"]
+            bareRepository.commits()[0].fullMessage.contains("File created: ${file.absolutePath}")
+
+        when: "File is deleted and committed"
+            file.delete()
+            response = gitService.commitChanges(new FileChanges([FileDeleted.of(file)]))
+
+        then: "File is removed from remote"
+            response.isSuccessful()
+            gitService.awaitPushed(PUSH_TIMEOUT)
+            bareRepository.files().isEmpty()
+            bareRepository.commits().size() == 2
+
+        where:
+            backendType << availableBackendTypes()
+    }
+
+    def "Only changed files should be committed (#backendType)"() {
+        given: "Git service with created repository"
+            def repository = localRepository()
+            def gitService = gitService(backendType, repository)
+            gitService.createRepository()
+        and: "Two new files in repository"
+            def changedFile = new File(repository, "changed-" + randomAlphabetic(5))
+            changedFile.text = "foo"
+            new File(repository, "other-" + randomAlphabetic(5)).text = "bar"
+
+        when: "Only one of them is committed as changed"
+            def response = gitService.commitChanges(new FileChanges([FileCreated.of(changedFile)]))
+
+        then: "Only changed file is present on remote"
+            response.isSuccessful()
+            gitService.awaitPushed(PUSH_TIMEOUT)
+            bareRepository.files() == [(changedFile.name): "foo"]
+
+        when: "Same file is committed again without changing it"
+            response = gitService.commitChanges(new FileChanges([FileModified.of(changedFile)]))
+
+        then: "Nothing new is committed"
+            response.isSuccessful()
+            response.result().contains("No new files changes to commit")
+            bareRepository.commits().size() == 1
+
+        where:
+            backendType << availableBackendTypes()
+    }
+
+    def "Files from nested folders should be committed under their relative paths (#backendType)"() {
+        given: "Git service with created repository"
+            def repository = localRepository()
+            def gitService = gitService(backendType, repository)
+            gitService.createRepository()
+        and: "New files in nested folders of repository"
+            def files = ["folder/file1", "folder/sub folder/file2"].collectEntries {
+                def file = new File(repository, it)
+                file.parentFile.mkdirs()
+                file.text = it
+                [it, file]
+            }
+
+        when: "Files are committed"
+            def response = gitService.commitChanges(new FileChanges(files.collect { name, file -> FileCreated.of(file, name) }))
+
+        then: "Files are present on remote under their relative paths"
+            response.isSuccessful()
+            gitService.awaitPushed(PUSH_TIMEOUT)
+            bareRepository.files() == ["folder/file1": "folder/file1", "folder/sub folder/file2": "folder/sub folder/file2"]
+
+        when: "Nested folder is deleted and committed"
+            new File(repository, "folder/sub folder").deleteDir()
+            response = gitService.commitChanges(new FileChanges([FileDeleted.of(new File(repository, "folder/sub folder"), "folder/sub folder")]))
+
+        then: "Files of deleted folder are removed from remote"
+            response.isSuccessful()
+            gitService.awaitPushed(PUSH_TIMEOUT)
+            bareRepository.files() == ["folder/file1": "folder/file1"]
+
+        where:
+            backendType << availableBackendTypes()
+    }
+
+    def "Commits should be pushed together once remote is available again (#backendType)"() {
+        given: "Git service with created repository"
+            def repository = localRepository()
+            def gitService = gitService(backendType, repository)
+            gitService.createRepository()
+        and: "Unavailable remote"
+            bareRepository.makeUnavailable()
+
+        when: "Two files are committed"
+            def files = (1..2).collect { new File(repository, "file-$it").tap { it.text = "foo" } }
+            def responses = files.collect { gitService.commitChanges(new FileChanges([FileCreated.of(it)])) }
+
+        then: "Commits are made locally but not pushed"
+            responses.every { it.isSuccessful() }
+            !gitService.awaitPushed(Duration.ofSeconds(2))
+
+        when: "Remote becomes available"
+            bareRepository.makeAvailable()
+
+        then: "Both commits are pushed"
+            gitService.awaitPushed(PUSH_TIMEOUT)
+            bareRepository.commits().size() == 2
+            bareRepository.files().keySet() == files.collect { it.name } as Set
+
+        where:
+            backendType << availableBackendTypes()
+    }
+
+    def "Content of remote should be pulled during bootstrap (#backendType)"() {
+        given: "File already pushed to remote"
+            def pushingRepository = localRepository()
+            def pushingGitService = gitService(GitBackendType.JGIT, pushingRepository)
+            pushingGitService.createRepository()
+            def file = new File(pushingRepository, "file-" + randomAlphabetic(5))
+            file.text = "bar"
+            assert pushingGitService.commitChanges(new FileChanges([FileCreated.of(file)])).isSuccessful()
+            assert pushingGitService.awaitPushed(PUSH_TIMEOUT)
+
+        and: "Another repository bootstrap"
+            def repository = localRepository()
+            def bootstrap = new RepositoryBootstrap(gitService(backendType, repository))
+
+        when: "Bootstrap is initialized"
+            bootstrap.initialize()
+
+        then: "Pushed file is present in local repository"
+            new File(repository, file.name).text == "bar"
+
+        where:
+            backendType << availableBackendTypes()
+    }
+
+    def "Shallow bootstrap should fetch only the latest commit of long remote history (#backendName)"() {
+        given: "Remote with long history of a few files"
+            bareRepository.pushHistory(300, 10)
+        and: "Two newly created repositories"
+            def shallowRepository = localRepository()
+            def shallowGitService = gitService(backendName, shallowRepository)
+            shallowGitService.createRepository()
+            def fullRepository = localRepository()
+            def fullGitService = gitService(backendName, fullRepository)
+            fullGitService.createRepository()
+
+        when: "Remote branch is pulled shallow into one repository and fully into another"
+            def shallowTransfer = shallowGitService.pull(BootstrapFetch.SHALLOW, PULL_TIMEOUT)
+            def fullTransfer = fullGitService.pull(BootstrapFetch.FULL, PULL_TIMEOUT)
+
+        then: "Shallow repository has the latest files, but only objects of the latest commit (commit, tree and 10 blobs) were transferred"
+            (0..9).every { new File(shallowRepository, "file-$it").text == new File(fullRepository, "file-$it").text }
+            new File(shallowRepository, "file-0").text == "content-300"
+            Git.open(shallowRepository).withCloseable { it.log().call().size() } == 1
+            shallowTransfer.objects == 12
+            fullTransfer.objects >= 600
+            shallowTransfer.bytes < fullTransfer.bytes
+
+        when: "New file is committed in shallow repository"
+            def file = new File(shallowRepository, "new-file")
+            file.text = "foo"
+            def response = shallowGitService.commitChanges(new FileChanges([FileCreated.of(file)]))
+
+        then: "Commit is pushed on top of remote history"
+            response.isSuccessful()
+            shallowGitService.awaitPushed(PUSH_TIMEOUT)
+            bareRepository.commits().size() == 301
+            bareRepository.files()["new-file"] == "foo"
+
+        where:
+            backendName << availableBackendTypes()*.name() + (LocalGitBackend.gitAvailable() ? [LOCAL_GIT] : [])
+    }
+
+    def "Only watched files which differ from pulled repository should be synchronized after bootstrap (#backendType)"() {
+        given: "Watched folder with files"
+            def watchedFolder = localRepository()
+            def files = (1..1000).collect { new File(watchedFolder, "file-$it").tap { it.text = "content-$it" } }
+        and: "Remote with the same files except 5 with other content and 5 missing ones"
+            def pushingRepository = localRepository()
+            def pushingGitService = gitService(GitBackendType.JGIT, pushingRepository)
+            pushingGitService.createRepository()
+            def pushedFiles = files.take(995).collect { new File(pushingRepository, it.name).tap { copy -> copy.text = it.text } }
+            pushedFiles.take(5).each { it.text = "other content" }
+            assert pushingGitService.commitChanges(new FileChanges(pushedFiles.collect { FileCreated.of(it) })).isSuccessful()
+            assert pushingGitService.awaitPushed(PUSH_TIMEOUT)
+        and: "Bootstrapped repository"
+            def repository = localRepository()
+            new RepositoryBootstrap(gitService(backendType, repository)).initialize()
+
+        when: "File watcher reconciles files found in watched folder with repository"
+            def fileWatcher = new FileWatcher(1, [watchedFolder.toPath()], IgnoredFiles.noIgnoredFiles(), false)
+            def fileManager = new FileManager(repository)
+            def changedFiles = fileWatcher.reconcileInitialFileChanges({ fileManager.changedFiles(it) } as FileWatcher.ChangedFilesSelector)
+
+        then: "Only differing and missing files are left to be synchronized"
+            changedFiles == 10
+            fileWatcher.occurredFileChanges().fileNames() as Set == ((1..5) + (996..1000)).collect { "file-$it".toString() } as Set
+
+        where:
+            backendType << availableBackendTypes()
+    }
+
+    def "#commitMode commit mode should commit the same trees as working tree commit mode (#backendName)"() {
+        given: "Remote with history on two branches"
+            def workingTreeBranch = new GitBranch("working-tree")
+            def directBranch = new GitBranch("direct")
+            bareRepository.pushHistory(3, 2, workingTreeBranch)
+            bareRepository.pushHistory(3, 2, directBranch)
+        and: "Watched folder with content of the latest remote commit"
+            def watchedFolder = localRepository()
+            new File(watchedFolder, "file-0").text = "content-2"
+            new File(watchedFolder, "file-1").text = "content-3"
+        and: "Repositories committing via working tree and directly"
+            def workingTreeRepository = localRepository()
+            def workingTreeGitService = gitService(backend(backendName, workingTreeRepository), workingTreeRepository, workingTreeBranch,
+                    CommitMode.WORKING_TREE)
+            def fileManager = new FileManager(workingTreeRepository)
+            def directRepository = localRepository()
+            def directGitService = gitService(backend(backendName, directRepository), directRepository, directBranch, commitMode)
+            [workingTreeGitService, directGitService].each {
+                it.createRepository()
+                it.pull()
+            }
+        and: "Changes applied in both repositories"
+            def synchronize = { List<FileChange> changes ->
+                def fileChanges = new FileChanges(changes)
+                fileManager.copy(fileChanges.newOrModifiedFilesByName())
+                fileManager.deleteFromTargetPath(fileChanges.deletedFileNames())
+                assert workingTreeGitService.commitChanges(fileChanges).isSuccessful()
+                assert directGitService.commitChanges(fileChanges).isSuccessful()
+                assert workingTreeGitService.awaitPushed(PUSH_TIMEOUT)
+                assert directGitService.awaitPushed(PUSH_TIMEOUT)
+            }
+            def watchedFile = { String name, String content ->
+                def file = new File(watchedFolder, name)
+                file.parentFile.mkdirs()
+                file.text = content
+                file
+            }
+
+        when: "New files (also nested, in new folder and with name requiring quoting) are synchronized and existing file is touched"
+            new File(watchedFolder, "file-0").setLastModified(0)
+            def folder = new File(watchedFolder, "folder").tap { mkdirs() }
+            watchedFile("folder/a", "a")
+            watchedFile("folder/b/c", "c")
+            synchronize([FileModified.of(new File(watchedFolder, "file-0")),
+                         FileCreated.of(watchedFile("new file", "new")),
+                         FileCreated.of(watchedFile("nested/dir/file", "nested"), "nested/dir/file"),
+                         FileCreated.of(watchedFile("\"quoted", "quoted")),
+                         FileCreated.of(folder)])
+
+        then: "Both branches have the same tree"
+            bareRepository.treeId(directBranch) == bareRepository.treeId(workingTreeBranch)
+            bareRepository.files(directBranch)["folder/b/c"] == "c"
+            bareRepository.files(directBranch)["\"quoted"] == "quoted"
+            bareRepository.commits(directBranch).size() == 4
+
+        when: "Files are modified and deleted"
+            synchronize([FileModified.of(watchedFile("file-1", "modified")),
+                         FileDeleted.of(new File(watchedFolder, "new file")),
+                         FileDeleted.of(new File(watchedFolder, "nested/dir"), "nested/dir"),
+                         FileDeleted.of(new File(watchedFolder, "folder"))])
+
+        then: "Both branches have the same tree"
+            bareRepository.treeId(directBranch) == bareRepository.treeId(workingTreeBranch)
+            bareRepository.files(directBranch).keySet() == ["file-0", "file-1", "\"quoted"] as Set
+            bareRepository.commits(directBranch).size() == 5
+
+        when: "Content of changed files is the same as committed one"
+            synchronize([FileModified.of(new File(watchedFolder, "file-1")), FileDeleted.of(new File(watchedFolder, "missing"))])
+
+        then: "Nothing is committed"
+            bareRepository.commits(directBranch).size() == 5
+            bareRepository.commits(workingTreeBranch).size() == 5
+
+        when: "Directly committing git service is stopped"
+            directGitService.stop()
+
+        then: "Working tree of its repository is updated to the latest commit"
+            new JGitBackend(directRepository).cleanWorkingTree()
+            new File(directRepository, "file-1").text == "modified"
+            !new File(directRepository, "new file").exists()
+
+        where:
+            [commitMode, backendName] << directCommitModesWithBackends()
+    }
+
+    def "Persistent repository should be reused on restart and only new remote changes should be pulled (#backendType)"() {
+        given: "Persistent repository with committed file"
+            def repository = localRepository()
+            def bootstrap = new RepositoryBootstrap(gitService(backendType, repository), true)
+            bootstrap.initialize()
+            def file = new File(repository, "file-" + randomAlphabetic(5))
+            file.text = "foo"
+            assert bootstrap.gitService.commitChanges(new FileChanges([FileCreated.of(file)])).isSuccessful()
+        and: "Marker which would be lost if repository was created again"
+            def marker = new File(repository, ".git/marker")
+            marker.text = "marker"
+
+        when: "Synchronizer is shut down"
+            bootstrap.shutdown()
+
+        then: "Repository isn't removed and its commit is pushed"
+            file.text == "foo"
+            bareRepository.files() == [(file.name): "foo"]
+
+        when: "Another file is pushed to remote meanwhile"
+            def pushingRepository = localRepository()
+            def pushingGitService = gitService(GitBackendType.JGIT, pushingRepository)
+            pushingGitService.createRepository()
+            pushingGitService.pull()
+            def remoteFile = new File(pushingRepository, "remote-file-" + randomAlphabetic(5))
+            remoteFile.text = "bar"
+            assert pushingGitService.commitChanges(new FileChanges([FileCreated.of(remoteFile)])).isSuccessful()
+            assert pushingGitService.awaitPushed(PUSH_TIMEOUT)
+
+        and: "Synchronizer is started again"
+            def restartedBootstrap = new RepositoryBootstrap(gitService(backendType, repository), true)
+            restartedBootstrap.initialize()
+
+        then: "Existing repository is reused and remote file is pulled"
+            marker.exists()
+            file.text == "foo"
+            new File(repository, remoteFile.name).text == "bar"
+
+        where:
+            backendType << availableBackendTypes()
+    }
+
+    def "Persistent repository with not committed changes should be created again (#backendType)"() {
+        given: "Persistent repository with file which wasn't committed"
+            def repository = localRepository()
+            def bootstrap = new RepositoryBootstrap(gitService(backendType, repository), true)
+            bootstrap.initialize()
+            new File(repository, "not-committed-file").text = "foo"
+            def marker = new File(repository, ".git/marker")
+            marker.text = "marker"
+            bootstrap.shutdown()
+
+        when: "Synchronizer is started again"
+            new RepositoryBootstrap(gitService(backendType, repository), true).initialize()
+
+        then: "Repository is created again"
+            !marker.exists()
+            !new File(repository, "not-committed-file").exists()
+            new File(repository, ".git").isDirectory()
+
+        where:
+            backendType << availableBackendTypes()
+    }
+
+    @Requires({ LocalRemoteGitServiceIntegrationSpec.dockerAvailable() })
+    def "Git container should be restarted if it died"() {
+        given: "Git service with created repository"
+            def repository = localRepository()
+            def backend = GitBackendType.DOCKER_EXEC.create(new GitRepositoryLocal(repository), bareRepository.remote(), Optional.empty())
+            def gitService = new GitService(bareRepository.remote(), new GitRepositoryLocal(repository), GitBranch.DEFAULT_BRANCH, backend)
+            gitServices << gitService
+            gitService.createRepository()
+            assert backend.isRunning()
+
+        when: "Container is killed"
+            new ProcessExecutor(repository).execute(["docker", "kill", backend.containerName], "killing git container")
+
+        and: "New file is committed"
+            def file = new File(repository, "file-" + randomAlphabetic(5))
+            file.text = "foo"
+            def response = gitService.commitChanges(new FileChanges([FileCreated.of(file)]))
+
+        then: "Commit is successful and container is running again"
+            response.isSuccessful()
+            gitService.awaitPushed(PUSH_TIMEOUT)
+            backend.isRunning()
+            bareRepository.files() == [(file.name): "foo"]
+
+        when: "Git service is stopped"
+            gitService.stop()
+
+        then: "Container doesn't run anymore"
+            !backend.isRunning()
+    }
+
+    private File localRepository() {
+        def repository = Files.createTempDirectory("local_repo_" + randomAlphabetic(4)).toFile()
+        localRepositories << repository
+        return repository
+    }
+
+    private GitService gitService(GitBackendType backendType, File repository) {
+        def repositoryLocal = new GitRepositoryLocal(repository)
+        return gitService(backendType.create(repositoryLocal, bareRepository.remote(), Optional.empty()), repository)
+    }
+
+    /**
+     * @param backendName name of {@link GitBackendType} or {@link #LOCAL_GIT} for git installed on local machine
+     */
+    private GitService gitService(String backendName, File repository) {
+        return gitService(backend(backendName, repository), repository)
+    }
+
+    private GitService gitService(GitBackend backend, File repository, GitBranch branch = GitBranch.DEFAULT_BRANCH,
+                                  CommitMode commitMode = CommitMode.WORKING_TREE) {
+        def gitService = new GitService(bareRepository.remote(), new GitRepositoryLocal(repository), branch, backend, commitMode)
+        gitServices << gitService
+        return gitService
+    }
+
+    private GitBackend backend(String backendName, File repository) {
+        return backendName == LOCAL_GIT ?
+                new LocalGitBackend(repository) :
+                GitBackendType.valueOf(backendName).create(new GitRepositoryLocal(repository), bareRepository.remote(), Optional.empty())
+    }
+
+    /**
+     * Fast-import requires git command line tool, object store commit mode works with every backend.
+     */
+    static List<List<Object>> directCommitModesWithBackends() {
+        def localGit = LocalGitBackend.gitAvailable() ? [LOCAL_GIT] : []
+        def commandLineBackends = availableBackendTypes().findAll { it.requiresDocker() }*.name() + localGit
+        def allBackends = availableBackendTypes()*.name() + localGit
+        return commandLineBackends.collect { [CommitMode.FAST_IMPORT, it] } + allBackends.collect { [CommitMode.OBJECT_STORE, it] }
+    }
+
+    static List<GitBackendType> availableBackendTypes() {
+        dockerAvailable() ? GitBackendType.values().toList() : GitBackendType.values().findAll { !it.requiresDocker() }
+    }
+
+    static boolean dockerAvailable() {
+        try {
+            return new ProcessExecutor(new File("./")).execute(["docker", "info"], "docker info").isSuccessful()
+        } catch (Exception ignored) {
+            return false
+        }
+    }
+}
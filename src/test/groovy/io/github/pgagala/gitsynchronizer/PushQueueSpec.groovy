@@ -0,0 +1,112 @@
+package io.github.pgagala.gitsynchronizer
+
+import io.github.pgagala.gitsynchronizer.metrics.Metrics
+import io.github.pgagala.gitsynchronizer.processexecutor.Response
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class PushQueueSpec extends Specification {
+
+    PushQueue pushQueue
+
+    def cleanup() {
+        pushQueue?.stop(Duration.ZERO)
+        Metrics.disable()
+    }
+
+    def "commits requested during ongoing push should be pushed together by next push"() {
+        given: "push queue with push blocked until released"
+            def pushes = new AtomicInteger()
+            def pushStarted = new CountDownLatch(1)
+            def releasePush = new CountDownLatch(1)
+            pushQueue = new PushQueue({
+                pushes.incrementAndGet()
+                pushStarted.countDown()
+                releasePush.await()
+                Response.success()
+            })
+            pushQueue.start()
+
+        when: "first commit is requested to be pushed"
+            pushQueue.requestPush()
+            pushStarted.await()
+        and: "many commits are requested to be pushed meanwhile"
+            10.times { pushQueue.requestPush() }
+            releasePush.countDown()
+
+        then: "all commits are pushed by two pushes"
+            pushQueue.awaitPushed(Duration.ofSeconds(5))
+            pushes.get() == 2
+            pushQueue.pushes() == 2
+    }
+
+    def "failed push should be repeated with exponential backoff"() {
+        given: "push queue failing first three pushes"
+            List<Long> pushTimes = [].asSynchronized()
+            pushQueue = new PushQueue({
+                pushTimes << System.nanoTime()
+                pushTimes.size() > 3 ? Response.success() : Response.failure("remote unavailable")
+            }, Duration.ofMillis(50), Duration.ofMillis(150))
+            pushQueue.start()
+
+        when: "commit is requested to be pushed"
+            pushQueue.requestPush()
+
+        then: "commit is finally pushed"
+            pushQueue.awaitPushed(Duration.ofSeconds(5))
+            pushQueue.failedPushes() == 3
+            pushQueue.pushes() == 1
+
+        and: "pushes were delayed by 50, 100 and 150 (max) ms"
+            def delays = (1..3).collect { (pushTimes[it] - pushTimes[it - 1]) / 1_000_000 }
+            delays[0] >= 50
+            delays[1] >= 100
+            delays[2] >= 150
+    }
+
+    def "awaiting push should time out if commits can't be pushed"() {
+        given: "push queue always failing"
+            pushQueue = new PushQueue({ Response.failure("remote unavailable") }, Duration.ofMillis(10), Duration.ofMillis(10))
+            pushQueue.start()
+
+        when: "commit is requested to be pushed"
+            pushQueue.requestPush()
+
+        then: "commit isn't pushed"
+            !pushQueue.awaitPushed(Duration.ofMillis(200))
+            pushQueue.failedPushes() > 1
+    }
+
+    def "awaiting push should return immediately if nothing was requested"() {
+        given:
+            pushQueue = new PushQueue({ Response.success() })
+            pushQueue.start()
+
+        expect:
+            pushQueue.awaitPushed(Duration.ZERO)
+    }
+
+    def "latency from the oldest event of pushed commits should be recorded once they are pushed"() {
+        given: "enabled metrics and push queue failing first push"
+            def metrics = Metrics.enable()
+            def attempts = new AtomicInteger()
+            pushQueue = new PushQueue({
+                attempts.incrementAndGet() > 1 ? Response.success() : Response.failure("remote unavailable")
+            }, Duration.ofMillis(50), Duration.ofMillis(50))
+
+        when: "commits of events noticed 2 s and 1 s ago are requested to be pushed"
+            pushQueue.requestPush(OptionalLong.of(System.nanoTime() - TimeUnit.SECONDS.toNanos(1)))
+            pushQueue.requestPush(OptionalLong.of(System.nanoTime() - TimeUnit.SECONDS.toNanos(2)))
+            pushQueue.start()
+
+        then: "latency of the oldest event is recorded once, after successful push"
+            pushQueue.awaitPushed(Duration.ofSeconds(5))
+            metrics.eventToPushLatency.count == 1
+            metrics.eventToPushLatency.maxMillis >= 2000
+            metrics.eventToPushLatency.maxMillis < 3000
+    }
+}
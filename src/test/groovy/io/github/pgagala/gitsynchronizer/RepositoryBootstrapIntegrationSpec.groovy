@@ -5,6 +5,7 @@ import org.apache.commons.io.FileUtils
 import spock.lang.Timeout
 
 import java.nio.file.Files
+import java.time.Duration
 import java.util.concurrent.TimeUnit
 
 import static org.testcontainers.shaded.org.apache.commons.lang.RandomStringUtils.randomAlphabetic
@@ -63,6 +64,7 @@ class RepositoryBootstrapIntegrationSpec extends IntegrationSpec {
             assert !file.exists()
             file.createNewFile()
             assert gitService.commitChanges(new FileChanges([FileCreated.of(file)])).isSuccessful()
+            assert gitService.awaitPushed(Duration.ofSeconds(30))
 
         when: "Bootstrap is initialized"
             repositoryBootstrap.initialize()
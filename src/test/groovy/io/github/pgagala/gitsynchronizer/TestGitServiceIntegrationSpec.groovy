@@ -6,6 +6,7 @@ import org.apache.commons.io.FileUtils
 import spock.lang.Timeout
 
 import java.nio.file.Files
+import java.time.Duration
 import java.util.concurrent.TimeUnit
 
 import static org.testcontainers.shaded.org.apache.commons.lang.RandomStringUtils.randomAlphabetic
@@ -53,6 +54,7 @@ class TestGitServiceIntegrationSpec extends IntegrationSpec {
                     new File(gitLocal.value.getPath() + "/file-" + randomAlphabetic(5)).with(true)
                             { it.createNewFile() }
             gitService.commitChanges(new FileChanges([FileCreated.of(fileToCommit)]))
+            assert gitService.awaitPushed(Duration.ofSeconds(30))
 
         when: "repository is cloned"
             testGitService.cloneRepository(GIT_REMOTE, clonedLocalGit, newBranch)
@@ -68,6 +70,7 @@ class TestGitServiceIntegrationSpec extends IntegrationSpec {
             File fileToCommit = new File(gitLocal.value.getPath() + "/file-" + randomAlphabetic(5)).with(true)
                     { it.createNewFile() }
             gitService.commitChanges(new FileChanges([FileCreated.of(fileToCommit)]))
+            assert gitService.awaitPushed(Duration.ofSeconds(30))
         and: "cloned repository"
             testGitService.cloneRepository(GIT_REMOTE, clonedLocalGit, newBranch)
             def testRepoInClonedTestFolder = new File("${clonedLocalGit.value.toPath()}/test_repository")
@@ -76,6 +79,7 @@ class TestGitServiceIntegrationSpec extends IntegrationSpec {
             fileToCommit.append(RANDOM_TEXT)
         and: "file is committed"
             gitService.commitChanges(new FileChanges([FileModified.of(fileToCommit)]))
+            assert gitService.awaitPushed(Duration.ofSeconds(30))
         and: "cloned repository is pulled"
             testGitService.pull(testRepoInClonedTestFolder)
         then: "changed file is present"
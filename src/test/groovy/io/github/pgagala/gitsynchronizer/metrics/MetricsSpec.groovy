@@ -0,0 +1,158 @@
+package io.github.pgagala.gitsynchronizer.metrics
+
+import io.github.pgagala.gitsynchronizer.processexecutor.ProcessExecutor
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.util.environment.OperatingSystem
+
+import javax.management.ObjectName
+import javax.management.openmbean.CompositeData
+import javax.management.openmbean.TabularData
+import java.lang.management.ManagementFactory
+import java.util.concurrent.TimeUnit
+
+class MetricsSpec extends Specification {
+
+    def cleanup() {
+        Metrics.disable()
+    }
+
+    def "Histogram should report percentiles accurate to factor of two"() {
+        given: "histogram with 98 durations of 1 ms and 2 durations of 1 s"
+            def histogram = new LatencyHistogram()
+            98.times { histogram.record(TimeUnit.MILLISECONDS.toNanos(1)) }
+            2.times { histogram.record(TimeUnit.SECONDS.toNanos(1)) }
+
+        when: "snapshot is taken"
+            def snapshot = histogram.snapshot()
+
+        then: "percentiles are within factor of two of recorded durations"
+            snapshot.count == 100
+            snapshot.p50Millis >= 1 && snapshot.p50Millis < 2
+            snapshot.p90Millis >= 1 && snapshot.p90Millis < 2
+            snapshot.p99Millis == 1000
+            snapshot.maxMillis == 1000
+            snapshot.meanMillis > 20.9 && snapshot.meanMillis < 21.1
+
+        and: "distribution has counts of non-empty buckets by their upper bounds"
+            histogram.distribution() == [(1.048576d): 98L, (1073.741824d): 2L]
+    }
+
+    def "Empty histogram should report zeros"() {
+        expect:
+            new LatencyHistogram().snapshot() == new LatencySnapshot(0, 0, 0, 0, 0, 0)
+    }
+
+    def "Meter should report rate over sampled period"() {
+        given: "meter sampled once"
+            def meter = new Meter()
+            meter.tick(0)
+
+        when: "events are marked and meter is sampled 2 s later"
+            50.times { meter.mark() }
+            meter.tick(TimeUnit.SECONDS.toNanos(2))
+
+        then: "rate is per second"
+            meter.count() == 50
+            meter.ratePerSecond() == 25
+
+        when: "meter is sampled over more than one minute without events"
+            (3..20).each { meter.tick(TimeUnit.SECONDS.toNanos(it * 5)) }
+
+        then: "old events don't count anymore"
+            meter.ratePerSecond() == 0
+    }
+
+    def "Disabled metrics should neither record nor allocate anything"() {
+        given: "disabled metrics"
+            def metrics = Metrics.current()
+            def threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+            def kind = "ENTRY_MODIFY"
+            def description = "git commit"
+            def noEvent = OptionalLong.empty()
+            record(metrics, kind, description, noEvent, 10_000)
+
+        when: "many metrics are recorded"
+            def allocatedBefore = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().id)
+            record(metrics, kind, description, noEvent, 1_000_000)
+            def allocated = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().id) - allocatedBefore
+
+        then: "nothing is recorded and allocated memory doesn't depend on amount of records"
+            !metrics.enabled()
+            metrics.eventCounts.isEmpty()
+            metrics.commands.isEmpty()
+            metrics.copiedBytes == 0
+            allocated < 64 * 1024
+    }
+
+    //statically compiled, so that groovy dispatch doesn't allocate anything on its own
+    @groovy.transform.CompileStatic
+    private static void record(Metrics metrics, String kind, String description, OptionalLong noEvent, int times) {
+        for (int i = 0; i < times; i++) {
+            metrics.markEvent(kind)
+            metrics.recordCommand(description, i, false)
+            metrics.recordCommitted(noEvent)
+            metrics.addCopiedBytes(i)
+        }
+    }
+
+    def "Enabled metrics should be exported over JMX"() {
+        given: "enabled metrics"
+            def metrics = Metrics.enable()
+            def queue = [1, 2, 3]
+            metrics.registerQueueDepth({ queue.size() })
+
+        when: "metrics are recorded"
+            3.times { metrics.markEvent("ENTRY_MODIFY") }
+            metrics.markEvent("ENTRY_CREATE")
+            metrics.recordCommand("git commit", TimeUnit.MILLISECONDS.toNanos(5), false)
+            metrics.recordCommand("git commit", TimeUnit.MILLISECONDS.toNanos(7), true)
+            metrics.recordCommitted(OptionalLong.of(System.nanoTime() - TimeUnit.SECONDS.toNanos(1)))
+            metrics.addCopiedBytes(1024)
+
+        and: "they are read over JMX"
+            def mBeanServer = ManagementFactory.getPlatformMBeanServer()
+            def objectName = new ObjectName(Metrics.OBJECT_NAME)
+            def eventCounts = mBeanServer.getAttribute(objectName, "EventCounts") as TabularData
+            def commands = mBeanServer.getAttribute(objectName, "Commands") as TabularData
+            def gitCommit = commands.get(["git commit"] as Object[]).get("value") as CompositeData
+            def eventToCommitLatency = mBeanServer.getAttribute(objectName, "EventToCommitLatency") as CompositeData
+
+        then: "they have recorded values"
+            Metrics.current().is(metrics)
+            mBeanServer.getAttribute(objectName, "QueueDepth") == 3
+            eventCounts.get(["ENTRY_MODIFY"] as Object[]).get("value") == 3L
+            eventCounts.get(["ENTRY_CREATE"] as Object[]).get("value") == 1L
+            gitCommit.get("executions") == 2L
+            gitCommit.get("failures") == 1L
+            (gitCommit.get("durations") as CompositeData).get("maxMillis") == 7.0d
+            eventToCommitLatency.get("count") == 1L
+            eventToCommitLatency.get("maxMillis") >= 1000.0d
+            mBeanServer.getAttribute(objectName, "CopiedBytes") == 1024L
+
+        when: "metrics are disabled"
+            Metrics.disable()
+
+        then: "they aren't exported anymore"
+            !mBeanServer.isRegistered(objectName)
+            !Metrics.current().enabled()
+    }
+
+    @Requires({ !OperatingSystem.getCurrent().isWindows() })
+    def "Process executions should be recorded by their description"() {
+        given: "enabled metrics"
+            def metrics = Metrics.enable()
+            def processExecutor = new ProcessExecutor(new File(System.getProperty("java.io.tmpdir")))
+
+        when: "processes are executed"
+            processExecutor.execute(["true"], "successful process")
+            processExecutor.execute(["sh", "-c", "exit 3"], "failing process")
+            processExecutor.execute(["sh", "-c", "exit 3"], "failing process")
+
+        then: "their executions and failures are recorded"
+            metrics.commands["successful process"].executions == 1
+            metrics.commands["successful process"].failures == 0
+            metrics.commands["failing process"].executions == 2
+            metrics.commands["failing process"].failures == 2
+    }
+}
@@ -1,12 +1,17 @@
 package io.github.pgagala.gitsynchronizer.processexecutor
 
 
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
 import org.apache.commons.io.FileUtils
 import spock.lang.Requires
 import spock.lang.Specification
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
 import spock.util.environment.OperatingSystem
 
 import java.nio.file.Files
+import java.time.Duration
 
 import static org.testcontainers.shaded.org.apache.commons.lang.RandomStringUtils.randomAlphabetic
 
@@ -70,4 +75,125 @@ class ProcessExecutorSpec extends Specification {
             response.result().contains("foo")
     }
 
-}
\ No newline at end of file
+    @Requires({ !OperatingSystem.getCurrent().isWindows() })
+    @Timeout(30)
+    def "Process flooding error output should finish and its output should be captured up to limit"() {
+        given: "process writing 10 MB to error output before writing to standard output"
+            def command = ["sh", "-c", "head -c 10000000 /dev/zero | tr '\\0' e >&2; echo done"]
+
+        when: "process is executed"
+            def response = processExecutor.execute(command, "flooding error output")
+
+        then: "process finishes successfully"
+            response.isSuccessful()
+            response.result().trim() == "done"
+
+        when: "process flooding error output fails"
+            response = new ProcessExecutor(testFolder, 1000).execute(["sh", "-c", command[2] + "; echo failed >&2; exit 3"], "flooding error output")
+
+        then: "beginning and end of error output is reported"
+            response.isFailure()
+            response.result().contains("exit code 3")
+            response.result().contains("eeeee")
+            response.result().contains("(9999007 bytes skipped)")
+            response.result().trim().endsWith("failed")
+            response.result().length() < 2000
+    }
+
+    @Requires({ !OperatingSystem.getCurrent().isWindows() })
+    @Timeout(30)
+    def "Standard output of successful process should be returned whole even if it exceeds limit of captured error output"() {
+        given: "process writing more to standard output than captured limit"
+            def command = ["sh", "-c", "head -c 5000 /dev/zero | tr '\\0' o; echo done"]
+
+        when: "process is executed"
+            def response = new ProcessExecutor(testFolder, 1000).execute(command, "flooding standard output")
+
+        then: "whole output is returned"
+            response.isSuccessful()
+            response.result() == "o" * 5000 + "done\n"
+    }
+
+    @Requires({ !OperatingSystem.getCurrent().isWindows() })
+    @Timeout(30)
+    def "Standard output exceeding limit should be streamed to output reader"() {
+        given: "process writing 10 MB to standard output"
+            def command = ["sh", "-c", "head -c 10000000 /dev/zero | tr '\\0' o"]
+            def read = 0L
+
+        when: "process is executed with output reader"
+            def response = new ProcessExecutor(testFolder, 1000).execute(command, "streaming standard output", { InputStream output ->
+                read = output.transferTo(OutputStream.nullOutputStream())
+            } as OutputReader)
+
+        then: "whole output is read"
+            response.isSuccessful()
+            response.result().isEmpty()
+            read == 10_000_000
+
+        when: "output reader fails after reading part of output"
+            response = processExecutor.execute(command, "streaming standard output", { InputStream output ->
+                output.read(new byte[10])
+                throw new IOException("unexpected output")
+            } as OutputReader)
+
+        then: "process finishes and failure of reader is returned"
+            response.isFailure()
+            response.result().contains("unexpected output")
+    }
+
+    @Requires({ !OperatingSystem.getCurrent().isWindows() })
+    def "Process which didn't finish within timeout should be killed with its descendants"() {
+        given: "process spawning long running child process"
+            def childPidFile = new File(testFolder, "child.pid")
+            def command = ["sh", "-c", "sleep 60 & echo \$! > ${childPidFile.name}; wait".toString()]
+
+        when: "process is executed with timeout"
+            def start = System.nanoTime()
+            def response = processExecutor.execute(command, "long running", Duration.ofMillis(500))
+            def elapsed = Duration.ofNanos(System.nanoTime() - start)
+
+        then: "failure is returned right after timeout"
+            response.isFailure()
+            response.result().contains("didn't finish within 500 ms")
+            elapsed < Duration.ofSeconds(5)
+
+        and: "child process is killed"
+            new PollingConditions(timeout: 5).eventually {
+                ProcessHandle.of(childPidFile.text.trim() as long).map { it.isAlive() }.orElse(false) == false
+            }
+    }
+
+    @Requires({ !OperatingSystem.getCurrent().isWindows() })
+    def "Process finished within timeout with non zero exit code should be failure"() {
+        expect:
+            processExecutor.execute(["sh", "-c", "exit 3"], "failing", Duration.ofSeconds(10)).isFailure()
+            processExecutor.execute(["sh", "-c", "echo ok"], "succeeding", Duration.ofSeconds(10)).result().trim() == "ok"
+    }
+
+    @Requires({ !OperatingSystem.getCurrent().isWindows() })
+    def "Process executions should be recorded by flight recorder with their exit codes"() {
+        given: "flight recording of process executions"
+            def recording = new Recording()
+            recording.enable("io.github.pgagala.gitsynchronizer.ProcessExecution").withoutThreshold()
+            recording.start()
+            def recordingFile = Files.createTempFile("recording_", ".jfr")
+
+        when: "processes are executed"
+            processExecutor.execute(["sh", "-c", "exit 3"], "failing")
+            processExecutor.execute(["sh", "-c", "sleep 5"], "long running", Duration.ofMillis(100))
+            recording.stop()
+            recording.dump(recordingFile)
+
+        then: "their descriptions, exit codes and durations are recorded"
+            def executions = RecordingFile.readAllEvents(recordingFile)
+                    .findAll { it.eventType.name == "io.github.pgagala.gitsynchronizer.ProcessExecution" }
+            executions.collect { [it.getString("description"), it.getInt("exitCode"), it.getBoolean("successful")] } ==
+                    [["failing", 3, false], ["long running", -1, false]]
+            executions[1].duration >= Duration.ofMillis(100)
+
+        cleanup:
+            recording.close()
+            Files.deleteIfExists(recordingFile)
+    }
+}